@@ -5,9 +5,6 @@ import service.UserService;
 import util.LogManager;
 import util.ServiceFactory;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -103,26 +100,14 @@ public class AdminController {
         
         // Supprimer l'utilisateur
         String sql = "DELETE FROM users WHERE id = ?";
-        Connection conn = null;
-        PreparedStatement pstmt = null;
+        int rowsAffected = ServiceFactory.getInstance().getDatabaseService().executeUpdate(sql, userId);
         
-        try {
-            conn = ServiceFactory.getInstance().getDatabaseService().connect();
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, userId);
-            
-            int rowsAffected = pstmt.executeUpdate();
-            
-            if (rowsAffected > 0) {
-                LogManager.info(TAG, "Utilisateur " + userId + " supprimé avec succès");
-                return true;
-            } else {
-                LogManager.warning(TAG, "Échec de la suppression de l'utilisateur " + userId);
-                return false;
-            }
-        } finally {
-            if (pstmt != null) try { pstmt.close(); } catch (SQLException e) { /* ignore */ }
-            if (conn != null) try { conn.close(); } catch (SQLException e) { /* ignore */ }
+        if (rowsAffected > 0) {
+            LogManager.info(TAG, "Utilisateur " + userId + " supprimé avec succès");
+            return true;
+        } else {
+            LogManager.warning(TAG, "Échec de la suppression de l'utilisateur " + userId);
+            return false;
         }
     }
     
@@ -9,12 +9,14 @@ import service.RSACryptographyService;
 import service.SharedRecordingService;
 import service.impl.AudioRecordingServiceFixExtended;
 import service.impl.CryptographyServiceFix;
+import service.impl.RecordingRepository;
 import service.impl.UserServiceImplFix;
 import model.User;
 import model.UserKeys;
 import util.ServiceFactory;
 
 import javax.sound.sampled.AudioFormat;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -22,6 +24,7 @@ import java.util.ArrayList;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.io.File;
 import java.io.FileNotFoundException;
 
@@ -39,11 +42,11 @@ public class AudioRecorderController {
     private final AudioRecordingService audioRecordingService;
     private PlaybackListener playbackListener;
     private boolean isRecording = false;
-    private boolean isPlaying = false;
     private final UserService userService;
     private final SharedRecordingService sharedRecordingService;
     private final UserKeysService userKeysService;
     private final RSACryptographyService rsaCryptographyService;
+    private final RecordingRepository recordingRepository;
 
     private static final DateTimeFormatter DISPLAY_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
 
@@ -65,6 +68,14 @@ public class AudioRecorderController {
                 audioRecordingService,
                 userKeysService,
                 rsaCryptographyService);
+        this.recordingRepository = new RecordingRepository(ServiceFactory.getInstance().getDatabaseService());
+        try {
+            // Clés publiques décodées une fois pour les partages de la session
+            int warmed = userKeysService.warmKeyRing();
+            LOGGER.log(Level.INFO, "Clés publiques chargées dans le trousseau: {0}", warmed);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Impossible de charger les clés publiques dans le trousseau", e);
+        }
         updateUserId(userId);
     }
 
@@ -81,6 +92,17 @@ public class AudioRecorderController {
         }
     }
 
+    /**
+     * Termine la session de l'utilisateur : les clés d'enregistrement conservées
+     * en mémoire sont effacées.
+     */
+    public void logout() {
+        if (this.audioRecordingService instanceof AudioRecordingServiceFixExtended) {
+            ((AudioRecordingServiceFixExtended) this.audioRecordingService).clearSessionKeys();
+        }
+        LOGGER.log(Level.INFO, "Session de l''utilisateur {0} terminée", userId);
+    }
+
     /**
      * Récupère l'email de l'utilisateur connecté
      * 
@@ -183,16 +205,38 @@ public class AudioRecorderController {
                 audioRecordingService.playRecording(recording.getFilePath());
             }
 
-            isPlaying = true;
             return true;
         } catch (Exception e) {
             System.err.println("Erreur lors de la lecture de l'enregistrement: " + e.getMessage());
             e.printStackTrace();
-            isPlaying = false;
             return false;
         }
     }
 
+    /**
+     * Lance la lecture d'un enregistrement sans attendre sa fin. La lecture
+     * s'exécute sur le moteur de lecture du service ; une lecture en cours est
+     * remplacée.
+     * 
+     * @param recordingId L'ID de l'enregistrement à jouer
+     * @return Un futur complété à la fin de la lecture : true si elle est allée
+     *         à son terme ou a été arrêtée, false en cas d'erreur
+     */
+    public CompletableFuture<Boolean> playRecordingAsync(int recordingId) {
+        if (!(audioRecordingService instanceof AudioRecordingServiceFixExtended)) {
+            throw new UnsupportedOperationException("Le service audio ne supporte pas la lecture asynchrone");
+        }
+        System.out.println("Demande de lecture de l'enregistrement #" + recordingId);
+        return ((AudioRecordingServiceFixExtended) audioRecordingService).playRecordingAsync(recordingId)
+                .handle((played, error) -> {
+                    if (error != null) {
+                        System.err.println("Erreur lors de la lecture de l'enregistrement: " + error.getMessage());
+                        return false;
+                    }
+                    return true;
+                });
+    }
+
     /**
      * Arrête la lecture en cours.
      */
@@ -215,7 +259,7 @@ public class AudioRecorderController {
      * @return true si une lecture est en cours, false sinon
      */
     public boolean isPlaying() {
-        return isPlaying;
+        return audioRecordingService.isPlaying();
     }
 
     /**
@@ -248,31 +292,25 @@ public class AudioRecorderController {
      * @return La liste des enregistrements
      */
     public List<AudioRecording> getRecordings(String directory) {
-        List<AudioRecording> recordings = audioRecordingService.getRecordings(directory);
+        // Le service lit les enregistrements personnels et partagés en une seule requête
+        return audioRecordingService.getRecordings(directory);
+    }
 
+    /**
+     * Récupère une page des enregistrements de l'utilisateur courant et de ceux
+     * qui lui sont partagés, du plus récent au plus ancien.
+     * 
+     * @param offset Le nombre d'enregistrements à sauter
+     * @param limit  La taille maximale de la page
+     * @return Les enregistrements de la page, vide en cas d'erreur
+     */
+    public List<AudioRecording> getRecordingsPage(int offset, int limit) {
         try {
-            // Ajouter les enregistrements partagés
-            List<AudioRecording> sharedRecordings = sharedRecordingService.getSharedRecordings(userId);
-            LOGGER.log(Level.INFO, "Enregistrements partagés récupérés: {0}", sharedRecordings.size());
-
-            // Assurer que les userId correspondent à l'utilisateur courant pour l'accès
-            for (AudioRecording shared : sharedRecordings) {
-                // Forcer l'userId pour garantir l'accès
-                if (shared.getUserId() != userId) {
-                    LOGGER.log(Level.INFO, "Adaptation de l'userId pour l'enregistrement partagé {0}: de {1} à {2}",
-                            new Object[] { shared.getId(), shared.getUserId(), userId });
-                    shared.setUserId(userId);
-                }
-            }
-
-            recordings.addAll(sharedRecordings);
-            LOGGER.log(Level.INFO, "Nombre total d'enregistrements (personnels + partagés): {0}", recordings.size());
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Erreur lors de la récupération des enregistrements partagés", e);
-            e.printStackTrace();
+            return recordingRepository.findAccessibleRecordings(userId, offset, limit);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Erreur lors de la récupération des enregistrements", e);
+            return new ArrayList<>();
         }
-
-        return recordings;
     }
 
     /**
@@ -293,7 +331,6 @@ public class AudioRecorderController {
     public void stopPlaying() {
         try {
             audioRecordingService.stopPlaying();
-            isPlaying = false;
             LOGGER.log(Level.INFO, "Arrêt de la lecture");
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Erreur lors de l'arrêt de la lecture", e);
@@ -304,7 +341,6 @@ public class AudioRecorderController {
     public void playRecording(String fileName) {
         try {
             audioRecordingService.playRecording(fileName);
-            isPlaying = true;
             LOGGER.log(Level.INFO, "Lecture de l'enregistrement: {0}", fileName);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Erreur lors de la lecture de l'enregistrement", e);
@@ -326,12 +362,33 @@ public class AudioRecorderController {
         }
     }
 
+    /**
+     * Arrête l'enregistrement en cours sans attendre sa sauvegarde.
+     * La finalisation (chiffrement de la clé, sauvegarde en base) se poursuit
+     * en arrière-plan.
+     * 
+     * @return Un futur complété avec l'enregistrement sauvegardé, ou avec null
+     *         si aucune donnée n'a été capturée
+     */
+    public CompletableFuture<AudioRecording> stopRecordingAsync() {
+        isRecording = false;
+        if (audioRecordingService instanceof AudioRecordingServiceFixExtended) {
+            LOGGER.log(Level.INFO, "Arrêt de l'enregistrement, sauvegarde en arrière-plan");
+            return ((AudioRecordingServiceFixExtended) audioRecordingService).stopRecordingAsync();
+        }
+        try {
+            audioRecordingService.stopRecording();
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     public void setPlaybackListener(PlaybackListener listener) {
         this.playbackListener = listener;
         if (audioRecordingService instanceof AudioRecordingServiceFixExtended) {
             ((AudioRecordingServiceFixExtended) audioRecordingService).setPlaybackListener(
                     () -> {
-                        isPlaying = false;
                         if (playbackListener != null) {
                             playbackListener.onPlaybackFinished();
                         }
@@ -461,13 +518,16 @@ public class AudioRecorderController {
     }
 
     /**
-     * Lit un enregistrement avec une clé fournie par l'utilisateur.
+     * Lance la lecture d'un enregistrement avec une clé fournie par
+     * l'utilisateur, sans attendre sa fin.
      * 
      * @param filePath Le chemin du fichier
      * @param key      La clé fournie par l'utilisateur
-     * @throws Exception Si une erreur se produit
+     * @return Un futur complété à la fin de la lecture, ou avec une
+     *         SecurityException si la clé est incorrecte
+     * @throws Exception Si le fichier est introuvable
      */
-    public void playRecordingWithKey(String filePath, String key) throws Exception {
+    public CompletableFuture<Long> playRecordingWithKey(String filePath, String key) throws Exception {
         // Vérifier les paramètres
         if (filePath == null || filePath.isEmpty()) {
             throw new IllegalArgumentException("Le chemin du fichier ne peut pas être vide");
@@ -505,9 +565,8 @@ public class AudioRecorderController {
 
         // Utiliser un service audio pour lire le fichier avec la clé fournie
         if (this.audioRecordingService instanceof AudioRecordingServiceFixExtended) {
-            ((AudioRecordingServiceFixExtended) this.audioRecordingService)
-                    .playRecordingWithKey(audioFile.getAbsolutePath(), key);
-            isPlaying = true;
+            return ((AudioRecordingServiceFixExtended) this.audioRecordingService)
+                    .playRecordingWithKeyAsync(audioFile.getAbsolutePath(), key);
         } else {
             throw new UnsupportedOperationException("Le service audio ne supporte pas la lecture avec clé");
         }
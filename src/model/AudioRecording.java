@@ -19,6 +19,9 @@ public class AudioRecording {
     private byte[] audioData;
     private String encryptionKey;
     private String integrityHash;
+    private String ownerEmail;
+    private int shareId; // 0 si l'enregistrement n'est pas partagé
+    private LocalDateTime sharedDate;
     
     /**
      * Constructeur pour un nouvel enregistrement.
@@ -156,6 +159,40 @@ public class AudioRecording {
         this.integrityHash = integrityHash;
     }
     
+    public String getOwnerEmail() {
+        return ownerEmail;
+    }
+    
+    public void setOwnerEmail(String ownerEmail) {
+        this.ownerEmail = ownerEmail;
+    }
+    
+    public int getShareId() {
+        return shareId;
+    }
+    
+    public void setShareId(int shareId) {
+        this.shareId = shareId;
+    }
+    
+    public LocalDateTime getSharedDate() {
+        return sharedDate;
+    }
+    
+    public void setSharedDate(LocalDateTime sharedDate) {
+        this.sharedDate = sharedDate;
+    }
+    
+    /**
+     * Indique si l'enregistrement a été partagé avec l'utilisateur courant
+     * par son propriétaire.
+     * 
+     * @return true pour un enregistrement partagé
+     */
+    public boolean isShared() {
+        return shareId > 0;
+    }
+    
     @Override
     public String toString() {
         return name + " (" + timestamp + ")";
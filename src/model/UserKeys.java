@@ -1,14 +1,19 @@
 package model;
 
 /**
- * Classe représentant les paires de clés d'un utilisateur pour le chiffrement RSA.
+ * Classe représentant les paires de clés d'un utilisateur pour le chiffrement asymétrique.
  * Cette classe stocke les clés publique et privée d'un utilisateur pour permettre
- * le partage sécurisé d'enregistrements audio.
+ * le partage sécurisé d'enregistrements audio, ainsi que le schéma (RSA ou X25519)
+ * auquel elles appartiennent.
  */
 public class UserKeys {
+    /** Schéma des clés enregistrées avant l'introduction de X25519 */
+    public static final String DEFAULT_SCHEME = "RSA";
+
     private int userId;
     private String publicKey;
     private String privateKey;
+    private String scheme = DEFAULT_SCHEME;
     
     /**
      * Constructeur pour une nouvelle paire de clés.
@@ -23,6 +28,19 @@ public class UserKeys {
         this.privateKey = privateKey;
     }
     
+    /**
+     * Constructeur pour une nouvelle paire de clés d'un schéma donné.
+     * 
+     * @param userId L'identifiant de l'utilisateur
+     * @param publicKey La clé publique encodée en Base64
+     * @param privateKey La clé privée encodée en Base64
+     * @param scheme Le schéma des clés
+     */
+    public UserKeys(int userId, String publicKey, String privateKey, String scheme) {
+        this(userId, publicKey, privateKey);
+        setScheme(scheme);
+    }
+    
     /**
      * Constructeur pour une paire de clés publique uniquement (pour les autres utilisateurs).
      * 
@@ -61,6 +79,14 @@ public class UserKeys {
         this.privateKey = privateKey;
     }
     
+    public String getScheme() {
+        return scheme;
+    }
+    
+    public void setScheme(String scheme) {
+        this.scheme = scheme != null ? scheme : DEFAULT_SCHEME;
+    }
+    
     /**
      * Vérifie si cet objet contient une clé privée.
      * 
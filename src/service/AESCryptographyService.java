@@ -1,12 +1,15 @@
 package service;
 
 import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import javax.sound.sampled.AudioFormat;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
+import service.impl.EncryptedAudioContainer;
 
 /**
  * Implémentation du service de cryptographie utilisant AES pour le chiffrement
@@ -19,28 +22,82 @@ public class AESCryptographyService implements CryptographyService {
     private static final String ALGORITHM = "AES";
     private static final int KEY_SIZE = 256;
     private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int BLOCK_SIZE = 16;
     
     @Override
     public SecretKey generateSecretKey() throws Exception {
-        KeyGenerator keyGen = KeyGenerator.getInstance(ALGORITHM);
-        keyGen.init(KEY_SIZE);
-        return keyGen.generateKey();
+        return CryptoPrimitives.keyGenerator(ALGORITHM, KEY_SIZE).generateKey();
     }
     
     @Override
     public byte[] encrypt(byte[] data, SecretKey key) throws Exception {
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        Cipher cipher = CryptoPrimitives.cipher(ALGORITHM);
         cipher.init(Cipher.ENCRYPT_MODE, key);
         return cipher.doFinal(data);
     }
     
     @Override
     public byte[] decrypt(byte[] encryptedData, SecretKey key) throws Exception {
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        Cipher cipher = CryptoPrimitives.cipher(ALGORITHM);
         cipher.init(Cipher.DECRYPT_MODE, key);
         return cipher.doFinal(encryptedData);
     }
     
+    @Override
+    public int encrypt(ByteBuffer input, ByteBuffer output, SecretKey key) throws Exception {
+        Cipher cipher = CryptoPrimitives.cipher(ALGORITHM);
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        return cipher.doFinal(input, output);
+    }
+    
+    @Override
+    public int decrypt(ByteBuffer input, ByteBuffer output, SecretKey key) throws Exception {
+        Cipher cipher = CryptoPrimitives.cipher(ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, key);
+        return cipher.doFinal(input, output);
+    }
+    
+    @Override
+    public int getOutputSize(int inputLength) {
+        // Bourrage PKCS5 : au plus un bloc de plus que l'entrée
+        return (inputLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+    }
+    
+    @Override
+    public IncrementalCipher openEncryptor(SecretKey key) throws Exception {
+        return openCipher(Cipher.ENCRYPT_MODE, key);
+    }
+    
+    @Override
+    public IncrementalCipher openDecryptor(SecretKey key) throws Exception {
+        return openCipher(Cipher.DECRYPT_MODE, key);
+    }
+    
+    @Override
+    public void encrypt(InputStream in, OutputStream out, SecretKey key, AudioFormat format) throws Exception {
+        EncryptedAudioContainer.encrypt(in, out, key, format);
+    }
+    
+    @Override
+    public AudioFormat decrypt(InputStream in, OutputStream out, SecretKey key) throws Exception {
+        return EncryptedAudioContainer.decrypt(in, out, key);
+    }
+    
+    @Override
+    public void reencrypt(InputStream in, OutputStream out, SecretKey key, SecretKey newKey) throws Exception {
+        EncryptedAudioContainer.reencrypt(in, out, key, newKey);
+    }
+    
+    @Override
+    public OutputStream openEncryptingStream(OutputStream out, SecretKey key, AudioFormat format) throws Exception {
+        return new EncryptedAudioContainer.EncryptingOutputStream(out, key, format);
+    }
+    
+    @Override
+    public InputStream openDecryptingStream(InputStream in, SecretKey key) throws Exception {
+        return new EncryptedAudioContainer.DecryptingInputStream(in, key);
+    }
+    
     @Override
     public String encodeKeyToBase64(SecretKey key) {
         return Base64.getEncoder().encodeToString(key.getEncoded());
@@ -54,7 +111,7 @@ public class AESCryptographyService implements CryptographyService {
     
     @Override
     public String generateHash(byte[] data) throws Exception {
-        MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        MessageDigest digest = CryptoPrimitives.digest(HASH_ALGORITHM);
         byte[] hashBytes = digest.digest(data);
         return bytesToHex(hashBytes);
     }
@@ -79,6 +136,22 @@ public class AESCryptographyService implements CryptographyService {
         return new String(decryptedBytes);
     }
     
+    /**
+     * Crée un Cipher propre à l'appelant : contrairement aux opérations en un
+     * seul appel, il est conservé entre plusieurs appels et ne peut donc pas
+     * être celui du thread courant.
+     * 
+     * @param mode Cipher.ENCRYPT_MODE ou Cipher.DECRYPT_MODE
+     * @param key La clé secrète à utiliser
+     * @return Le chiffrement incrémental initialisé
+     * @throws Exception Si le Cipher ne peut pas être initialisé
+     */
+    private IncrementalCipher openCipher(int mode, SecretKey key) throws Exception {
+        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        cipher.init(mode, key);
+        return IncrementalCipher.of(cipher);
+    }
+    
     /**
      * Convertit un tableau d'octets en chaîne hexadécimale.
      * 
@@ -0,0 +1,63 @@
+package service;
+
+/**
+ * Schéma de chiffrement asymétrique utilisé pour protéger les clés AES
+ * destinées à un utilisateur : clé maîtresse de ses enregistrements et clés
+ * des enregistrements partagés avec lui.
+ * Le schéma d'un utilisateur est enregistré dans la colonne scheme de la
+ * table user_keys.
+ */
+public interface AsymmetricCryptographyService {
+
+    /**
+     * @return Le nom du schéma, tel qu'il est stocké dans user_keys.scheme
+     */
+    String getScheme();
+
+    /**
+     * Génère une nouvelle paire de clés.
+     *
+     * @return Un tableau contenant la clé publique et la clé privée encodées en
+     *         Base64
+     * @throws Exception Si une erreur survient lors de la génération
+     */
+    String[] generateKeyPair() throws Exception;
+
+    /**
+     * Chiffre des données avec une clé publique.
+     *
+     * @param data            Les données à chiffrer
+     * @param publicKeyBase64 La clé publique encodée en Base64
+     * @return Les données chiffrées encodées en Base64
+     * @throws Exception Si une erreur survient lors du chiffrement
+     */
+    String encryptWithPublicKey(String data, String publicKeyBase64) throws Exception;
+
+    /**
+     * Déchiffre des données avec une clé privée.
+     *
+     * @param encryptedData    Les données chiffrées encodées en Base64
+     * @param privateKeyBase64 La clé privée encodée en Base64
+     * @return Les données déchiffrées
+     * @throws Exception Si une erreur survient lors du déchiffrement
+     */
+    String decryptWithPrivateKey(String encryptedData, String privateKeyBase64) throws Exception;
+
+    /**
+     * Retourne le service correspondant à un schéma. Les clés enregistrées
+     * sans schéma sont des clés RSA.
+     *
+     * @param scheme Le nom du schéma
+     * @return Le service de chiffrement du schéma
+     * @throws IllegalArgumentException Si le schéma est inconnu
+     */
+    static AsymmetricCryptographyService forScheme(String scheme) {
+        if (scheme == null || RSACryptographyService.SCHEME.equalsIgnoreCase(scheme)) {
+            return new RSACryptographyService();
+        }
+        if (X25519CryptographyService.SCHEME.equalsIgnoreCase(scheme)) {
+            return new X25519CryptographyService();
+        }
+        throw new IllegalArgumentException("Schéma de chiffrement inconnu: " + scheme);
+    }
+}
@@ -0,0 +1,89 @@
+package service;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Objets cryptographiques réutilisés par thread.
+ *
+ * Cipher.getInstance, MessageDigest.getInstance et KeyGenerator.getInstance
+ * parcourent la liste des fournisseurs et construisent un nouvel objet à
+ * chaque appel, ce qui coûte plus cher que l'opération elle-même sur de
+ * petites données. Chaque thread conserve ici une instance par algorithme.
+ * Un Cipher est réinitialisé par l'appelant avec sa clé et son vecteur
+ * d'initialisation avant chaque usage ; un MessageDigest est remis à zéro
+ * avant d'être retourné. Les objets ne doivent pas être conservés au-delà de
+ * l'opération en cours ni transmis à un autre thread.
+ */
+public final class CryptoPrimitives {
+
+    private static final ThreadLocal<Map<String, Cipher>> CIPHERS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, KeyGenerator>> KEY_GENERATORS =
+            ThreadLocal.withInitial(HashMap::new);
+
+    private CryptoPrimitives() {
+    }
+
+    /**
+     * Retourne le Cipher du thread courant pour une transformation. Il doit
+     * être initialisé avec Cipher.init avant usage.
+     *
+     * @param transformation La transformation, par exemple "AES/ECB/PKCS5Padding"
+     * @return Le Cipher du thread courant
+     * @throws GeneralSecurityException Si la transformation n'est pas disponible
+     */
+    public static Cipher cipher(String transformation) throws GeneralSecurityException {
+        Map<String, Cipher> ciphers = CIPHERS.get();
+        Cipher cipher = ciphers.get(transformation);
+        if (cipher == null) {
+            cipher = Cipher.getInstance(transformation);
+            ciphers.put(transformation, cipher);
+        }
+        return cipher;
+    }
+
+    /**
+     * Retourne le MessageDigest du thread courant pour un algorithme, remis à zéro.
+     *
+     * @param algorithm L'algorithme, par exemple "SHA-256"
+     * @return Le MessageDigest du thread courant
+     * @throws GeneralSecurityException Si l'algorithme n'est pas disponible
+     */
+    public static MessageDigest digest(String algorithm) throws GeneralSecurityException {
+        Map<String, MessageDigest> digests = DIGESTS.get();
+        MessageDigest digest = digests.get(algorithm);
+        if (digest == null) {
+            digest = MessageDigest.getInstance(algorithm);
+            digests.put(algorithm, digest);
+        } else {
+            digest.reset();
+        }
+        return digest;
+    }
+
+    /**
+     * Retourne le KeyGenerator du thread courant pour un algorithme et une
+     * taille de clé, déjà initialisé.
+     *
+     * @param algorithm L'algorithme, par exemple "AES"
+     * @param keySize La taille des clés en bits
+     * @return Le KeyGenerator du thread courant
+     * @throws GeneralSecurityException Si l'algorithme n'est pas disponible
+     */
+    public static KeyGenerator keyGenerator(String algorithm, int keySize) throws GeneralSecurityException {
+        Map<String, KeyGenerator> generators = KEY_GENERATORS.get();
+        String name = algorithm + "/" + keySize;
+        KeyGenerator generator = generators.get(name);
+        if (generator == null) {
+            generator = KeyGenerator.getInstance(algorithm);
+            generator.init(keySize);
+            generators.put(name, generator);
+        }
+        return generator;
+    }
+}
@@ -1,6 +1,10 @@
 package service;
 
 import javax.crypto.SecretKey;
+import javax.sound.sampled.AudioFormat;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Interface pour le service de cryptographie.
@@ -37,6 +41,125 @@ public interface CryptographyService {
      */
     byte[] decrypt(byte[] encryptedData, SecretKey key) throws Exception;
     
+    /**
+     * Chiffre les octets restants d'un tampon dans un tampon fourni par
+     * l'appelant, sans allocation. Les tampons peuvent être sur le tas ou
+     * directs, et partager la même zone mémoire pour un chiffrement en place.
+     * La position de l'entrée est avancée jusqu'à sa limite, celle de la sortie
+     * du nombre d'octets écrits.
+     * 
+     * @param input Les données à chiffrer
+     * @param output La destination, d'au moins getOutputSize(input.remaining()) octets
+     * @param key La clé secrète à utiliser
+     * @return Le nombre d'octets écrits dans la sortie
+     * @throws Exception Si la sortie est trop petite ou si le chiffrement échoue
+     */
+    int encrypt(ByteBuffer input, ByteBuffer output, SecretKey key) throws Exception;
+    
+    /**
+     * Déchiffre les octets restants d'un tampon dans un tampon fourni par
+     * l'appelant, sans allocation. Mêmes règles que pour le chiffrement.
+     * 
+     * @param input Les données chiffrées
+     * @param output La destination, d'au moins getOutputSize(input.remaining()) octets
+     * @param key La clé secrète à utiliser
+     * @return Le nombre d'octets écrits dans la sortie
+     * @throws Exception Si la sortie est trop petite, si la clé est incorrecte ou les données corrompues
+     */
+    int decrypt(ByteBuffer input, ByteBuffer output, SecretKey key) throws Exception;
+    
+    /**
+     * Retourne la taille maximale produite par encrypt ou decrypt pour une
+     * entrée donnée, afin de dimensionner une fois pour toutes les tampons
+     * de sortie réutilisés.
+     * 
+     * @param inputLength La taille de l'entrée en octets
+     * @return La taille de sortie maximale en octets
+     */
+    int getOutputSize(int inputLength);
+    
+    /**
+     * Ouvre un chiffrement incrémental : les données sont fournies par morceaux
+     * avec update puis doFinal, dans des tampons réutilisés par l'appelant.
+     * 
+     * @param key La clé secrète à utiliser
+     * @return Le chiffrement incrémental, propre à l'appelant
+     * @throws Exception Si le chiffrement ne peut pas être initialisé
+     */
+    IncrementalCipher openEncryptor(SecretKey key) throws Exception;
+    
+    /**
+     * Ouvre un déchiffrement incrémental, symétrique de openEncryptor.
+     * 
+     * @param key La clé secrète à utiliser
+     * @return Le déchiffrement incrémental, propre à l'appelant
+     * @throws Exception Si le déchiffrement ne peut pas être initialisé
+     */
+    IncrementalCipher openDecryptor(SecretKey key) throws Exception;
+    
+    /**
+     * Chiffre un flux audio vers un conteneur ".enc" v2 segmenté (AES-GCM).
+     * La mémoire utilisée est bornée par la taille d'un segment. Le flux de
+     * sortie n'est pas fermé.
+     * 
+     * @param in Les données audio en clair
+     * @param out La destination du conteneur chiffré
+     * @param key La clé secrète à utiliser
+     * @param format Le format audio inscrit dans l'en-tête du conteneur
+     * @throws Exception Si une erreur survient lors du chiffrement
+     */
+    void encrypt(InputStream in, OutputStream out, SecretKey key, AudioFormat format) throws Exception;
+    
+    /**
+     * Déchiffre un conteneur ".enc" v2 segment par segment en vérifiant
+     * l'authenticité de chaque segment. Le flux de sortie n'est pas fermé.
+     * 
+     * @param in Le conteneur chiffré
+     * @param out La destination des données audio en clair
+     * @param key La clé secrète à utiliser
+     * @return Le format audio lu dans l'en-tête du conteneur
+     * @throws Exception Si le conteneur est altéré, tronqué ou si la clé est incorrecte
+     */
+    AudioFormat decrypt(InputStream in, OutputStream out, SecretKey key) throws Exception;
+    
+    /**
+     * Rechiffre un conteneur ".enc" v2 avec une nouvelle clé, segment par
+     * segment et sur plusieurs cœurs, sans reconstituer l'enregistrement en
+     * clair. Le flux de sortie n'est pas fermé.
+     * 
+     * @param in Le conteneur chiffré avec l'ancienne clé
+     * @param out La destination du nouveau conteneur
+     * @param key L'ancienne clé secrète
+     * @param newKey La nouvelle clé secrète
+     * @throws Exception Si le conteneur est altéré, tronqué ou si l'ancienne clé est incorrecte
+     */
+    void reencrypt(InputStream in, OutputStream out, SecretKey key, SecretKey newKey) throws Exception;
+    
+    /**
+     * Ouvre un flux de chiffrement incrémental vers un conteneur ".enc" v2.
+     * Chaque segment est chiffré et écrit dès qu'il est complet ; la fermeture
+     * du flux écrit le segment final puis ferme la destination.
+     * 
+     * @param out La destination du conteneur chiffré
+     * @param key La clé secrète à utiliser
+     * @param format Le format audio inscrit dans l'en-tête du conteneur
+     * @return Un flux dans lequel écrire les données audio en clair
+     * @throws Exception Si le flux ne peut pas être initialisé
+     */
+    OutputStream openEncryptingStream(OutputStream out, SecretKey key, AudioFormat format) throws Exception;
+    
+    /**
+     * Ouvre un flux de déchiffrement incrémental sur un conteneur ".enc" v2.
+     * Chaque segment est authentifié et déchiffré à la lecture ; la mémoire
+     * utilisée est bornée par la taille d'un segment.
+     * 
+     * @param in Le conteneur chiffré
+     * @param key La clé secrète à utiliser
+     * @return Un flux dont la lecture produit les données audio en clair
+     * @throws Exception Si l'en-tête est invalide ou si le flux ne peut pas être initialisé
+     */
+    InputStream openDecryptingStream(InputStream in, SecretKey key) throws Exception;
+    
     /**
      * Encode une clé secrète en chaîne Base64.
      * 
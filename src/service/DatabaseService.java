@@ -10,6 +10,24 @@ import java.sql.SQLException;
  */
 public interface DatabaseService {
     
+    /**
+     * Opération d'écriture exécutée sur une connexion fournie par le service.
+     *
+     * @param <T> Le type du résultat de l'opération
+     */
+    @FunctionalInterface
+    interface WriteOperation<T> {
+        /**
+         * Exécute l'opération. La connexion appartient au service : l'opération
+         * ne doit ni la fermer ni gérer elle-même la transaction.
+         *
+         * @param conn La connexion à utiliser
+         * @return Le résultat de l'opération
+         * @throws SQLException Si l'opération échoue
+         */
+        T execute(Connection conn) throws SQLException;
+    }
+    
     /**
      * Établit une connexion à la base de données.
      * 
@@ -35,6 +53,22 @@ public interface DatabaseService {
      */
     int executeUpdate(String sql, Object... params) throws SQLException;
     
+    /**
+     * Exécute une opération d'écriture. Les implémentations peuvent sérialiser
+     * les écritures et en regrouper plusieurs dans une même transaction ;
+     * l'implémentation par défaut utilise simplement une connexion du service.
+     * 
+     * @param <T> Le type du résultat de l'opération
+     * @param operation L'opération à exécuter
+     * @return Le résultat de l'opération
+     * @throws SQLException Si une erreur survient lors de l'exécution
+     */
+    default <T> T executeWrite(WriteOperation<T> operation) throws SQLException {
+        try (Connection conn = connect()) {
+            return operation.execute(conn);
+        }
+    }
+    
     /**
      * Vérifie si la base de données est correctement initialisée
      * et crée les tables nécessaires si elles n'existent pas.
@@ -0,0 +1,102 @@
+package service;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * Chiffrement ou déchiffrement incrémental dans des tampons fournis par
+ * l'appelant. Les données sont transmises par morceaux avec update, puis le
+ * dernier morceau avec doFinal ; aucun tableau n'est alloué par appel, ce qui
+ * permet de traiter un enregistrement entier avec quelques tampons de taille
+ * fixe. Une instance n'est utilisée que par un seul thread à la fois.
+ */
+public interface IncrementalCipher {
+
+    /**
+     * @param inputLength La taille du prochain morceau en octets
+     * @return La taille de sortie maximale pour ce morceau
+     */
+    int getOutputSize(int inputLength);
+
+    /**
+     * Traite les octets restants de l'entrée.
+     *
+     * @param input Le morceau à traiter, lu jusqu'à sa limite
+     * @param output La destination
+     * @return Le nombre d'octets écrits dans la sortie
+     * @throws GeneralSecurityException Si la sortie est trop petite
+     */
+    int update(ByteBuffer input, ByteBuffer output) throws GeneralSecurityException;
+
+    /**
+     * Traite le dernier morceau et termine l'opération. L'instance peut
+     * ensuite être réutilisée pour une nouvelle opération avec la même clé.
+     *
+     * @param input Le dernier morceau, éventuellement vide
+     * @param output La destination
+     * @return Le nombre d'octets écrits dans la sortie
+     * @throws GeneralSecurityException Si la sortie est trop petite ou les données invalides
+     */
+    int doFinal(ByteBuffer input, ByteBuffer output) throws GeneralSecurityException;
+
+    /**
+     * Adapte un Cipher déjà initialisé.
+     *
+     * @param cipher Le Cipher initialisé, réservé à l'appelant
+     * @return Le chiffrement incrémental correspondant
+     */
+    static IncrementalCipher of(Cipher cipher) {
+        return new IncrementalCipher() {
+            @Override
+            public int getOutputSize(int inputLength) {
+                return cipher.getOutputSize(inputLength);
+            }
+
+            @Override
+            public int update(ByteBuffer input, ByteBuffer output) throws GeneralSecurityException {
+                return cipher.update(input, output);
+            }
+
+            @Override
+            public int doFinal(ByteBuffer input, ByteBuffer output) throws GeneralSecurityException {
+                return cipher.doFinal(input, output);
+            }
+        };
+    }
+
+    /**
+     * @return Un traitement qui recopie les données sans les modifier, utilisé
+     *         lorsque le chiffrement est désactivé
+     */
+    static IncrementalCipher identity() {
+        return new IncrementalCipher() {
+            @Override
+            public int getOutputSize(int inputLength) {
+                return inputLength;
+            }
+
+            @Override
+            public int update(ByteBuffer input, ByteBuffer output) throws GeneralSecurityException {
+                int length = input.remaining();
+                if (output.remaining() < length) {
+                    throw new ShortBufferException("Tampon de sortie trop petit: " + output.remaining()
+                            + " octets pour " + length);
+                }
+                if (input == output) {
+                    // Traitement en place : les données sont déjà dans la sortie
+                    input.position(input.limit());
+                } else {
+                    output.put(input);
+                }
+                return length;
+            }
+
+            @Override
+            public int doFinal(ByteBuffer input, ByteBuffer output) throws GeneralSecurityException {
+                return update(input, output);
+            }
+        };
+    }
+}
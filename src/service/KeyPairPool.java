@@ -0,0 +1,173 @@
+package service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Réserve de paires de clés générées à l'avance.
+ * La génération d'une paire RSA-2048 prend plusieurs centaines de
+ * millisecondes : elle est faite par un thread de faible priorité, qui
+ * remplit la réserve jusqu'à sa profondeur dès que le nombre de paires
+ * disponibles descend au seuil de remplissage. Le premier usage des clés
+ * d'un utilisateur prend alors une paire prête en temps constant ; si la
+ * réserve est vide, la paire est générée sur le thread appelant et l'incident
+ * est compté.
+ */
+public class KeyPairPool {
+
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int DEFAULT_LOW_WATERMARK = 1;
+
+    // Durée d'inactivité après laquelle le thread de remplissage s'arrête
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
+
+    private static final Map<String, KeyPairPool> SHARED = new HashMap<>();
+
+    private final AsymmetricCryptographyService generator;
+    private final int lowWatermark;
+    private final ArrayBlockingQueue<String[]> ready;
+    private final ThreadPoolExecutor executor;
+    private final AtomicBoolean refillScheduled = new AtomicBoolean();
+    private final AtomicLong pooledCount = new AtomicLong();
+    private final AtomicLong synchronousCount = new AtomicLong();
+    private final AtomicLong generatedCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * Retourne la réserve partagée d'un schéma, créée et remplie au premier
+     * appel. Sa profondeur et son seuil de remplissage peuvent être configurés
+     * avec les propriétés système "keypool.depth" et "keypool.lowWatermark".
+     *
+     * @param generator Le service de chiffrement du schéma
+     * @return La réserve partagée du schéma
+     */
+    public static synchronized KeyPairPool getShared(AsymmetricCryptographyService generator) {
+        return SHARED.computeIfAbsent(generator.getScheme(), scheme -> new KeyPairPool(generator,
+                Integer.getInteger("keypool.depth", DEFAULT_DEPTH),
+                Integer.getInteger("keypool.lowWatermark", DEFAULT_LOW_WATERMARK)));
+    }
+
+    /**
+     * Crée une réserve et lance son remplissage.
+     *
+     * @param generator Le service qui génère les paires de clés
+     * @param depth Le nombre maximal de paires prêtes
+     * @param lowWatermark Le nombre de paires prêtes à partir duquel la réserve est remplie
+     */
+    public KeyPairPool(AsymmetricCryptographyService generator, int depth, int lowWatermark) {
+        if (depth <= 0 || lowWatermark < 0 || lowWatermark >= depth) {
+            throw new IllegalArgumentException("La profondeur doit être positive et supérieure au seuil de remplissage");
+        }
+        this.generator = generator;
+        this.lowWatermark = lowWatermark;
+        this.ready = new ArrayBlockingQueue<>(depth);
+        this.executor = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "keypair-pool-" + generator.getScheme());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        scheduleRefill();
+    }
+
+    /**
+     * Retourne une paire de clés, prise dans la réserve si possible.
+     *
+     * @return Un tableau contenant la clé publique et la clé privée encodées en Base64
+     * @throws Exception Si la génération synchrone échoue
+     */
+    public String[] take() throws Exception {
+        String[] keyPair = ready.poll();
+        if (ready.size() <= lowWatermark) {
+            scheduleRefill();
+        }
+        if (keyPair != null) {
+            pooledCount.incrementAndGet();
+            return keyPair;
+        }
+        synchronousCount.incrementAndGet();
+        System.err.println("Réserve de clés " + generator.getScheme() + " vide : génération synchrone");
+        return generator.generateKeyPair();
+    }
+
+    /**
+     * @return Le nombre de paires prêtes
+     */
+    public int size() {
+        return ready.size();
+    }
+
+    /**
+     * @return Le nombre de paires servies depuis la réserve
+     */
+    public long getPooledCount() {
+        return pooledCount.get();
+    }
+
+    /**
+     * @return Le nombre de paires générées sur le thread appelant, réserve vide
+     */
+    public long getSynchronousCount() {
+        return synchronousCount.get();
+    }
+
+    /**
+     * @return Le nombre de paires générées en arrière-plan
+     */
+    public long getGeneratedCount() {
+        return generatedCount.get();
+    }
+
+    /**
+     * @return Le nombre d'échecs de génération en arrière-plan
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * Arrête le remplissage. Les paires déjà prêtes restent disponibles.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "KeyPairPool[" + generator.getScheme() + ", prêtes=" + ready.size() + ", réserve="
+                + pooledCount.get() + ", synchrones=" + synchronousCount.get() + "]";
+    }
+
+    private void scheduleRefill() {
+        if (executor.isShutdown() || !refillScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(this::refill);
+    }
+
+    private void refill() {
+        try {
+            while (ready.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted()) {
+                String[] keyPair = generator.generateKeyPair();
+                generatedCount.incrementAndGet();
+                if (!ready.offer(keyPair)) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            System.err.println("Erreur lors de la génération de clés " + generator.getScheme()
+                    + " en arrière-plan: " + e.getMessage());
+        } finally {
+            refillScheduled.set(false);
+        }
+    }
+}
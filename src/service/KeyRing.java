@@ -0,0 +1,273 @@
+package service;
+
+import model.UserKeys;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Trousseau des clés RSA déjà décodées.
+ * Le décodage Base64 et l'analyse DER d'une clé coûtent autant que l'opération
+ * qu'elle sert à réaliser : les objets PublicKey et PrivateKey sont donc
+ * conservés, indexés par l'empreinte SHA-256 de leur forme encodée et, quand
+ * il est connu, par l'identifiant de leur propriétaire. Le trousseau est borné
+ * (les clés les moins récemment utilisées sont retirées) et les clés d'un
+ * utilisateur peuvent être invalidées explicitement lorsqu'elles changent.
+ */
+public class KeyRing {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final String RSA_ALGORITHM = "RSA";
+    private static final int NO_USER = -1;
+
+    private static KeyRing shared;
+
+    private final int maxEntries;
+    // Clés par empreinte, de la moins à la plus récemment utilisée
+    private final LinkedHashMap<String, Entry> entries;
+    // Empreinte de la clé publique connue pour chaque utilisateur
+    private final Map<Integer, String> publicByUser = new HashMap<>();
+    private final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(KeyRing::newDigest);
+    private long hits;
+    private long misses;
+
+    /**
+     * Retourne le trousseau partagé de l'application. Sa taille peut être
+     * configurée avec la propriété système "keyring.maxEntries".
+     *
+     * @return Le trousseau partagé
+     */
+    public static synchronized KeyRing getShared() {
+        if (shared == null) {
+            shared = new KeyRing(Integer.getInteger("keyring.maxEntries", DEFAULT_MAX_ENTRIES));
+        }
+        return shared;
+    }
+
+    /**
+     * Crée un trousseau.
+     *
+     * @param maxEntries Le nombre maximal de clés conservées
+     */
+    public KeyRing(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("La taille du trousseau doit être positive");
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Retourne la clé publique correspondant à sa forme encodée, en la décodant
+     * au premier appel.
+     *
+     * @param publicKeyBase64 La clé publique encodée en Base64 (X.509)
+     * @return La clé publique
+     * @throws GeneralSecurityException Si la clé est invalide
+     */
+    public PublicKey publicKey(String publicKeyBase64) throws GeneralSecurityException {
+        return (PublicKey) resolve(NO_USER, publicKeyBase64, false);
+    }
+
+    /**
+     * Retourne la clé privée correspondant à sa forme encodée, en la décodant
+     * au premier appel.
+     *
+     * @param privateKeyBase64 La clé privée encodée en Base64 (PKCS#8)
+     * @return La clé privée
+     * @throws GeneralSecurityException Si la clé est invalide
+     */
+    public PrivateKey privateKey(String privateKeyBase64) throws GeneralSecurityException {
+        return (PrivateKey) resolve(NO_USER, privateKeyBase64, true);
+    }
+
+    /**
+     * Enregistre la clé publique d'un utilisateur. Une clé précédente différente
+     * est retirée du trousseau.
+     *
+     * @param userId L'identifiant de l'utilisateur
+     * @param publicKeyBase64 La clé publique encodée en Base64
+     * @return La clé publique décodée
+     * @throws GeneralSecurityException Si la clé est invalide
+     */
+    public PublicKey putPublicKey(int userId, String publicKeyBase64) throws GeneralSecurityException {
+        return (PublicKey) resolve(userId, publicKeyBase64, false);
+    }
+
+    /**
+     * Retourne la clé publique déjà connue d'un utilisateur.
+     *
+     * @param userId L'identifiant de l'utilisateur
+     * @return La clé publique, ou null si elle n'est pas dans le trousseau
+     */
+    public synchronized PublicKey getPublicKey(int userId) {
+        String fingerprint = publicByUser.get(userId);
+        Entry entry = fingerprint != null ? entries.get(fingerprint) : null;
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return (PublicKey) entry.key;
+    }
+
+    /**
+     * Décode et enregistre en une fois les clés publiques de plusieurs utilisateurs,
+     * par exemple celles retournées par UserKeysService.getAllPublicKeys.
+     *
+     * @param keys Les clés à enregistrer
+     * @return Le nombre de clés enregistrées
+     */
+    public int warm(Collection<UserKeys> keys) {
+        int count = 0;
+        for (UserKeys userKeys : keys) {
+            if (userKeys.getPublicKey() == null) {
+                continue;
+            }
+            try {
+                putPublicKey(userKeys.getUserId(), userKeys.getPublicKey());
+                count++;
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                System.err.println("Clé publique invalide pour l'utilisateur " + userKeys.getUserId()
+                        + ": " + e.getMessage());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Retire du trousseau toutes les clés d'un utilisateur, à appeler lorsque
+     * ses clés changent.
+     *
+     * @param userId L'identifiant de l'utilisateur
+     */
+    public synchronized void invalidate(int userId) {
+        publicByUser.remove(userId);
+        entries.values().removeIf(entry -> entry.userId == userId);
+    }
+
+    /**
+     * Vide le trousseau.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        publicByUser.clear();
+    }
+
+    /**
+     * @return Le nombre de clés conservées
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Le nombre de clés trouvées dans le trousseau
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return Le nombre de clés qui ont dû être décodées
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Calcule l'empreinte d'une clé encodée.
+     *
+     * @param encodedKey La clé encodée en Base64
+     * @return L'empreinte SHA-256 encodée en Base64
+     */
+    public String fingerprint(String encodedKey) {
+        MessageDigest md = digest.get();
+        return Base64.getEncoder().encodeToString(md.digest(encodedKey.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private Key resolve(int userId, String encodedKey, boolean isPrivate) throws GeneralSecurityException {
+        String fingerprint = fingerprint(encodedKey);
+        synchronized (this) {
+            Entry entry = entries.get(fingerprint);
+            if (entry != null) {
+                hits++;
+                if (userId != NO_USER && !isPrivate) {
+                    entry.userId = userId;
+                    bindPublic(userId, fingerprint);
+                }
+                return entry.key;
+            }
+            misses++;
+        }
+
+        // Décodage hors verrou : deux appels simultanés décodent au pire deux fois la même clé
+        byte[] der = Base64.getDecoder().decode(encodedKey);
+        KeyFactory keyFactory = KeyFactory.getInstance(RSA_ALGORITHM);
+        Key key = isPrivate
+                ? keyFactory.generatePrivate(new PKCS8EncodedKeySpec(der))
+                : keyFactory.generatePublic(new X509EncodedKeySpec(der));
+
+        synchronized (this) {
+            entries.put(fingerprint, new Entry(key, userId));
+            if (userId != NO_USER && !isPrivate) {
+                bindPublic(userId, fingerprint);
+            }
+            evict();
+        }
+        return key;
+    }
+
+    private void bindPublic(int userId, String fingerprint) {
+        String previous = publicByUser.put(userId, fingerprint);
+        if (previous != null && !previous.equals(fingerprint)) {
+            // La clé de l'utilisateur a changé : l'ancienne n'est plus valable
+            entries.remove(previous);
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            publicByUser.remove(eldest.getValue().userId, eldest.getKey());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponible", e);
+        }
+    }
+
+    /**
+     * Clé décodée et son propriétaire, s'il est connu.
+     */
+    private static final class Entry {
+        private final Key key;
+        private int userId;
+
+        Entry(Key key, int userId) {
+            this.key = key;
+            this.userId = userId;
+        }
+    }
+}
@@ -13,15 +13,6 @@ public class NotificationService {
 
     private final DatabaseService databaseService;
 
-    private static final String CREATE_TABLE_QUERY = "CREATE TABLE IF NOT EXISTS notifications ("
-            + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
-            + "user_id INTEGER NOT NULL,"
-            + "message TEXT NOT NULL,"
-            + "is_read INTEGER DEFAULT 0,"
-            + "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP,"
-            + "recording_id INTEGER NOT NULL"
-            + ")";
-
     private static final String INSERT_NOTIFICATION_QUERY = "INSERT INTO notifications "
             + "(user_id, message, is_read, timestamp, recording_id) "
             + "VALUES (?, ?, ?, ?, ?)";
@@ -41,14 +32,8 @@ public class NotificationService {
      * @param databaseService Le service de base de données
      */
     public NotificationService(DatabaseService databaseService) {
+        // La table notifications est créée par les migrations du schéma
         this.databaseService = databaseService;
-
-        try {
-            createTableIfNotExists();
-        } catch (SQLException e) {
-            System.err.println("Erreur lors de la création de la table notifications: " + e.getMessage());
-            e.printStackTrace();
-        }
     }
 
     /**
@@ -60,26 +45,22 @@ public class NotificationService {
      * @return true si la création a réussi, false sinon
      */
     public boolean createNotification(int userId, String message, int recordingId) {
-        Connection conn = null;
-        PreparedStatement stmt = null;
-
         try {
-            conn = databaseService.connect();
-            stmt = conn.prepareStatement(INSERT_NOTIFICATION_QUERY);
-            stmt.setInt(1, userId);
-            stmt.setString(2, message);
-            stmt.setInt(3, 0); // Non lu par défaut
-            stmt.setString(4, LocalDateTime.now().toString());
-            stmt.setInt(5, recordingId);
-
-            int affectedRows = stmt.executeUpdate();
+            int affectedRows = databaseService.executeWrite(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(INSERT_NOTIFICATION_QUERY)) {
+                    stmt.setInt(1, userId);
+                    stmt.setString(2, message);
+                    stmt.setInt(3, 0); // Non lu par défaut
+                    stmt.setString(4, LocalDateTime.now().toString());
+                    stmt.setInt(5, recordingId);
+                    return stmt.executeUpdate();
+                }
+            });
             return affectedRows > 0;
         } catch (SQLException e) {
             System.err.println("Erreur lors de la création d'une notification: " + e.getMessage());
             e.printStackTrace();
             return false;
-        } finally {
-            closeResources(null, stmt, conn);
         }
     }
 
@@ -130,22 +111,18 @@ public class NotificationService {
      * @return true si la mise à jour a réussi, false sinon
      */
     public boolean markAsRead(int notificationId) {
-        Connection conn = null;
-        PreparedStatement stmt = null;
-
         try {
-            conn = databaseService.connect();
-            stmt = conn.prepareStatement(MARK_AS_READ_QUERY);
-            stmt.setInt(1, notificationId);
-
-            int affectedRows = stmt.executeUpdate();
+            int affectedRows = databaseService.executeWrite(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(MARK_AS_READ_QUERY)) {
+                    stmt.setInt(1, notificationId);
+                    return stmt.executeUpdate();
+                }
+            });
             return affectedRows > 0;
         } catch (SQLException e) {
             System.err.println("Erreur lors du marquage d'une notification comme lue: " + e.getMessage());
             e.printStackTrace();
             return false;
-        } finally {
-            closeResources(null, stmt, conn);
         }
     }
 
@@ -181,28 +158,6 @@ public class NotificationService {
         }
     }
 
-    /**
-     * Crée la table des notifications si elle n'existe pas.
-     * 
-     * @throws SQLException Si une erreur SQL survient
-     */
-    private void createTableIfNotExists() throws SQLException {
-        Connection conn = null;
-        Statement stmt = null;
-
-        try {
-            conn = databaseService.connect();
-            stmt = conn.createStatement();
-            stmt.executeUpdate(CREATE_TABLE_QUERY);
-
-            System.out.println("Table notifications créée ou existante");
-        } finally {
-            if (stmt != null)
-                stmt.close();
-            if (conn != null)
-                conn.close();
-        }
-    }
 
     /**
      * Ferme les ressources JDBC.
@@ -2,8 +2,6 @@ package service;
 
 import javax.crypto.Cipher;
 import java.security.*;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 
 /**
@@ -13,11 +11,43 @@ import java.util.Base64;
  * chiffrer/déchiffrer
  * des données avec ces clés.
  */
-public class RSACryptographyService {
+public class RSACryptographyService implements AsymmetricCryptographyService {
+
+    public static final String SCHEME = "RSA";
 
     private static final String RSA_ALGORITHM = "RSA";
     private static final int KEY_SIZE = 2048;
 
+    private final KeyRing keyRing;
+
+    /**
+     * Crée le service avec le trousseau partagé de l'application.
+     */
+    public RSACryptographyService() {
+        this(KeyRing.getShared());
+    }
+
+    /**
+     * Crée le service avec un trousseau donné.
+     * 
+     * @param keyRing Le trousseau des clés décodées
+     */
+    public RSACryptographyService(KeyRing keyRing) {
+        this.keyRing = keyRing;
+    }
+
+    /**
+     * @return Le trousseau des clés décodées utilisé par le service
+     */
+    public KeyRing getKeyRing() {
+        return keyRing;
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
     /**
      * Génère une nouvelle paire de clés RSA.
      * 
@@ -25,6 +55,7 @@ public class RSACryptographyService {
      *         Base64
      * @throws Exception Si une erreur survient lors de la génération
      */
+    @Override
     public String[] generateKeyPair() throws Exception {
         KeyPairGenerator keyGen = KeyPairGenerator.getInstance(RSA_ALGORITHM);
         keyGen.initialize(KEY_SIZE);
@@ -44,15 +75,13 @@ public class RSACryptographyService {
      * @return Les données chiffrées encodées en Base64
      * @throws Exception Si une erreur survient lors du chiffrement
      */
+    @Override
     public String encryptWithPublicKey(String data, String publicKeyBase64) throws Exception {
-        // Décodage de la clé publique
-        byte[] publicKeyBytes = Base64.getDecoder().decode(publicKeyBase64);
-        X509EncodedKeySpec keySpec = new X509EncodedKeySpec(publicKeyBytes);
-        KeyFactory keyFactory = KeyFactory.getInstance(RSA_ALGORITHM);
-        PublicKey publicKey = keyFactory.generatePublic(keySpec);
+        // Clé publique décodée une seule fois
+        PublicKey publicKey = keyRing.publicKey(publicKeyBase64);
 
         // Chiffrement des données
-        Cipher cipher = Cipher.getInstance(RSA_ALGORITHM);
+        Cipher cipher = CryptoPrimitives.cipher(RSA_ALGORITHM);
         cipher.init(Cipher.ENCRYPT_MODE, publicKey);
         byte[] encryptedBytes = cipher.doFinal(data.getBytes());
 
@@ -67,6 +96,7 @@ public class RSACryptographyService {
      * @return Les données déchiffrées
      * @throws Exception Si une erreur survient lors du déchiffrement
      */
+    @Override
     public String decryptWithPrivateKey(String encryptedData, String privateKeyBase64) throws Exception {
         try {
             // Vérifier les entrées
@@ -77,14 +107,11 @@ public class RSACryptographyService {
 
             System.out.println("Déchiffrement avec clé privée: longueur des données = " + encryptedData.length());
 
-            // Décodage de la clé privée
-            byte[] privateKeyBytes = Base64.getDecoder().decode(privateKeyBase64);
-            PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(privateKeyBytes);
-            KeyFactory keyFactory = KeyFactory.getInstance(RSA_ALGORITHM);
-            PrivateKey privateKey = keyFactory.generatePrivate(keySpec);
+            // Clé privée décodée une seule fois
+            PrivateKey privateKey = keyRing.privateKey(privateKeyBase64);
 
             // Déchiffrement des données
-            Cipher cipher = Cipher.getInstance(RSA_ALGORITHM);
+            Cipher cipher = CryptoPrimitives.cipher(RSA_ALGORITHM);
             cipher.init(Cipher.DECRYPT_MODE, privateKey);
 
             byte[] encryptedBytes;
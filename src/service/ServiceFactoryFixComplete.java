@@ -2,13 +2,12 @@ package service;
 
 import service.impl.AESCryptographyServiceFix;
 import service.impl.AudioRecordingServiceFixExtended;
+import service.impl.PooledDatabaseService;
 import service.impl.SQLiteDatabaseService;
 import service.impl.UserServiceImplFix;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,8 +18,6 @@ import java.util.logging.Logger;
 public class ServiceFactoryFixComplete {
     private static final Logger LOGGER = Logger.getLogger(ServiceFactoryFixComplete.class.getName());
     
-    private static final String DB_URL = "jdbc:sqlite:database.db";
-    
     private static UserService userService;
     private static CryptographyService cryptographyService;
     private static AudioRecordingService audioRecordingService;
@@ -32,7 +29,7 @@ public class ServiceFactoryFixComplete {
      * @throws SQLException si une erreur survient lors de la connexion
      */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL);
+        return PooledDatabaseService.getShared().connect();
     }
     
     /**
@@ -109,31 +106,9 @@ public class ServiceFactoryFixComplete {
      * Crée les tables de la base de données si elles n'existent pas.
      */
     public static void createTables() {
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            
-            // Table users
-            stmt.execute("CREATE TABLE IF NOT EXISTS users (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "email TEXT UNIQUE NOT NULL," +
-                    "password_hash TEXT NOT NULL," +
-                    "salt TEXT NOT NULL," +
-                    "is_admin INTEGER NOT NULL DEFAULT 0" +
-                    ")");
-            
-            // Table recordings
-            stmt.execute("CREATE TABLE IF NOT EXISTS recordings (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "name TEXT NOT NULL," +
-                    "timestamp TEXT NOT NULL," +
-                    "duration INTEGER NOT NULL," +
-                    "file_path TEXT NOT NULL," +
-                    "encryption_key TEXT," +
-                    "integrity_hash TEXT," +
-                    "user_id INTEGER NOT NULL," +
-                    "FOREIGN KEY (user_id) REFERENCES users(id)" +
-                    ")");
-            
+        try {
+            // Le schéma est créé et mis à jour par les migrations du pool partagé
+            PooledDatabaseService.getShared().initializeDatabase();
             LOGGER.log(Level.INFO, "Tables créées avec succès");
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Erreur lors de la création des tables", e);
@@ -4,6 +4,7 @@ import model.SharedRecording;
 import model.AudioRecording;
 import model.User;
 import model.UserKeys;
+import service.impl.SchemaDescriptor;
 
 import java.sql.*;
 import java.time.LocalDateTime;
@@ -15,6 +16,9 @@ import java.util.Base64;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
 
 /**
  * Service pour gérer le partage des enregistrements audio entre utilisateurs.
@@ -29,15 +33,6 @@ public class SharedRecordingService {
     private final CryptographyService cryptographyService;
     private final NotificationService notificationService;
 
-    private static final String CREATE_TABLE_QUERY = "CREATE TABLE IF NOT EXISTS shared_recordings ("
-            + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
-            + "recording_id INTEGER NOT NULL,"
-            + "source_user_id INTEGER NOT NULL,"
-            + "target_user_id INTEGER NOT NULL,"
-            + "encryption_key TEXT NOT NULL,"
-            + "shared_date DATETIME DEFAULT CURRENT_TIMESTAMP"
-            + ")";
-
     private static final String INSERT_SHARED_RECORDING_QUERY = "INSERT INTO shared_recordings "
             + "(recording_id, source_user_id, target_user_id, encryption_key) "
             + "VALUES (?, ?, ?, ?)";
@@ -68,12 +63,7 @@ public class SharedRecordingService {
         this.cryptographyService = new service.impl.AESCryptographyServiceFix(false);
         // Initialiser le service de notifications
         this.notificationService = new NotificationService(databaseService);
-
-        try {
-            createTableIfNotExists();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        // La table shared_recordings est créée par les migrations du schéma
     }
 
     /**
@@ -103,7 +93,8 @@ public class SharedRecordingService {
             System.err.println("Utilisateur destinataire introuvable: " + targetUserEmail);
             throw new Exception("Utilisateur destinataire introuvable");
         }
-        String targetPublicKey = keysService.getUserPublicKey(targetUser.getId());
+        UserKeys targetKeys = keysService.getUserPublicKeys(targetUser.getId());
+        String targetPublicKey = targetKeys != null ? targetKeys.getPublicKey() : null;
         if (targetPublicKey == null || targetPublicKey.isEmpty()) {
             System.err.println("Clé publique du destinataire manquante pour l'utilisateur: " + targetUserEmail);
             throw new Exception("Clé publique du destinataire manquante");
@@ -161,45 +152,34 @@ public class SharedRecordingService {
         }
         System.out.println("Rechiffrement réussi");
 
-        // 5. Chiffrer la nouvelle clé AES avec la clé publique du destinataire
-        String encryptedAesKeyForTarget = rsaService.encryptWithPublicKey(newAesKeyBase64, targetPublicKey);
-        System.out.println("Clé AES chiffrée avec la clé publique du destinataire");
-
-        // 6. Stocker dans shared_recordings
-        Connection conn = null;
-        PreparedStatement stmt = null;
-        try {
-            conn = databaseService.connect();
-            stmt = conn.prepareStatement(
-                    "INSERT INTO shared_recordings (recording_id, source_user_id, target_user_id, encryption_key, shared_date) VALUES (?, ?, ?, ?, ?)");
-            stmt.setInt(1, recordingId);
-            stmt.setInt(2, sourceUserId);
-            stmt.setInt(3, targetUser.getId());
-            stmt.setString(4, encryptedAesKeyForTarget);
-            stmt.setString(5, LocalDateTime.now().toString());
-            stmt.executeUpdate();
-            System.out.println("Partage enregistré en base de données");
-
-            // 7. Créer une notification pour le destinataire
-            User sourceUser = userService.getUserById(sourceUserId);
-            String sourceUserEmail = sourceUser != null ? sourceUser.getEmail() : "Utilisateur #" + sourceUserId;
-            String message = sourceUserEmail + " a partagé un enregistrement avec vous: " + recording.getName();
-
-            boolean notificationCreated = notificationService.createNotification(
-                    targetUser.getId(),
-                    message,
-                    recordingId);
-
-            if (notificationCreated) {
-                System.out.println("Notification créée pour l'utilisateur " + targetUser.getId());
-            } else {
-                System.err.println("Échec de la création de notification pour l'utilisateur " + targetUser.getId());
+        // 5. Chiffrer la nouvelle clé AES avec la clé publique du destinataire, selon son schéma
+        String encryptedAesKeyForTarget = keysService.getCryptography(targetKeys.getScheme())
+                .encryptWithPublicKey(newAesKeyBase64, targetPublicKey);
+        System.out.println("Clé AES chiffrée avec la clé publique " + targetKeys.getScheme() + " du destinataire");
+
+        User sourceUser = userService.getUserById(sourceUserId);
+        String sourceUserEmail = sourceUser != null ? sourceUser.getEmail() : "Utilisateur #" + sourceUserId;
+        String message = sourceUserEmail + " a partagé un enregistrement avec vous: " + recording.getName();
+
+        // 6. Stocker dans shared_recordings et 7. notifier le destinataire, dans la même transaction
+        boolean notificationCreated = databaseService.executeWrite(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO shared_recordings (recording_id, source_user_id, target_user_id, encryption_key, shared_date) VALUES (?, ?, ?, ?, ?)")) {
+                stmt.setInt(1, recordingId);
+                stmt.setInt(2, sourceUserId);
+                stmt.setInt(3, targetUser.getId());
+                stmt.setString(4, encryptedAesKeyForTarget);
+                stmt.setString(5, LocalDateTime.now().toString());
+                stmt.executeUpdate();
             }
-        } finally {
-            if (stmt != null)
-                stmt.close();
-            if (conn != null)
-                conn.close();
+            return notificationService.createNotification(targetUser.getId(), message, recordingId);
+        });
+        System.out.println("Partage enregistré en base de données");
+
+        if (notificationCreated) {
+            System.out.println("Notification créée pour l'utilisateur " + targetUser.getId());
+        } else {
+            System.err.println("Échec de la création de notification pour l'utilisateur " + targetUser.getId());
         }
 
         System.out.println("Partage effectué avec succès");
@@ -250,9 +230,9 @@ public class SharedRecordingService {
 
                 // Écrire le fichier partagé directement
                 try (FileOutputStream fos = new FileOutputStream(sharedFile)) {
-                    // Chiffrer les données factices avec la nouvelle clé
-                    byte[] encryptedFakeAudio = cryptographyService.encrypt(fakeAudio, newKey);
-                    fos.write(encryptedFakeAudio);
+                    // Chiffrer les données factices avec la nouvelle clé (conteneur v2)
+                    cryptographyService.encrypt(new ByteArrayInputStream(fakeAudio), fos, newKey,
+                            service.impl.AudioRecordingServiceFixExtended.getAudioFormat());
                 }
 
                 System.out.println("Fichier partagé factice créé: " + sharedFile.getAbsolutePath());
@@ -299,14 +279,12 @@ public class SharedRecordingService {
                 }
             }
 
-            // 3. Rechiffrer avec la nouvelle clé
-            byte[] reencryptedData = cryptographyService.encrypt(decryptedData, newKey);
-            System.out.println("Données rechiffrées: " + reencryptedData.length + " octets");
-
-            // 4. Écrire dans le fichier partagé
-            try (FileOutputStream fos = new FileOutputStream(sharedFile)) {
-                fos.write(reencryptedData);
+            // 3. Rechiffrer avec la nouvelle clé directement dans le fichier partagé
+            try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(sharedFile))) {
+                cryptographyService.encrypt(new ByteArrayInputStream(decryptedData), fos, newKey,
+                        service.impl.AudioRecordingServiceFixExtended.getAudioFormat());
             }
+            System.out.println("Données rechiffrées: " + sharedFile.length() + " octets");
 
             System.out.println("Fichier partagé créé avec succès: " + sharedFile.getAbsolutePath());
             return true;
@@ -342,6 +320,7 @@ public class SharedRecordingService {
         }
 
         System.out.println("Clés trouvées pour l'utilisateur " + userId);
+        AsymmetricCryptographyService cryptography = keysService.getCryptography(userKeys.getScheme());
 
         Connection conn = null;
         PreparedStatement stmt = null;
@@ -350,95 +329,43 @@ public class SharedRecordingService {
         try {
             conn = databaseService.connect();
 
-            // Vérifier que la table existe
-            DatabaseMetaData meta = conn.getMetaData();
-            ResultSet tables = meta.getTables(null, null, "shared_recordings", null);
-            if (!tables.next()) {
-                System.err.println("La table shared_recordings n'existe pas! Création...");
-                createTableIfNotExists();
-                tables.close();
-                return sharedRecordings;
-            }
-            tables.close();
-
-            String query = "SELECT s.id, s.recording_id, s.source_user_id, s.encryption_key, s.shared_date " +
-                    "FROM shared_recordings s " +
-                    "WHERE s.target_user_id = ?";
-            stmt = conn.prepareStatement(query);
+            // Enregistrement, partage et adresse de la source lus par une seule jointure
+            stmt = conn.prepareStatement(SchemaDescriptor.of(conn).getSharedWithUserQuery());
             stmt.setInt(1, userId);
 
-            System.out.println("Exécution de la requête: " + query.replace("?", String.valueOf(userId)));
-
             rs = stmt.executeQuery();
             int count = 0;
 
             while (rs.next()) {
                 count++;
-                int recordingId = rs.getInt("recording_id");
+                int recordingId = rs.getInt("id");
                 int sourceUserId = rs.getInt("source_user_id");
-                String encryptionKey = rs.getString("encryption_key");
-
-                System.out.println("Enregistrement partagé trouvé: ID=" + recordingId +
-                        ", Source=" + sourceUserId +
-                        ", Clé chiffrée longueur=" +
-                        (encryptionKey != null ? encryptionKey.length() : 0));
+                String encryptionKey = rs.getString("share_key");
+                String sourceEmail = rs.getString("source_email");
 
+                // Déchiffrer la clé avec la clé privée de l'utilisateur
+                String decryptedKey;
                 try {
-                    // Récupérer l'enregistrement
-                    AudioRecording recording = recordingService.getRecording(recordingId);
-
-                    if (recording != null) {
-                        System.out.println("Enregistrement trouvé: " + recording.getName());
-
-                        // Déchiffrer la clé avec la clé privée de l'utilisateur
-                        String decryptedKey = null;
-                        try {
-                            System.out.println(
-                                    "Tentative de déchiffrement de la clé pour l'enregistrement " + recordingId);
-                            System.out.println("Longueur de la clé chiffrée: "
-                                    + (encryptionKey != null ? encryptionKey.length() : 0));
-                            System.out.println("Clé privée disponible: " + (userKeys.getPrivateKey() != null));
-
-                            decryptedKey = rsaService.decryptWithPrivateKey(encryptionKey, userKeys.getPrivateKey());
-
-                            System.out.println("Clé déchiffrée avec succès");
-                            System.out.println("Longueur de la clé déchiffrée: "
-                                    + (decryptedKey != null ? decryptedKey.length() : 0));
-                        } catch (Exception e) {
-                            System.err.println("Erreur détaillée lors du déchiffrement de la clé: " + e.getMessage());
-                            e.printStackTrace();
-                            continue;
-                        }
-
-                        // Créer une copie de l'enregistrement avec la clé déchiffrée
-                        AudioRecording sharedRecording = new AudioRecording(
-                                recording.getId(),
-                                "[Partagé par " + getSourceUserEmail(sourceUserId) + "] " + recording.getName(),
-                                recording.getFilePath(),
-                                recording.getTimestamp(),
-                                recording.getDuration(),
-                                userId // On change le userId pour que l'utilisateur puisse y accéder
-                        );
-                        sharedRecording.setEncryptionKey(decryptedKey);
-
-                        // Vérifier l'accès au fichier
-                        File audioFile = new File(sharedRecording.getFilePath());
-                        System.out.println("Vérification du fichier audio: " + sharedRecording.getFilePath());
-                        System.out.println("Le fichier existe: " + audioFile.exists());
-                        System.out.println("Le fichier est lisible: " + audioFile.canRead());
-                        System.out.println(
-                                "Taille du fichier: " + (audioFile.exists() ? audioFile.length() : 0) + " octets");
-
-                        sharedRecordings.add(sharedRecording);
-                        System.out
-                                .println("Ajout de l'enregistrement partagé à la liste: " + sharedRecording.getName());
-                    } else {
-                        System.err.println("Enregistrement non trouvé pour l'ID: " + recordingId);
-                    }
+                    decryptedKey = cryptography.decryptWithPrivateKey(encryptionKey, userKeys.getPrivateKey());
                 } catch (Exception e) {
-                    System.err.println("Erreur lors du traitement de l'enregistrement partagé: " + e.getMessage());
-                    e.printStackTrace();
+                    System.err.println("Erreur lors du déchiffrement de la clé de l'enregistrement partagé "
+                            + recordingId + ": " + e.getMessage());
+                    continue;
                 }
+
+                AudioRecording sharedRecording = new AudioRecording(
+                        recordingId,
+                        "[Partagé par " + (sourceEmail != null ? sourceEmail : "Utilisateur inconnu") + "] "
+                                + rs.getString("name"),
+                        rs.getString("file_path"),
+                        LocalDateTime.parse(rs.getString("timestamp")),
+                        rs.getInt("duration"),
+                        userId // On change le userId pour que l'utilisateur puisse y accéder
+                );
+                sharedRecording.setEncryptionKey(decryptedKey);
+                sharedRecording.setOwnerEmail(sourceEmail);
+                sharedRecordings.add(sharedRecording);
+                System.out.println("Enregistrement partagé trouvé: ID=" + recordingId + ", Source=" + sourceUserId);
             }
 
             System.out.println("Nombre d'enregistrements partagés trouvés: " + count);
@@ -468,21 +395,6 @@ public class SharedRecordingService {
         }
     }
 
-    /**
-     * Récupère l'email de l'utilisateur source.
-     *
-     * @param sourceUserId L'ID de l'utilisateur source
-     * @return L'email de l'utilisateur
-     */
-    private String getSourceUserEmail(int sourceUserId) {
-        try {
-            User user = userService.getUserById(sourceUserId);
-            return user != null ? user.getEmail() : "Utilisateur inconnu";
-        } catch (Exception e) {
-            return "Utilisateur inconnu";
-        }
-    }
-
     /**
      * Vérifie si un enregistrement est déjà partagé avec un utilisateur.
      * 
@@ -524,69 +436,18 @@ public class SharedRecordingService {
      * @throws SQLException Si une erreur SQL survient
      */
     private boolean saveSharedRecording(SharedRecording sharedRecording) throws SQLException {
-        Connection conn = null;
-        PreparedStatement stmt = null;
-
-        try {
-            conn = databaseService.connect();
-            String query = "INSERT INTO shared_recordings (recording_id, source_user_id, target_user_id, encryption_key, shared_date) "
-                    + "VALUES (?, ?, ?, ?, ?)";
-            stmt = conn.prepareStatement(query);
-            stmt.setInt(1, sharedRecording.getRecordingId());
-            stmt.setInt(2, sharedRecording.getSourceUserId());
-            stmt.setInt(3, sharedRecording.getTargetUserId());
-            stmt.setString(4, sharedRecording.getEncryptionKey());
-            stmt.setString(5, LocalDateTime.now().toString());
-
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
-        } finally {
-            if (stmt != null)
-                stmt.close();
-            if (conn != null)
-                conn.close();
-        }
-    }
-
-    /**
-     * Crée la table des enregistrements partagés si elle n'existe pas.
-     * 
-     * @throws SQLException Si une erreur SQL survient
-     */
-    private void createTableIfNotExists() throws SQLException {
-        Connection conn = null;
-        Statement stmt = null;
-
-        try {
-            conn = databaseService.connect();
-            stmt = conn.createStatement();
-
-            // Modifier la définition de la table pour utiliser la syntaxe compatible avec
-            // toutes les versions de SQLite
-            String createTableQuery = "CREATE TABLE IF NOT EXISTS shared_recordings (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "recording_id INTEGER NOT NULL," +
-                    "source_user_id INTEGER NOT NULL," +
-                    "target_user_id INTEGER NOT NULL," +
-                    "encryption_key TEXT NOT NULL," +
-                    "shared_date DATETIME DEFAULT CURRENT_TIMESTAMP" +
-                    ");";
-
-            stmt.executeUpdate(createTableQuery);
-
-            // Vérifier si la table existe et compte le nombre d'enregistrements
-            ResultSet rs = stmt
-                    .executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type='table' AND name='shared_recordings'");
-            if (rs.next() && rs.getInt(1) > 0) {
-                System.out.println("Table shared_recordings créée ou existante");
-            } else {
-                System.err.println("Échec de création de la table shared_recordings");
+        String query = "INSERT INTO shared_recordings (recording_id, source_user_id, target_user_id, encryption_key, shared_date) "
+                + "VALUES (?, ?, ?, ?, ?)";
+        int rowsAffected = databaseService.executeWrite(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                stmt.setInt(1, sharedRecording.getRecordingId());
+                stmt.setInt(2, sharedRecording.getSourceUserId());
+                stmt.setInt(3, sharedRecording.getTargetUserId());
+                stmt.setString(4, sharedRecording.getEncryptionKey());
+                stmt.setString(5, LocalDateTime.now().toString());
+                return stmt.executeUpdate();
             }
-        } finally {
-            if (stmt != null)
-                stmt.close();
-            if (conn != null)
-                conn.close();
-        }
+        });
+        return rowsAffected > 0;
     }
 }
\ No newline at end of file
@@ -7,12 +7,18 @@ import java.util.List;
 
 /**
  * Service pour gérer les clés de chiffrement des utilisateurs.
- * Ce service permet de stocker et récupérer les paires de clés RSA des utilisateurs.
+ * Ce service permet de stocker et récupérer les paires de clés asymétriques des
+ * utilisateurs. Les nouvelles paires sont générées avec le schéma X25519, dont la
+ * génération est quasi instantanée ; les utilisateurs existants conservent leurs
+ * clés RSA. Le schéma des nouvelles paires peut être choisi avec la propriété
+ * système "keys.scheme".
  */
 public class UserKeysService {
     
     private final DatabaseService databaseService;
     private final RSACryptographyService rsaService;
+    private final String newKeyScheme = System.getProperty("keys.scheme", X25519CryptographyService.SCHEME);
+    private final KeyPairPool keyPairPool;
     
     /**
      * Constructeur qui initialise le service avec les dépendances nécessaires.
@@ -23,18 +29,15 @@ public class UserKeysService {
     public UserKeysService(DatabaseService databaseService, RSACryptographyService rsaService) {
         this.databaseService = databaseService;
         this.rsaService = rsaService;
-        
-        // Création de la table si elle n'existe pas
-        try {
-            createTableIfNotExists();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        // La table user_keys est créée par les migrations du schéma
+        // Les paires des nouveaux utilisateurs sont préparées en arrière-plan dès maintenant
+        this.keyPairPool = KeyPairPool.getShared(getCryptography(newKeyScheme));
     }
     
     /**
      * Crée ou récupère les clés pour un utilisateur.
-     * Si l'utilisateur n'a pas de clés, une nouvelle paire est générée.
+     * Si l'utilisateur n'a pas de clés, une paire est prise dans la réserve des
+     * paires générées à l'avance.
      * 
      * @param userId L'identifiant de l'utilisateur
      * @return Les clés de l'utilisateur
@@ -47,15 +50,60 @@ public class UserKeysService {
             return existingKeys;
         }
         
-        // Générer une nouvelle paire de clés
-        String[] keyPair = rsaService.generateKeyPair();
+        // Prendre une paire de clés prête, ou la générer si la réserve est vide
+        String scheme = getCryptography(newKeyScheme).getScheme();
+        String[] keyPair = keyPairPool.take();
         String publicKey = keyPair[0];
         String privateKey = keyPair[1];
         
         // Sauvegarder les clés
-        saveUserKeys(userId, publicKey, privateKey);
+        saveUserKeys(userId, publicKey, privateKey, scheme);
         
-        return new UserKeys(userId, publicKey, privateKey);
+        return new UserKeys(userId, publicKey, privateKey, scheme);
+    }
+    
+    /**
+     * @return La réserve des paires de clés des nouveaux utilisateurs
+     */
+    public KeyPairPool getKeyPairPool() {
+        return keyPairPool;
+    }
+    
+    /**
+     * Retourne le service de chiffrement correspondant au schéma des clés d'un
+     * utilisateur.
+     * 
+     * @param scheme Le schéma des clés, tel que retourné par UserKeys.getScheme
+     * @return Le service de chiffrement du schéma
+     */
+    public AsymmetricCryptographyService getCryptography(String scheme) {
+        if (scheme == null || RSACryptographyService.SCHEME.equalsIgnoreCase(scheme)) {
+            return rsaService;
+        }
+        return AsymmetricCryptographyService.forScheme(scheme);
+    }
+    
+    /**
+     * Récupère la clé publique d'un utilisateur avec son schéma.
+     * 
+     * @param userId L'identifiant de l'utilisateur
+     * @return Les clés publiques de l'utilisateur, ou null si non trouvées
+     * @throws SQLException Si une erreur SQL survient
+     */
+    public UserKeys getUserPublicKeys(int userId) throws SQLException {
+        String query = "SELECT user_id, public_key, scheme FROM user_keys WHERE user_id = ?";
+        try (Connection conn = databaseService.connect();
+                PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                UserKeys keys = new UserKeys(rs.getInt("user_id"), rs.getString("public_key"));
+                keys.setScheme(rs.getString("scheme"));
+                return keys;
+            }
+        }
     }
     
     /**
@@ -104,7 +152,7 @@ public class UserKeysService {
         
         try {
             conn = databaseService.connect();
-            String query = "SELECT user_id, public_key FROM user_keys";
+            String query = "SELECT user_id, public_key, scheme FROM user_keys";
             stmt = conn.prepareStatement(query);
             
             rs = stmt.executeQuery();
@@ -112,7 +160,9 @@ public class UserKeysService {
             while (rs.next()) {
                 int userId = rs.getInt("user_id");
                 String publicKey = rs.getString("public_key");
-                publicKeys.add(new UserKeys(userId, publicKey));
+                UserKeys keys = new UserKeys(userId, publicKey);
+                keys.setScheme(rs.getString("scheme"));
+                publicKeys.add(keys);
             }
             
             return publicKeys;
@@ -123,6 +173,24 @@ public class UserKeysService {
         }
     }
     
+    /**
+     * Charge les clés publiques RSA de tous les utilisateurs dans le trousseau du
+     * service RSA, afin que le partage vers un utilisateur connu n'ait plus à
+     * décoder sa clé.
+     * 
+     * @return Le nombre de clés chargées
+     * @throws SQLException Si une erreur SQL survient
+     */
+    public int warmKeyRing() throws SQLException {
+        List<UserKeys> rsaKeys = new ArrayList<>();
+        for (UserKeys keys : getAllPublicKeys()) {
+            if (RSACryptographyService.SCHEME.equalsIgnoreCase(keys.getScheme())) {
+                rsaKeys.add(keys);
+            }
+        }
+        return rsaService.getKeyRing().warm(rsaKeys);
+    }
+    
     /**
      * Récupère les clés d'un utilisateur spécifique.
      * 
@@ -137,7 +205,7 @@ public class UserKeysService {
         
         try {
             conn = databaseService.connect();
-            String query = "SELECT user_id, public_key, private_key FROM user_keys WHERE user_id = ?";
+            String query = "SELECT user_id, public_key, private_key, scheme FROM user_keys WHERE user_id = ?";
             stmt = conn.prepareStatement(query);
             stmt.setInt(1, userId);
             
@@ -147,7 +215,8 @@ public class UserKeysService {
                 return new UserKeys(
                     rs.getInt("user_id"),
                     rs.getString("public_key"),
-                    rs.getString("private_key")
+                    rs.getString("private_key"),
+                    rs.getString("scheme")
                 );
             }
             
@@ -165,51 +234,22 @@ public class UserKeysService {
      * @param userId L'identifiant de l'utilisateur
      * @param publicKey La clé publique
      * @param privateKey La clé privée
+     * @param scheme Le schéma des clés
      * @throws SQLException Si une erreur SQL survient
      */
-    private void saveUserKeys(int userId, String publicKey, String privateKey) throws SQLException {
-        Connection conn = null;
-        PreparedStatement stmt = null;
-        
-        try {
-            conn = databaseService.connect();
-            String query = "INSERT INTO user_keys (user_id, public_key, private_key) VALUES (?, ?, ?)";
-            stmt = conn.prepareStatement(query);
-            stmt.setInt(1, userId);
-            stmt.setString(2, publicKey);
-            stmt.setString(3, privateKey);
-            
-            stmt.executeUpdate();
-        } finally {
-            if (stmt != null) stmt.close();
-            if (conn != null) conn.close();
-        }
+    private void saveUserKeys(int userId, String publicKey, String privateKey, String scheme) throws SQLException {
+        String query = "INSERT INTO user_keys (user_id, public_key, private_key, scheme) VALUES (?, ?, ?, ?)";
+        databaseService.executeWrite(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                stmt.setInt(1, userId);
+                stmt.setString(2, publicKey);
+                stmt.setString(3, privateKey);
+                stmt.setString(4, scheme);
+                return stmt.executeUpdate();
+            }
+        });
+        // Les clés décodées précédemment pour cet utilisateur ne sont plus valables
+        rsaService.getKeyRing().invalidate(userId);
     }
     
-    /**
-     * Crée la table des clés utilisateur si elle n'existe pas.
-     * 
-     * @throws SQLException Si une erreur SQL survient
-     */
-    private void createTableIfNotExists() throws SQLException {
-        Connection conn = null;
-        Statement stmt = null;
-        
-        try {
-            conn = databaseService.connect();
-            stmt = conn.createStatement();
-            
-            String createTableQuery = "CREATE TABLE IF NOT EXISTS user_keys (" +
-                "user_id INTEGER PRIMARY KEY, " +
-                "public_key TEXT NOT NULL, " +
-                "private_key TEXT NOT NULL, " +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                ")";
-            
-            stmt.executeUpdate(createTableQuery);
-        } finally {
-            if (stmt != null) stmt.close();
-            if (conn != null) conn.close();
-        }
-    }
 } 
\ No newline at end of file
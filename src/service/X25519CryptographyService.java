@@ -0,0 +1,148 @@
+package service;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Schéma de chiffrement ECIES sur X25519, alternative rapide à RSA-2048.
+ *
+ * Chaque chiffrement génère une paire de clés éphémère ; le secret partagé
+ * obtenu par accord X25519 avec la clé publique du destinataire est dérivé
+ * par HKDF-SHA256 en une clé AES-256, qui chiffre les données en AES-GCM.
+ * Le message contient la clé publique éphémère, le vecteur d'initialisation
+ * et le texte chiffré avec son tag. Une paire de clés est générée en moins
+ * d'une milliseconde, contre plusieurs centaines pour RSA-2048, et le
+ * déchiffrement est plusieurs fois plus rapide ; le chiffrement, qui demande
+ * deux opérations X25519, coûte en revanche un peu plus qu'un chiffrement RSA
+ * par clé publique.
+ */
+public class X25519CryptographyService implements AsymmetricCryptographyService {
+
+    public static final String SCHEME = "X25519";
+
+    private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final int KEY_LENGTH = 32;
+    private static final byte[] HKDF_INFO = "Missie-Moustass X25519-HKDF-AES-GCM v1"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public String[] generateKeyPair() throws Exception {
+        KeyPair keyPair = KeyPairGenerator.getInstance(SCHEME).generateKeyPair();
+
+        String publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+        String privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+
+        return new String[] { publicKey, privateKey };
+    }
+
+    @Override
+    public String encryptWithPublicKey(String data, String publicKeyBase64) throws Exception {
+        KeyFactory keyFactory = KeyFactory.getInstance(SCHEME);
+        PublicKey recipient = keyFactory.generatePublic(
+                new X509EncodedKeySpec(Base64.getDecoder().decode(publicKeyBase64)));
+
+        KeyPair ephemeral = KeyPairGenerator.getInstance(SCHEME).generateKeyPair();
+        byte[] ephemeralPublic = ephemeral.getPublic().getEncoded();
+        SecretKeySpec key = deriveKey(ephemeral.getPrivate(), recipient, ephemeralPublic);
+
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        // La clé éphémère est authentifiée avec le texte chiffré
+        cipher.updateAAD(ephemeralPublic);
+        byte[] ciphertext = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+
+        ByteBuffer message = ByteBuffer.allocate(1 + ephemeralPublic.length + IV_LENGTH + ciphertext.length);
+        message.put((byte) ephemeralPublic.length).put(ephemeralPublic).put(iv).put(ciphertext);
+        return Base64.getEncoder().encodeToString(message.array());
+    }
+
+    @Override
+    public String decryptWithPrivateKey(String encryptedData, String privateKeyBase64) throws Exception {
+        if (encryptedData == null || privateKeyBase64 == null) {
+            System.err.println("Données chiffrées ou clé privée null");
+            return null;
+        }
+
+        KeyFactory keyFactory = KeyFactory.getInstance(SCHEME);
+        PrivateKey privateKey = keyFactory.generatePrivate(
+                new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKeyBase64)));
+
+        ByteBuffer message = ByteBuffer.wrap(Base64.getDecoder().decode(encryptedData));
+        int ephemeralLength = message.get() & 0xFF;
+        if (message.remaining() < ephemeralLength + IV_LENGTH + TAG_LENGTH_BITS / 8) {
+            throw new GeneralSecurityException("Message X25519 tronqué");
+        }
+        byte[] ephemeralPublic = new byte[ephemeralLength];
+        message.get(ephemeralPublic);
+        byte[] iv = new byte[IV_LENGTH];
+        message.get(iv);
+        byte[] ciphertext = new byte[message.remaining()];
+        message.get(ciphertext);
+
+        PublicKey ephemeral = keyFactory.generatePublic(new X509EncodedKeySpec(ephemeralPublic));
+        SecretKeySpec key = deriveKey(privateKey, ephemeral, ephemeralPublic);
+
+        Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        cipher.updateAAD(ephemeralPublic);
+        return new String(cipher.doFinal(ciphertext), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Dérive la clé AES de l'accord X25519 par HKDF-SHA256 (RFC 5869), la clé
+     * publique éphémère faisant partie du contexte.
+     */
+    private static SecretKeySpec deriveKey(PrivateKey privateKey, PublicKey publicKey, byte[] ephemeralPublic)
+            throws GeneralSecurityException {
+        KeyAgreement agreement = KeyAgreement.getInstance(SCHEME);
+        agreement.init(privateKey);
+        agreement.doPhase(publicKey, true);
+        byte[] sharedSecret = agreement.generateSecret();
+
+        // Extraction, avec un sel nul
+        Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+        mac.init(new SecretKeySpec(new byte[KEY_LENGTH], HMAC_ALGORITHM));
+        byte[] prk = mac.doFinal(sharedSecret);
+        Arrays.fill(sharedSecret, (byte) 0);
+
+        // Expansion : un seul bloc suffit pour une clé de 32 octets
+        mac.init(new SecretKeySpec(prk, HMAC_ALGORITHM));
+        mac.update(HKDF_INFO);
+        mac.update(ephemeralPublic);
+        mac.update((byte) 1);
+        byte[] okm = mac.doFinal();
+        Arrays.fill(prk, (byte) 0);
+
+        SecretKeySpec key = new SecretKeySpec(okm, 0, KEY_LENGTH, "AES");
+        Arrays.fill(okm, (byte) 0);
+        return key;
+    }
+}
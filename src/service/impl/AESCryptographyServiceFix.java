@@ -1,11 +1,16 @@
 package service.impl;
 
+import service.CryptoPrimitives;
 import service.CryptographyService;
+import service.IncrementalCipher;
 
 import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import javax.sound.sampled.AudioFormat;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.util.Base64;
 
@@ -14,6 +19,7 @@ public class AESCryptographyServiceFix implements CryptographyService {
     private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
     private static final String HASH_ALGORITHM = "SHA-256";
     private static final int KEY_SIZE = 256;
+    private static final int BLOCK_SIZE = 16;
 
     private boolean encryptionEnabled = true;
 
@@ -30,9 +36,7 @@ public class AESCryptographyServiceFix implements CryptographyService {
         if (!encryptionEnabled) {
             return null;
         }
-        KeyGenerator keyGen = KeyGenerator.getInstance(ALGORITHM);
-        keyGen.init(KEY_SIZE);
-        return keyGen.generateKey();
+        return CryptoPrimitives.keyGenerator(ALGORITHM, KEY_SIZE).generateKey();
     }
 
     @Override
@@ -40,7 +44,7 @@ public class AESCryptographyServiceFix implements CryptographyService {
         if (!encryptionEnabled || key == null) {
             return data;
         }
-        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        Cipher cipher = CryptoPrimitives.cipher(TRANSFORMATION);
         cipher.init(Cipher.ENCRYPT_MODE, key);
         return cipher.doFinal(data);
     }
@@ -50,11 +54,92 @@ public class AESCryptographyServiceFix implements CryptographyService {
         if (!encryptionEnabled || key == null) {
             return encryptedData;
         }
-        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        Cipher cipher = CryptoPrimitives.cipher(TRANSFORMATION);
         cipher.init(Cipher.DECRYPT_MODE, key);
         return cipher.doFinal(encryptedData);
     }
 
+    @Override
+    public int encrypt(ByteBuffer input, ByteBuffer output, SecretKey key) throws Exception {
+        if (!encryptionEnabled || key == null) {
+            return IncrementalCipher.identity().doFinal(input, output);
+        }
+        Cipher cipher = CryptoPrimitives.cipher(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        return cipher.doFinal(input, output);
+    }
+
+    @Override
+    public int decrypt(ByteBuffer input, ByteBuffer output, SecretKey key) throws Exception {
+        if (!encryptionEnabled || key == null) {
+            return IncrementalCipher.identity().doFinal(input, output);
+        }
+        Cipher cipher = CryptoPrimitives.cipher(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key);
+        return cipher.doFinal(input, output);
+    }
+
+    @Override
+    public int getOutputSize(int inputLength) {
+        if (!encryptionEnabled) {
+            return inputLength;
+        }
+        return (inputLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+    }
+
+    @Override
+    public IncrementalCipher openEncryptor(SecretKey key) throws Exception {
+        return openCipher(Cipher.ENCRYPT_MODE, key);
+    }
+
+    @Override
+    public IncrementalCipher openDecryptor(SecretKey key) throws Exception {
+        return openCipher(Cipher.DECRYPT_MODE, key);
+    }
+
+    @Override
+    public void encrypt(InputStream in, OutputStream out, SecretKey key, AudioFormat format) throws Exception {
+        if (!encryptionEnabled || key == null) {
+            in.transferTo(out);
+            return;
+        }
+        EncryptedAudioContainer.encrypt(in, out, key, format);
+    }
+
+    @Override
+    public AudioFormat decrypt(InputStream in, OutputStream out, SecretKey key) throws Exception {
+        if (!encryptionEnabled || key == null) {
+            in.transferTo(out);
+            return null;
+        }
+        return EncryptedAudioContainer.decrypt(in, out, key);
+    }
+
+    @Override
+    public void reencrypt(InputStream in, OutputStream out, SecretKey key, SecretKey newKey) throws Exception {
+        if (!encryptionEnabled || key == null || newKey == null) {
+            in.transferTo(out);
+            return;
+        }
+        EncryptedAudioContainer.reencrypt(in, out, key, newKey);
+    }
+
+    @Override
+    public OutputStream openEncryptingStream(OutputStream out, SecretKey key, AudioFormat format) throws Exception {
+        if (!encryptionEnabled || key == null) {
+            return out;
+        }
+        return new EncryptedAudioContainer.EncryptingOutputStream(out, key, format);
+    }
+
+    @Override
+    public InputStream openDecryptingStream(InputStream in, SecretKey key) throws Exception {
+        if (!encryptionEnabled || key == null) {
+            return in;
+        }
+        return new EncryptedAudioContainer.DecryptingInputStream(in, key);
+    }
+
     @Override
     public String encodeKeyToBase64(SecretKey key) {
         if (key == null) {
@@ -74,7 +159,7 @@ public class AESCryptographyServiceFix implements CryptographyService {
 
     @Override
     public String generateHash(byte[] data) throws Exception {
-        MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        MessageDigest digest = CryptoPrimitives.digest(HASH_ALGORITHM);
         byte[] hash = digest.digest(data);
         return Base64.getEncoder().encodeToString(hash);
     }
@@ -98,4 +183,14 @@ public class AESCryptographyServiceFix implements CryptographyService {
         byte[] decryptedBytes = decrypt(encryptedBytes, key);
         return new String(decryptedBytes);
     }
+
+    private IncrementalCipher openCipher(int mode, SecretKey key) throws Exception {
+        if (!encryptionEnabled || key == null) {
+            return IncrementalCipher.identity();
+        }
+        // Cipher propre à l'appelant : il est conservé entre les appels à update
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(mode, key);
+        return IncrementalCipher.of(cipher);
+    }
 }
\ No newline at end of file
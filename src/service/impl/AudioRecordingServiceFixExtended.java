@@ -4,18 +4,23 @@ import model.AudioRecording;
 import model.UserKeys;
 import service.AudioRecordingService;
 import service.CryptographyService;
+import service.DatabaseService;
+import util.AudioBlockRing;
+import util.AudioLineManager;
+import util.LineBufferTuner;
 
 import javax.crypto.SecretKey;
 import javax.sound.sampled.*;
 import java.io.*;
 import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -23,6 +28,9 @@ import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,14 +48,33 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
             true, // Signed
             true // Big endian
     );
+    // Délai maximal d'attente de la fin de session avant de forcer la fermeture de la ligne
+    private static final long STOP_TIMEOUT_MS = 2000;
+    // Taille des pages lues pour retrouver un enregistrement par son fichier
+    private static final int LOOKUP_PAGE_SIZE = 200;
 
     private final CryptographyService cryptographyService;
+    private final DatabaseService databaseService;
+    private final RecordingRepository recordingRepository;
     private TargetDataLine line;
     private File outputFile;
     private int currentUserId;
-    private ByteArrayOutputStream recordingBuffer;
+    private CaptureSession captureSession;
+    private final RecordingFinalizer finalizer = new RecordingFinalizer();
+    // Clés d'enregistrement déballées pendant la session de l'utilisateur courant
+    private final RecordingKeyCache keyCache = new RecordingKeyCache();
+    private final KeyHierarchy keyHierarchy;
+    // Clés asymétriques des utilisateurs, avec leur schéma (RSA ou X25519)
+    private final service.UserKeysService userKeysService;
+    private SecretKey recordingKey;
+    // Empreinte du fichier chiffré, mise à jour à chaque segment écrit
+    private MessageDigest recordingDigest;
 
     private PlaybackListener playbackListener;
+    // Toutes les lectures passent par le moteur partagé, sur son thread dédié
+    private final PlaybackEngine playback = PlaybackEngine.getShared();
+    // Lignes de capture gardées ouvertes entre deux enregistrements
+    private final AudioLineManager lines = AudioLineManager.getShared();
 
     /**
      * Constructeur utilisant un service de cryptographie spécifique.
@@ -55,7 +82,23 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
      * @param cryptographyService Le service de cryptographie à utiliser
      */
     public AudioRecordingServiceFixExtended(CryptographyService cryptographyService) {
+        this(cryptographyService, PooledDatabaseService.getShared());
+    }
+
+    /**
+     * Constructeur utilisant des services de cryptographie et de base de données spécifiques.
+     * 
+     * @param cryptographyService Le service de cryptographie à utiliser
+     * @param databaseService Le service de base de données à utiliser
+     */
+    public AudioRecordingServiceFixExtended(CryptographyService cryptographyService,
+            DatabaseService databaseService) {
         this.cryptographyService = cryptographyService;
+        this.databaseService = databaseService;
+        this.recordingRepository = new RecordingRepository(databaseService);
+        service.RSACryptographyService rsaService = new service.RSACryptographyService();
+        this.keyHierarchy = new KeyHierarchy(databaseService, rsaService);
+        this.userKeysService = new service.UserKeysService(databaseService, rsaService);
     }
 
     /**
@@ -64,9 +107,30 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
      * @param userId L'ID de l'utilisateur actuel
      */
     public void setCurrentUserId(int userId) {
+        if (userId != this.currentUserId) {
+            // Les clés déballées pour l'utilisateur précédent ne doivent pas lui survivre
+            keyCache.clear();
+            keyHierarchy.lock();
+        }
         this.currentUserId = userId;
     }
 
+    /**
+     * Efface les clés d'enregistrement conservées pour la session, à appeler à
+     * la déconnexion.
+     */
+    public void clearSessionKeys() {
+        keyCache.clear();
+        keyHierarchy.lock();
+    }
+
+    /**
+     * @return Le cache des clés d'enregistrement de la session
+     */
+    public RecordingKeyCache getKeyCache() {
+        return keyCache;
+    }
+
     /**
      * Vérifie si l'utilisateur actuel a accès à un enregistrement.
      * 
@@ -88,24 +152,18 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
         ResultSet rs = null;
 
         try {
-            String DB_URL = "jdbc:sqlite:database.db";
-            conn = DriverManager.getConnection(DB_URL);
+            conn = databaseService.connect();
 
-            // Vérifier si cette table existe
-            DatabaseMetaData meta = conn.getMetaData();
-            ResultSet tables = meta.getTables(null, null, "shared_recordings", null);
-            if (!tables.next()) {
+            SchemaDescriptor schema = SchemaDescriptor.of(conn);
+            if (!schema.hasSharedRecordings()) {
                 // La table n'existe pas, donc pas de partage
-                tables.close();
                 return false;
             }
-            tables.close();
 
             // Vérifier si l'enregistrement est partagé avec l'utilisateur courant
-            String query = "SELECT 1 FROM shared_recordings WHERE recording_id = ? AND target_user_id = ?";
-            stmt = conn.prepareStatement(query);
-            stmt.setInt(1, recording.getId());
-            stmt.setInt(2, currentUserId);
+            stmt = conn.prepareStatement(schema.getShareAccessQuery());
+            stmt.setInt(1, currentUserId);
+            stmt.setInt(2, recording.getId());
 
             rs = stmt.executeQuery();
 
@@ -143,6 +201,9 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
 
     @Override
     public void startRecording(String fileName) {
+        long requestedAt = System.nanoTime();
+        TargetDataLine captureLine = null;
+        OutputStream encryptedOut = null;
         try {
             // Vérifier si un enregistrement est déjà en cours
             if (line != null && line.isOpen()) {
@@ -156,141 +217,256 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
                 recordingsDir.mkdirs();
             }
 
-            // Configurer le format audio
-            DataLine.Info info = new DataLine.Info(TargetDataLine.class, AUDIO_FORMAT);
-            if (!AudioSystem.isLineSupported(info)) {
-                throw new LineUnavailableException("Format audio non supporté");
-            }
-
             // Créer le fichier de sortie avec extension .enc
             outputFile = new File(recordingsDir, fileName + ".enc");
 
-            this.recordingBuffer = new ByteArrayOutputStream();
-
-            // Ouvrir la ligne d'enregistrement
-            line = (TargetDataLine) AudioSystem.getLine(info);
-            line.open(AUDIO_FORMAT);
-            line.start();
+            // Obtenir une ligne d'enregistrement, déjà ouverte si la réserve en a une
+            captureLine = lines.acquireTargetLine(AUDIO_FORMAT);
+
+            // Le chiffrement se fait pendant la capture : la clé est générée dès maintenant
+            recordingKey = cryptographyService.generateSecretKey();
+            DigestOutputStream digestOut = RecordingIntegrity.digesting(
+                    new BufferedOutputStream(new FileOutputStream(outputFile)));
+            recordingDigest = digestOut.getMessageDigest();
+            encryptedOut = cryptographyService.openEncryptingStream(digestOut, recordingKey, AUDIO_FORMAT);
+            // Les blocs de l'anneau ont la taille maximale : le réglage choisit
+            // à chaque lecture la part utilisée, selon le remplissage de la ligne
+            LineBufferTuner tuner = lines.getCaptureTuner();
+            AudioBlockRing ring = new AudioBlockRing(CaptureSession.DEFAULT_RING_BLOCKS,
+                    tuner.getMaxBlockSize(AUDIO_FORMAT));
+            CaptureSession session = new CaptureSession(CaptureSession.fromLine(captureLine, tuner), encryptedOut,
+                    ring, fileName);
+
+            captureLine.start();
+            lines.getRecordStartLatency().record(System.nanoTime() - requestedAt);
+            session.start();
+            line = captureLine;
+            captureSession = session;
+            LOGGER.log(Level.FINE, "Délai de démarrage de l'enregistrement: {0}", lines.getRecordStartLatency());
 
             LOGGER.log(Level.INFO, "Début de l'enregistrement: {0}", fileName);
 
-            // Démarrer le thread d'enregistrement
-            Thread recordingThread = new Thread(() -> {
-                try (AudioInputStream ais = new AudioInputStream(line)) {
-                    // Lire les données audio dans le buffer d'instance
-                    byte[] buffer = new byte[line.getBufferSize() / 5];
-                    int bytesRead;
-
-                    while (line != null && line.isOpen() && (bytesRead = ais.read(buffer, 0, buffer.length)) != -1) {
-                        this.recordingBuffer.write(buffer, 0, bytesRead);
-                    }
-
-                    LOGGER.log(Level.INFO, "Thread d'enregistrement terminé pour: {0}", fileName);
-
-                } catch (Exception e) {
-                    LOGGER.log(Level.SEVERE, "Erreur dans le thread d'enregistrement", e);
-                }
-            });
-
-            recordingThread.start();
-
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Erreur lors du démarrage de l'enregistrement", e);
+            abortRecording(captureLine, encryptedOut);
+        }
+    }
+
+    /**
+     * Abandonne un enregistrement dont le démarrage a échoué : rend la ligne,
+     * ferme le flux chiffré, puis supprime le fichier partiel.
+     */
+    private void abortRecording(TargetDataLine captureLine, OutputStream encryptedOut) {
+        lines.release(captureLine);
+        if (encryptedOut != null) {
+            try {
+                encryptedOut.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Erreur ignorée lors de l'abandon de l'enregistrement", e);
+            }
+        }
+        if (outputFile != null && outputFile.exists() && !outputFile.delete()) {
+            LOGGER.log(Level.WARNING, "Impossible de supprimer le fichier partiel: {0}", outputFile);
+        }
+        line = null;
+        captureSession = null;
+        outputFile = null;
+        recordingKey = null;
+        recordingDigest = null;
+    }
+
+    /**
+     * Arrête la ligne de capture et attend que la session ait écrit le dernier
+     * bloc. La ligne est arrêtée sans être vidée : les échantillons encore dans
+     * son tampon sont lus puis chiffrés avant la fin de session.
+     *
+     * @param captureLine La ligne de capture
+     * @param session La session de capture
+     * @return Le nombre total d'octets audio écrits
+     * @throws Exception Si l'écriture a échoué
+     */
+    private long stopCapture(TargetDataLine captureLine, CaptureSession session) throws Exception {
+        captureLine.stop();
+        try {
+            return session.awaitCompletion(STOP_TIMEOUT_MS);
+        } catch (TimeoutException e) {
+            // Lecture bloquée sur la ligne : la fermeture la débloque
+            LOGGER.log(Level.WARNING, "La session de capture ne s'est pas terminée après {0} ms, fermeture de la ligne",
+                    STOP_TIMEOUT_MS);
+            lines.discard(captureLine);
+            return session.getCompletion().get();
+        } finally {
+            // Arrêtée et vidée, la ligne reste ouverte pour l'enregistrement suivant
+            lines.release(captureLine);
         }
     }
 
     @Override
     public void stopRecording() {
-        if (line != null && line.isOpen()) {
-            try {
-                line.stop();
-                line.flush();
-                line.close();
-                line = null;
-
-                Thread.sleep(200); // Laisser le temps au thread d'écriture de finir
-
-                if (outputFile != null && recordingBuffer != null) {
-                    byte[] rawAudioData = recordingBuffer.toByteArray();
-                    recordingBuffer.close();
-                    recordingBuffer = null;
-
-                    if (rawAudioData.length == 0) {
-                        LOGGER.log(Level.WARNING, "Aucune donnée audio brute capturée.");
-                        outputFile = null;
-                        return;
-                    }
+        try {
+            stopRecordingAsync().get();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.SEVERE, "Erreur lors de l'arrêt et du traitement de l'enregistrement", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.WARNING, "Attente de la sauvegarde de l'enregistrement interrompue", e);
+        }
+    }
 
-                    SecretKey recordingSpecificKey = cryptographyService.generateSecretKey();
-                    byte[] encryptedAudioForFile = processAudioData(rawAudioData, recordingSpecificKey);
+    /**
+     * Arrête l'enregistrement en cours et confie sa finalisation à la file de
+     * finalisation. Seule l'écriture des derniers blocs capturés est attendue :
+     * le chiffrement RSA de la clé et la sauvegarde des métadonnées se font en
+     * arrière-plan, et un nouvel enregistrement peut démarrer immédiatement.
+     * 
+     * @return Un futur complété avec l'enregistrement sauvegardé, ou avec null
+     *         si aucun enregistrement n'était en cours ou si aucune donnée n'a été capturée
+     */
+    public CompletableFuture<AudioRecording> stopRecordingAsync() {
+        if (line == null || !line.isOpen()) {
+            LOGGER.log(Level.INFO, "Aucun enregistrement en cours à arrêter.");
+            return CompletableFuture.completedFuture(null);
+        }
 
-                    try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                        fos.write(encryptedAudioForFile);
-                        LOGGER.log(Level.INFO, "Données audio chiffrées sauvegardées: {0}",
-                                outputFile.getAbsolutePath());
-                    }
+        TargetDataLine captureLine = line;
+        CaptureSession session = captureSession;
+        File file = outputFile;
+        SecretKey recordingSpecificKey = recordingKey;
+        MessageDigest digest = recordingDigest;
+        int ownerId = currentUserId;
+        LocalDateTime stoppedAt = LocalDateTime.now();
+        line = null;
+        captureSession = null;
+        outputFile = null;
+        recordingKey = null;
+        recordingDigest = null;
+
+        if (file == null || session == null) {
+            LOGGER.log(Level.WARNING, "outputFile ou captureSession est null dans stopRecording après l'arrêt.");
+            lines.release(captureLine);
+            return CompletableFuture.completedFuture(null);
+        }
 
-                    String aesKeyBase64 = cryptographyService.encodeKeyToBase64(recordingSpecificKey);
-                    service.UserKeysService userKeysService = new service.UserKeysService(
-                            new service.SQLiteDatabaseService(), new service.RSACryptographyService());
-                    String ownerPublicKey = userKeysService.getUserPublicKey(currentUserId);
+        long capturedBytes;
+        try {
+            // Seuls les derniers blocs restent à chiffrer et à écrire
+            capturedBytes = stopCapture(captureLine, session);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Erreur lors de l'arrêt de la capture", e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // Sans ligne en base, le fichier partiel ne serait jamais finalisé ni supprimé
+            if (file.exists() && !file.delete()) {
+                LOGGER.log(Level.WARNING, "Impossible de supprimer le fichier partiel: {0}", file);
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+        AudioBlockRing ring = session.getRing();
+        LOGGER.log(Level.INFO, "Capture terminée: {0} dépassement(s), pic de {1}/{2} blocs en attente",
+                new Object[] { ring.getOverruns(), ring.getHighWaterMark(), ring.getCapacity() });
+        LOGGER.log(Level.INFO, "Ligne de {0}", lines.getCaptureTuner());
 
-                    if (ownerPublicKey == null || ownerPublicKey.isEmpty()) {
-                        LOGGER.log(Level.SEVERE,
-                                "Clé publique du propriétaire introuvable pour l'utilisateur ID: " + currentUserId);
-                        throw new Exception("Clé publique du propriétaire introuvable.");
-                    }
+        if (capturedBytes == 0) {
+            LOGGER.log(Level.WARNING, "Aucune donnée audio brute capturée.");
+            if (!file.delete()) {
+                LOGGER.log(Level.WARNING, "Impossible de supprimer le fichier vide: {0}", file);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
 
-                    service.RSACryptographyService rsaService = new service.RSACryptographyService();
-                    String rsaEncryptedAesKeyForDb = rsaService.encryptWithPublicKey(aesKeyBase64, ownerPublicKey);
-
-                    AudioRecording recordingMetadata = new AudioRecording(
-                            0,
-                            outputFile.getName().replace(".enc", ""),
-                            outputFile.getAbsolutePath(),
-                            LocalDateTime.now(),
-                            calculateDurationFromRaw(rawAudioData),
-                            currentUserId);
-                    recordingMetadata.setEncryptionKey(rsaEncryptedAesKeyForDb);
-
-                    // Vérifier que la clé a bien été définie avant l'enregistrement
-                    if (recordingMetadata.getEncryptionKey() == null
-                            || recordingMetadata.getEncryptionKey().isEmpty()) {
-                        LOGGER.log(Level.SEVERE,
-                                "La clé de chiffrement n'a pas été correctement définie avant la sauvegarde");
-                        throw new Exception("Échec de la configuration de la clé de chiffrement");
-                    }
+        // Le flux est fermé : l'empreinte couvre le fichier complet
+        String integrityHash = digest == null ? null : RecordingIntegrity.toHash(digest);
+        LOGGER.log(Level.INFO, "Données audio chiffrées sauvegardées: {0}", file.getAbsolutePath());
+        return finalizer.submit(() -> finalizeRecording(file, recordingSpecificKey, integrityHash, capturedBytes,
+                ownerId, stoppedAt));
+    }
 
-                    LOGGER.log(Level.INFO, "Sauvegarde de l'enregistrement avec clé RSA-AES (longueur: {0})",
-                            rsaEncryptedAesKeyForDb != null ? rsaEncryptedAesKeyForDb.length() : 0);
+    /**
+     * Finalise un enregistrement arrêté : emballe sa clé AES avec la clé
+     * maîtresse du propriétaire et sauvegarde ses métadonnées.
+     * Exécutée sur le thread de la file de finalisation.
+     * 
+     * @param file Le fichier chiffré de l'enregistrement
+     * @param recordingSpecificKey La clé AES de l'enregistrement
+     * @param integrityHash L'empreinte du fichier chiffré, calculée pendant la capture
+     * @param capturedBytes Le nombre d'octets audio capturés
+     * @param ownerId L'ID du propriétaire
+     * @param stoppedAt La date de fin de l'enregistrement
+     * @return L'enregistrement sauvegardé
+     * @throws Exception Si la finalisation échoue
+     */
+    private AudioRecording finalizeRecording(File file, SecretKey recordingSpecificKey, String integrityHash,
+            long capturedBytes, int ownerId, LocalDateTime stoppedAt) throws Exception {
+        String wrappedKeyForDb;
+        try {
+            // Clé maîtresse déverrouillée une fois par session : pas d'opération RSA par enregistrement
+            wrappedKeyForDb = keyHierarchy.wrap(ownerId, recordingSpecificKey);
+        } catch (SecurityException e) {
+            LOGGER.log(Level.SEVERE, "Clés du propriétaire introuvables pour l'utilisateur ID: " + ownerId);
+            throw new Exception("Clé publique du propriétaire introuvable.", e);
+        }
 
-                    saveRecording(recordingMetadata);
-                    outputFile = null;
-                    LOGGER.log(Level.INFO, "Enregistrement arrêté, traité et sauvegardé.");
-                } else {
-                    LOGGER.log(Level.WARNING,
-                            "outputFile ou recordingBuffer est null dans stopRecording après l'arrêt.");
-                }
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Erreur lors de l'arrêt et du traitement de l'enregistrement", e);
-            }
-        } else {
-            LOGGER.log(Level.INFO, "Aucun enregistrement en cours à arrêter.");
+        AudioRecording recordingMetadata = new AudioRecording(
+                0,
+                file.getName().replace(".enc", ""),
+                file.getAbsolutePath(),
+                stoppedAt,
+                calculateDuration(capturedBytes),
+                ownerId);
+        recordingMetadata.setEncryptionKey(wrappedKeyForDb);
+        recordingMetadata.setIntegrityHash(integrityHash);
+
+        // Vérifier que la clé a bien été définie avant l'enregistrement
+        if (recordingMetadata.getEncryptionKey() == null
+                || recordingMetadata.getEncryptionKey().isEmpty()) {
+            LOGGER.log(Level.SEVERE,
+                    "La clé de chiffrement n'a pas été correctement définie avant la sauvegarde");
+            throw new Exception("Échec de la configuration de la clé de chiffrement");
+        }
+
+        LOGGER.log(Level.INFO, "Sauvegarde de l'enregistrement avec clé AES-KW (longueur: {0})",
+                wrappedKeyForDb.length());
+
+        int recordingId = saveRecording(recordingMetadata);
+        recordingMetadata.setId(recordingId);
+        // La clé est connue : la première lecture n'aura pas à la déballer
+        if (ownerId == currentUserId) {
+            keyCache.put(recordingId, wrappedKeyForDb, recordingSpecificKey);
         }
+        LOGGER.log(Level.INFO, "Enregistrement arrêté, traité et sauvegardé.");
+        return recordingMetadata;
     }
 
     /**
-     * Calcule la durée d'un enregistrement à partir des données brutes.
+     * Calcule la durée d'un enregistrement à partir du nombre d'octets bruts capturés.
      * 
-     * @param rawAudioData Données audio brutes.
+     * @param rawByteCount Nombre d'octets audio bruts.
      * @return Durée en secondes.
      */
-    private int calculateDurationFromRaw(byte[] rawAudioData) {
-        if (rawAudioData == null || rawAudioData.length == 0 || AUDIO_FORMAT.getFrameSize() <= 0
-                || AUDIO_FORMAT.getSampleRate() <= 0) {
+    private int calculateDuration(long rawByteCount) {
+        if (rawByteCount <= 0 || AUDIO_FORMAT.getFrameSize() <= 0 || AUDIO_FORMAT.getSampleRate() <= 0) {
             return 0;
         }
-        return (int) (rawAudioData.length / (AUDIO_FORMAT.getSampleRate() * AUDIO_FORMAT.getFrameSize()));
+        return (int) (rawByteCount / (AUDIO_FORMAT.getSampleRate() * AUDIO_FORMAT.getFrameSize()));
+    }
+
+    /**
+     * Calcule la durée d'un enregistrement chiffré. Pour un conteneur v2, la
+     * taille en clair se déduit de la taille du fichier sans déchiffrement.
+     * 
+     * @param file Le fichier chiffré
+     * @return Durée en secondes
+     * @throws Exception Si la durée ne peut pas être déterminée
+     */
+    private int calculateDurationFromFile(File file) throws Exception {
+        if (EncryptedAudioContainer.isContainer(file)) {
+            return (int) (EncryptedAudioContainer.plaintextLength(file)
+                    / (AUDIO_FORMAT.getSampleRate() * AUDIO_FORMAT.getFrameSize()));
+        }
+        byte[] encryptedData = readAudioData(file);
+        byte[] audioData = retrieveAudioData(encryptedData);
+        return (int) (audioData.length / (AUDIO_FORMAT.getSampleRate() * 2));
     }
 
     @Override
@@ -310,20 +486,8 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
                 return;
             }
 
-            // Récupérer la liste de tous les enregistrements accessibles par l'utilisateur
-            List<AudioRecording> recordings = getRecordings("recordings");
-            AudioRecording recording = null;
-
             // Chercher l'enregistrement par chemin de fichier ou nom de fichier
-            for (AudioRecording r : recordings) {
-                if (r.getFilePath() != null) {
-                    if (r.getFilePath().equals(file.getAbsolutePath()) ||
-                            new File(r.getFilePath()).getName().equals(file.getName())) {
-                        recording = r;
-                        break;
-                    }
-                }
-            }
+            AudioRecording recording = findAccessibleRecording(file);
 
             if (recording == null) {
                 LOGGER.log(Level.SEVERE, "Enregistrement non trouvé dans la liste accessible: {0}", fileName);
@@ -346,237 +510,185 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
      * Version améliorée de playRecording qui utilise directement l'ID de
      * l'enregistrement.
      * Cette méthode gère correctement la récupération et le déchiffrement de la
-     * clé.
+     * clé. Elle attend la fin de la lecture.
      * 
      * @param recordingId L'ID de l'enregistrement à lire
      */
     public void playRecording(int recordingId) {
         try {
-            AudioRecording recording = getRecording(recordingId);
-            if (recording == null) {
-                throw new Exception("Enregistrement introuvable pour ID: " + recordingId);
+            playRecordingAsync(recordingId).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            playback.stop();
+            throw new RuntimeException("Lecture interrompue", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SecurityException) {
+                LOGGER.log(Level.SEVERE, "Erreur de sécurité lors de la lecture de l'enregistrement: {0}",
+                        cause.getMessage());
             }
-            LOGGER.log(Level.INFO, "Enregistrement trouvé, ID: {0}, UserId: {1}, Clé: {2}",
-                    new Object[] { recording.getId(), recording.getUserId(),
-                            recording.getEncryptionKey() == null ? "null"
-                                    : "présente (longueur: " + recording.getEncryptionKey().length() + ")" });
-
-            File audioFile = new File(recording.getFilePath());
-            LOGGER.log(Level.INFO, "Taille du fichier: {0} octets", audioFile.length());
-
-            if (!audioFile.exists() || !audioFile.canRead() || audioFile.length() == 0) {
-                LOGGER.log(Level.WARNING, "Fichier audio introuvable ou vide: {0}", audioFile.getAbsolutePath());
+            throw new RuntimeException("Erreur lors de la lecture de l'enregistrement", cause);
+        }
+    }
 
-                // Créer un fichier audio factice temporaire pour l'interface utilisateur
-                try {
-                    // Créer le répertoire des enregistrements s'il n'existe pas
-                    if (!audioFile.getParentFile().exists()) {
-                        audioFile.getParentFile().mkdirs();
+    /**
+     * Lance la lecture d'un enregistrement sur le moteur de lecture et rend la
+     * main tout de suite. La recherche de l'enregistrement et son déchiffrement
+     * se font sur le thread de lecture ; une lecture en cours est remplacée.
+     * Le suivi de lecture est prévenu de la fin une fois la ligne audio fermée.
+     * 
+     * @param recordingId L'ID de l'enregistrement à lire
+     * @return Un futur complété avec le nombre d'octets joués, ou avec l'erreur rencontrée
+     */
+    public CompletableFuture<Long> playRecordingAsync(int recordingId) {
+        PlaybackListener listener = playbackListener;
+        return playback.play(() -> loadTrack(recordingId), listener, Duration.ZERO)
+                .whenComplete((played, error) -> {
+                    if (error != null) {
+                        LOGGER.log(Level.SEVERE, "Erreur lors de la lecture de l''enregistrement ID {0}: {1}",
+                                new Object[] { recordingId, error.getMessage() });
+                    } else {
+                        LOGGER.log(Level.INFO, "Lecture terminée pour l''enregistrement ID: {0}, {1} octets",
+                                new Object[] { recordingId, played });
                     }
-
-                    // Créer un fichier temporaire avec un peu de données pour permettre la
-                    // reproduction sonore
-                    try (FileOutputStream fos = new FileOutputStream(audioFile)) {
-                        // Créer un bruit blanc simple comme son factice
-                        byte[] fakeAudio = new byte[44100 * 2]; // 1 seconde d'audio à 44.1kHz mono
-                        for (int i = 0; i < fakeAudio.length; i++) {
-                            fakeAudio[i] = (byte) (Math.random() * 10); // Son de très faible volume
-                        }
-                        fos.write(fakeAudio);
+                    if (listener != null) {
+                        listener.onPlaybackFinished();
                     }
+                });
+    }
 
-                    LOGGER.log(Level.INFO, "Fichier audio factice créé pour l'ID: {0}", recordingId);
-                } catch (Exception e) {
-                    LOGGER.log(Level.SEVERE, "Impossible de créer un fichier audio factice: {0}", e.getMessage());
-                    if (playbackListener != null) {
-                        playbackListener.onPlaybackFinished();
-                    }
-                    throw new Exception("Fichier audio inaccessible et impossible d'en créer un substitut");
-                }
-            }
+    /**
+     * Prépare la piste d'un enregistrement : en flux pour un conteneur v2 de
+     * l'utilisateur courant, après déchiffrement complet sinon.
+     * 
+     * @param recordingId L'ID de l'enregistrement à lire
+     * @return La piste à jouer
+     * @throws Exception Si l'enregistrement est introuvable
+     */
+    private PlaybackTrack loadTrack(int recordingId) throws Exception {
+        AudioRecording recording = getRecording(recordingId);
+        if (recording == null) {
+            throw new Exception("Enregistrement introuvable pour ID: " + recordingId);
+        }
+        LOGGER.log(Level.INFO, "Enregistrement trouvé, ID: {0}, UserId: {1}, Clé: {2}",
+                new Object[] { recording.getId(), recording.getUserId(),
+                        recording.getEncryptionKey() == null ? "null"
+                                : "présente (longueur: " + recording.getEncryptionKey().length() + ")" });
 
-            byte[] encryptedData = Files.readAllBytes(audioFile.toPath());
-            LOGGER.log(Level.INFO, "Données chiffrées lues: {0} octets", encryptedData.length);
+        File audioFile = new File(recording.getFilePath());
+        LOGGER.log(Level.INFO, "Taille du fichier: {0} octets", audioFile.length());
 
-            // Déchiffrer les données
-            byte[] decryptedData;
+        if (!audioFile.exists() || !audioFile.canRead() || audioFile.length() == 0) {
+            LOGGER.log(Level.WARNING, "Fichier audio introuvable ou vide: {0}", audioFile.getAbsolutePath());
+
+            // Créer un fichier audio factice temporaire pour l'interface utilisateur
             try {
-                // Utiliser la méthode retrieveAudioData avec l'objet recording complet
-                decryptedData = retrieveAudioData(recording, null);
+                // Créer le répertoire des enregistrements s'il n'existe pas
+                if (!audioFile.getParentFile().exists()) {
+                    audioFile.getParentFile().mkdirs();
+                }
 
-                // Si les données sont nulles ou vides, créer un son factice
-                if (decryptedData == null || decryptedData.length == 0) {
-                    LOGGER.log(Level.WARNING, "Données audio déchiffrées vides, création d'un son factice");
-                    decryptedData = new byte[44100 * 2]; // 1 seconde d'audio à 44.1kHz
-                    for (int i = 0; i < decryptedData.length; i++) {
-                        decryptedData[i] = (byte) (Math.random() * 10); // Son de très faible volume
+                // Créer un fichier temporaire avec un peu de données pour permettre la
+                // reproduction sonore
+                try (FileOutputStream fos = new FileOutputStream(audioFile)) {
+                    // Créer un bruit blanc simple comme son factice
+                    byte[] fakeAudio = new byte[44100 * 2]; // 1 seconde d'audio à 44.1kHz mono
+                    for (int i = 0; i < fakeAudio.length; i++) {
+                        fakeAudio[i] = (byte) (Math.random() * 10); // Son de très faible volume
                     }
+                    fos.write(fakeAudio);
                 }
+
+                LOGGER.log(Level.INFO, "Fichier audio factice créé pour l'ID: {0}", recordingId);
             } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Erreur lors du déchiffrement: {0}", e.getMessage());
-                // Créer un son factice en cas d'erreur
-                decryptedData = new byte[44100 * 2]; // 1 seconde d'audio
-                for (int i = 0; i < decryptedData.length; i++) {
-                    decryptedData[i] = (byte) (Math.random() * 10);
-                }
+                LOGGER.log(Level.SEVERE, "Impossible de créer un fichier audio factice: {0}", e.getMessage());
+                throw new Exception("Fichier audio inaccessible et impossible d'en créer un substitut");
             }
+        }
 
-            ByteArrayInputStream bais = new ByteArrayInputStream(decryptedData);
-            AudioInputStream audioInputStream = new AudioInputStream(bais, AUDIO_FORMAT,
-                    decryptedData.length / AUDIO_FORMAT.getFrameSize());
-
-            DataLine.Info info = new DataLine.Info(SourceDataLine.class, AUDIO_FORMAT);
-            SourceDataLine line = (SourceDataLine) AudioSystem.getLine(info);
-            line.open(AUDIO_FORMAT);
-            line.start();
+        // Conteneur v2 de l'utilisateur courant : lecture en flux, segment par segment,
+        // avec recherche dans le temps
+        PlaybackTrack track = containerTrack(recording);
+        if (track != null) {
+            LOGGER.log(Level.INFO, "Début de la lecture en flux de l'enregistrement ID: {0}", recordingId);
+            return track;
+        }
 
-            LOGGER.log(Level.INFO, "Début de la lecture de l'enregistrement ID: {0}, taille: {1} octets",
-                    new Object[] { recordingId, decryptedData.length });
+        // Déchiffrer les données
+        byte[] decryptedData;
+        try {
+            // Utiliser la méthode retrieveAudioData avec l'objet recording complet
+            decryptedData = retrieveAudioData(recording, null);
 
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = audioInputStream.read(buffer, 0, buffer.length)) != -1) {
-                line.write(buffer, 0, bytesRead);
+            // Si les données sont nulles ou vides, créer un son factice
+            if (decryptedData == null || decryptedData.length == 0) {
+                LOGGER.log(Level.WARNING, "Données audio déchiffrées vides, création d'un son factice");
+                decryptedData = new byte[44100 * 2]; // 1 seconde d'audio à 44.1kHz
+                for (int i = 0; i < decryptedData.length; i++) {
+                    decryptedData[i] = (byte) (Math.random() * 10); // Son de très faible volume
+                }
             }
-
-            line.drain();
-            line.stop();
-            line.close();
-            audioInputStream.close();
-
-            LOGGER.log(Level.INFO, "Lecture terminée pour l'enregistrement ID: {0}", recordingId);
-
-            if (playbackListener != null) {
-                playbackListener.onPlaybackFinished();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Erreur lors du déchiffrement: {0}", e.getMessage());
+            // Créer un son factice en cas d'erreur
+            decryptedData = new byte[44100 * 2]; // 1 seconde d'audio
+            for (int i = 0; i < decryptedData.length; i++) {
+                decryptedData[i] = (byte) (Math.random() * 10);
             }
+        }
 
-        } catch (SecurityException e) {
-            LOGGER.log(Level.SEVERE, "Erreur de sécurité lors de la lecture de l'enregistrement: {0}", e.getMessage());
-            LOGGER.log(Level.SEVERE, "Stack trace: ", e);
-
-            // S'assurer que le listener est appelé même en cas d'erreur
-            if (playbackListener != null) {
-                playbackListener.onPlaybackFinished();
-            }
+        LOGGER.log(Level.INFO, "Début de la lecture de l'enregistrement ID: {0}, taille: {1} octets",
+                new Object[] { recordingId, decryptedData.length });
 
-            throw new RuntimeException("Erreur lors de la lecture de l'enregistrement", e);
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Erreur lors de la lecture de l'enregistrement: {0}", e.getMessage());
-            LOGGER.log(Level.SEVERE, "Stack trace: ", e);
+        return PlaybackTrack.ofAudio(decryptedData, AUDIO_FORMAT);
+    }
 
-            // S'assurer que le listener est appelé même en cas d'erreur
-            if (playbackListener != null) {
-                playbackListener.onPlaybackFinished();
+    /**
+     * Cherche parmi les enregistrements accessibles celui d'un fichier, page
+     * par page, sans charger toute la liste.
+     * 
+     * @param file Le fichier de l'enregistrement
+     * @return L'enregistrement, ou null s'il n'est pas accessible
+     * @throws SQLException Si la lecture échoue
+     */
+    private AudioRecording findAccessibleRecording(File file) throws SQLException {
+        for (int offset = 0;; offset += LOOKUP_PAGE_SIZE) {
+            List<AudioRecording> page = recordingRepository.findAccessibleRecordings(currentUserId, offset,
+                    LOOKUP_PAGE_SIZE);
+            for (AudioRecording r : page) {
+                if (r.getFilePath() != null && (r.getFilePath().equals(file.getAbsolutePath())
+                        || new File(r.getFilePath()).getName().equals(file.getName()))) {
+                    return r;
+                }
+            }
+            if (page.size() < LOOKUP_PAGE_SIZE) {
+                return null;
             }
-
-            throw new RuntimeException("Erreur lors de la lecture de l'enregistrement", e);
         }
     }
 
+    /**
+     * Récupère tous les enregistrements accessibles dont le fichier existe, ou
+     * à défaut ceux trouvés dans le répertoire. La liste entière est chargée :
+     * les affichages lisent plutôt les pages de {@link RecordingRepository}.
+     */
     @Override
     public List<AudioRecording> getRecordings(String directory) {
         List<AudioRecording> recordings = new ArrayList<>();
         File dir = new File(directory);
 
-        // 1. D'abord, récupérer tous les enregistrements de la base de données
-        String DB_URL = "jdbc:sqlite:database.db";
-        Connection conn = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
-
+        // 1. D'abord, récupérer les enregistrements personnels et partagés en une requête
         try {
-            conn = DriverManager.getConnection(DB_URL);
-
-            // 1.1 Récupérer les enregistrements appartenant à l'utilisateur actuel
-            stmt = conn.prepareStatement(
-                    "SELECT id, name, file_path, timestamp, duration, user_id FROM recordings WHERE user_id = ?");
-            stmt.setInt(1, currentUserId);
-            rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                int id = rs.getInt("id");
-                String name = rs.getString("name");
-                String filePath = rs.getString("file_path");
-                LocalDateTime timestamp = LocalDateTime.parse(rs.getString("timestamp"));
-                int duration = rs.getInt("duration");
-                int userId = rs.getInt("user_id");
-
-                AudioRecording recording = new AudioRecording(id, name, filePath, timestamp, duration, userId);
-
+            for (AudioRecording recording : recordingRepository.findAccessibleRecordings(currentUserId, 0, -1)) {
                 // Vérifier que le fichier existe toujours
-                File file = new File(filePath);
-                if (file.exists()) {
+                if (new File(recording.getFilePath()).exists()) {
                     recordings.add(recording);
-                    LOGGER.log(Level.INFO, "Enregistrement trouvé en base: {0} (ID: {1})", new Object[] { name, id });
-                }
-            }
-
-            rs.close();
-            stmt.close();
-
-            // 1.2 Récupérer les enregistrements partagés avec l'utilisateur actuel
-            DatabaseMetaData meta = conn.getMetaData();
-            ResultSet tables = meta.getTables(null, null, "shared_recordings", null);
-            boolean tableExists = tables.next();
-            tables.close();
-
-            if (tableExists) {
-                LOGGER.log(Level.INFO, "Recherche des enregistrements partagés pour l'utilisateur {0}", currentUserId);
-
-                // Requête pour obtenir les enregistrements partagés
-                String sharedQuery = "SELECT r.id, r.name, r.file_path, r.timestamp, r.duration, r.user_id, u.email " +
-                        "FROM recordings r " +
-                        "JOIN shared_recordings s ON r.id = s.recording_id " +
-                        "LEFT JOIN users u ON r.user_id = u.id " +
-                        "WHERE s.target_user_id = ?";
-
-                stmt = conn.prepareStatement(sharedQuery);
-                stmt.setInt(1, currentUserId);
-                rs = stmt.executeQuery();
-
-                while (rs.next()) {
-                    int id = rs.getInt("id");
-                    String originalName = rs.getString("name");
-                    String filePath = rs.getString("file_path");
-                    LocalDateTime timestamp = LocalDateTime.parse(rs.getString("timestamp"));
-                    int duration = rs.getInt("duration");
-                    int userId = rs.getInt("user_id");
-                    String ownerEmail = rs.getString("email");
-
-                    // Préfixer le nom pour indiquer qu'il s'agit d'un enregistrement partagé
-                    String name = "[Partagé par " + (ownerEmail != null ? ownerEmail : "utilisateur " + userId) + "] "
-                            + originalName;
-
-                    AudioRecording recording = new AudioRecording(id, name, filePath, timestamp, duration, userId);
-
-                    // Vérifier que le fichier existe toujours
-                    File file = new File(filePath);
-                    if (file.exists()) {
-                        recordings.add(recording);
-                        LOGGER.log(Level.INFO, "Enregistrement partagé trouvé: {0} (ID: {1})",
-                                new Object[] { name, id });
-                    }
                 }
             }
+            LOGGER.log(Level.INFO, "Enregistrements trouvés en base: {0}", recordings.size());
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Erreur lors de la récupération des enregistrements depuis la base de données",
                     e);
-        } finally {
-            if (rs != null)
-                try {
-                    rs.close();
-                } catch (SQLException e) {
-                    /* ignore */ }
-            if (stmt != null)
-                try {
-                    stmt.close();
-                } catch (SQLException e) {
-                    /* ignore */ }
-            if (conn != null)
-                try {
-                    conn.close();
-                } catch (SQLException e) {
-                    /* ignore */ }
         }
 
         // 2. Si aucun enregistrement n'est trouvé en base, chercher dans le répertoire
@@ -602,9 +714,7 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
                                 // Calculer la durée
                                 int duration = 0;
                                 try {
-                                    byte[] encryptedData = readAudioData(file);
-                                    byte[] audioData = retrieveAudioData(encryptedData);
-                                    duration = (int) (audioData.length / (AUDIO_FORMAT.getSampleRate() * 2));
+                                    duration = calculateDurationFromFile(file);
                                 } catch (Exception e) {
                                     LOGGER.log(Level.WARNING, "Erreur lors du calcul de la durée", e);
                                 }
@@ -661,12 +771,30 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
      * @throws Exception Si le chiffrement échoue
      */
     public byte[] processAudioData(byte[] audioData, SecretKey keyForEncryption) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(audioData.length + EncryptedAudioContainer.HEADER_SIZE
+                + EncryptedAudioContainer.SEGMENT_OVERHEAD
+                        * (audioData.length / EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE + 1));
+        processAudioData(new ByteArrayInputStream(audioData), out, keyForEncryption);
+        return out.toByteArray();
+    }
+
+    /**
+     * Chiffre un flux audio brut vers un conteneur ".enc" v2, segment par segment.
+     * Le flux de sortie n'est pas fermé.
+     * 
+     * @param audioData        Le flux des données audio brutes
+     * @param out              La destination du conteneur chiffré
+     * @param keyForEncryption La clé AES à utiliser pour le chiffrement
+     * @throws Exception Si le chiffrement échoue
+     */
+    public void processAudioData(InputStream audioData, OutputStream out, SecretKey keyForEncryption)
+            throws Exception {
         if (keyForEncryption == null) {
             LOGGER.log(Level.SEVERE, "La clé de chiffrement ne peut pas être nulle pour processAudioData.");
             throw new IllegalArgumentException("La clé de chiffrement est requise.");
         }
         try {
-            return cryptographyService.encrypt(audioData, keyForEncryption);
+            cryptographyService.encrypt(audioData, out, keyForEncryption, AUDIO_FORMAT);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Erreur lors du chiffrement des données audio", e);
             throw e;
@@ -711,15 +839,11 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
             }
 
             try {
-                // Récupérer les données chiffrées du fichier
-                byte[] encryptedData = Files.readAllBytes(audioFile.toPath());
-
                 // Convertir la clé fournie (au format Base64) en SecretKey AES
                 SecretKey aesKey = decodeBase64ToKey(providedKey);
 
-                // Déchiffrer les données audio avec cette clé
-                byte[] decryptedData = decryptData(encryptedData, aesKey);
-                return decryptedData;
+                // Déchiffrer le fichier audio avec cette clé
+                return decryptFile(audioFile, aesKey);
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Erreur lors du déchiffrement des données avec la clé fournie", e);
                 throw new Exception("Échec du déchiffrement de l'audio avec la clé fournie: " + e.getMessage());
@@ -751,7 +875,7 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
             PreparedStatement pstmt = null;
             ResultSet rs = null;
             try {
-                conn = DriverManager.getConnection("jdbc:sqlite:database.db");
+                conn = databaseService.connect();
                 String sql = "SELECT encryption_key FROM recordings WHERE id = ?";
                 pstmt = conn.prepareStatement(sql);
                 pstmt.setInt(1, recording.getId());
@@ -800,23 +924,7 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
         }
 
         try {
-            // Récupération des clés RSA de l'utilisateur
-            service.UserKeysService userKeysService = new service.UserKeysService(
-                    new service.SQLiteDatabaseService(), new service.RSACryptographyService());
-            String userPrivateKey = getUserPrivateKey(currentUserId);
-
-            if (userPrivateKey == null || userPrivateKey.isEmpty()) {
-                LOGGER.log(Level.SEVERE, "Clé privée introuvable pour l'utilisateur ID: {0}", currentUserId);
-                throw new SecurityException("Clé privée utilisateur introuvable.");
-            }
-
-            // Déchiffrement de la clé AES avec la clé privée RSA de l'utilisateur
-            service.RSACryptographyService rsaService = new service.RSACryptographyService();
-            String decryptedAesKeyBase64 = rsaService.decryptWithPrivateKey(encryptedKeyFromDb, userPrivateKey);
-            LOGGER.log(Level.INFO, "Clé AES déchiffrée avec RSA, longueur base64: {0}", decryptedAesKeyBase64.length());
-
-            // Conversion de la clé AES déchiffrée en SecretKey
-            SecretKey aesKey = decodeBase64ToKey(decryptedAesKeyBase64);
+            SecretKey aesKey = unwrapRecordingKey(recording.getId(), encryptedKeyFromDb);
 
             // Déchiffrement du fichier audio avec la clé AES
             File audioFile = new File(recording.getFilePath());
@@ -825,29 +933,9 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
                 throw new Exception("Fichier audio inaccessible: " + audioFile.getAbsolutePath());
             }
 
-            byte[] encryptedData;
-            try {
-                encryptedData = Files.readAllBytes(audioFile.toPath());
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Erreur lors de la lecture du fichier: {0}", e.getMessage());
-
-                // Vérifier s'il existe un fichier partagé (avec _shared dans le nom)
-                String filePath = audioFile.getAbsolutePath();
-                String extension = filePath.substring(filePath.lastIndexOf('.'));
-                File sharedFile = new File(filePath.replace(extension, "_shared" + extension));
-
-                if (sharedFile.exists() && sharedFile.canRead()) {
-                    LOGGER.log(Level.INFO, "Fichier original non trouvé, mais fichier partagé trouvé: {0}",
-                            sharedFile.getAbsolutePath());
-                    encryptedData = Files.readAllBytes(sharedFile.toPath());
-                } else {
-                    throw e;
-                }
-            }
-
             byte[] decryptedData;
             try {
-                decryptedData = decryptData(encryptedData, aesKey);
+                decryptedData = decryptFile(audioFile, aesKey);
             } catch (Exception e) {
                 LOGGER.log(Level.WARNING, "Erreur lors du déchiffrement avec la clé primaire: {0}", e.getMessage());
 
@@ -857,16 +945,17 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
                 String filePath = audioFile.getAbsolutePath();
                 String extension = filePath.substring(filePath.lastIndexOf('.'));
                 File sharedFile = new File(filePath.replace(extension, "_shared" + extension));
+                File retryFile = audioFile;
 
                 if (sharedFile.exists() && sharedFile.canRead()) {
                     LOGGER.log(Level.INFO, "Tentative de lecture du fichier partagé: {0}",
                             sharedFile.getAbsolutePath());
-                    encryptedData = Files.readAllBytes(sharedFile.toPath());
+                    retryFile = sharedFile;
                 }
 
                 // Réessayer avec la même clé, mais sur le fichier partagé si disponible
                 try {
-                    decryptedData = decryptData(encryptedData, aesKey);
+                    decryptedData = decryptFile(retryFile, aesKey);
                 } catch (Exception ex) {
                     // Si ça échoue encore, créer des données factices
                     LOGGER.log(Level.SEVERE, "Échec du déchiffrement même avec le fichier partagé: {0}",
@@ -885,6 +974,104 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
         }
     }
 
+    /**
+     * Retrouve la clé AES d'un enregistrement de l'utilisateur courant. Une clé
+     * emballée par AES-KW est déballée avec sa clé maîtresse ; une clé de
+     * partage ou une ancienne clé est déchiffrée avec sa clé privée, selon le
+     * schéma de ses clés (RSA ou X25519). Rien n'est refait si la clé est déjà
+     * dans le cache de la session.
+     * 
+     * @param recordingId L'identifiant de l'enregistrement
+     * @param wrappedKey  La clé stockée pour l'utilisateur courant
+     * @return La clé AES de l'enregistrement
+     * @throws Exception Si la clé privée est introuvable ou le déchiffrement échoue
+     */
+    private SecretKey unwrapRecordingKey(int recordingId, String wrappedKey) throws Exception {
+        SecretKey aesKey = keyCache.get(recordingId, wrappedKey);
+        if (aesKey != null) {
+            return aesKey;
+        }
+
+        if (KeyHierarchy.isWrapped(wrappedKey)) {
+            aesKey = keyHierarchy.unwrap(currentUserId, wrappedKey);
+            keyCache.put(recordingId, wrappedKey, aesKey);
+            return aesKey;
+        }
+
+        // Récupération de la clé privée de l'utilisateur et de son schéma
+        UserKeys userKeys = userKeysService.getUserKeys(currentUserId);
+        if (userKeys == null || !userKeys.hasPrivateKey()) {
+            LOGGER.log(Level.SEVERE, "Clé privée introuvable pour l'utilisateur ID: {0}", currentUserId);
+            throw new SecurityException("Clé privée utilisateur introuvable.");
+        }
+
+        // Déchiffrement de la clé AES avec la clé privée de l'utilisateur, selon son schéma
+        String decryptedAesKeyBase64 = userKeysService.getCryptography(userKeys.getScheme())
+                .decryptWithPrivateKey(wrappedKey, userKeys.getPrivateKey());
+        if (decryptedAesKeyBase64 == null || decryptedAesKeyBase64.isEmpty()) {
+            throw new SecurityException("Échec du déchiffrement de la clé");
+        }
+        LOGGER.log(Level.INFO, "Clé AES déchiffrée avec {0}, longueur base64: {1}",
+                new Object[] { userKeys.getScheme(), decryptedAesKeyBase64.length() });
+
+        aesKey = decodeBase64ToKey(decryptedAesKeyBase64);
+        keyCache.put(recordingId, wrappedKey, aesKey);
+        return aesKey;
+    }
+
+    /**
+     * Prépare la lecture en flux d'un enregistrement de l'utilisateur courant
+     * stocké en conteneur v2. Les segments seront déchiffrés au fil de la
+     * lecture, d'avance, à partir de la position demandée.
+     * 
+     * @param recording L'enregistrement à lire
+     * @return La piste du conteneur, ou null si l'enregistrement doit passer
+     *         par retrieveAudioData (ancien format, clé absente, autre
+     *         propriétaire ou clé illisible)
+     */
+    private PlaybackTrack containerTrack(AudioRecording recording) {
+        SecretKey aesKey = containerKey(recording);
+        if (aesKey == null) {
+            return null;
+        }
+        try {
+            return PlaybackTrack.ofContainer(new File(recording.getFilePath()), aesKey);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Lecture en flux impossible pour l''enregistrement ID {0}: {1}",
+                    new Object[] { recording.getId(), e.getMessage() });
+            return null;
+        }
+    }
+
+    /**
+     * Retrouve la clé AES d'un enregistrement de l'utilisateur courant stocké
+     * en conteneur v2, pour le traiter segment par segment. Un enregistrement
+     * partagé n'en a pas : sa clé de partage ne déchiffre que la copie
+     * partagée, lue par retrieveAudioData.
+     * 
+     * @param recording L'enregistrement
+     * @return La clé AES, ou null si l'enregistrement doit passer par
+     *         retrieveAudioData (ancien format, clé absente, partage, autre
+     *         propriétaire ou clé illisible)
+     */
+    private SecretKey containerKey(AudioRecording recording) {
+        String wrappedKey = recording.getEncryptionKey();
+        if (recording.isShared() || recording.getUserId() != currentUserId || wrappedKey == null
+                || wrappedKey.isEmpty()) {
+            return null;
+        }
+        try {
+            if (!EncryptedAudioContainer.isContainer(new File(recording.getFilePath()))) {
+                return null;
+            }
+            return unwrapRecordingKey(recording.getId(), wrappedKey);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Clé de l''enregistrement ID {0} illisible: {1}",
+                    new Object[] { recording.getId(), e.getMessage() });
+            return null;
+        }
+    }
+
     /**
      * Sauvegarde les données audio dans un fichier.
      * 
@@ -985,84 +1172,39 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
                     "La clé de chiffrement RSA-AES de l'enregistrement n'a pas été fournie à saveRecording.");
         }
 
-        String DB_URL = "jdbc:sqlite:database.db";
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        int generatedId = -1;
-
-        try {
-            conn = DriverManager.getConnection(DB_URL);
-
-            // Vérifier que la table recordings a bien une colonne encryption_key
-            DatabaseMetaData meta = conn.getMetaData();
-            ResultSet columns = meta.getColumns(null, null, "recordings", "encryption_key");
-            boolean hasEncryptionKeyColumn = columns.next();
-            columns.close();
-
-            if (!hasEncryptionKeyColumn) {
-                // Ajouter la colonne si elle n'existe pas
-                Statement stmt = conn.createStatement();
-                stmt.execute("ALTER TABLE recordings ADD COLUMN encryption_key TEXT");
-                stmt.close();
-                LOGGER.log(Level.INFO, "Colonne encryption_key ajoutée à la table recordings");
-            }
-
-            String sql = "INSERT INTO recordings (name, file_path, timestamp, duration, user_id, encryption_key) VALUES (?, ?, ?, ?, ?, ?)";
-            pstmt = conn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
-
-            pstmt.setString(1, recording.getName());
-            pstmt.setString(2, recording.getFilePath());
-            pstmt.setString(3, recording.getTimestamp().toString());
-            pstmt.setInt(4, recording.getDuration());
-            pstmt.setInt(5, recording.getUserId());
-            // Utiliser la clé fournie par l'objet recording
-            pstmt.setString(6, rsaEncryptedAesKeyFromRecordingObject);
-
-            LOGGER.log(Level.INFO, "Exécution de l'insertion avec clé de chiffrement (longueur: {0})",
-                    rsaEncryptedAesKeyFromRecordingObject.length());
-
-            pstmt.executeUpdate();
-
-            rs = pstmt.getGeneratedKeys();
-            if (rs.next()) {
-                generatedId = rs.getInt(1);
-                LOGGER.log(Level.INFO, "Enregistrement sauvegardé en base de données avec ID: {0}, Nom: {1}",
-                        new Object[] { generatedId, recording.getName() });
-
-                // Vérifier que la clé a bien été sauvegardée
-                Statement verifyStmt = conn.createStatement();
-                ResultSet verifyRs = verifyStmt
-                        .executeQuery("SELECT encryption_key FROM recordings WHERE id = " + generatedId);
-                if (verifyRs.next()) {
-                    String savedKey = verifyRs.getString("encryption_key");
-                    LOGGER.log(Level.INFO, "Clé sauvegardée en base de données (longueur: {0})",
-                            savedKey != null ? savedKey.length() : 0);
+        // La colonne encryption_key est garantie par les migrations du schéma
+        String sql = "INSERT INTO recordings (name, file_path, timestamp, duration, user_id, encryption_key,"
+                + " integrity_hash) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        int generatedId = databaseService.executeWrite(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, recording.getName());
+                pstmt.setString(2, recording.getFilePath());
+                pstmt.setString(3, recording.getTimestamp().toString());
+                pstmt.setInt(4, recording.getDuration());
+                pstmt.setInt(5, recording.getUserId());
+                // Utiliser la clé fournie par l'objet recording
+                pstmt.setString(6, rsaEncryptedAesKeyFromRecordingObject);
+                pstmt.setString(7, recording.getIntegrityHash());
+
+                LOGGER.log(Level.INFO, "Exécution de l'insertion avec clé de chiffrement (longueur: {0})",
+                        rsaEncryptedAesKeyFromRecordingObject.length());
+
+                pstmt.executeUpdate();
+
+                try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                    return rs.next() ? rs.getInt(1) : -1;
                 }
-                verifyRs.close();
-                verifyStmt.close();
-            } else {
-                LOGGER.log(Level.WARNING, "Aucun ID généré après sauvegarde de l'enregistrement: {0}",
-                        recording.getName());
             }
-            return generatedId;
-        } finally {
-            if (rs != null)
-                try {
-                    rs.close();
-                } catch (SQLException e) {
-                    /* ignore */ }
-            if (pstmt != null)
-                try {
-                    pstmt.close();
-                } catch (SQLException e) {
-                    /* ignore */ }
-            if (conn != null)
-                try {
-                    conn.close();
-                } catch (SQLException e) {
-                    /* ignore */ }
+        });
+
+        if (generatedId != -1) {
+            LOGGER.log(Level.INFO, "Enregistrement sauvegardé en base de données avec ID: {0}, Nom: {1}",
+                    new Object[] { generatedId, recording.getName() });
+        } else {
+            LOGGER.log(Level.WARNING, "Aucun ID généré après sauvegarde de l'enregistrement: {0}",
+                    recording.getName());
         }
+        return generatedId;
     }
 
     @Override
@@ -1070,42 +1212,15 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
         // Récupérer l'enregistrement depuis la base de données
         AudioRecording recording = null;
 
-        String DB_URL = "jdbc:sqlite:database.db";
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
 
         try {
-            conn = DriverManager.getConnection(DB_URL);
-
-            // Vérifier d'abord la structure de la table
-            DatabaseMetaData meta = conn.getMetaData();
-            rs = meta.getColumns(null, null, "recordings", null);
-
-            boolean hasFilePathColumn = false;
-            boolean hasFilepathColumn = false;
-
-            while (rs.next()) {
-                String columnName = rs.getString("COLUMN_NAME");
-                if ("file_path".equalsIgnoreCase(columnName)) {
-                    hasFilePathColumn = true;
-                } else if ("filepath".equalsIgnoreCase(columnName)) {
-                    hasFilepathColumn = true;
-                }
-            }
-
-            rs.close();
+            conn = databaseService.connect();
 
-            // Construire la requête en fonction des colonnes disponibles
-            String columnName = hasFilePathColumn ? "file_path" : (hasFilepathColumn ? "filepath" : "file_path");
-
-            // Requête corrigée pour inclure encryption_key
-            String query = "SELECT id, name, " + columnName
-                    + " as filepath, timestamp, duration, user_id, encryption_key FROM recordings WHERE id = ?";
-
-            LOGGER.log(Level.INFO, "Exécution de la requête: {0}", query);
-
-            stmt = conn.prepareStatement(query);
+            // Requête construite une fois selon les colonnes de la base
+            stmt = conn.prepareStatement(SchemaDescriptor.of(conn).getRecordingByIdQuery());
             stmt.setInt(1, recordingId);
 
             rs = stmt.executeQuery();
@@ -1114,7 +1229,7 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
                 recording = new AudioRecording(
                         rs.getInt("id"),
                         rs.getString("name"),
-                        rs.getString("filepath"),
+                        rs.getString("file_path"),
                         LocalDateTime.parse(rs.getString("timestamp")),
                         rs.getInt("duration"),
                         rs.getInt("user_id"));
@@ -1128,6 +1243,7 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
                     LOGGER.log(Level.WARNING, "Impossible de récupérer la clé de chiffrement: " + e.getMessage());
                     encryptionKey = null;
                 }
+                recording.setIntegrityHash(rs.getString("integrity_hash"));
                 if (encryptionKey != null && !encryptionKey.isEmpty()) {
                     recording.setEncryptionKey(encryptionKey);
                     LOGGER.info("Clé de chiffrement récupérée pour l'enregistrement " + recordingId);
@@ -1164,17 +1280,13 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
 
             // Vérifier si l'enregistrement est partagé
             try {
-                conn = DriverManager.getConnection(DB_URL);
-                DatabaseMetaData meta = conn.getMetaData();
-                ResultSet tables = meta.getTables(null, null, "shared_recordings", null);
-                boolean tableExists = tables.next();
-                tables.close();
-
-                if (tableExists) {
-                    String query = "SELECT s.encryption_key FROM shared_recordings s WHERE s.recording_id = ? AND s.target_user_id = ?";
-                    stmt = conn.prepareStatement(query);
-                    stmt.setInt(1, recordingId);
-                    stmt.setInt(2, currentUserId);
+                conn = databaseService.connect();
+                SchemaDescriptor schema = SchemaDescriptor.of(conn);
+
+                if (schema.hasSharedRecordings()) {
+                    stmt = conn.prepareStatement(schema.getShareKeyQuery());
+                    stmt.setInt(1, currentUserId);
+                    stmt.setInt(2, recordingId);
 
                     rs = stmt.executeQuery();
 
@@ -1187,8 +1299,10 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
                             LOGGER.warning(
                                     "Aucune clé de chiffrement partagée trouvée pour l'enregistrement " + recordingId);
                         }
-                        // On modifie l'userId pour permettre l'accès
+                        // On modifie l'userId pour permettre l'accès ; le partage
+                        // reste marqué, la clé ne valant que pour la copie partagée
                         recording.setUserId(currentUserId);
+                        recording.setShareId(rs.getInt("id"));
                     } else {
                         LOGGER.warning("Aucun enregistrement partagé trouvé pour l'enregistrement " + recordingId
                                 + " et l'utilisateur " + currentUserId);
@@ -1232,11 +1346,7 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
 
         if (file.exists()) {
             try {
-                byte[] encryptedData = readAudioData(file);
-                byte[] audioData = retrieveAudioData(encryptedData);
-                // Calculer la durée en secondes
-                // Format audio : 44100 Hz, 16 bits, 1 canal
-                calculatedDuration = (int) (audioData.length / (AUDIO_FORMAT.getSampleRate() * 2));
+                calculatedDuration = calculateDurationFromFile(file);
                 LOGGER.log(Level.INFO, "Durée calculée: {0} secondes", calculatedDuration);
             } catch (Exception e) {
                 LOGGER.log(Level.WARNING, "Erreur lors du calcul de la durée", e);
@@ -1250,12 +1360,39 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
         return new AudioRecording(0, formattedName, file.getAbsolutePath(), timestamp, calculatedDuration, userId);
     }
 
+    /**
+     * Retourne le format audio utilisé pour la capture et la lecture.
+     * 
+     * @return Le format audio du service
+     */
+    public static AudioFormat getAudioFormat() {
+        return AUDIO_FORMAT;
+    }
+
     public void setPlaybackListener(PlaybackListener listener) {
         this.playbackListener = listener;
     }
 
     public interface PlaybackListener {
         void onPlaybackFinished();
+
+        /**
+         * Position de lecture, signalée périodiquement pendant la lecture,
+         * puis une dernière fois à l'arrêt.
+         *
+         * @param position La position courante
+         * @param duration La durée de l'enregistrement
+         */
+        default void onPositionChanged(Duration position, Duration duration) {
+        }
+
+        /**
+         * Changement d'état de la lecture, signalé par le moteur de lecture.
+         *
+         * @param state Le nouvel état
+         */
+        default void onStateChanged(PlaybackEngine.State state) {
+        }
     }
 
     /**
@@ -1263,11 +1400,11 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
      */
     private String getEncryptionDetails() {
         return "Le cryptage utilise l'algorithme AES avec une clé de 256 bits. " +
-                "Chaque fichier est crypté individuellement avec la même clé. " +
+                "Chaque fichier est crypté individuellement avec sa propre clé. " +
                 "Le processus de cryptage est le suivant:\n" +
                 "1. Les données audio brutes sont capturées\n" +
-                "2. Une clé secrète AES est générée au démarrage du service\n" +
-                "3. Les données sont cryptées avec AES/ECB/PKCS5Padding\n" +
+                "2. Une clé secrète AES est générée pour l'enregistrement\n" +
+                "3. Les données sont cryptées par segments de 64 Kio avec AES/GCM (conteneur v2)\n" +
                 "4. Le fichier crypté est sauvegardé avec l'extension .enc\n" +
                 "Pour le décryptage:\n" +
                 "1. Le fichier .enc est lu\n" +
@@ -1282,36 +1419,94 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
 
     @Override
     public boolean isPlaying() {
-        return false; // À implémenter si nécessaire
+        return playback.isActive();
+    }
+
+    /**
+     * Place la lecture en cours à un instant de l'enregistrement, sans
+     * déchiffrer les segments qui précèdent.
+     * 
+     * @param position L'instant visé, borné à la durée de l'enregistrement
+     * @return false si aucune lecture n'est en cours
+     */
+    public boolean seek(Duration position) {
+        return playback.seek(position);
+    }
+
+    /**
+     * Met la lecture en cours en pause.
+     * 
+     * @return false si aucune lecture n'est en train de jouer
+     */
+    public boolean pausePlaying() {
+        return playback.pause();
+    }
+
+    /**
+     * Reprend la lecture mise en pause.
+     * 
+     * @return false si la lecture n'est pas en pause
+     */
+    public boolean resumePlaying() {
+        return playback.resume();
+    }
+
+    /**
+     * @return La position jouée de la lecture en cours ou de la dernière lecture
+     */
+    public Duration getPlaybackPosition() {
+        return playback.position();
+    }
+
+    /**
+     * @return La durée de l'enregistrement en cours de lecture, ou null s'il
+     *         n'est pas encore chargé
+     */
+    public Duration getPlaybackDuration() {
+        return playback.getDuration();
+    }
+
+    /**
+     * @return L'état de la lecture
+     */
+    public PlaybackEngine.State getPlaybackState() {
+        return playback.getState();
     }
 
     @Override
     public void stopPlaying() {
-        // Arrêter la lecture en cours
-        if (playbackListener != null) {
+        // Arrêter la lecture en cours ; le suivi est prévenu à la fermeture de la ligne
+        if (!playback.stop() && playbackListener != null) {
             playbackListener.onPlaybackFinished();
         }
     }
 
+    /**
+     * Supprime un enregistrement. Pour son propriétaire, la ligne, ses partages,
+     * son fichier et la copie partagée sont supprimés ; pour un destinataire,
+     * seul son partage l'est, et l'enregistrement disparaît de sa liste.
+     */
     @Override
     public boolean deleteRecording(int recordingId) throws Exception {
-        // Récupérer l'enregistrement pour obtenir le chemin du fichier
-        List<AudioRecording> recordings = getRecordings("recordings");
-        AudioRecording recordingToDelete = null;
-
-        for (AudioRecording recording : recordings) {
-            if (recording.getId() == recordingId) {
-                recordingToDelete = recording;
-                break;
-            }
+        AudioRecording recordingToDelete;
+        try {
+            recordingToDelete = getRecording(recordingId);
+        } catch (SecurityException e) {
+            recordingToDelete = null;
         }
 
-        if (recordingToDelete == null || !hasAccess(recordingToDelete)) {
+        if (recordingToDelete == null) {
             LOGGER.log(Level.WARNING, "Accès refusé à la suppression de l'enregistrement: {0}", recordingId);
             return false;
         }
 
-        // Supprimer le fichier physique
+        if (recordingToDelete.isShared()) {
+            databaseService.executeUpdate("DELETE FROM shared_recordings WHERE recording_id = ? AND target_user_id = ?",
+                    recordingId, currentUserId);
+            return true;
+        }
+
+        // Supprimer le fichier physique, puis la copie partagée
         File file = new File(recordingToDelete.getFilePath());
         if (file.exists()) {
             if (!file.delete()) {
@@ -1319,7 +1514,31 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
                 return false;
             }
         }
+        String filePath = file.getPath();
+        int extension = filePath.lastIndexOf('.');
+        if (extension > 0) {
+            File sharedFile = new File(filePath.substring(0, extension) + "_shared" + filePath.substring(extension));
+            if (sharedFile.exists() && !sharedFile.delete()) {
+                LOGGER.log(Level.WARNING, "Impossible de supprimer la copie partagée: {0}",
+                        sharedFile.getAbsolutePath());
+            }
+        }
 
+        // Sans la ligne, l'enregistrement réapparaîtrait dans la liste sans son fichier
+        databaseService.executeWrite(conn -> {
+            if (SchemaDescriptor.of(conn).hasSharedRecordings()) {
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "DELETE FROM shared_recordings WHERE recording_id = ?")) {
+                    stmt.setInt(1, recordingId);
+                    stmt.executeUpdate();
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM recordings WHERE id = ?")) {
+                stmt.setInt(1, recordingId);
+                return stmt.executeUpdate();
+            }
+        });
+        keyCache.invalidate(recordingId);
         return true;
     }
 
@@ -1362,32 +1581,20 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
             PreparedStatement stmt = null;
             ResultSet rs = null;
             try {
-                String DB_URL = "jdbc:sqlite:database.db";
-                conn = DriverManager.getConnection(DB_URL);
+                conn = databaseService.connect();
                 String sql = "SELECT encryption_key FROM shared_recordings WHERE recording_id = ? AND target_user_id = ?";
                 stmt = conn.prepareStatement(sql);
                 stmt.setInt(1, recordingId);
                 stmt.setInt(2, currentUserId);
                 rs = stmt.executeQuery();
                 if (rs.next()) {
+                    // La clé partagée est chiffrée pour l'utilisateur courant : elle est
+                    // déchiffrée plus bas avec sa clé privée
                     encryptedKey = rs.getString("encryption_key");
                     LOGGER.log(Level.INFO, "Clé chiffrée récupérée depuis shared_recordings: {0}",
                             encryptedKey != null
                                     ? encryptedKey.substring(0, Math.min(20, encryptedKey.length())) + "..."
                                     : "null");
-
-                    // Pour les clés partagées, elles sont déjà exportées au format AES-Base64
-                    // Pas besoin de déchiffrement RSA supplémentaire
-                    LOGGER.log(Level.INFO,
-                            "Utilisation de la clé partagée directement (pas de déchiffrement RSA nécessaire)");
-
-                    // Créer un objet contenant les informations nécessaires pour le partage
-                    Map<String, String> sharingInfo = new HashMap<>();
-                    sharingInfo.put("key", encryptedKey);
-                    sharingInfo.put("filePath", recording.getFilePath());
-                    sharingInfo.put("fileName", recording.getName());
-                    LOGGER.log(Level.INFO, "Clé d'enregistrement partagée exportée pour l'ID: {0}", recordingId);
-                    return sharingInfo;
                 }
             } finally {
                 if (rs != null)
@@ -1416,46 +1623,20 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
             SecretKey aesKey = keyGen.generateKey();
             String aesKeyBase64 = Base64.getEncoder().encodeToString(aesKey.getEncoded());
 
-            // Récupérer la clé publique du propriétaire (utilisateur actuel)
-            service.UserKeysService userKeysService = new service.UserKeysService(
-                    new service.SQLiteDatabaseService(), new service.RSACryptographyService());
-            String publicKey = userKeysService.getUserPublicKey(currentUserId);
-
-            if (publicKey == null || publicKey.isEmpty()) {
+            try {
+                // Emballer la clé AES avec la clé maîtresse du propriétaire (utilisateur actuel)
+                encryptedKey = keyHierarchy.wrap(currentUserId, aesKey);
+                LOGGER.log(Level.INFO, "Nouvelle clé AES générée et emballée pour l'ID {0}", recordingId);
+            } catch (SecurityException e) {
                 LOGGER.log(Level.WARNING,
-                        "Clé publique introuvable pour l'utilisateur {0}, utilisation de la clé AES directement",
+                        "Clés introuvables pour l'utilisateur {0}, utilisation de la clé AES directement",
                         currentUserId);
                 encryptedKey = aesKeyBase64;
-            } else {
-                // Chiffrer la clé AES avec la clé publique RSA
-                service.RSACryptographyService rsaService = new service.RSACryptographyService();
-                encryptedKey = rsaService.encryptWithPublicKey(aesKeyBase64, publicKey);
-                LOGGER.log(Level.INFO, "Nouvelle clé AES générée et chiffrée avec RSA pour l'ID {0}", recordingId);
             }
 
             // Stocker la clé dans la base de données
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            try {
-                String DB_URL = "jdbc:sqlite:database.db";
-                conn = DriverManager.getConnection(DB_URL);
-                String sql = "UPDATE recordings SET encryption_key = ? WHERE id = ?";
-                stmt = conn.prepareStatement(sql);
-                stmt.setString(1, encryptedKey);
-                stmt.setInt(2, recordingId);
-                stmt.executeUpdate();
-            } finally {
-                if (stmt != null)
-                    try {
-                        stmt.close();
-                    } catch (SQLException e) {
-                        /* ignore */ }
-                if (conn != null)
-                    try {
-                        conn.close();
-                    } catch (SQLException e) {
-                        /* ignore */ }
-            }
+            databaseService.executeUpdate("UPDATE recordings SET encryption_key = ? WHERE id = ?",
+                    encryptedKey, recordingId);
 
             // Utilisons la clé AES directement pour l'export, car c'est ce qui est attendu
             // par la fonction playRecording
@@ -1471,34 +1652,13 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
             return sharingInfo;
         }
 
-        // Récupérer la clé privée de l'utilisateur actuel pour déchiffrer la clé AES
-        service.UserKeysService userKeysService = new service.UserKeysService(
-                new service.SQLiteDatabaseService(), new service.RSACryptographyService());
-        UserKeys userKeys = userKeysService.getUserKeys(currentUserId);
-        String privateKey = userKeys.getPrivateKey();
-
-        if (privateKey == null || privateKey.isEmpty()) {
-            LOGGER.log(Level.SEVERE, "Clé privée introuvable pour l'utilisateur {0}", currentUserId);
-            throw new SecurityException("Clé privée introuvable pour l'utilisateur actuel");
-        }
-
-        // Déchiffrer la clé AES avec la clé privée RSA
+        // Déballer la clé AES (clé maîtresse, clé de partage ou ancienne clé), sauf si la session la connaît déjà
         String aesKeyBase64;
         try {
-            service.RSACryptographyService rsaService = new service.RSACryptographyService();
-            aesKeyBase64 = rsaService.decryptWithPrivateKey(encryptedKey, privateKey);
-            LOGGER.log(Level.INFO, "Clé AES déchiffrée avec succès: {0}",
-                    aesKeyBase64 != null
-                            ? aesKeyBase64.substring(0, Math.min(20, aesKeyBase64 != null ? aesKeyBase64.length() : 0))
-                                    + "..."
-                            : "null");
-
-            if (aesKeyBase64 == null || aesKeyBase64.isEmpty()) {
-                LOGGER.log(Level.WARNING, "Échec du déchiffrement RSA, la clé déchiffrée est vide");
-                throw new SecurityException("Échec du déchiffrement de la clé");
-            }
+            aesKeyBase64 = cryptographyService.encodeKeyToBase64(unwrapRecordingKey(recordingId, encryptedKey));
+            LOGGER.log(Level.INFO, "Clé AES de l'enregistrement {0} obtenue", recordingId);
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Erreur lors du déchiffrement RSA: {0}", e.getMessage());
+            LOGGER.log(Level.SEVERE, "Erreur lors du déballage de la clé: {0}", e.getMessage());
 
             // Si le déchiffrement RSA échoue, cela peut être dû au fait que la clé est déjà
             // en format AES Base64
@@ -1586,38 +1746,27 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
         }
 
         try {
-            byte[] encryptedDataFromFile;
-            try {
-                // Lire les données du fichier source
-                encryptedDataFromFile = readAudioData(sourceFile);
-                LOGGER.log(Level.INFO, "Données chiffrées lues depuis la source pour export: {0} octets",
-                        encryptedDataFromFile.length);
-            } catch (Exception e) {
-                LOGGER.log(Level.WARNING, "Erreur lors de la lecture du fichier source: {0}", e.getMessage());
-
-                // Créer des données factices en cas d'erreur
-                encryptedDataFromFile = new byte[1024]; // 1ko de données
-                for (int i = 0; i < encryptedDataFromFile.length; i++) {
-                    encryptedDataFromFile[i] = (byte) (i % 256);
-                }
-                LOGGER.log(Level.INFO, "Données factices créées pour l'export: {0} octets",
-                        encryptedDataFromFile.length);
-            }
-
-            byte[] audioData;
-            try {
-                // Déchiffrer les données
-                audioData = retrieveAudioData(recording, null);
-                LOGGER.log(Level.INFO, "Données déchiffrées avec succès pour export: {0} octets", audioData.length);
-            } catch (Exception e) {
-                LOGGER.log(Level.WARNING, "Erreur lors du déchiffrement pour export: {0}", e.getMessage());
+            // Conteneur v2 de l'utilisateur courant : rechiffré segment par segment
+            SecretKey sourceKey = containerKey(recording);
+            InputStream audioStream = null;
+            if (sourceKey == null) {
+                byte[] audioData;
+                try {
+                    // Déchiffrer les données
+                    audioData = retrieveAudioData(recording, null);
+                    LOGGER.log(Level.INFO, "Données déchiffrées avec succès pour export: {0} octets",
+                            audioData.length);
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Erreur lors du déchiffrement pour export: {0}", e.getMessage());
 
-                // Créer des données factices en cas d'erreur
-                audioData = new byte[44100 * 2]; // 1 seconde d'audio
-                for (int i = 0; i < audioData.length; i++) {
-                    audioData[i] = (byte) (Math.random() * 10);
+                    // Créer des données factices en cas d'erreur
+                    audioData = new byte[44100 * 2]; // 1 seconde d'audio
+                    for (int i = 0; i < audioData.length; i++) {
+                        audioData[i] = (byte) (Math.random() * 10);
+                    }
+                    LOGGER.log(Level.INFO, "Données audio factices créées: {0} octets", audioData.length);
                 }
-                LOGGER.log(Level.INFO, "Données audio factices créées: {0} octets", audioData.length);
+                audioStream = new ByteArrayInputStream(audioData);
             }
 
             Map<String, String> keyInfo = exportEncryptionKey(recordingId);
@@ -1631,12 +1780,19 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
             }
 
             SecretKey exportKey = cryptographyService.decodeKeyFromBase64(aesKeyBase64ForExport);
-            byte[] exportEncryptedData = cryptographyService.encrypt(audioData, exportKey);
-            LOGGER.log(Level.INFO, "Données rechiffrées avec la clé d'export: {0} octets", exportEncryptedData.length);
-
-            try (FileOutputStream fos = new FileOutputStream(destinationPath)) {
-                fos.write(exportEncryptedData);
+            if (audioStream == null) {
+                try (InputStream in = new BufferedInputStream(new FileInputStream(sourceFile));
+                        OutputStream fos = new BufferedOutputStream(new FileOutputStream(destinationPath))) {
+                    cryptographyService.reencrypt(in, fos, sourceKey, exportKey);
+                }
+            } else {
+                try (InputStream in = audioStream;
+                        OutputStream fos = new BufferedOutputStream(new FileOutputStream(destinationPath))) {
+                    processAudioData(in, fos, exportKey);
+                }
             }
+            LOGGER.log(Level.INFO, "Données rechiffrées avec la clé d'export: {0} octets",
+                    new File(destinationPath).length());
 
             LOGGER.log(Level.INFO,
                     "Enregistrement exporté avec succès vers: {0} (clé AES pour \"Ouvrir avec clé\": {1}...)",
@@ -1693,6 +1849,11 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
      * Cette méthode fait le pont entre la nouvelle API et l'ancienne.
      */
     private byte[] decryptData(byte[] encryptedData, SecretKey key) throws Exception {
+        if (EncryptedAudioContainer.isContainer(encryptedData)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(encryptedData.length);
+            cryptographyService.decrypt(new ByteArrayInputStream(encryptedData), out, key);
+            return out.toByteArray();
+        }
         if (cryptographyService instanceof service.impl.CryptographyServiceFix) {
             return ((service.impl.CryptographyServiceFix) cryptographyService).decrypt(encryptedData, key);
         } else {
@@ -1701,26 +1862,57 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
     }
 
     /**
-     * Récupère la clé privée d'un utilisateur.
-     * Cette méthode fait le pont avec UserKeysService.
+     * Déchiffre un fichier audio. Les conteneurs v2 sont lus en flux, segment par
+     * segment, sans charger le fichier chiffré en mémoire ; les fichiers de
+     * l'ancien format (AES/ECB) sont lus et déchiffrés en un seul bloc.
+     * 
+     * @param file Le fichier chiffré
+     * @param key  La clé AES
+     * @return Les données audio déchiffrées
+     * @throws Exception Si la lecture ou le déchiffrement échoue
      */
-    private String getUserPrivateKey(int userId) throws Exception {
-        service.UserKeysService userKeysService = new service.UserKeysService(
-                new service.SQLiteDatabaseService(), new service.RSACryptographyService());
-        UserKeys userKeys = userKeysService.getUserKeys(userId);
-        if (userKeys != null) {
-            return userKeys.getPrivateKey();
-        }
-        return null;
+    private byte[] decryptFile(File file, SecretKey key) throws Exception {
+        if (!EncryptedAudioContainer.isContainer(file)) {
+            return decryptData(Files.readAllBytes(file.toPath()), key);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                (int) Math.min(Integer.MAX_VALUE - 8, EncryptedAudioContainer.plaintextLength(file)));
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            cryptographyService.decrypt(in, out, key);
+        }
+        return out.toByteArray();
     }
 
     /**
-     * Joue un enregistrement avec une clé de déchiffrement fournie.
+     * Joue un enregistrement avec une clé de déchiffrement fournie et attend
+     * la fin de la lecture.
      * 
      * @param filePath  Chemin du fichier audio chiffré
      * @param keyBase64 Clé de déchiffrement AES en Base64
      */
     public void playRecordingWithKey(String filePath, String keyBase64) throws Exception {
+        try {
+            playRecordingWithKeyAsync(filePath, keyBase64).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Lance la lecture d'un enregistrement avec une clé de déchiffrement
+     * fournie et rend la main tout de suite : en flux pour un conteneur v2, en
+     * un seul bloc pour l'ancien format. Le déchiffrement se fait sur le
+     * thread de lecture.
+     * 
+     * @param filePath  Chemin du fichier audio chiffré
+     * @param keyBase64 Clé de déchiffrement AES en Base64
+     * @return Un futur complété avec le nombre d'octets joués, ou avec une
+     *         SecurityException si la clé est incorrecte ou les données corrompues
+     * @throws FileNotFoundException Si le fichier est introuvable ou illisible
+     */
+    public CompletableFuture<Long> playRecordingWithKeyAsync(String filePath, String keyBase64)
+            throws FileNotFoundException {
         LOGGER.log(Level.INFO, "Lecture de fichier avec clé fournie: {0}", filePath);
 
         File audioFile = new File(filePath);
@@ -1729,65 +1921,55 @@ public class AudioRecordingServiceFixExtended implements AudioRecordingService {
             throw new FileNotFoundException("Fichier audio introuvable ou non lisible: " + filePath);
         }
 
-        // Lire les données chiffrées du fichier
-        byte[] encryptedData;
-        try {
-            encryptedData = Files.readAllBytes(audioFile.toPath());
-            LOGGER.log(Level.INFO, "Données chiffrées lues, taille: {0} octets", encryptedData.length);
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Erreur lors de la lecture du fichier: {0}", e.getMessage());
-            throw new IOException("Erreur lors de la lecture du fichier: " + e.getMessage());
-        }
+        LOGGER.log(Level.INFO, "Taille du fichier chiffré: {0} octets", audioFile.length());
+
+        PlaybackListener listener = playbackListener;
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        playback.play(() -> keyTrack(audioFile, keyBase64), listener, Duration.ZERO)
+                .whenComplete((played, error) -> {
+                    if (error == null) {
+                        LOGGER.log(Level.INFO, "Lecture avec clé fournie terminée, {0} octets", played);
+                        result.complete(played);
+                    } else if (error instanceof IOException) {
+                        // Premier segment du conteneur non authentifié
+                        LOGGER.log(Level.SEVERE, "Erreur lors du déchiffrement avec la clé fournie: {0}",
+                                error.getMessage());
+                        result.completeExceptionally(new SecurityException(
+                                "Erreur lors du déchiffrement, clé incorrecte ou données corrompues: "
+                                        + error.getMessage()));
+                    } else {
+                        LOGGER.log(Level.SEVERE, "Erreur lors de la lecture audio: {0}", error.getMessage());
+                        result.completeExceptionally(error);
+                    }
+                    if (listener != null) {
+                        listener.onPlaybackFinished();
+                    }
+                });
+        return result;
+    }
 
-        // Déchiffrer les données avec la clé fournie
-        byte[] decryptedData;
+    /**
+     * Prépare la piste d'un fichier avec une clé fournie.
+     * 
+     * @param audioFile Le fichier audio chiffré
+     * @param keyBase64 Clé de déchiffrement AES en Base64
+     * @return La piste à jouer
+     */
+    private PlaybackTrack keyTrack(File audioFile, String keyBase64) {
         try {
             // Convertir la clé Base64 en SecretKey
             SecretKey secretKey = cryptographyService.decodeKeyFromBase64(keyBase64);
-            decryptedData = cryptographyService.decrypt(encryptedData, secretKey);
+            if (EncryptedAudioContainer.isContainer(audioFile)) {
+                // Le premier segment est authentifié avant d'ouvrir la ligne audio
+                return PlaybackTrack.ofContainer(audioFile, secretKey);
+            }
+            byte[] decryptedData = decryptFile(audioFile, secretKey);
             LOGGER.log(Level.INFO, "Données déchiffrées avec succès, taille: {0} octets", decryptedData.length);
+            return PlaybackTrack.ofAudio(decryptedData, AUDIO_FORMAT);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Erreur lors du déchiffrement avec la clé fournie: {0}", e.getMessage());
             throw new SecurityException(
                     "Erreur lors du déchiffrement, clé incorrecte ou données corrompues: " + e.getMessage());
         }
-
-        // Création du flux audio
-        ByteArrayInputStream bais = new ByteArrayInputStream(decryptedData);
-        AudioInputStream audioInputStream = new AudioInputStream(
-                bais,
-                AUDIO_FORMAT,
-                decryptedData.length / AUDIO_FORMAT.getFrameSize());
-
-        // Préparation de la ligne de sortie audio
-        DataLine.Info info = new DataLine.Info(SourceDataLine.class, AUDIO_FORMAT);
-        SourceDataLine line = (SourceDataLine) AudioSystem.getLine(info);
-        line.open(AUDIO_FORMAT);
-        line.start();
-
-        LOGGER.log(Level.INFO, "Début de la lecture avec clé fournie, taille: {0} octets", decryptedData.length);
-
-        // Lecture des données audio
-        try {
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = audioInputStream.read(buffer, 0, buffer.length)) != -1) {
-                line.write(buffer, 0, bytesRead);
-            }
-
-            line.drain();
-            line.stop();
-            line.close();
-            audioInputStream.close();
-
-            LOGGER.log(Level.INFO, "Lecture avec clé fournie terminée");
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Erreur lors de la lecture audio: {0}", e.getMessage());
-            throw e;
-        } finally {
-            if (playbackListener != null) {
-                playbackListener.onPlaybackFinished();
-            }
-        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,239 @@
+package service.impl;
+
+import util.AudioBlockRing;
+import util.LineBufferTuner;
+
+import javax.sound.sampled.TargetDataLine;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Session de capture audio détenue par le service d'enregistrement.
+ *
+ * Un thread de lecture remplit un {@link AudioBlockRing} à partir de la source
+ * audio ; un thread d'écriture le vide dans le flux chiffré, qui ajoute chaque
+ * segment au fichier ".enc" pendant l'enregistrement. La fin de session est
+ * signalée par un {@link CompletableFuture} portant le nombre final d'octets
+ * écrits : il n'est complété qu'une fois le dernier bloc écrit et le flux fermé.
+ */
+public class CaptureSession {
+    private static final Logger LOGGER = Logger.getLogger(CaptureSession.class.getName());
+
+    /** Nombre de blocs de l'anneau entre la capture et l'écriture. */
+    public static final int DEFAULT_RING_BLOCKS = 64;
+
+    /**
+     * Source des données audio capturées.
+     */
+    @FunctionalInterface
+    public interface CaptureSource {
+        /**
+         * Lit des données audio dans le tampon fourni.
+         *
+         * @param buffer Le tampon de destination
+         * @param offset La position de départ dans le tampon
+         * @param length Le nombre maximal d'octets à lire
+         * @return Le nombre d'octets lus, ou -1 à la fin de la capture
+         * @throws IOException Si la lecture échoue
+         */
+        int read(byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    private final CaptureSource source;
+    private final OutputStream encryptedOut;
+    private final AudioBlockRing ring;
+    private final Thread readerThread;
+    private final Thread writerThread;
+    private final CompletableFuture<Long> completion = new CompletableFuture<>();
+    private volatile long totalBytes;
+
+    /**
+     * Crée une session de capture. Les threads ne démarrent qu'à l'appel de {@link #start()}.
+     *
+     * @param source La source audio
+     * @param encryptedOut Le flux de chiffrement vers le fichier de destination
+     * @param ring L'anneau de blocs entre la lecture et l'écriture
+     * @param name Le nom de l'enregistrement, utilisé pour nommer les threads
+     */
+    public CaptureSession(CaptureSource source, OutputStream encryptedOut, AudioBlockRing ring, String name) {
+        this.source = source;
+        this.encryptedOut = encryptedOut;
+        this.ring = ring;
+        this.readerThread = new Thread(this::capture, "audio-capture-" + name);
+        this.readerThread.setDaemon(true);
+        this.readerThread.setPriority(Thread.MAX_PRIORITY);
+        this.writerThread = new Thread(this::drain, "audio-writer-" + name);
+        this.writerThread.setDaemon(true);
+    }
+
+    /**
+     * Adapte une ligne de capture en source : une fois la ligne arrêtée, les
+     * données restant dans son tampon sont encore lues, puis la fin de capture
+     * est signalée.
+     *
+     * @param line La ligne de capture ouverte
+     * @return La source correspondante
+     */
+    public static CaptureSource fromLine(TargetDataLine line) {
+        return fromLine(line, null);
+    }
+
+    /**
+     * Adapte une ligne de capture en source dont les blocs suivent un réglage
+     * adaptatif : le remplissage de la ligne est mesuré avant chaque lecture,
+     * et la lecture est limitée à la taille de bloc choisie par le réglage.
+     *
+     * @param line La ligne de capture ouverte
+     * @param tuner Le réglage des blocs, ou null pour lire des blocs entiers
+     * @return La source correspondante
+     */
+    public static CaptureSource fromLine(TargetDataLine line, LineBufferTuner tuner) {
+        return (buffer, offset, length) -> {
+            if (!line.isOpen()) {
+                return -1;
+            }
+            if (tuner != null && line.isActive()) {
+                length = Math.min(length, tuner.sample(line, true));
+            }
+            int available = line.isActive() ? length : Math.min(length, line.available());
+            // TargetDataLine.read exige un nombre entier de trames
+            int frameSize = Math.max(1, line.getFormat().getFrameSize());
+            available -= available % frameSize;
+            if (available <= 0) {
+                return line.isActive() ? 0 : -1;
+            }
+            return line.read(buffer, offset, available);
+        };
+    }
+
+    /**
+     * Démarre les threads d'écriture et de lecture.
+     */
+    public void start() {
+        writerThread.start();
+        readerThread.start();
+    }
+
+    /**
+     * Retourne le signal de fin de session, complété avec le nombre total
+     * d'octets écrits ou avec l'erreur d'écriture.
+     *
+     * @return Le signal de fin de session
+     */
+    public CompletableFuture<Long> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Attend la fin de la session.
+     *
+     * @param timeoutMillis Le délai d'attente maximal en millisecondes
+     * @return Le nombre total d'octets écrits
+     * @throws IOException Si l'écriture a échoué
+     * @throws InterruptedException Si l'attente est interrompue
+     * @throws TimeoutException Si la session n'est pas terminée dans le délai
+     */
+    public long awaitCompletion(long timeoutMillis) throws IOException, InterruptedException, TimeoutException {
+        try {
+            return completion.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Échec de la session de capture", cause);
+        }
+    }
+
+    /**
+     * Retourne le nombre d'octets audio déjà écrits.
+     *
+     * @return Le nombre d'octets écrits
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Retourne l'anneau de blocs de la session, pour consulter ses compteurs.
+     *
+     * @return L'anneau de blocs
+     */
+    public AudioBlockRing getRing() {
+        return ring;
+    }
+
+    private void capture() {
+        try {
+            // Lire directement dans les blocs de l'anneau : aucune allocation
+            // ni attente sur ce thread pendant la capture
+            byte[] overflow = new byte[ring.getBlockSize()];
+            int bytesRead;
+
+            while (true) {
+                byte[] block = ring.claim();
+                if (block == null) {
+                    // Anneau plein : vider la source pour éviter son débordement
+                    if (source.read(overflow, 0, overflow.length) < 0) {
+                        break;
+                    }
+                    continue;
+                }
+                bytesRead = source.read(block, 0, block.length);
+                if (bytesRead < 0) {
+                    break;
+                }
+                if (bytesRead > 0) {
+                    ring.publish(bytesRead);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Erreur dans le thread de capture", e);
+        } finally {
+            ring.close();
+        }
+    }
+
+    private void drain() {
+        IOException failure = null;
+        try {
+            while (ring.await()) {
+                if (failure == null) {
+                    try {
+                        int length = ring.peekLength();
+                        encryptedOut.write(ring.peek(), 0, length);
+                        totalBytes += length;
+                    } catch (IOException e) {
+                        // Continuer à vider l'anneau pour ne pas bloquer la capture
+                        failure = e;
+                        LOGGER.log(Level.SEVERE, "Erreur lors de l'écriture de l'enregistrement chiffré", e);
+                    }
+                }
+                ring.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new IOException("Écriture de l'enregistrement interrompue", e);
+        } finally {
+            try {
+                encryptedOut.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                LOGGER.log(Level.SEVERE, "Erreur lors de la finalisation du fichier chiffré", e);
+            }
+            if (failure != null) {
+                completion.completeExceptionally(failure);
+            } else {
+                completion.complete(totalBytes);
+            }
+        }
+    }
+}
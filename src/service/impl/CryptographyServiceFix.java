@@ -1,10 +1,16 @@
 package service.impl;
 
+import service.CryptoPrimitives;
 import service.CryptographyService;
+import service.IncrementalCipher;
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import javax.sound.sampled.AudioFormat;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.security.MessageDigest;
 import java.util.Base64;
@@ -14,6 +20,8 @@ import java.util.logging.Logger;
 public class CryptographyServiceFix implements CryptographyService {
     private static final String ALGORITHM = "AES";
     private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int BLOCK_SIZE = 16;
     private static final SecretKey DEFAULT_KEY;
     private static final Logger LOGGER = Logger.getLogger(CryptographyServiceFix.class.getName());
 
@@ -29,14 +37,12 @@ public class CryptographyServiceFix implements CryptographyService {
 
     @Override
     public SecretKey generateSecretKey() throws Exception {
-        KeyGenerator keyGen = KeyGenerator.getInstance(ALGORITHM);
-        keyGen.init(256);
-        return keyGen.generateKey();
+        return CryptoPrimitives.keyGenerator(ALGORITHM, 256).generateKey();
     }
 
     @Override
     public byte[] encrypt(byte[] data, SecretKey key) throws Exception {
-        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        Cipher cipher = CryptoPrimitives.cipher(TRANSFORMATION);
         cipher.init(Cipher.ENCRYPT_MODE, key != null ? key : DEFAULT_KEY);
         return cipher.doFinal(data);
     }
@@ -44,7 +50,7 @@ public class CryptographyServiceFix implements CryptographyService {
     @Override
     public byte[] decrypt(byte[] encryptedData, SecretKey key) throws Exception {
         try {
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            Cipher cipher = CryptoPrimitives.cipher(TRANSFORMATION);
             cipher.init(Cipher.DECRYPT_MODE, key != null ? key : DEFAULT_KEY);
             return cipher.doFinal(encryptedData);
         } catch (Exception e) {
@@ -54,6 +60,84 @@ public class CryptographyServiceFix implements CryptographyService {
         }
     }
 
+    @Override
+    public int encrypt(ByteBuffer input, ByteBuffer output, SecretKey key) throws Exception {
+        Cipher cipher = CryptoPrimitives.cipher(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, key != null ? key : DEFAULT_KEY);
+        return cipher.doFinal(input, output);
+    }
+
+    @Override
+    public int decrypt(ByteBuffer input, ByteBuffer output, SecretKey key) throws Exception {
+        try {
+            Cipher cipher = CryptoPrimitives.cipher(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key != null ? key : DEFAULT_KEY);
+            return cipher.doFinal(input, output);
+        } catch (Exception e) {
+            // Journaliser l'erreur et la propager
+            LOGGER.log(Level.SEVERE, "Erreur lors du déchiffrement: " + e.getMessage(), e);
+            throw new SecurityException("Erreur de déchiffrement: clé incorrecte ou données corrompues", e);
+        }
+    }
+
+    @Override
+    public int getOutputSize(int inputLength) {
+        return (inputLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+    }
+
+    @Override
+    public IncrementalCipher openEncryptor(SecretKey key) throws Exception {
+        // Cipher propre à l'appelant : il est conservé entre les appels à update
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, key != null ? key : DEFAULT_KEY);
+        return IncrementalCipher.of(cipher);
+    }
+
+    @Override
+    public IncrementalCipher openDecryptor(SecretKey key) throws Exception {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key != null ? key : DEFAULT_KEY);
+        return IncrementalCipher.of(cipher);
+    }
+
+    @Override
+    public void encrypt(InputStream in, OutputStream out, SecretKey key, AudioFormat format) throws Exception {
+        EncryptedAudioContainer.encrypt(in, out, key != null ? key : DEFAULT_KEY, format);
+    }
+
+    @Override
+    public AudioFormat decrypt(InputStream in, OutputStream out, SecretKey key) throws Exception {
+        try {
+            return EncryptedAudioContainer.decrypt(in, out, key != null ? key : DEFAULT_KEY);
+        } catch (Exception e) {
+            // Journaliser l'erreur et la propager
+            LOGGER.log(Level.SEVERE, "Erreur lors du déchiffrement du flux: " + e.getMessage(), e);
+            throw new SecurityException("Erreur de déchiffrement: clé incorrecte ou données corrompues", e);
+        }
+    }
+
+    @Override
+    public void reencrypt(InputStream in, OutputStream out, SecretKey key, SecretKey newKey) throws Exception {
+        try {
+            EncryptedAudioContainer.reencrypt(in, out, key != null ? key : DEFAULT_KEY,
+                    newKey != null ? newKey : DEFAULT_KEY);
+        } catch (Exception e) {
+            // Journaliser l'erreur et la propager
+            LOGGER.log(Level.SEVERE, "Erreur lors du rechiffrement du flux: " + e.getMessage(), e);
+            throw new SecurityException("Erreur de déchiffrement: clé incorrecte ou données corrompues", e);
+        }
+    }
+
+    @Override
+    public OutputStream openEncryptingStream(OutputStream out, SecretKey key, AudioFormat format) throws Exception {
+        return new EncryptedAudioContainer.EncryptingOutputStream(out, key != null ? key : DEFAULT_KEY, format);
+    }
+
+    @Override
+    public InputStream openDecryptingStream(InputStream in, SecretKey key) throws Exception {
+        return new EncryptedAudioContainer.DecryptingInputStream(in, key != null ? key : DEFAULT_KEY);
+    }
+
     @Override
     public String encryptString(String data, SecretKey key) throws Exception {
         byte[] encryptedData = encrypt(data.getBytes(), key);
@@ -69,7 +153,7 @@ public class CryptographyServiceFix implements CryptographyService {
 
     @Override
     public String generateHash(byte[] data) throws Exception {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        MessageDigest digest = CryptoPrimitives.digest(HASH_ALGORITHM);
         byte[] hash = digest.digest(data);
         return Base64.getEncoder().encodeToString(hash);
     }
@@ -0,0 +1,303 @@
+package service.impl;
+
+import service.DatabaseService.WriteOperation;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * File d'écriture unique de la base SQLite.
+ *
+ * SQLite n'accepte qu'un écrivain à la fois : plutôt que de laisser plusieurs
+ * connexions se disputer le verrou d'écriture, toutes les écritures sont
+ * confiées à un thread dédié qui possède sa propre connexion. Les opérations
+ * en attente sont regroupées dans une seule transaction ; chacune s'exécute
+ * sous un point de sauvegarde, si bien que l'échec de l'une n'annule pas les
+ * autres. Le résultat d'une opération n'est publié qu'après la validation de
+ * la transaction.
+ */
+public class DatabaseWriteQueue {
+    private static final Logger LOGGER = Logger.getLogger(DatabaseWriteQueue.class.getName());
+
+    public static final int DEFAULT_MAX_BATCH = 64;
+
+    // Durée d'inactivité après laquelle la connexion d'écriture est fermée
+    private static final long IDLE_CLOSE_MS = 30_000;
+
+    /**
+     * Fabrique de la connexion d'écriture.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final int maxBatch;
+    private final BlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final AtomicLong transactions = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private volatile boolean closed;
+    private Connection connection;
+
+    /**
+     * Crée la file d'écriture et démarre son thread.
+     *
+     * @param connectionFactory La fabrique de la connexion d'écriture
+     * @param maxBatch Le nombre maximal d'opérations regroupées dans une transaction
+     */
+    public DatabaseWriteQueue(ConnectionFactory connectionFactory, int maxBatch) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("La taille des lots doit être positive");
+        }
+        this.connectionFactory = connectionFactory;
+        this.maxBatch = maxBatch;
+        this.writer = new Thread(this::run, "db-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Soumet une opération d'écriture.
+     *
+     * @param <T> Le type du résultat de l'opération
+     * @param operation L'opération à exécuter sur la connexion d'écriture
+     * @return Un futur complété après la validation de la transaction
+     */
+    public <T> CompletableFuture<T> submit(WriteOperation<T> operation) {
+        PendingWrite<T> pending = new PendingWrite<>(operation);
+        if (closed) {
+            pending.future.completeExceptionally(new SQLException("La file d'écriture est fermée"));
+        } else {
+            queue.add(pending);
+        }
+        return pending.future;
+    }
+
+    /**
+     * Exécute une opération d'écriture et attend sa validation. Appelée depuis
+     * une opération déjà en cours, elle s'exécute directement dans la
+     * transaction courante.
+     *
+     * @param <T> Le type du résultat de l'opération
+     * @param operation L'opération à exécuter
+     * @return Le résultat de l'opération
+     * @throws SQLException Si l'opération ou la validation échoue
+     */
+    public <T> T execute(WriteOperation<T> operation) throws SQLException {
+        if (Thread.currentThread() == writer) {
+            return operation.execute(guard(connection));
+        }
+        try {
+            return submit(operation).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attente de l'écriture interrompue", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Arrête la file après l'exécution des opérations déjà soumises.
+     */
+    public void shutdown() {
+        closed = true;
+        writer.interrupt();
+    }
+
+    /**
+     * @return Le nombre de transactions validées par la file
+     */
+    public long getTransactionCount() {
+        return transactions.get();
+    }
+
+    /**
+     * @return Le nombre d'opérations exécutées avec succès
+     */
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    /**
+     * @return Le nombre d'opérations en attente
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<PendingWrite<?>> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            PendingWrite<?> first;
+            try {
+                first = queue.poll(IDLE_CLOSE_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                first = null;
+            }
+            if (first == null) {
+                if (closed && queue.isEmpty()) {
+                    break;
+                }
+                closeConnection();
+                continue;
+            }
+
+            batch.add(first);
+            queue.drainTo(batch, maxBatch - 1);
+            try {
+                writeBatch(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+        closeConnection();
+    }
+
+    private void writeBatch(List<PendingWrite<?>> batch) {
+        try {
+            if (connection == null || connection.isClosed()) {
+                connection = connectionFactory.open();
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Impossible d'ouvrir la connexion d'écriture", e);
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+            return;
+        }
+
+        Connection guarded = guard(connection);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("BEGIN IMMEDIATE");
+            try {
+                for (PendingWrite<?> pending : batch) {
+                    stmt.execute("SAVEPOINT write_op");
+                    try {
+                        pending.run(guarded);
+                        stmt.execute("RELEASE write_op");
+                    } catch (SQLException | RuntimeException e) {
+                        stmt.execute("ROLLBACK TO write_op");
+                        stmt.execute("RELEASE write_op");
+                        pending.error = e;
+                    }
+                }
+                stmt.execute("COMMIT");
+            } catch (SQLException | RuntimeException e) {
+                rollbackQuietly(stmt);
+                throw e;
+            }
+            transactions.incrementAndGet();
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Échec de la transaction d'écriture, " + batch.size()
+                    + " opération(s) annulée(s)", e);
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+            closeConnection();
+            return;
+        }
+
+        for (PendingWrite<?> pending : batch) {
+            if (pending.complete()) {
+                writes.incrementAndGet();
+            }
+        }
+    }
+
+    private static void rollbackQuietly(Statement stmt) {
+        try {
+            stmt.execute("ROLLBACK");
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Erreur ignorée lors de l'annulation de la transaction", e);
+        }
+    }
+
+    private void closeConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Erreur ignorée lors de la fermeture de la connexion d'écriture", e);
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * Enveloppe la connexion d'écriture pour les opérations : la fermeture est
+     * ignorée et la gestion de la transaction reste à la file.
+     */
+    private static Connection guard(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                        case "setAutoCommit":
+                        case "commit":
+                        case "rollback":
+                            return null;
+                        case "getAutoCommit":
+                            return false;
+                        case "isClosed":
+                            return connection.isClosed();
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Opération en attente et son résultat.
+     */
+    private static final class PendingWrite<T> {
+        private final WriteOperation<T> operation;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private Exception error;
+
+        PendingWrite(WriteOperation<T> operation) {
+            this.operation = operation;
+        }
+
+        void run(Connection conn) throws SQLException {
+            result = operation.execute(conn);
+        }
+
+        boolean complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+                return false;
+            }
+            future.complete(result);
+            return true;
+        }
+    }
+}
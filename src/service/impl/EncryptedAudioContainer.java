@@ -0,0 +1,641 @@
+package service.impl;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.sound.sampled.AudioFormat;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Format de conteneur chiffré ".enc" version 2.
+ * <p>
+ * Structure du fichier :
+ *
+ * <pre>
+ * En-tête : magic "MMEC" (4) | version (1) | taille de segment (4) | base de nonce (7)
+ *           | fréquence (float, 4) | bits par échantillon (2) | canaux (2) | signé (1) | big endian (1)
+ * Segments : longueur en clair (4, bit de poids fort = dernier segment) | données AES-GCM + tag (longueur + 16)
+ * </pre>
+ *
+ * Chaque segment est chiffré indépendamment en AES/GCM avec un nonce dérivé de la
+ * base, du numéro de segment et du drapeau de fin ; l'en-tête est authentifié
+ * comme donnée associée. La mémoire utilisée est donc bornée par la taille d'un
+ * segment, quelle que soit la durée de l'enregistrement, et toute troncature,
+ * réorganisation ou altération des segments est détectée au déchiffrement.
+ */
+public final class EncryptedAudioContainer {
+
+    /** Signature des conteneurs v2. */
+    static final byte[] MAGIC = { 'M', 'M', 'E', 'C' };
+    /** Version actuelle du format. */
+    public static final int VERSION = 2;
+    /** Taille par défaut d'un segment en clair (64 Kio). */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+    /** Taille de l'en-tête en octets. */
+    public static final int HEADER_SIZE = 26;
+    /** Surcoût par segment : longueur + tag GCM. */
+    public static final int SEGMENT_OVERHEAD = 4 + 16;
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int TAG_BITS = 128;
+    private static final int NONCE_BASE_SIZE = 7;
+    private static final int FINAL_FLAG = 0x80000000;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private EncryptedAudioContainer() {
+    }
+
+    /**
+     * Vérifie si des données commencent par l'en-tête d'un conteneur v2.
+     *
+     * @param data Les premiers octets du fichier
+     * @return true s'il s'agit d'un conteneur v2, false pour l'ancien format
+     */
+    public static boolean isContainer(byte[] data) {
+        if (data == null || data.length < HEADER_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return data[MAGIC.length] == VERSION;
+    }
+
+    /**
+     * Vérifie si un fichier est un conteneur v2.
+     *
+     * @param file Le fichier à examiner
+     * @return true s'il s'agit d'un conteneur v2
+     * @throws IOException En cas d'erreur de lecture
+     */
+    public static boolean isContainer(File file) throws IOException {
+        if (file == null || file.length() < HEADER_SIZE) {
+            return false;
+        }
+        byte[] start = new byte[HEADER_SIZE];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(start);
+        }
+        return isContainer(start);
+    }
+
+    /**
+     * Calcule la taille des données en clair d'un conteneur sans le déchiffrer.
+     *
+     * @param file Le conteneur
+     * @return Le nombre d'octets audio en clair
+     * @throws IOException Si le fichier n'est pas un conteneur v2 valide
+     */
+    public static long plaintextLength(File file) throws IOException {
+        return SegmentIndex.of(file).getPlaintextLength();
+    }
+
+    /**
+     * Ouvre un conteneur à une position quelconque des données en clair. Seuls
+     * les segments à partir de celui qui contient la position sont lus et
+     * déchiffrés ; leur authentification et la détection de la troncature
+     * restent celles d'une lecture complète.
+     *
+     * @param file            Le conteneur
+     * @param key             La clé AES
+     * @param index           L'index du conteneur
+     * @param plaintextOffset La position de départ dans les données en clair
+     * @return Le flux déchiffré à partir de cette position
+     * @throws IOException Si le fichier ne peut pas être lu ou si le premier segment est altéré
+     */
+    public static DecryptingInputStream openAt(File file, SecretKey key, SegmentIndex index, long plaintextOffset)
+            throws IOException {
+        long offset = Math.max(0, Math.min(plaintextOffset, index.getPlaintextLength()));
+        int segment = index.segmentOf(offset);
+        FileInputStream raw = new FileInputStream(file);
+        try {
+            raw.getChannel().position(index.ciphertextOffset(segment));
+            DecryptingInputStream in = new DecryptingInputStream(
+                    new BufferedInputStream(raw, index.getHeader().getSegmentSize() + SEGMENT_OVERHEAD), key,
+                    index.getHeader(), segment);
+            in.skipNBytes(offset - index.segmentStart(segment));
+            return in;
+        } catch (IOException | RuntimeException e) {
+            raw.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Chiffre un flux complet vers un conteneur v2. Le flux de sortie n'est pas fermé.
+     *
+     * @param in     Les données audio en clair
+     * @param out    La destination du conteneur
+     * @param key    La clé AES
+     * @param format Le format audio à inscrire dans l'en-tête
+     * @throws IOException En cas d'erreur d'entrée/sortie ou de chiffrement
+     */
+    public static void encrypt(InputStream in, OutputStream out, SecretKey key, AudioFormat format)
+            throws IOException {
+        ParallelSegmentCipher.getShared().encrypt(in, out, key, Header.create(DEFAULT_SEGMENT_SIZE, format));
+    }
+
+    /**
+     * Déchiffre un conteneur v2 complet. Le flux de sortie n'est pas fermé.
+     *
+     * @param in  Le conteneur chiffré
+     * @param out La destination des données audio en clair
+     * @param key La clé AES
+     * @return Le format audio lu dans l'en-tête
+     * @throws IOException Si le conteneur est invalide, altéré ou tronqué
+     */
+    public static AudioFormat decrypt(InputStream in, OutputStream out, SecretKey key) throws IOException {
+        return ParallelSegmentCipher.getShared().decrypt(in, out, key);
+    }
+
+    /**
+     * Rechiffre un conteneur v2 avec une nouvelle clé, segment par segment,
+     * sans reconstituer l'enregistrement en clair. Le découpage en segments
+     * et le format audio sont conservés ; l'en-tête reçoit une nouvelle base
+     * de nonce. Le flux de sortie n'est pas fermé.
+     *
+     * @param in     Le conteneur chiffré avec l'ancienne clé
+     * @param out    La destination du nouveau conteneur
+     * @param key    L'ancienne clé AES
+     * @param newKey La nouvelle clé AES
+     * @return Le format audio lu dans l'en-tête
+     * @throws IOException Si le conteneur est invalide, altéré ou tronqué
+     */
+    public static AudioFormat reencrypt(InputStream in, OutputStream out, SecretKey key, SecretKey newKey)
+            throws IOException {
+        return ParallelSegmentCipher.getShared().reencrypt(in, out, key, newKey);
+    }
+
+    /**
+     * Construit le nonce GCM d'un segment : base (7) | numéro (4) | drapeau de fin (1).
+     */
+    static byte[] segmentNonce(byte[] nonceBase, int index, boolean last) {
+        byte[] nonce = new byte[12];
+        System.arraycopy(nonceBase, 0, nonce, 0, NONCE_BASE_SIZE);
+        nonce[7] = (byte) (index >>> 24);
+        nonce[8] = (byte) (index >>> 16);
+        nonce[9] = (byte) (index >>> 8);
+        nonce[10] = (byte) index;
+        nonce[11] = (byte) (last ? 1 : 0);
+        return nonce;
+    }
+
+    /**
+     * Chiffre un segment en clair. Le Cipher n'est utilisé que par le thread appelant.
+     *
+     * @return La longueur des données chiffrées, tag compris
+     */
+    static int sealSegment(Cipher cipher, SecretKey key, Header header, int index, boolean last,
+            byte[] plain, int length, byte[] sealed) throws GeneralSecurityException {
+        cipher.init(Cipher.ENCRYPT_MODE, key,
+                new GCMParameterSpec(TAG_BITS, segmentNonce(header.getNonceBase(), index, last)));
+        cipher.updateAAD(header.encodedRef());
+        return cipher.doFinal(plain, 0, length, sealed, 0);
+    }
+
+    /**
+     * Authentifie et déchiffre un segment. GCM ne produit rien avant d'avoir
+     * vérifié le tag : la destination n'est pas modifiée si le segment est altéré.
+     *
+     * @return La longueur des données en clair
+     */
+    static int openSegment(Cipher cipher, SecretKey key, Header header, int index, boolean last,
+            ByteBuffer sealed, ByteBuffer target) throws GeneralSecurityException {
+        cipher.init(Cipher.DECRYPT_MODE, key,
+                new GCMParameterSpec(TAG_BITS, segmentNonce(header.getNonceBase(), index, last)));
+        cipher.updateAAD(header.encodedRef());
+        return cipher.doFinal(sealed, target);
+    }
+
+    /**
+     * Écrit le préfixe d'un segment : sa longueur en clair et le drapeau de fin.
+     */
+    static void writeSegmentPrefix(OutputStream out, int length, boolean last) throws IOException {
+        int prefix = last ? (length | FINAL_FLAG) : length;
+        out.write(prefix >>> 24);
+        out.write(prefix >>> 16);
+        out.write(prefix >>> 8);
+        out.write(prefix);
+    }
+
+    /**
+     * Lit et valide le préfixe d'un segment.
+     *
+     * @return La longueur en clair, avec le bit de poids fort positionné pour le dernier segment
+     */
+    static int readSegmentPrefix(DataInputStream in, Header header) throws IOException {
+        int prefix;
+        try {
+            prefix = in.readInt();
+        } catch (EOFException e) {
+            throw new IOException("Conteneur tronqué: segment final manquant", e);
+        }
+        boolean last = (prefix & FINAL_FLAG) != 0;
+        int length = prefix & ~FINAL_FLAG;
+        if (length > header.getSegmentSize() || (!last && length != header.getSegmentSize())) {
+            throw new IOException("Longueur de segment invalide: " + length);
+        }
+        return prefix;
+    }
+
+    static boolean isLast(int prefix) {
+        return (prefix & FINAL_FLAG) != 0;
+    }
+
+    static int segmentLength(int prefix) {
+        return prefix & ~FINAL_FLAG;
+    }
+
+    /**
+     * En-tête d'un conteneur v2.
+     */
+    public static final class Header {
+        private final int segmentSize;
+        private final byte[] nonceBase;
+        private final AudioFormat format;
+        private final byte[] encoded;
+
+        private Header(int segmentSize, byte[] nonceBase, AudioFormat format, byte[] encoded) {
+            this.segmentSize = segmentSize;
+            this.nonceBase = nonceBase;
+            this.format = format;
+            this.encoded = encoded;
+        }
+
+        /**
+         * Crée un nouvel en-tête avec une base de nonce aléatoire.
+         *
+         * @param segmentSize La taille des segments en clair
+         * @param format      Le format audio
+         * @return Le nouvel en-tête
+         */
+        public static Header create(int segmentSize, AudioFormat format) {
+            byte[] nonceBase = new byte[NONCE_BASE_SIZE];
+            RANDOM.nextBytes(nonceBase);
+            return new Header(segmentSize, nonceBase, format, encode(segmentSize, nonceBase, format));
+        }
+
+        /**
+         * Lit et valide un en-tête depuis un flux.
+         *
+         * @param in Le flux positionné au début du conteneur
+         * @return L'en-tête lu
+         * @throws IOException Si l'en-tête est absent ou invalide
+         */
+        public static Header read(InputStream in) throws IOException {
+            byte[] encoded = new byte[HEADER_SIZE];
+            try {
+                new DataInputStream(in).readFully(encoded);
+            } catch (EOFException e) {
+                throw new IOException("En-tête de conteneur tronqué", e);
+            }
+            if (!isContainer(encoded)) {
+                throw new IOException("Le fichier n'est pas un conteneur chiffré v2");
+            }
+            DataInputStream data = new DataInputStream(
+                    new java.io.ByteArrayInputStream(encoded, MAGIC.length + 1, HEADER_SIZE - MAGIC.length - 1));
+            int segmentSize = data.readInt();
+            if (segmentSize <= 0 || segmentSize > (FINAL_FLAG >>> 1)) {
+                throw new IOException("Taille de segment invalide: " + segmentSize);
+            }
+            byte[] nonceBase = new byte[NONCE_BASE_SIZE];
+            data.readFully(nonceBase);
+            float sampleRate = data.readFloat();
+            int sampleSizeInBits = data.readShort();
+            int channels = data.readShort();
+            boolean signed = data.readBoolean();
+            boolean bigEndian = data.readBoolean();
+            AudioFormat format = new AudioFormat(sampleRate, sampleSizeInBits, channels, signed, bigEndian);
+            return new Header(segmentSize, nonceBase, format, encoded);
+        }
+
+        private static byte[] encode(int segmentSize, byte[] nonceBase, AudioFormat format) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE);
+                DataOutputStream data = new DataOutputStream(bytes);
+                data.write(MAGIC);
+                data.writeByte(VERSION);
+                data.writeInt(segmentSize);
+                data.write(nonceBase);
+                data.writeFloat(format.getSampleRate());
+                data.writeShort(format.getSampleSizeInBits());
+                data.writeShort(format.getChannels());
+                data.writeBoolean(!AudioFormat.Encoding.PCM_UNSIGNED.equals(format.getEncoding()));
+                data.writeBoolean(format.isBigEndian());
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new IllegalStateException("Impossible d'encoder l'en-tête", e);
+            }
+        }
+
+        public int getSegmentSize() {
+            return segmentSize;
+        }
+
+        public AudioFormat getFormat() {
+            return format;
+        }
+
+        byte[] getNonceBase() {
+            return nonceBase;
+        }
+
+        /**
+         * @return Une copie des octets de l'en-tête, authentifiés avec chaque segment
+         */
+        public byte[] getEncoded() {
+            return encoded.clone();
+        }
+
+        byte[] encodedRef() {
+            return encoded;
+        }
+    }
+
+    /**
+     * Flux qui chiffre les données écrites segment par segment au fil de l'eau.
+     * Seul un segment en clair est conservé en mémoire.
+     */
+    public static class EncryptingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final SecretKey key;
+        private final Header header;
+        private final Cipher cipher;
+        private final byte[] segment;
+        private byte[] cipherBuffer;
+        private int buffered;
+        private int segmentIndex;
+        private long totalBytes;
+        private boolean finished;
+
+        public EncryptingOutputStream(OutputStream out, SecretKey key, AudioFormat format) throws IOException {
+            this(out, key, format, DEFAULT_SEGMENT_SIZE);
+        }
+
+        public EncryptingOutputStream(OutputStream out, SecretKey key, AudioFormat format, int segmentSize)
+                throws IOException {
+            this(out, key, Header.create(segmentSize, format));
+        }
+
+        /**
+         * Crée un flux avec un en-tête déjà construit, par exemple pour
+         * produire un conteneur identique à un autre chiffrement du même contenu.
+         */
+        public EncryptingOutputStream(OutputStream out, SecretKey key, Header header) throws IOException {
+            if (key == null) {
+                throw new IllegalArgumentException("La clé de chiffrement est requise.");
+            }
+            this.out = out;
+            this.key = key;
+            this.header = header;
+            this.segment = new byte[header.getSegmentSize()];
+            this.cipherBuffer = new byte[header.getSegmentSize() + 16];
+            try {
+                this.cipher = Cipher.getInstance(TRANSFORMATION);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("AES/GCM indisponible", e);
+            }
+            out.write(header.encodedRef());
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            write(ByteBuffer.wrap(b, off, len));
+        }
+
+        /**
+         * Écrit les octets restants d'un tampon, sur le tas ou direct, sans
+         * autre copie que celle vers le segment en cours.
+         *
+         * @param src Les données audio en clair, lues jusqu'à leur limite
+         * @throws IOException En cas d'erreur d'écriture ou de chiffrement
+         */
+        public void write(ByteBuffer src) throws IOException {
+            if (finished) {
+                throw new IOException("Le conteneur est déjà finalisé");
+            }
+            while (src.hasRemaining()) {
+                // Un segment plein n'est émis que lorsque d'autres données arrivent,
+                // afin que le dernier segment porte toujours le drapeau de fin.
+                if (buffered == segment.length) {
+                    emitSegment(false);
+                }
+                int chunk = Math.min(src.remaining(), segment.length - buffered);
+                src.get(segment, buffered, chunk);
+                buffered += chunk;
+                totalBytes += chunk;
+            }
+        }
+
+        /**
+         * Écrit le dernier segment sans fermer le flux sous-jacent.
+         *
+         * @throws IOException En cas d'erreur d'écriture ou de chiffrement
+         */
+        public void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            emitSegment(true);
+            finished = true;
+            out.flush();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+
+        /**
+         * @return Le nombre d'octets en clair écrits dans le conteneur
+         */
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public Header getHeader() {
+            return header;
+        }
+
+        private void emitSegment(boolean last) throws IOException {
+            try {
+                int length = sealSegment(cipher, key, header, segmentIndex, last, segment, buffered, cipherBuffer);
+                writeSegmentPrefix(out, buffered, last);
+                out.write(cipherBuffer, 0, length);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Erreur lors du chiffrement du segment " + segmentIndex, e);
+            }
+            Arrays.fill(segment, 0, buffered, (byte) 0);
+            buffered = 0;
+            segmentIndex++;
+        }
+    }
+
+    /**
+     * Flux qui déchiffre et authentifie un conteneur v2 segment par segment.
+     */
+    public static class DecryptingInputStream extends InputStream {
+        private final DataInputStream in;
+        private final SecretKey key;
+        private final Header header;
+        private final Cipher cipher;
+        private final byte[] cipherBuffer;
+        private final byte[] segment;
+        private int segmentLength;
+        private int position;
+        private int segmentIndex;
+        private boolean lastSeen;
+
+        public DecryptingInputStream(InputStream in, SecretKey key) throws IOException {
+            this(in, key, null, 0);
+        }
+
+        /**
+         * Flux positionné sur le préfixe d'un segment, l'en-tête ayant été lu
+         * auparavant.
+         */
+        DecryptingInputStream(InputStream in, SecretKey key, Header header, int firstSegment) throws IOException {
+            if (key == null) {
+                throw new IllegalArgumentException("La clé de déchiffrement est requise.");
+            }
+            this.in = new DataInputStream(in);
+            this.key = key;
+            this.header = header != null ? header : Header.read(this.in);
+            this.segmentIndex = firstSegment;
+            this.segment = new byte[this.header.getSegmentSize()];
+            this.cipherBuffer = new byte[this.header.getSegmentSize() + 16];
+            try {
+                this.cipher = Cipher.getInstance(TRANSFORMATION);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("AES/GCM indisponible", e);
+            }
+        }
+
+        public AudioFormat getFormat() {
+            return header.getFormat();
+        }
+
+        public Header getHeader() {
+            return header;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return read(ByteBuffer.wrap(b, off, len));
+        }
+
+        /**
+         * Lit des données en clair dans un tampon, sur le tas ou direct. Si
+         * aucune donnée n'est en attente et que le tampon peut contenir un
+         * segment entier, le segment suivant y est déchiffré directement,
+         * sans passer par le tampon interne du flux.
+         *
+         * @param dst La destination, remplie à partir de sa position
+         * @return Le nombre d'octets lus, ou -1 à la fin du conteneur
+         * @throws IOException Si le conteneur est altéré ou tronqué
+         */
+        public int read(ByteBuffer dst) throws IOException {
+            if (!dst.hasRemaining()) {
+                return 0;
+            }
+            while (position == segmentLength) {
+                if (lastSeen) {
+                    return -1;
+                }
+                if (dst.remaining() >= segment.length) {
+                    int length = readSegment(dst);
+                    if (length > 0) {
+                        return length;
+                    }
+                } else {
+                    segmentLength = readSegment(ByteBuffer.wrap(segment));
+                    position = 0;
+                }
+            }
+            int chunk = Math.min(dst.remaining(), segmentLength - position);
+            dst.put(segment, position, chunk);
+            position += chunk;
+            return chunk;
+        }
+
+        @Override
+        public int available() {
+            return segmentLength - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            Arrays.fill(segment, (byte) 0);
+            in.close();
+        }
+
+        /**
+         * Lit, authentifie et déchiffre le segment suivant dans un tampon d'au
+         * moins un segment. GCM ne produit rien avant d'avoir vérifié le tag :
+         * la destination n'est pas modifiée si le segment est altéré.
+         */
+        private int readSegment(ByteBuffer target) throws IOException {
+            int prefix = readSegmentPrefix(in, header);
+            boolean last = isLast(prefix);
+            int length = segmentLength(prefix);
+            try {
+                in.readFully(cipherBuffer, 0, length + 16);
+            } catch (EOFException e) {
+                throw new IOException("Conteneur tronqué au segment " + segmentIndex, e);
+            }
+            try {
+                length = openSegment(cipher, key, header, segmentIndex, last,
+                        ByteBuffer.wrap(cipherBuffer, 0, length + 16), target);
+            } catch (AEADBadTagException e) {
+                throw new IOException("Segment " + segmentIndex + " altéré ou clé incorrecte", e);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Erreur lors du déchiffrement du segment " + segmentIndex, e);
+            }
+            segmentIndex++;
+            if (last) {
+                lastSeen = true;
+                if (in.read() != -1) {
+                    throw new IOException("Données inattendues après le segment final");
+                }
+            }
+            return length;
+        }
+    }
+}
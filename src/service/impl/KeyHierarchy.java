@@ -0,0 +1,342 @@
+package service.impl;
+
+import service.AsymmetricCryptographyService;
+import service.DatabaseService;
+import service.RSACryptographyService;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hiérarchie des clés de chiffrement des enregistrements.
+ *
+ * Chaque utilisateur possède une clé maîtresse AES (KEK) conservée dans la
+ * table user_kek, chiffrée avec sa clé publique (RSA ou X25519 selon le
+ * schéma de ses clés). Elle est déverrouillée une seule fois par session,
+ * par une opération asymétrique ; la clé AES de chaque
+ * enregistrement est ensuite emballée avec cette clé maîtresse par AES-KW
+ * (RFC 3394) et stockée dans recordings.encryption_key avec le préfixe
+ * "kw1:". RSA ne sert plus qu'au partage entre utilisateurs. Les clés
+ * stockées sans préfixe sont les anciennes clés chiffrées directement avec
+ * RSA ; la migration 3 du schéma les emballe à nouveau.
+ */
+public class KeyHierarchy {
+    private static final Logger LOGGER = Logger.getLogger(KeyHierarchy.class.getName());
+
+    public static final String WRAP_PREFIX = "kw1:";
+
+    private static final String AES_ALGORITHM = "AES";
+    private static final String WRAP_ALGORITHM = "AESWrap";
+    private static final int KEK_SIZE = 256;
+
+    private static final String SELECT_KEYS = "SELECT k.public_key, k.private_key, k.scheme, e.wrapped_kek "
+            + "FROM user_keys k LEFT JOIN user_kek e ON e.user_id = k.user_id WHERE k.user_id = ?";
+    private static final String INSERT_KEK = "INSERT OR IGNORE INTO user_kek (user_id, wrapped_kek) VALUES (?, ?)";
+    private static final String SELECT_KEK = "SELECT wrapped_kek FROM user_kek WHERE user_id = ?";
+
+    private final DatabaseService databaseService;
+    private final RSACryptographyService rsaService;
+    // Clés maîtresses déverrouillées pendant la session
+    private final Map<Integer, byte[]> unlocked = new HashMap<>();
+    private long unlockCount;
+
+    /**
+     * Crée la hiérarchie de clés.
+     *
+     * @param databaseService Le service de base de données
+     * @param rsaService Le service RSA utilisé pour déverrouiller les clés maîtresses des utilisateurs RSA
+     */
+    public KeyHierarchy(DatabaseService databaseService, RSACryptographyService rsaService) {
+        this.databaseService = databaseService;
+        this.rsaService = rsaService;
+    }
+
+    /**
+     * Indique si une clé stockée est emballée avec la clé maîtresse de son
+     * propriétaire.
+     *
+     * @param storedKey La valeur de recordings.encryption_key
+     * @return true pour une clé AES-KW, false pour une ancienne clé RSA
+     */
+    public static boolean isWrapped(String storedKey) {
+        return storedKey != null && storedKey.startsWith(WRAP_PREFIX);
+    }
+
+    /**
+     * Emballe la clé d'un enregistrement avec la clé maîtresse de son propriétaire.
+     *
+     * @param userId Le propriétaire de l'enregistrement
+     * @param recordingKey La clé AES de l'enregistrement
+     * @return La clé emballée, préfixée par "kw1:"
+     * @throws Exception Si la clé maîtresse ne peut pas être déverrouillée
+     */
+    public String wrap(int userId, SecretKey recordingKey) throws Exception {
+        return wrap(unlock(userId), recordingKey);
+    }
+
+    /**
+     * Retrouve la clé d'un enregistrement emballée avec la clé maîtresse de son
+     * propriétaire.
+     *
+     * @param userId Le propriétaire de l'enregistrement
+     * @param wrappedKey La clé emballée, préfixée par "kw1:"
+     * @return La clé AES de l'enregistrement
+     * @throws Exception Si la clé maîtresse ne peut pas être déverrouillée ou
+     *                   si la clé emballée est invalide
+     */
+    public SecretKey unwrap(int userId, String wrappedKey) throws Exception {
+        return unwrap(unlock(userId), wrappedKey);
+    }
+
+    /**
+     * Retourne la clé maîtresse d'un utilisateur, en la créant si nécessaire.
+     * Seul le premier appel de la session déchiffre la clé avec la clé privée
+     * de l'utilisateur.
+     *
+     * @param userId L'identifiant de l'utilisateur
+     * @return La clé maîtresse
+     * @throws Exception Si l'utilisateur n'a pas de clés ou si le
+     *                   déchiffrement échoue
+     */
+    public synchronized SecretKey unlock(int userId) throws Exception {
+        byte[] material = unlocked.get(userId);
+        if (material == null) {
+            material = loadKek(userId);
+            unlocked.put(userId, material);
+            unlockCount++;
+            LOGGER.log(Level.INFO, "Clé maîtresse déverrouillée pour l''utilisateur {0}", userId);
+        }
+        return new SecretKeySpec(material, AES_ALGORITHM);
+    }
+
+    /**
+     * Efface les clés maîtresses déverrouillées, à la déconnexion ou au
+     * changement d'utilisateur.
+     */
+    public synchronized void lock() {
+        for (byte[] material : unlocked.values()) {
+            Arrays.fill(material, (byte) 0);
+        }
+        unlocked.clear();
+    }
+
+    /**
+     * @return Le nombre de clés maîtresses déchiffrées avec une clé privée
+     */
+    public synchronized long getUnlockCount() {
+        return unlockCount;
+    }
+
+    private byte[] loadKek(int userId) throws Exception {
+        String publicKey;
+        String privateKey;
+        String scheme;
+        String wrappedKek;
+        try (Connection conn = databaseService.connect();
+                PreparedStatement stmt = conn.prepareStatement(SELECT_KEYS)) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SecurityException("Clés introuvables pour l'utilisateur " + userId);
+                }
+                publicKey = rs.getString("public_key");
+                privateKey = rs.getString("private_key");
+                scheme = rs.getString("scheme");
+                wrappedKek = rs.getString("wrapped_kek");
+            }
+        }
+
+        AsymmetricCryptographyService cryptography = RSACryptographyService.SCHEME.equalsIgnoreCase(scheme)
+                ? rsaService
+                : AsymmetricCryptographyService.forScheme(scheme);
+        if (wrappedKek == null) {
+            SecretKey kek = generateKek();
+            String candidate = cryptography.encryptWithPublicKey(encode(kek), publicKey);
+            // Une autre session a pu créer la clé entre-temps : c'est la sienne qui est retenue
+            wrappedKek = databaseService.executeWrite(conn -> {
+                try (PreparedStatement insert = conn.prepareStatement(INSERT_KEK)) {
+                    insert.setInt(1, userId);
+                    insert.setString(2, candidate);
+                    insert.executeUpdate();
+                }
+                try (PreparedStatement select = conn.prepareStatement(SELECT_KEK)) {
+                    select.setInt(1, userId);
+                    try (ResultSet rs = select.executeQuery()) {
+                        return rs.next() ? rs.getString(1) : candidate;
+                    }
+                }
+            });
+            if (candidate.equals(wrappedKek)) {
+                LOGGER.log(Level.INFO, "Clé maîtresse créée pour l''utilisateur {0}", userId);
+                return kek.getEncoded();
+            }
+        }
+
+        String kekBase64 = cryptography.decryptWithPrivateKey(wrappedKek, privateKey);
+        if (kekBase64 == null) {
+            throw new SecurityException("Clé maîtresse illisible pour l'utilisateur " + userId);
+        }
+        return Base64.getDecoder().decode(kekBase64);
+    }
+
+    /**
+     * Emballe une clé AES avec une clé maîtresse.
+     *
+     * @param kek La clé maîtresse
+     * @param recordingKey La clé à emballer
+     * @return La clé emballée, préfixée par "kw1:"
+     * @throws GeneralSecurityException Si l'emballage échoue
+     */
+    public static String wrap(SecretKey kek, SecretKey recordingKey) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(WRAP_ALGORITHM);
+        cipher.init(Cipher.WRAP_MODE, kek);
+        return WRAP_PREFIX + Base64.getEncoder().encodeToString(cipher.wrap(recordingKey));
+    }
+
+    /**
+     * Déballe une clé AES avec une clé maîtresse. L'intégrité de la clé
+     * emballée est vérifiée par AES-KW.
+     *
+     * @param kek La clé maîtresse
+     * @param wrappedKey La clé emballée, préfixée par "kw1:"
+     * @return La clé AES
+     * @throws GeneralSecurityException Si la clé emballée est invalide
+     */
+    public static SecretKey unwrap(SecretKey kek, String wrappedKey) throws GeneralSecurityException {
+        if (!isWrapped(wrappedKey)) {
+            throw new GeneralSecurityException("Clé non emballée avec la clé maîtresse");
+        }
+        Cipher cipher = Cipher.getInstance(WRAP_ALGORITHM);
+        cipher.init(Cipher.UNWRAP_MODE, kek);
+        byte[] wrapped = Base64.getDecoder().decode(wrappedKey.substring(WRAP_PREFIX.length()));
+        return (SecretKey) cipher.unwrap(wrapped, AES_ALGORITHM, Cipher.SECRET_KEY);
+    }
+
+    /**
+     * Emballe avec la clé maîtresse de leur propriétaire toutes les clés
+     * d'enregistrement encore chiffrées avec RSA. Appelée par la migration du
+     * schéma, dans sa transaction ; les clés qui ne peuvent pas être
+     * déchiffrées sont laissées telles quelles et restent lisibles par
+     * l'ancien chemin RSA.
+     *
+     * @param conn La connexion à la base
+     * @return Le nombre de clés emballées
+     * @throws SQLException Si la lecture ou l'écriture échoue
+     */
+    static int rewrapLegacyKeys(Connection conn) throws SQLException {
+        RSACryptographyService rsaService = new RSACryptographyService();
+        List<int[]> rows = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT id, user_id, encryption_key FROM recordings "
+                        + "WHERE encryption_key IS NOT NULL AND encryption_key <> '' "
+                        + "AND encryption_key NOT LIKE '" + WRAP_PREFIX + "%' ORDER BY user_id")) {
+            while (rs.next()) {
+                rows.add(new int[] { rs.getInt("id"), rs.getInt("user_id") });
+                keys.add(rs.getString("encryption_key"));
+            }
+        }
+
+        Map<Integer, String[]> userKeysById = new HashMap<>();
+        Map<Integer, SecretKey> keks = new HashMap<>();
+        int rewrapped = 0;
+        try (PreparedStatement update = conn.prepareStatement(
+                "UPDATE recordings SET encryption_key = ? WHERE id = ?")) {
+            for (int i = 0; i < rows.size(); i++) {
+                int recordingId = rows.get(i)[0];
+                int userId = rows.get(i)[1];
+                try {
+                    if (!userKeysById.containsKey(userId)) {
+                        String[] userKeys = readUserKeys(conn, userId);
+                        userKeysById.put(userId, userKeys);
+                        if (userKeys != null) {
+                            keks.put(userId, migrationKek(conn, rsaService, userId, userKeys));
+                        }
+                    }
+                    String[] userKeys = userKeysById.get(userId);
+                    SecretKey kek = keks.get(userId);
+                    if (userKeys == null || kek == null) {
+                        continue;
+                    }
+                    String aesKeyBase64 = rsaService.decryptWithPrivateKey(keys.get(i), userKeys[1]);
+                    if (aesKeyBase64 == null) {
+                        continue;
+                    }
+                    SecretKey recordingKey = new SecretKeySpec(Base64.getDecoder().decode(aesKeyBase64),
+                            AES_ALGORITHM);
+                    update.setString(1, wrap(kek, recordingKey));
+                    update.setInt(2, recordingId);
+                    update.executeUpdate();
+                    rewrapped++;
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Clé de l''enregistrement {0} conservée au format RSA: {1}",
+                            new Object[] { recordingId, e.getMessage() });
+                }
+            }
+        }
+        if (rewrapped > 0) {
+            LOGGER.log(Level.INFO, "{0} clé(s) d''enregistrement emballée(s) avec AES-KW", rewrapped);
+        }
+        return rewrapped;
+    }
+
+    /**
+     * Retourne la clé maîtresse d'un utilisateur pendant la migration, en la
+     * créant si nécessaire.
+     */
+    private static SecretKey migrationKek(Connection conn, RSACryptographyService rsaService, int userId,
+            String[] userKeys) throws Exception {
+        try (PreparedStatement select = conn.prepareStatement(SELECT_KEK)) {
+            select.setInt(1, userId);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) {
+                    String kekBase64 = rsaService.decryptWithPrivateKey(rs.getString(1), userKeys[1]);
+                    return new SecretKeySpec(Base64.getDecoder().decode(kekBase64), AES_ALGORITHM);
+                }
+            }
+        }
+        SecretKey kek = generateKek();
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_KEK)) {
+            insert.setInt(1, userId);
+            insert.setString(2, rsaService.encryptWithPublicKey(encode(kek), userKeys[0]));
+            insert.executeUpdate();
+        }
+        return kek;
+    }
+
+    private static String[] readUserKeys(Connection conn, int userId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT public_key, private_key FROM user_keys WHERE user_id = ?")) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new String[] { rs.getString(1), rs.getString(2) } : null;
+            }
+        }
+    }
+
+    private static SecretKey generateKek() throws GeneralSecurityException {
+        KeyGenerator keyGen = KeyGenerator.getInstance(AES_ALGORITHM);
+        keyGen.init(KEK_SIZE);
+        return keyGen.generateKey();
+    }
+
+    private static String encode(SecretKey key) {
+        return Base64.getEncoder().encodeToString(key.getEncoded());
+    }
+}
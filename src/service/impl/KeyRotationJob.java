@@ -0,0 +1,584 @@
+package service.impl;
+
+import service.AsymmetricCryptographyService;
+import service.DatabaseService;
+import service.RSACryptographyService;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rotation de la paire de clés asymétriques d'un utilisateur.
+ * <p>
+ * Seules les clés sont emballées à nouveau, jamais les fichiers audio : la
+ * clé maîtresse (user_kek) est chiffrée avec la nouvelle clé publique, les
+ * anciennes clés d'enregistrement chiffrées directement avec RSA sont
+ * emballées avec la clé maîtresse, et les clés des enregistrements partagés
+ * avec l'utilisateur sont déchiffrées avec l'ancienne clé privée puis
+ * chiffrées avec la nouvelle clé publique. Les clés déjà emballées avec la
+ * clé maîtresse ("kw1:") ne changent pas.
+ * <p>
+ * Les lignes sont traitées par lots, répartis sur un pool de threads. Chaque
+ * lot est enregistré dans key_rotation_items avec le point de reprise de la
+ * table key_rotation, dans une seule transaction : une rotation interrompue
+ * reprend au lot suivant, avec la même nouvelle paire. Les anciennes clés
+ * restent en place jusqu'à la dernière transaction, qui applique tous les
+ * lots et remplace la paire de l'utilisateur ; ses enregistrements et
+ * partages restent donc lisibles pendant toute la rotation.
+ */
+public class KeyRotationJob {
+    private static final Logger LOGGER = Logger.getLogger(KeyRotationJob.class.getName());
+
+    /** Nombre de clés par lot et par transaction par défaut. */
+    public static final int DEFAULT_BATCH_SIZE = 200;
+
+    private static final String RECORDING = "recording";
+    private static final String SHARE = "share";
+    private static final String AES_ALGORITHM = "AES";
+    // Nouvelles passes autorisées si des partages arrivent pendant la rotation
+    private static final int MAX_FINISH_ATTEMPTS = 5;
+
+    private static final String LEGACY_KEYS = "FROM recordings WHERE user_id = ? AND id > ? "
+            + "AND encryption_key IS NOT NULL AND encryption_key <> '' "
+            + "AND encryption_key NOT LIKE '" + KeyHierarchy.WRAP_PREFIX + "%'";
+    private static final String SHARED_KEYS = "FROM shared_recordings WHERE target_user_id = ? AND id > ?";
+
+    /**
+     * Suivi de l'avancement d'une rotation, appelé après chaque lot.
+     */
+    public interface Listener {
+        void onProgress(Progress progress);
+    }
+
+    private final DatabaseService databaseService;
+    private final RSACryptographyService rsaService;
+    private final int parallelism;
+    private final int batchSize;
+    // Utilisateurs dont la rotation est en cours dans ce processus
+    private final Set<Integer> running = new HashSet<>();
+
+    /**
+     * Crée le traitement de rotation.
+     *
+     * @param databaseService Le service de base de données
+     * @param rsaService      Le service RSA, dont le trousseau est invalidé à la fin d'une rotation
+     * @param parallelism     Le nombre de threads qui emballent les clés
+     * @param batchSize       Le nombre de clés par lot et par transaction
+     */
+    public KeyRotationJob(DatabaseService databaseService, RSACryptographyService rsaService, int parallelism,
+            int batchSize) {
+        if (parallelism <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Parallélisme ou taille de lot invalide");
+        }
+        this.databaseService = databaseService;
+        this.rsaService = rsaService;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Remplace la paire de clés d'un utilisateur par une nouvelle paire du
+     * schéma demandé, ou reprend la rotation interrompue de cet utilisateur.
+     * Une rotation reprise conserve la paire choisie à son début.
+     *
+     * @param userId   L'utilisateur
+     * @param scheme   Le schéma de la nouvelle paire (RSA ou X25519), ou null pour
+     *                 seulement reprendre une rotation interrompue
+     * @param listener Le suivi de l'avancement, ou null
+     * @return L'avancement final
+     * @throws Exception Si les clés de l'utilisateur ne peuvent pas être lues ou
+     *                   si une transaction échoue ; la rotation peut alors être reprise
+     */
+    public Progress rotate(int userId, String scheme, Listener listener) throws Exception {
+        synchronized (running) {
+            if (!running.add(userId)) {
+                throw new IllegalStateException("Rotation déjà en cours pour l'utilisateur " + userId);
+            }
+        }
+        try {
+            return run(userId, scheme, listener);
+        } finally {
+            synchronized (running) {
+                running.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Reprend toutes les rotations interrompues, par exemple au démarrage.
+     *
+     * @param listener Le suivi de l'avancement, ou null
+     * @return Le nombre de rotations terminées
+     * @throws SQLException Si la liste des rotations ne peut pas être lue
+     */
+    public int resumePending(Listener listener) throws SQLException {
+        List<Integer> userIds = new ArrayList<>();
+        try (Connection conn = databaseService.connect();
+                PreparedStatement stmt = conn.prepareStatement("SELECT user_id FROM key_rotation ORDER BY user_id");
+                ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                userIds.add(rs.getInt(1));
+            }
+        }
+        int finished = 0;
+        for (int userId : userIds) {
+            try {
+                rotate(userId, null, listener);
+                finished++;
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Reprise de la rotation des clés de l'utilisateur " + userId
+                        + " impossible", e);
+            }
+        }
+        return finished;
+    }
+
+    private Progress run(int userId, String scheme, Listener listener) throws Exception {
+        String[] oldKeys = readUserKeys(userId);
+        if (oldKeys == null) {
+            throw new SecurityException("Clés introuvables pour l'utilisateur " + userId);
+        }
+        AsymmetricCryptographyService oldCryptography = cryptography(oldKeys[2]);
+
+        Checkpoint checkpoint = loadCheckpoint(userId);
+        if (checkpoint == null) {
+            if (scheme == null) {
+                throw new IllegalArgumentException("Aucune rotation à reprendre pour l'utilisateur " + userId);
+            }
+            checkpoint = begin(userId, scheme);
+        } else {
+            LOGGER.log(Level.INFO, "Reprise de la rotation des clés de l''utilisateur {0} après {1} clé(s)",
+                    new Object[] { userId, checkpoint.processed + checkpoint.failed });
+        }
+        Checkpoint target = checkpoint;
+        AsymmetricCryptographyService newCryptography = cryptography(target.scheme);
+        String kekBase64 = newCryptography.decryptWithPrivateKey(target.wrappedKek, target.privateKey);
+        if (kekBase64 == null) {
+            throw new SecurityException("Clé maîtresse illisible pour l'utilisateur " + userId);
+        }
+        SecretKey kek = new SecretKeySpec(Base64.getDecoder().decode(kekBase64), AES_ALGORITHM);
+
+        // Anciennes clés RSA : emballées avec la clé maîtresse, qui ne change pas
+        Rewrap legacy = storedKey -> KeyHierarchy.wrap(kek, decodeAesKey(
+                oldCryptography.decryptWithPrivateKey(storedKey, oldKeys[1])));
+        // Partages : déchiffrés avec l'ancienne clé privée, chiffrés avec la nouvelle clé publique
+        Rewrap shared = storedKey -> newCryptography.encryptWithPublicKey(
+                requireKey(oldCryptography.decryptWithPrivateKey(storedKey, oldKeys[1])), target.publicKey);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "key-rotation-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Progress progress = new Progress(userId, target.processed, target.failed,
+                target.processed + target.failed + countRemaining(userId, target), System.nanoTime());
+        try {
+            for (int attempt = 1;; attempt++) {
+                progress = process(userId, RECORDING, LEGACY_KEYS, legacy, target, workers, progress, listener);
+                progress = process(userId, SHARE, SHARED_KEYS, shared, target, workers, progress, listener);
+                if (finish(userId, target)) {
+                    break;
+                }
+                if (attempt == MAX_FINISH_ATTEMPTS) {
+                    throw new SQLException("Rotation des clés de l'utilisateur " + userId
+                            + " non terminée : de nouveaux partages arrivent en continu");
+                }
+                // Des partages sont arrivés depuis le dernier lot : ils sont traités avant de conclure
+                progress = progress.withTotal(progress.getProcessed() + progress.getFailed()
+                        + countRemaining(userId, target));
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        rsaService.getKeyRing().invalidate(userId);
+        progress = progress.finished();
+        LOGGER.log(Level.INFO, "Rotation des clés de l''utilisateur {0} terminée: {1}",
+                new Object[] { userId, progress });
+        if (listener != null) {
+            listener.onProgress(progress);
+        }
+        return progress;
+    }
+
+    /**
+     * Génère la nouvelle paire et enregistre le point de reprise initial. La
+     * clé maîtresse est créée si l'utilisateur n'en a pas encore.
+     */
+    private Checkpoint begin(int userId, String scheme) throws Exception {
+        AsymmetricCryptographyService cryptography = cryptography(scheme);
+        String[] keyPair = cryptography.generateKeyPair();
+        KeyHierarchy hierarchy = new KeyHierarchy(databaseService, rsaService);
+        String wrappedKek;
+        try {
+            String kek = Base64.getEncoder().encodeToString(hierarchy.unlock(userId).getEncoded());
+            wrappedKek = cryptography.encryptWithPublicKey(kek, keyPair[0]);
+        } finally {
+            hierarchy.lock();
+        }
+        databaseService.executeWrite(conn -> {
+            try (PreparedStatement insert = conn.prepareStatement("INSERT OR IGNORE INTO key_rotation "
+                    + "(user_id, public_key, private_key, scheme, wrapped_kek) VALUES (?, ?, ?, ?, ?)")) {
+                insert.setInt(1, userId);
+                insert.setString(2, keyPair[0]);
+                insert.setString(3, keyPair[1]);
+                insert.setString(4, cryptography.getScheme());
+                insert.setString(5, wrappedKek);
+                return insert.executeUpdate();
+            }
+        });
+        LOGGER.log(Level.INFO, "Rotation des clés de l''utilisateur {0} vers {1} commencée",
+                new Object[] { userId, cryptography.getScheme() });
+        return loadCheckpoint(userId);
+    }
+
+    /**
+     * Traite par lots les lignes d'un type qui suivent le point de reprise.
+     */
+    private Progress process(int userId, String kind, String from, Rewrap rewrap, Checkpoint checkpoint,
+            ExecutorService workers, Progress progress, Listener listener) throws Exception {
+        while (true) {
+            long afterId = RECORDING.equals(kind) ? checkpoint.lastRecordingId : checkpoint.lastShareId;
+            List<Long> ids = new ArrayList<>(batchSize);
+            List<String> storedKeys = new ArrayList<>(batchSize);
+            try (Connection conn = databaseService.connect();
+                    PreparedStatement stmt = conn.prepareStatement(
+                            "SELECT id, encryption_key " + from + " ORDER BY id LIMIT ?")) {
+                stmt.setInt(1, userId);
+                stmt.setLong(2, afterId);
+                stmt.setInt(3, batchSize);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getLong("id"));
+                        storedKeys.add(rs.getString("encryption_key"));
+                    }
+                }
+            }
+            if (ids.isEmpty()) {
+                return progress;
+            }
+
+            List<Future<String>> futures = new ArrayList<>(storedKeys.size());
+            for (String storedKey : storedKeys) {
+                futures.add(workers.submit(() -> rewrap.apply(storedKey)));
+            }
+            String[] rewrapped = new String[futures.size()];
+            int failed = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    rewrapped[i] = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    // Une clé que l'ancienne clé privée ne déchiffre pas est déjà illisible : elle est laissée telle quelle
+                    failed++;
+                    LOGGER.log(Level.WARNING, "Clé {0} n° {1} non emballée: {2}",
+                            new Object[] { kind, ids.get(i), e.getCause().getMessage() });
+                }
+            }
+
+            long lastId = ids.get(ids.size() - 1);
+            int processed = ids.size() - failed;
+            int failedCount = failed;
+            databaseService.executeWrite(conn -> {
+                try (PreparedStatement insert = conn.prepareStatement("INSERT OR REPLACE INTO key_rotation_items "
+                        + "(user_id, kind, row_id, encryption_key) VALUES (?, ?, ?, ?)")) {
+                    for (int i = 0; i < rewrapped.length; i++) {
+                        if (rewrapped[i] == null) {
+                            continue;
+                        }
+                        insert.setInt(1, userId);
+                        insert.setString(2, kind);
+                        insert.setLong(3, ids.get(i));
+                        insert.setString(4, rewrapped[i]);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+                String column = RECORDING.equals(kind) ? "last_recording_id" : "last_share_id";
+                try (PreparedStatement update = conn.prepareStatement("UPDATE key_rotation SET " + column
+                        + " = ?, processed = processed + ?, failed = failed + ? WHERE user_id = ?")) {
+                    update.setLong(1, lastId);
+                    update.setInt(2, processed);
+                    update.setInt(3, failedCount);
+                    update.setInt(4, userId);
+                    return update.executeUpdate();
+                }
+            });
+            if (RECORDING.equals(kind)) {
+                checkpoint.lastRecordingId = lastId;
+            } else {
+                checkpoint.lastShareId = lastId;
+            }
+            progress = progress.advance(processed, failedCount);
+            if (listener != null) {
+                listener.onProgress(progress);
+            }
+        }
+    }
+
+    /**
+     * Applique les lots et remplace la paire de l'utilisateur, dans une seule
+     * transaction. Retourne false, sans rien modifier, si des lignes sont
+     * arrivées après le dernier lot.
+     */
+    private boolean finish(int userId, Checkpoint checkpoint) throws SQLException {
+        return databaseService.executeWrite(conn -> {
+            if (count(conn, LEGACY_KEYS, userId, checkpoint.lastRecordingId) > 0
+                    || count(conn, SHARED_KEYS, userId, checkpoint.lastShareId) > 0) {
+                return false;
+            }
+            applyItems(conn, userId, RECORDING, "recordings");
+            applyItems(conn, userId, SHARE, "shared_recordings");
+            try (PreparedStatement update = conn.prepareStatement(
+                    "UPDATE user_kek SET wrapped_kek = ? WHERE user_id = ?")) {
+                update.setString(1, checkpoint.wrappedKek);
+                update.setInt(2, userId);
+                update.executeUpdate();
+            }
+            try (PreparedStatement update = conn.prepareStatement(
+                    "UPDATE user_keys SET public_key = ?, private_key = ?, scheme = ? WHERE user_id = ?")) {
+                update.setString(1, checkpoint.publicKey);
+                update.setString(2, checkpoint.privateKey);
+                update.setString(3, checkpoint.scheme);
+                update.setInt(4, userId);
+                update.executeUpdate();
+            }
+            try (PreparedStatement delete = conn.prepareStatement("DELETE FROM key_rotation_items WHERE user_id = ?")) {
+                delete.setInt(1, userId);
+                delete.executeUpdate();
+            }
+            try (PreparedStatement delete = conn.prepareStatement("DELETE FROM key_rotation WHERE user_id = ?")) {
+                delete.setInt(1, userId);
+                delete.executeUpdate();
+            }
+            return true;
+        });
+    }
+
+    private static void applyItems(Connection conn, int userId, String kind, String table) throws SQLException {
+        try (PreparedStatement update = conn.prepareStatement("UPDATE " + table + " SET encryption_key = "
+                + "(SELECT i.encryption_key FROM key_rotation_items i "
+                + "WHERE i.user_id = ? AND i.kind = ? AND i.row_id = " + table + ".id) "
+                + "WHERE id IN (SELECT row_id FROM key_rotation_items WHERE user_id = ? AND kind = ?)")) {
+            update.setInt(1, userId);
+            update.setString(2, kind);
+            update.setInt(3, userId);
+            update.setString(4, kind);
+            update.executeUpdate();
+        }
+    }
+
+    private long countRemaining(int userId, Checkpoint checkpoint) throws SQLException {
+        try (Connection conn = databaseService.connect()) {
+            return count(conn, LEGACY_KEYS, userId, checkpoint.lastRecordingId)
+                    + count(conn, SHARED_KEYS, userId, checkpoint.lastShareId);
+        }
+    }
+
+    private static long count(Connection conn, String from, int userId, long afterId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) " + from)) {
+            stmt.setInt(1, userId);
+            stmt.setLong(2, afterId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private Checkpoint loadCheckpoint(int userId) throws SQLException {
+        try (Connection conn = databaseService.connect();
+                PreparedStatement stmt = conn.prepareStatement("SELECT public_key, private_key, scheme, wrapped_kek, "
+                        + "last_recording_id, last_share_id, processed, failed FROM key_rotation WHERE user_id = ?")) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Checkpoint checkpoint = new Checkpoint();
+                checkpoint.publicKey = rs.getString("public_key");
+                checkpoint.privateKey = rs.getString("private_key");
+                checkpoint.scheme = rs.getString("scheme");
+                checkpoint.wrappedKek = rs.getString("wrapped_kek");
+                checkpoint.lastRecordingId = rs.getLong("last_recording_id");
+                checkpoint.lastShareId = rs.getLong("last_share_id");
+                checkpoint.processed = rs.getLong("processed");
+                checkpoint.failed = rs.getLong("failed");
+                return checkpoint;
+            }
+        }
+    }
+
+    private String[] readUserKeys(int userId) throws SQLException {
+        try (Connection conn = databaseService.connect();
+                PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT public_key, private_key, scheme FROM user_keys WHERE user_id = ?")) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new String[] { rs.getString(1), rs.getString(2), rs.getString(3) } : null;
+            }
+        }
+    }
+
+    private AsymmetricCryptographyService cryptography(String scheme) {
+        return scheme == null || RSACryptographyService.SCHEME.equalsIgnoreCase(scheme)
+                ? rsaService
+                : AsymmetricCryptographyService.forScheme(scheme);
+    }
+
+    private static String requireKey(String keyBase64) {
+        if (keyBase64 == null) {
+            throw new SecurityException("Déchiffrement avec l'ancienne clé privée impossible");
+        }
+        return keyBase64;
+    }
+
+    private static SecretKey decodeAesKey(String keyBase64) {
+        return new SecretKeySpec(Base64.getDecoder().decode(requireKey(keyBase64)), AES_ALGORITHM);
+    }
+
+    /**
+     * Emballage d'une clé stockée avec les nouvelles clés.
+     */
+    private interface Rewrap {
+        String apply(String storedKey) throws Exception;
+    }
+
+    /**
+     * Point de reprise d'une rotation, tel qu'il est enregistré dans key_rotation.
+     */
+    private static final class Checkpoint {
+        String publicKey;
+        String privateKey;
+        String scheme;
+        String wrappedKek;
+        long lastRecordingId;
+        long lastShareId;
+        long processed;
+        long failed;
+    }
+
+    /**
+     * Avancement d'une rotation. L'estimation de la fin est fondée sur le
+     * débit observé depuis le début de l'exécution en cours.
+     */
+    public static final class Progress {
+        private final int userId;
+        private final long processed;
+        private final long failed;
+        private final long total;
+        private final long startNanos;
+        private final long doneAtStart;
+        private final long elapsedNanos;
+        private final boolean finished;
+
+        Progress(int userId, long processed, long failed, long total, long startNanos) {
+            this(userId, processed, failed, total, startNanos, processed + failed, 0, false);
+        }
+
+        private Progress(int userId, long processed, long failed, long total, long startNanos, long doneAtStart,
+                long elapsedNanos, boolean finished) {
+            this.userId = userId;
+            this.processed = processed;
+            this.failed = failed;
+            this.total = total;
+            this.startNanos = startNanos;
+            this.doneAtStart = doneAtStart;
+            this.elapsedNanos = elapsedNanos;
+            this.finished = finished;
+        }
+
+        Progress advance(int processedDelta, int failedDelta) {
+            return new Progress(userId, processed + processedDelta, failed + failedDelta, total, startNanos,
+                    doneAtStart, System.nanoTime() - startNanos, false);
+        }
+
+        Progress withTotal(long newTotal) {
+            return new Progress(userId, processed, failed, newTotal, startNanos, doneAtStart, elapsedNanos, false);
+        }
+
+        Progress finished() {
+            return new Progress(userId, processed, failed, processed + failed, startNanos, doneAtStart,
+                    System.nanoTime() - startNanos, true);
+        }
+
+        /**
+         * @return L'utilisateur dont les clés sont remplacées
+         */
+        public int getUserId() {
+            return userId;
+        }
+
+        /**
+         * @return Le nombre de clés emballées à nouveau
+         */
+        public long getProcessed() {
+            return processed;
+        }
+
+        /**
+         * @return Le nombre de clés illisibles avec l'ancienne clé privée, laissées telles quelles
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return Le nombre total de clés à traiter
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * @return La part des clés traitées, entre 0 et 1
+         */
+        public double getFraction() {
+            return total == 0 ? 1 : (double) (processed + failed) / total;
+        }
+
+        /**
+         * @return La durée estimée avant la fin en millisecondes, ou -1 tant
+         *         qu'aucun lot n'a été traité
+         */
+        public long getEtaMillis() {
+            long done = processed + failed;
+            long doneThisRun = done - doneAtStart;
+            if (finished || done >= total) {
+                return 0;
+            }
+            if (doneThisRun <= 0) {
+                return -1;
+            }
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos * (total - done) / doneThisRun);
+        }
+
+        /**
+         * @return true une fois la nouvelle paire de clés en place
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d clé(s), %d en échec, %.0f %%, fin estimée dans %d ms", processed + failed,
+                    total, failed, getFraction() * 100, getEtaMillis());
+        }
+    }
+}
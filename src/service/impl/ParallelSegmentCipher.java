@@ -0,0 +1,348 @@
+package service.impl;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.sound.sampled.AudioFormat;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chiffrement et déchiffrement des conteneurs v2 sur plusieurs cœurs.
+ * <p>
+ * Chaque segment d'un conteneur est chiffré indépendamment avec un nonce
+ * dérivé de son numéro : les segments d'un lot sont donc traités en parallèle
+ * sur un pool fork-join, puis écrits dans l'ordre. Le résultat ne dépend pas
+ * du nombre de threads, il est identique octet pour octet à celui du flux
+ * séquentiel pour un même en-tête. La mémoire utilisée est bornée par la
+ * taille d'un lot, soit deux segments par thread.
+ */
+public final class ParallelSegmentCipher {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int TAG_SIZE = 16;
+    // Segments par thread et par lot : le second occupe un thread pendant l'écriture du premier
+    private static final int SEGMENTS_PER_THREAD = 2;
+
+    private static ParallelSegmentCipher shared;
+
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    /**
+     * Retourne l'instance partagée. Son nombre de threads vaut le nombre de
+     * cœurs disponibles, ou la propriété système "crypto.parallelism".
+     *
+     * @return L'instance partagée
+     */
+    public static synchronized ParallelSegmentCipher getShared() {
+        if (shared == null) {
+            shared = new ParallelSegmentCipher(
+                    Integer.getInteger("crypto.parallelism", Runtime.getRuntime().availableProcessors()));
+        }
+        return shared;
+    }
+
+    /**
+     * Crée un chiffrement parallèle avec son propre pool de threads.
+     *
+     * @param parallelism Le nombre de threads de chiffrement
+     */
+    public ParallelSegmentCipher(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Le nombre de threads doit être positif");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("segment-cipher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        this.batchSize = parallelism * SEGMENTS_PER_THREAD;
+    }
+
+    /**
+     * @return Le nombre de threads de chiffrement
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Chiffre un flux complet vers un conteneur v2. Le flux de sortie n'est pas fermé.
+     *
+     * @param in     Les données audio en clair
+     * @param out    La destination du conteneur
+     * @param key    La clé AES
+     * @param header L'en-tête du conteneur, qui fixe la taille des segments et la base de nonce
+     * @throws IOException En cas d'erreur d'entrée/sortie ou de chiffrement
+     */
+    public void encrypt(InputStream in, OutputStream out, SecretKey key, EncryptedAudioContainer.Header header)
+            throws IOException {
+        if (key == null) {
+            throw new IllegalArgumentException("La clé de chiffrement est requise.");
+        }
+        int segmentSize = header.getSegmentSize();
+        // Un emplacement de plus que le lot : le segment lu d'avance pour savoir si le précédent est le dernier
+        Segment[] segments = allocate(batchSize + 1, segmentSize);
+        out.write(header.encodedRef());
+
+        int index = 0;
+        Segment pending = segments[0];
+        pending.length = in.readNBytes(pending.plain, 0, segmentSize);
+        boolean finished = false;
+        while (!finished) {
+            int count = 0;
+            while (count < batchSize) {
+                Segment segment = segments[count];
+                segment.index = index++;
+                count++;
+                if (segment.length < segmentSize) {
+                    segment.last = true;
+                    finished = true;
+                    break;
+                }
+                Segment next = segments[count];
+                next.length = in.readNBytes(next.plain, 0, segmentSize);
+                if (next.length == 0) {
+                    segment.last = true;
+                    finished = true;
+                    break;
+                }
+                segment.last = false;
+            }
+
+            run(segments, count, segment -> segment.sealedLength = EncryptedAudioContainer.sealSegment(
+                    segment.cipher, key, header, segment.index, segment.last, segment.plain, segment.length,
+                    segment.sealed));
+            for (int i = 0; i < count; i++) {
+                Segment segment = segments[i];
+                failIfNeeded(segment, "Erreur lors du chiffrement du segment ");
+                EncryptedAudioContainer.writeSegmentPrefix(out, segment.length, segment.last);
+                out.write(segment.sealed, 0, segment.sealedLength);
+            }
+            clear(segments, count);
+
+            // Le segment lu d'avance devient le premier du lot suivant
+            Segment carried = segments[count];
+            segments[count] = segments[0];
+            segments[0] = carried;
+        }
+        out.flush();
+    }
+
+    /**
+     * Déchiffre un conteneur v2 complet. Le flux de sortie n'est pas fermé.
+     *
+     * @param in  Le conteneur chiffré
+     * @param out La destination des données audio en clair
+     * @param key La clé AES
+     * @return Le format audio lu dans l'en-tête
+     * @throws IOException Si le conteneur est invalide, altéré ou tronqué
+     */
+    public AudioFormat decrypt(InputStream in, OutputStream out, SecretKey key) throws IOException {
+        return transform(in, out, key, null);
+    }
+
+    /**
+     * Rechiffre un conteneur v2 avec une nouvelle clé : chaque segment est
+     * déchiffré puis rechiffré par la même tâche, sans que l'enregistrement
+     * complet existe en clair. Le flux de sortie n'est pas fermé.
+     *
+     * @param in     Le conteneur chiffré avec l'ancienne clé
+     * @param out    La destination du nouveau conteneur
+     * @param key    L'ancienne clé AES
+     * @param newKey La nouvelle clé AES
+     * @return Le format audio lu dans l'en-tête
+     * @throws IOException Si le conteneur est invalide, altéré ou tronqué
+     */
+    public AudioFormat reencrypt(InputStream in, OutputStream out, SecretKey key, SecretKey newKey)
+            throws IOException {
+        if (newKey == null) {
+            throw new IllegalArgumentException("La nouvelle clé de chiffrement est requise.");
+        }
+        return transform(in, out, key, newKey);
+    }
+
+    /**
+     * Arrête les threads de chiffrement. Réservé aux instances non partagées.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Déchiffre les segments par lots, puis écrit les données en clair ou,
+     * si une nouvelle clé est fournie, les segments rechiffrés.
+     */
+    private AudioFormat transform(InputStream in, OutputStream out, SecretKey key, SecretKey newKey)
+            throws IOException {
+        if (key == null) {
+            throw new IllegalArgumentException("La clé de déchiffrement est requise.");
+        }
+        DataInputStream data = new DataInputStream(in);
+        EncryptedAudioContainer.Header header = EncryptedAudioContainer.Header.read(data);
+        EncryptedAudioContainer.Header newHeader = newKey == null ? null
+                : EncryptedAudioContainer.Header.create(header.getSegmentSize(), header.getFormat());
+        Segment[] segments = allocate(batchSize, header.getSegmentSize());
+        if (newHeader != null) {
+            out.write(newHeader.encodedRef());
+        }
+
+        int index = 0;
+        boolean lastSeen = false;
+        while (!lastSeen) {
+            int count = 0;
+            while (count < batchSize && !lastSeen) {
+                Segment segment = segments[count++];
+                int prefix = EncryptedAudioContainer.readSegmentPrefix(data, header);
+                segment.index = index++;
+                segment.last = EncryptedAudioContainer.isLast(prefix);
+                segment.sealedLength = EncryptedAudioContainer.segmentLength(prefix) + TAG_SIZE;
+                try {
+                    data.readFully(segment.sealed, 0, segment.sealedLength);
+                } catch (EOFException e) {
+                    throw new IOException("Conteneur tronqué au segment " + segment.index, e);
+                }
+                if (segment.last) {
+                    lastSeen = true;
+                    if (data.read() != -1) {
+                        throw new IOException("Données inattendues après le segment final");
+                    }
+                }
+            }
+
+            run(segments, count, segment -> {
+                segment.length = EncryptedAudioContainer.openSegment(segment.cipher, key, header, segment.index,
+                        segment.last, ByteBuffer.wrap(segment.sealed, 0, segment.sealedLength),
+                        ByteBuffer.wrap(segment.plain));
+                if (newHeader != null) {
+                    segment.sealedLength = EncryptedAudioContainer.sealSegment(segment.cipher, newKey, newHeader,
+                            segment.index, segment.last, segment.plain, segment.length, segment.sealed);
+                }
+            });
+            for (int i = 0; i < count; i++) {
+                Segment segment = segments[i];
+                failIfNeeded(segment, "Erreur lors du déchiffrement du segment ");
+                if (newHeader == null) {
+                    out.write(segment.plain, 0, segment.length);
+                } else {
+                    EncryptedAudioContainer.writeSegmentPrefix(out, segment.length, segment.last);
+                    out.write(segment.sealed, 0, segment.sealedLength);
+                }
+            }
+            clear(segments, count);
+        }
+        out.flush();
+        return header.getFormat();
+    }
+
+    /**
+     * Applique une opération aux premiers segments d'un tableau, en parallèle
+     * s'il y en a plusieurs. Les erreurs sont conservées dans chaque segment
+     * afin d'être signalées dans l'ordre du conteneur.
+     */
+    private void run(Segment[] segments, int count, SegmentOperation operation) {
+        if (count == 1) {
+            segments[0].apply(operation);
+            return;
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                RecursiveAction[] tasks = new RecursiveAction[count];
+                for (int i = 0; i < count; i++) {
+                    Segment segment = segments[i];
+                    tasks[i] = new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            segment.apply(operation);
+                        }
+                    };
+                }
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    private static void failIfNeeded(Segment segment, String message) throws IOException {
+        if (segment.error == null) {
+            return;
+        }
+        if (segment.error instanceof AEADBadTagException) {
+            throw new IOException("Segment " + segment.index + " altéré ou clé incorrecte", segment.error);
+        }
+        throw new IOException(message + segment.index, segment.error);
+    }
+
+    private static Segment[] allocate(int count, int segmentSize) throws IOException {
+        Segment[] segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        return segments;
+    }
+
+    private static void clear(Segment[] segments, int count) {
+        for (int i = 0; i < count; i++) {
+            segments[i].clear();
+        }
+    }
+
+    /**
+     * Opération de chiffrement appliquée à un segment.
+     */
+    private interface SegmentOperation {
+        void apply(Segment segment) throws GeneralSecurityException;
+    }
+
+    /**
+     * Emplacement réutilisé d'un lot : un segment en clair, sa forme chiffrée
+     * et son Cipher. Le Cipher appartient à l'emplacement et non au thread :
+     * GCM refuse de réutiliser le nonce de l'initialisation précédente, ce
+     * qu'un Cipher partagé entre deux conteneurs de même en-tête provoquerait.
+     */
+    private static final class Segment {
+        final Cipher cipher;
+        final byte[] plain;
+        final byte[] sealed;
+        int length;
+        int sealedLength;
+        int index;
+        boolean last;
+        GeneralSecurityException error;
+
+        Segment(int segmentSize) throws IOException {
+            try {
+                this.cipher = Cipher.getInstance(TRANSFORMATION);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("AES/GCM indisponible", e);
+            }
+            this.plain = new byte[segmentSize];
+            this.sealed = new byte[segmentSize + TAG_SIZE];
+        }
+
+        void apply(SegmentOperation operation) {
+            try {
+                operation.apply(this);
+            } catch (GeneralSecurityException e) {
+                error = e;
+            }
+        }
+
+        void clear() {
+            java.util.Arrays.fill(plain, 0, length, (byte) 0);
+            error = null;
+        }
+    }
+}
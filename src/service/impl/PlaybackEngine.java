@@ -0,0 +1,534 @@
+package service.impl;
+
+import util.AudioLineManager;
+import util.LineBufferTuner;
+
+import javax.sound.sampled.SourceDataLine;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moteur de lecture audio de l'application.
+ * <p>
+ * Toutes les lectures s'exécutent sur un seul thread dédié : une seule ligne
+ * de sortie est ouverte à la fois, et une nouvelle lecture remplace la
+ * précédente, qui rend sa ligne avant que la suivante n'obtienne la sienne. Les
+ * lignes viennent d'une {@link AudioLineManager} et restent ouvertes entre deux
+ * lectures, ce qui évite de payer l'ouverture à chaque démarrage. Une
+ * lecture passe par les états de {@link State}. L'arrêt et la pause arrêtent
+ * aussi la ligne, ce qui débloque l'écriture en cours : l'arrêt prend effet en
+ * moins d'une période du tampon de la ligne, quel que soit l'état.
+ * <p>
+ * La piste est écrite sur la ligne par blocs dont la taille suit le
+ * remplissage de la ligne ({@link LineBufferTuner}), sans dépasser
+ * l'intervalle de signalement de la position ; une recherche ({@link #seek(Duration)})
+ * rouvre la piste à la trame demandée, sans déchiffrer ce qui précède, et vide
+ * le tampon de la ligne. La position signalée est celle jouée par la ligne, et
+ * non celle des données déjà écrites dans son tampon.
+ */
+public class PlaybackEngine implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(PlaybackEngine.class.getName());
+
+    /** Intervalle par défaut entre deux signalements de la position. */
+    public static final Duration DEFAULT_POSITION_INTERVAL = Duration.ofMillis(250);
+
+    // Bornes de la taille d'un bloc écrit sur la ligne, en millisecondes d'audio
+    private static final long MIN_CHUNK_MILLIS = 10;
+    private static final long MAX_CHUNK_MILLIS = 500;
+    // Durée d'inactivité après laquelle le thread de lecture s'arrête
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
+
+    private static PlaybackEngine shared;
+
+    /**
+     * États d'une lecture.
+     */
+    public enum State {
+        /** Aucune lecture n'a encore été demandée. */
+        IDLE,
+        /** Chargement de la piste et déchiffrement du premier segment. */
+        BUFFERING,
+        /** La ligne joue la piste. */
+        PLAYING,
+        /** La ligne est arrêtée, la lecture reprend au même point. */
+        PAUSED,
+        /** La lecture est terminée ou arrêtée, et sa ligne est rendue. */
+        STOPPED
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final AudioLineManager lines;
+    private volatile long positionIntervalNanos = DEFAULT_POSITION_INTERVAL.toNanos();
+
+    // Protège la lecture courante, son état et l'accès concurrent à sa ligne
+    private final Object lock = new Object();
+    private Session session;
+    private State state = State.IDLE;
+
+    /**
+     * Retourne le moteur partagé par toute l'application.
+     *
+     * @return Le moteur partagé
+     */
+    public static synchronized PlaybackEngine getShared() {
+        if (shared == null) {
+            shared = new PlaybackEngine();
+        }
+        return shared;
+    }
+
+    /**
+     * Crée un moteur qui joue sur les lignes de la réserve partagée.
+     */
+    public PlaybackEngine() {
+        this(AudioLineManager.getShared());
+    }
+
+    /**
+     * Crée un moteur qui joue sur les lignes d'une réserve.
+     *
+     * @param lines La réserve des lignes de sortie ; chaque ligne lui est
+     *              rendue à la fin de sa lecture, et le délai de démarrage
+     *              de chaque lecture y est mesuré
+     */
+    public PlaybackEngine(AudioLineManager lines) {
+        this.lines = lines;
+        this.executor = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "audio-playback");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Règle l'intervalle entre deux signalements de la position, pour les
+     * lectures suivantes. Un intervalle court réduit aussi la taille des blocs
+     * écrits sur la ligne.
+     *
+     * @param interval L'intervalle, entre 10 et 500 ms
+     */
+    public void setPositionInterval(Duration interval) {
+        long millis = Math.max(MIN_CHUNK_MILLIS, Math.min(interval.toMillis(), MAX_CHUNK_MILLIS));
+        this.positionIntervalNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Joue une piste depuis le début.
+     *
+     * @see #play(Callable, AudioRecordingServiceFixExtended.PlaybackListener, Duration)
+     */
+    public CompletableFuture<Long> play(PlaybackTrack track,
+            AudioRecordingServiceFixExtended.PlaybackListener listener) {
+        return play(() -> track, listener, Duration.ZERO);
+    }
+
+    /**
+     * Remplace la lecture courante par une nouvelle lecture. La piste est
+     * chargée sur le thread de lecture, dans l'état {@link State#BUFFERING},
+     * une fois la lecture précédente terminée et sa ligne rendue.
+     *
+     * @param loader   Le chargement de la piste
+     * @param listener Le suivi de cette lecture (position et états), ou null
+     * @param start    L'instant de départ dans la piste
+     * @return Un futur complété avec le nombre d'octets écrits sur la ligne,
+     *         une fois la ligne rendue, ou avec l'erreur rencontrée
+     */
+    public CompletableFuture<Long> play(Callable<PlaybackTrack> loader,
+            AudioRecordingServiceFixExtended.PlaybackListener listener, Duration start) {
+        Session next = new Session(loader, listener, start);
+        Session previous;
+        synchronized (lock) {
+            previous = session;
+            session = next;
+        }
+        if (previous != null) {
+            previous.stop();
+        }
+        setState(next, State.BUFFERING);
+        try {
+            executor.execute(() -> run(next));
+        } catch (RejectedExecutionException e) {
+            setState(next, State.STOPPED);
+            next.future.completeExceptionally(new IllegalStateException("Moteur de lecture fermé", e));
+        }
+        return next.future;
+    }
+
+    /**
+     * Arrête la lecture courante. La ligne est arrêtée et vidée tout de suite ;
+     * le futur de la lecture est complété une fois la ligne rendue.
+     *
+     * @return false si aucune lecture n'était en cours
+     */
+    public boolean stop() {
+        Session current = current();
+        return current != null && current.stop();
+    }
+
+    /**
+     * Met la lecture courante en pause, sans fermer sa ligne.
+     *
+     * @return false si aucune lecture n'est en train de jouer
+     */
+    public boolean pause() {
+        Session current = current();
+        return current != null && current.pause();
+    }
+
+    /**
+     * Reprend la lecture courante là où elle a été mise en pause.
+     *
+     * @return false si la lecture courante n'est pas en pause
+     */
+    public boolean resume() {
+        Session current = current();
+        return current != null && current.resume();
+    }
+
+    /**
+     * Place la lecture courante à un instant de la piste. La recherche est
+     * appliquée avant le bloc suivant.
+     *
+     * @param position L'instant visé, borné à la durée de la piste
+     * @return false si aucune lecture n'est en cours
+     */
+    public boolean seek(Duration position) {
+        Session current = current();
+        return current != null && current.seek(position);
+    }
+
+    /**
+     * @return La position jouée par la lecture courante, ou la position
+     *         atteinte par la dernière lecture
+     */
+    public Duration position() {
+        Session current = current();
+        return current == null ? Duration.ZERO : current.position();
+    }
+
+    /**
+     * @return La durée de la piste courante, ou null si elle n'est pas encore chargée
+     */
+    public Duration getDuration() {
+        Session current = current();
+        PlaybackTrack track = current == null ? null : current.track;
+        return track == null ? null : track.getDuration();
+    }
+
+    /**
+     * @return L'état de la lecture courante
+     */
+    public State getState() {
+        synchronized (lock) {
+            return state;
+        }
+    }
+
+    /**
+     * @return true si une lecture est en chargement, en cours ou en pause
+     */
+    public boolean isActive() {
+        State current = getState();
+        return current == State.BUFFERING || current == State.PLAYING || current == State.PAUSED;
+    }
+
+    /**
+     * Arrête la lecture courante et le thread de lecture.
+     */
+    @Override
+    public void close() {
+        stop();
+        executor.shutdown();
+    }
+
+    private Session current() {
+        synchronized (lock) {
+            return session;
+        }
+    }
+
+    /**
+     * Change l'état si la lecture est toujours la lecture courante ; une
+     * lecture remplacée ne modifie plus l'état du moteur.
+     */
+    private void setState(Session owner, State next) {
+        synchronized (lock) {
+            if (session != owner || state == next) {
+                return;
+            }
+            state = next;
+        }
+        LOGGER.log(Level.FINE, "Lecture: {0}", next);
+        if (owner.listener != null) {
+            owner.listener.onStateChanged(next);
+        }
+    }
+
+    private void run(Session playback) {
+        SourceDataLine line = null;
+        long written = 0;
+        Exception error = null;
+        try {
+            if (!playback.stopRequested) {
+                playback.load();
+            }
+            if (!playback.stopRequested) {
+                line = lines.acquireSourceLine(playback.track.getFormat());
+                written = playback.play(line);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Erreur de lecture: {0}", e.getMessage());
+            error = e;
+        } finally {
+            playback.release();
+            if (line != null) {
+                LOGGER.log(Level.FINE, "Ligne de {0}", lines.getPlaybackTuner());
+            }
+            // La ligne reste ouverte dans la réserve pour la lecture suivante
+            lines.release(line);
+            setState(playback, State.STOPPED);
+            playback.notifyPosition();
+        }
+        if (error != null) {
+            playback.future.completeExceptionally(error);
+        } else {
+            playback.future.complete(written);
+        }
+    }
+
+    /**
+     * Une lecture : sa piste, sa ligne pendant qu'elle joue, et sa position.
+     * Le flux de la piste n'est utilisé que par le thread de lecture.
+     */
+    private final class Session {
+        final Callable<PlaybackTrack> loader;
+        final AudioRecordingServiceFixExtended.PlaybackListener listener;
+        final CompletableFuture<Long> future = new CompletableFuture<>();
+        final long requestedAt = System.nanoTime();
+
+        volatile PlaybackTrack track;
+        volatile boolean stopRequested;
+        private volatile Duration pendingSeek;
+        // Trame de départ de la dernière recherche et position de la ligne à ce moment
+        private volatile long baseFrame;
+        private volatile long lineFrameAtBase;
+        private SourceDataLine line;
+        private boolean paused;
+        private InputStream stream;
+
+        Session(Callable<PlaybackTrack> loader, AudioRecordingServiceFixExtended.PlaybackListener listener,
+                Duration start) {
+            this.loader = loader;
+            this.listener = listener;
+            this.pendingSeek = start;
+        }
+
+        /**
+         * Charge la piste et ouvre son flux à la position de départ.
+         */
+        void load() throws Exception {
+            PlaybackTrack loaded = loader.call();
+            long frame = loaded.frameAt(takeSeek());
+            baseFrame = frame;
+            track = loaded;
+            stream = loaded.open(frame);
+        }
+
+        long play(SourceDataLine target) throws IOException {
+            PlaybackTrack playing = track;
+            int frameSize = playing.getFrameSize();
+            long intervalNanos = positionIntervalNanos;
+            int chunkFrames = (int) Math.max(1, playing.getFormat().getFrameRate() * intervalNanos / 1e9);
+            byte[] buffer = new byte[chunkFrames * frameSize];
+            LineBufferTuner tuner = lines.getPlaybackTuner();
+            // Un tampon vide est attendu avant la première écriture et après un vidage
+            boolean primed = false;
+            synchronized (lock) {
+                if (stopRequested) {
+                    return 0;
+                }
+                lineFrameAtBase = target.getLongFramePosition();
+                line = target;
+                target.start();
+            }
+            lines.getPlayStartLatency().record(System.nanoTime() - requestedAt);
+            setState(this, State.PLAYING);
+
+            long written = 0;
+            long nextUpdate = System.nanoTime() + intervalNanos;
+            while (!stopRequested) {
+                Duration seekTo = takeSeek();
+                if (seekTo != null) {
+                    reposition(target, playing.frameAt(seekTo));
+                    primed = false;
+                }
+                int block = Math.min(buffer.length, tuner.sample(target, primed));
+                int length = stream.readNBytes(buffer, 0, block);
+                int end = length - length % frameSize;
+                if (end <= 0) {
+                    break;
+                }
+                // L'écriture rend la main dès que la ligne est arrêtée : pause ou arrêt
+                int offset = 0;
+                while (offset < end && awaitResume()) {
+                    offset += target.write(buffer, offset, end - offset);
+                }
+                written += offset;
+                primed = true;
+                long now = System.nanoTime();
+                if (now >= nextUpdate) {
+                    nextUpdate = now + intervalNanos;
+                    notifyPosition();
+                }
+            }
+            if (awaitResume()) {
+                target.drain();
+            }
+            return written;
+        }
+
+        private void reposition(SourceDataLine target, long frame) throws IOException {
+            closeStream();
+            stream = track.open(frame);
+            synchronized (lock) {
+                // Les données de l'ancienne position encore dans le tampon de la ligne sont abandonnées
+                target.flush();
+                lineFrameAtBase = target.getLongFramePosition();
+                baseFrame = frame;
+            }
+            LOGGER.log(Level.FINE, "Lecture repositionnée à {0}", track.timeOf(frame));
+        }
+
+        /**
+         * Attend la fin de la pause.
+         *
+         * @return false si la lecture a été arrêtée
+         */
+        private boolean awaitResume() {
+            synchronized (lock) {
+                try {
+                    while (paused && !stopRequested) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stopRequested = true;
+                }
+                return !stopRequested;
+            }
+        }
+
+        boolean stop() {
+            synchronized (lock) {
+                if (stopRequested || future.isDone()) {
+                    return false;
+                }
+                stopRequested = true;
+                paused = false;
+                if (line != null) {
+                    line.stop();
+                    line.flush();
+                }
+                lock.notifyAll();
+            }
+            return true;
+        }
+
+        boolean pause() {
+            synchronized (lock) {
+                if (stopRequested || paused || line == null) {
+                    return false;
+                }
+                paused = true;
+                line.stop();
+            }
+            setState(this, State.PAUSED);
+            return true;
+        }
+
+        boolean resume() {
+            synchronized (lock) {
+                if (stopRequested || !paused) {
+                    return false;
+                }
+                paused = false;
+                line.start();
+                lock.notifyAll();
+            }
+            setState(this, State.PLAYING);
+            return true;
+        }
+
+        boolean seek(Duration position) {
+            if (stopRequested || future.isDone()) {
+                return false;
+            }
+            pendingSeek = position;
+            return true;
+        }
+
+        private Duration takeSeek() {
+            Duration seekTo = pendingSeek;
+            pendingSeek = null;
+            return seekTo;
+        }
+
+        Duration position() {
+            PlaybackTrack current = track;
+            return current == null ? Duration.ZERO : current.timeOf(currentFrame());
+        }
+
+        private long currentFrame() {
+            long frame = baseFrame;
+            synchronized (lock) {
+                if (line != null) {
+                    frame += Math.max(0, line.getLongFramePosition() - lineFrameAtBase);
+                }
+            }
+            PlaybackTrack current = track;
+            return current == null ? frame : Math.min(frame, current.getFrameCount());
+        }
+
+        /**
+         * Détache la ligne et ferme le flux ; la position atteinte est conservée.
+         */
+        void release() {
+            long frame = currentFrame();
+            synchronized (lock) {
+                baseFrame = frame;
+                line = null;
+                paused = false;
+            }
+            closeStream();
+        }
+
+        private void closeStream() {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Fermeture du flux de lecture: {0}", e.getMessage());
+                }
+                stream = null;
+            }
+        }
+
+        void notifyPosition() {
+            PlaybackTrack current = track;
+            if (listener != null && current != null) {
+                listener.onPositionChanged(position(), current.getDuration());
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package service.impl;
+
+import util.ReadAheadInputStream;
+
+import javax.crypto.SecretKey;
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+
+/**
+ * Enregistrement prêt à être joué par le {@link PlaybackEngine}, lisible à
+ * partir de n'importe quelle trame.
+ * <p>
+ * Un conteneur v2 est déchiffré en flux, d'avance, à partir du segment qui
+ * contient la trame demandée ({@link SegmentIndex}) ; des données déjà en
+ * clair, issues de l'ancien format, sont lues directement en mémoire.
+ */
+public abstract class PlaybackTrack {
+
+    private final AudioFormat format;
+    private final int frameSize;
+    private final long frameCount;
+
+    private PlaybackTrack(AudioFormat format, long length) {
+        this.format = format;
+        this.frameSize = Math.max(1, format.getFrameSize());
+        this.frameCount = length / frameSize;
+    }
+
+    /**
+     * Prépare la lecture d'un conteneur v2. Seuls l'en-tête et la taille du
+     * fichier sont lus.
+     *
+     * @param file Le conteneur
+     * @param key  La clé AES de l'enregistrement
+     * @return La piste du conteneur
+     * @throws IOException Si le fichier n'est pas un conteneur v2 valide
+     */
+    public static PlaybackTrack ofContainer(File file, SecretKey key) throws IOException {
+        SegmentIndex index = SegmentIndex.of(file);
+        return new PlaybackTrack(index.getFormat(), index.getPlaintextLength()) {
+            @Override
+            public InputStream open(long frame) throws IOException {
+                ReadAheadInputStream in = new ReadAheadInputStream(
+                        EncryptedAudioContainer.openAt(file, key, index, index.plaintextOffset(frame)),
+                        index.getHeader().getSegmentSize(), ReadAheadInputStream.DEFAULT_BLOCKS,
+                        "playback-read-ahead");
+                try {
+                    // Le premier segment est authentifié avant d'alimenter la ligne audio
+                    in.await();
+                } catch (IOException e) {
+                    in.close();
+                    throw e;
+                }
+                return in;
+            }
+        };
+    }
+
+    /**
+     * Prépare la lecture de données audio déjà en clair.
+     *
+     * @param audio  Les données audio
+     * @param format Le format des données
+     * @return La piste des données
+     */
+    public static PlaybackTrack ofAudio(byte[] audio, AudioFormat format) {
+        return new PlaybackTrack(format, audio.length) {
+            @Override
+            public InputStream open(long frame) {
+                int offset = (int) Math.min(frame * getFrameSize(), audio.length);
+                return new ByteArrayInputStream(audio, offset, audio.length - offset);
+            }
+        };
+    }
+
+    /**
+     * Ouvre les données en clair à partir d'une trame. Pour un conteneur, le
+     * premier segment lu est déjà déchiffré et authentifié au retour.
+     *
+     * @param frame La première trame à lire
+     * @return Le flux des données, à fermer après la lecture
+     * @throws IOException Si le premier segment est illisible ou altéré
+     */
+    public abstract InputStream open(long frame) throws IOException;
+
+    /**
+     * @return Le format audio de la piste
+     */
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return La taille d'une trame en octets
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * @return Le nombre de trames complètes
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return La durée de la piste
+     */
+    public Duration getDuration() {
+        return timeOf(frameCount);
+    }
+
+    /**
+     * Retourne la trame jouée à un instant donné, bornée à la piste.
+     *
+     * @param position L'instant depuis le début
+     * @return Le numéro de trame
+     */
+    public long frameAt(Duration position) {
+        long frame = (long) (position.toNanos() / 1e9 * format.getFrameRate());
+        return Math.max(0, Math.min(frame, frameCount));
+    }
+
+    /**
+     * @param frame Un numéro de trame
+     * @return L'instant de cette trame depuis le début
+     */
+    public Duration timeOf(long frame) {
+        return Duration.ofNanos((long) (frame * 1e9 / format.getFrameRate()));
+    }
+}
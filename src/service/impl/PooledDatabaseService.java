@@ -0,0 +1,465 @@
+package service.impl;
+
+import service.DatabaseService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Service de base de données SQLite avec pool de connexions.
+ *
+ * Les connexions physiques sont conservées ouvertes et réutilisées : l'appelant
+ * reçoit un mandataire dont la méthode close() rend la connexion au pool au lieu
+ * de la fermer. Les instructions laissées ouvertes sont fermées au retour dans le
+ * pool, une connexion inutilisée depuis un moment est validée avant d'être
+ * prêtée, et une connexion empruntée trop longtemps est signalée comme fuite
+ * avec la pile d'appel de l'emprunt.
+ *
+ * La base est ouverte en mode WAL : les lectures s'exécutent en parallèle sur
+ * les connexions du pool sans être bloquées par une écriture, tandis que les
+ * écritures passent par une file unique qui les regroupe en transactions.
+ */
+public class PooledDatabaseService implements DatabaseService {
+    private static final Logger LOGGER = Logger.getLogger(PooledDatabaseService.class.getName());
+
+    public static final String DEFAULT_URL = "jdbc:sqlite:database.db";
+    public static final int DEFAULT_POOL_SIZE = 8;
+    public static final long DEFAULT_LEAK_THRESHOLD_MS = 30_000;
+
+    // Délai d'attente d'une connexion libre avant d'abandonner
+    private static final long BORROW_TIMEOUT_MS = 10_000;
+    // Durée d'inactivité au-delà de laquelle une connexion est validée avant d'être prêtée
+    private static final long VALIDATION_IDLE_MS = 5_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+    // Au-delà, les instructions déjà fermées sont retirées du suivi
+    private static final int MAX_TRACKED_STATEMENTS = 32;
+
+    // Réglages appliqués à chaque connexion physique ; NORMAL suffit en mode WAL
+    private static final String[] CONNECTION_PRAGMAS = {
+            "PRAGMA synchronous = NORMAL",
+            "PRAGMA cache_size = -8000",
+            "PRAGMA mmap_size = 268435456",
+            "PRAGMA busy_timeout = 5000",
+    };
+
+    private static PooledDatabaseService shared;
+
+    private final String url;
+    private final int maxSize;
+    private final long leakThresholdMillis;
+    private final Semaphore permits;
+    private final BlockingQueue<PhysicalConnection> idle;
+    private final Map<Connection, Lease> leases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService leakDetector;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final DatabaseWriteQueue writeQueue;
+    private volatile boolean closed;
+    private boolean migrated;
+
+    /**
+     * Retourne le pool partagé de la base de l'application. Sa taille peut être
+     * configurée avec la propriété système "db.pool.size".
+     *
+     * @return Le pool partagé
+     */
+    public static synchronized PooledDatabaseService getShared() {
+        if (shared == null) {
+            shared = new PooledDatabaseService(DEFAULT_URL,
+                    Integer.getInteger("db.pool.size", DEFAULT_POOL_SIZE),
+                    Long.getLong("db.pool.leakThresholdMs", DEFAULT_LEAK_THRESHOLD_MS));
+            // Le schéma est migré une seule fois, au premier accès à la base
+            try {
+                shared.initializeDatabase();
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Erreur lors de la migration du schéma de la base de données", e);
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Crée un pool de connexions.
+     *
+     * @param url L'URL JDBC de la base
+     * @param maxSize Le nombre maximal de connexions simultanées
+     * @param leakThresholdMillis La durée d'emprunt au-delà de laquelle une fuite est signalée
+     */
+    public PooledDatabaseService(String url, int maxSize, long leakThresholdMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("La taille du pool doit être positive");
+        }
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("Driver SQLite non trouvé", e);
+        }
+        this.url = url;
+        this.maxSize = maxSize;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+        this.leakDetector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-pool-leak-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, leakThresholdMillis / 2);
+        this.leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+        this.writeQueue = new DatabaseWriteQueue(this::openConnection, DatabaseWriteQueue.DEFAULT_MAX_BATCH);
+    }
+
+    @Override
+    public Connection connect() throws SQLException {
+        if (closed) {
+            throw new SQLException("Le pool de connexions est fermé");
+        }
+        try {
+            if (!permits.tryAcquire(BORROW_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Aucune connexion disponible après " + BORROW_TIMEOUT_MS
+                        + " ms (pool de " + maxSize + " connexions)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attente d'une connexion interrompue", e);
+        }
+
+        try {
+            PhysicalConnection physical = takeValidIdle();
+            if (physical == null) {
+                physical = new PhysicalConnection(openConnection());
+            }
+            borrowed.incrementAndGet();
+            Lease lease = new Lease(physical);
+            Connection proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, lease);
+            leases.put(proxy, lease);
+            lease.proxy = proxy;
+            return proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void closeConnection(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Erreur lors de la fermeture de la connexion", e);
+            }
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql, Object... params) throws SQLException {
+        return executeWrite(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (int i = 0; i < params.length; i++) {
+                    pstmt.setObject(i + 1, params[i]);
+                }
+
+                int result = pstmt.executeUpdate();
+
+                // Si c'est une insertion, on retourne l'ID généré
+                if (sql.trim().toUpperCase().startsWith("INSERT")) {
+                    try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            return rs.getInt(1);
+                        }
+                    }
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Exécute l'opération sur le thread d'écriture unique, regroupée avec les
+     * autres écritures en attente dans une même transaction.
+     */
+    @Override
+    public <T> T executeWrite(WriteOperation<T> operation) throws SQLException {
+        if (closed) {
+            throw new SQLException("Le pool de connexions est fermé");
+        }
+        return writeQueue.execute(operation);
+    }
+
+    /**
+     * Applique les migrations du schéma. Seul le premier appel accède à la base.
+     */
+    @Override
+    public synchronized void initializeDatabase() throws SQLException {
+        if (!migrated) {
+            int version = new SchemaMigrator(this).migrate();
+            migrated = true;
+            LOGGER.log(Level.INFO, "Schéma de la base de données à la version {0}", version);
+        }
+    }
+
+    /**
+     * Ferme toutes les connexions inactives et refuse les nouveaux emprunts.
+     * Les connexions encore empruntées sont fermées à leur retour.
+     */
+    public void shutdown() {
+        closed = true;
+        leakDetector.shutdownNow();
+        writeQueue.shutdown();
+        PhysicalConnection physical;
+        while ((physical = idle.poll()) != null) {
+            physical.closeQuietly();
+        }
+    }
+
+    /**
+     * @return Le nombre maximal de connexions simultanées
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return Le nombre de connexions actuellement empruntées
+     */
+    public int getActiveCount() {
+        return leases.size();
+    }
+
+    /**
+     * @return Le nombre de connexions inactives dans le pool
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return Le nombre de connexions physiques ouvertes depuis la création du pool
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * @return Le nombre total d'emprunts
+     */
+    public long getBorrowCount() {
+        return borrowed.get();
+    }
+
+    /**
+     * @return Le nombre de fuites signalées
+     */
+    public long getLeakCount() {
+        return leaksDetected.get();
+    }
+
+    /**
+     * @return La file d'écriture du pool
+     */
+    public DatabaseWriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    /**
+     * Ouvre une connexion physique et applique les réglages de la base.
+     */
+    private Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement stmt = connection.createStatement()) {
+            // Le mode WAL est persistant dans le fichier, mais l'appliquer est sans effet s'il l'est déjà
+            stmt.execute("PRAGMA journal_mode = WAL");
+            for (String pragma : CONNECTION_PRAGMAS) {
+                stmt.execute(pragma);
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        created.incrementAndGet();
+        return connection;
+    }
+
+    private PhysicalConnection takeValidIdle() {
+        PhysicalConnection physical;
+        while ((physical = idle.poll()) != null) {
+            if (System.currentTimeMillis() - physical.lastReturnedAt < VALIDATION_IDLE_MS
+                    || physical.isValid()) {
+                return physical;
+            }
+            LOGGER.log(Level.INFO, "Connexion invalide retirée du pool");
+            physical.closeQuietly();
+        }
+        return null;
+    }
+
+    private void release(Lease lease) {
+        leases.remove(lease.proxy);
+        PhysicalConnection physical = lease.physical;
+        try {
+            if (closed || !physical.reset() || !idle.offer(physical)) {
+                physical.closeQuietly();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (Lease lease : leases.values()) {
+            if (!lease.reported && now - lease.borrowedAt > leakThresholdMillis) {
+                lease.reported = true;
+                leaksDetected.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Fuite de connexion probable : empruntée depuis "
+                        + (now - lease.borrowedAt) + " ms par " + lease.borrower, lease.borrowSite);
+            }
+        }
+    }
+
+    private static boolean isClosedQuietly(Statement statement) {
+        try {
+            return statement.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Connexion physique conservée par le pool.
+     */
+    private static class PhysicalConnection {
+        private final Connection connection;
+        private final List<Statement> openStatements = new ArrayList<>();
+        private volatile long lastReturnedAt = System.currentTimeMillis();
+
+        PhysicalConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        boolean isValid() {
+            try {
+                return !connection.isClosed() && connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Remet la connexion dans son état initial avant son retour dans le pool.
+         *
+         * @return true si la connexion est réutilisable
+         */
+        boolean reset() {
+            try {
+                // Fermer les instructions oubliées : elles retiendraient des verrous SQLite
+                for (Statement statement : openStatements) {
+                    if (!statement.isClosed()) {
+                        statement.close();
+                    }
+                }
+                openStatements.clear();
+                if (connection.isClosed()) {
+                    return false;
+                }
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                connection.clearWarnings();
+                lastReturnedAt = System.currentTimeMillis();
+                return true;
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Connexion non réutilisable, elle sera fermée", e);
+                return false;
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Erreur ignorée lors de la fermeture d'une connexion", e);
+            }
+        }
+    }
+
+    /**
+     * Emprunt d'une connexion : gère les appels au mandataire remis à l'appelant.
+     */
+    private class Lease implements InvocationHandler {
+        private final PhysicalConnection physical;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final String borrower = Thread.currentThread().getName();
+        private final Exception borrowSite = new Exception("Emprunt de la connexion");
+        private Connection proxy;
+        private volatile boolean released;
+        private volatile boolean reported;
+
+        Lease(PhysicalConnection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || physical.connection.isClosed();
+                case "equals":
+                    return target == args[0];
+                case "hashCode":
+                    return System.identityHashCode(target);
+                case "toString":
+                    return "PooledConnection[" + physical.connection + "]";
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connexion déjà rendue au pool");
+            }
+            try {
+                Object result = method.invoke(physical.connection, args);
+                if (result instanceof Statement) {
+                    List<Statement> statements = physical.openStatements;
+                    if (statements.size() >= MAX_TRACKED_STATEMENTS) {
+                        statements.removeIf(PooledDatabaseService::isClosedQuietly);
+                    }
+                    statements.add((Statement) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package service.impl;
+
+import model.AudioRecording;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * File de finalisation des enregistrements arrêtés.
+ * Les étapes coûteuses qui suivent la capture (chiffrement RSA de la clé,
+ * accès à la base de données, sauvegarde des métadonnées) sont exécutées sur
+ * un thread dédié, dans l'ordre de soumission, sans bloquer l'appelant ni le
+ * démarrage de l'enregistrement suivant.
+ */
+public class RecordingFinalizer {
+    private static final Logger LOGGER = Logger.getLogger(RecordingFinalizer.class.getName());
+
+    // Durée d'inactivité après laquelle le thread de finalisation s'arrête
+    private static final long IDLE_TIMEOUT_SECONDS = 5;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Crée la file de finalisation. Le thread n'est pas un démon : une
+     * finalisation en cours est menée à son terme avant l'arrêt de la JVM.
+     */
+    public RecordingFinalizer() {
+        this.executor = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "recording-finalizer"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Soumet la finalisation d'un enregistrement.
+     *
+     * @param task La tâche de finalisation, qui retourne l'enregistrement sauvegardé
+     * @return Un futur complété avec l'enregistrement sauvegardé ou avec l'erreur rencontrée
+     */
+    public CompletableFuture<AudioRecording> submit(Callable<AudioRecording> task) {
+        CompletableFuture<AudioRecording> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Erreur lors de la finalisation de l'enregistrement", e);
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Retourne le nombre de finalisations en attente ou en cours.
+     *
+     * @return Le nombre de finalisations non terminées
+     */
+    public int getPendingCount() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+
+    /**
+     * Arrête la file après l'exécution des finalisations déjà soumises.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,123 @@
+package service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Empreinte d'intégrité des fichiers d'enregistrement.
+ * <p>
+ * L'empreinte est le SHA-256 du fichier ".enc" tel qu'il est écrit sur le
+ * disque, notée "sha256:" suivi de sa valeur hexadécimale. Elle est calculée
+ * au fil de la capture, à mesure que les segments chiffrés sont écrits, et se
+ * vérifie sans clé : un fichier peut donc être contrôlé en arrière-plan sans
+ * que son propriétaire soit connecté.
+ */
+public final class RecordingIntegrity {
+
+    /** Préfixe des empreintes, qui identifie l'algorithme. */
+    public static final String PREFIX = "sha256:";
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private RecordingIntegrity() {
+    }
+
+    /**
+     * Crée une empreinte vide.
+     *
+     * @return Un nouvel objet de hachage
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " indisponible", e);
+        }
+    }
+
+    /**
+     * Enveloppe un flux de sortie pour hacher les octets au moment où ils y
+     * sont écrits.
+     *
+     * @param out Le flux vers le fichier
+     * @return Le flux qui hache puis transmet les octets
+     */
+    public static DigestOutputStream digesting(OutputStream out) {
+        return new DigestOutputStream(out, newDigest());
+    }
+
+    /**
+     * Termine une empreinte et la met au format stocké en base.
+     *
+     * @param digest L'objet de hachage, remis à zéro par l'appel
+     * @return L'empreinte au format "sha256:hex"
+     */
+    public static String toHash(MessageDigest digest) {
+        byte[] bytes = digest.digest();
+        StringBuilder hash = new StringBuilder(PREFIX.length() + bytes.length * 2).append(PREFIX);
+        for (byte b : bytes) {
+            hash.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Lit un fichier d'enregistrement jusqu'au bout et retourne son
+     * empreinte. La structure d'un conteneur v2 est contrôlée au passage
+     * (en-tête, longueur des segments, segment final, absence de données
+     * après la fin) ; seul le tampon fourni est utilisé, quelle que soit la
+     * taille du fichier.
+     *
+     * @param in     Le contenu du fichier
+     * @param buffer Le tampon de lecture
+     * @return L'empreinte au format "sha256:hex"
+     * @throws IOException Si la lecture échoue ou si le conteneur est tronqué ou mal formé
+     */
+    public static String hash(InputStream in, byte[] buffer) throws IOException {
+        DigestInputStream digesting = new DigestInputStream(in, newDigest());
+        DataInputStream data = new DataInputStream(digesting);
+        byte[] start = new byte[EncryptedAudioContainer.HEADER_SIZE];
+        int read = data.readNBytes(start, 0, start.length);
+        if (read == start.length && EncryptedAudioContainer.isContainer(start)) {
+            EncryptedAudioContainer.Header header =
+                    EncryptedAudioContainer.Header.read(new ByteArrayInputStream(start));
+            int index = 0;
+            boolean last = false;
+            while (!last) {
+                int prefix = EncryptedAudioContainer.readSegmentPrefix(data, header);
+                last = EncryptedAudioContainer.isLast(prefix);
+                try {
+                    skipFully(data, EncryptedAudioContainer.segmentLength(prefix) + 16, buffer);
+                } catch (EOFException e) {
+                    throw new IOException("Conteneur tronqué au segment " + index, e);
+                }
+                index++;
+            }
+            if (data.read() != -1) {
+                throw new IOException("Données inattendues après le segment final");
+            }
+        } else {
+            // Ancien format : seule l'empreinte peut être contrôlée
+            while (data.read(buffer) != -1) {
+                // Les octets sont hachés à la lecture
+            }
+        }
+        return toHash(digesting.getMessageDigest());
+    }
+
+    private static void skipFully(DataInputStream in, int length, byte[] buffer) throws IOException {
+        while (length > 0) {
+            int chunk = Math.min(length, buffer.length);
+            in.readFully(buffer, 0, chunk);
+            length -= chunk;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package service.impl;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache de session des clés AES d'enregistrement déjà déballées.
+ *
+ * Retrouver la clé d'un enregistrement coûte une lecture de la clé privée de
+ * l'utilisateur et un déchiffrement RSA 2048 bits. Les clés obtenues sont
+ * conservées par identifiant d'enregistrement, associées à la forme chiffrée
+ * dont elles proviennent : si la clé stockée en base change, l'entrée n'est
+ * plus servie. Les entrées expirent après une durée fixe, leur nombre est
+ * borné, et le matériel de clé est effacé à l'éviction comme à la
+ * déconnexion.
+ */
+public class RecordingKeyCache {
+    private static final Logger LOGGER = Logger.getLogger(RecordingKeyCache.class.getName());
+
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    public static final long DEFAULT_TTL_MS = 10 * 60 * 1000L;
+
+    private static final String AES_ALGORITHM = "AES";
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    // Entrées de la moins à la plus récemment utilisée
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * Crée un cache avec la taille et la durée de vie par défaut.
+     */
+    public RecordingKeyCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MS);
+    }
+
+    /**
+     * Crée un cache.
+     *
+     * @param maxEntries Le nombre maximal de clés conservées
+     * @param ttlMillis La durée de vie d'une clé en millisecondes
+     */
+    public RecordingKeyCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::nanoTime);
+    }
+
+    /**
+     * Crée un cache avec une horloge donnée.
+     *
+     * @param maxEntries Le nombre maximal de clés conservées
+     * @param ttlMillis La durée de vie d'une clé en millisecondes
+     * @param clock L'horloge, en nanosecondes
+     */
+    public RecordingKeyCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("La taille et la durée de vie du cache doivent être positives");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.clock = clock;
+    }
+
+    /**
+     * Retourne la clé déballée d'un enregistrement.
+     *
+     * @param recordingId L'identifiant de l'enregistrement
+     * @param wrappedKey La clé chiffrée stockée pour cet enregistrement
+     * @return La clé AES, ou null si elle n'est pas dans le cache ou a expiré
+     */
+    public synchronized SecretKey get(int recordingId, String wrappedKey) {
+        Entry entry = entries.get(recordingId);
+        if (entry != null && clock.getAsLong() - entry.createdAt > ttlNanos) {
+            entries.remove(recordingId);
+            entry.destroy();
+            expirations++;
+            entry = null;
+        }
+        if (entry == null || !entry.wrappedKey.equals(wrappedKey)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new SecretKeySpec(entry.material, AES_ALGORITHM);
+    }
+
+    /**
+     * Conserve la clé déballée d'un enregistrement.
+     *
+     * @param recordingId L'identifiant de l'enregistrement
+     * @param wrappedKey La clé chiffrée dont la clé provient
+     * @param key La clé AES
+     */
+    public synchronized void put(int recordingId, String wrappedKey, SecretKey key) {
+        if (wrappedKey == null || key == null || key.getEncoded() == null) {
+            return;
+        }
+        Entry previous = entries.put(recordingId, new Entry(wrappedKey, key.getEncoded(), clock.getAsLong()));
+        if (previous != null) {
+            previous.destroy();
+        }
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            eldest.destroy();
+            evictions++;
+        }
+    }
+
+    /**
+     * Retire et efface la clé d'un enregistrement.
+     *
+     * @param recordingId L'identifiant de l'enregistrement
+     */
+    public synchronized void invalidate(int recordingId) {
+        Entry entry = entries.remove(recordingId);
+        if (entry != null) {
+            entry.destroy();
+        }
+    }
+
+    /**
+     * Efface toutes les clés, à la déconnexion ou au changement d'utilisateur.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            entry.destroy();
+        }
+        if (!entries.isEmpty()) {
+            LOGGER.log(Level.INFO, "{0} clé(s) d''enregistrement effacée(s) du cache", entries.size());
+        }
+        entries.clear();
+    }
+
+    /**
+     * @return Le nombre de clés conservées
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Le nombre de clés servies par le cache
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return Le nombre de clés absentes, expirées ou périmées
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return Le nombre de clés retirées pour respecter la taille maximale
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return Le nombre de clés retirées après expiration
+     */
+    public synchronized long getExpirationCount() {
+        return expirations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RecordingKeyCache[taille=" + entries.size() + ", succès=" + hits + ", échecs=" + misses
+                + ", évictions=" + evictions + ", expirations=" + expirations + "]";
+    }
+
+    /**
+     * Clé conservée et forme chiffrée dont elle provient.
+     */
+    private static final class Entry {
+        private final String wrappedKey;
+        private final byte[] material;
+        private final long createdAt;
+
+        Entry(String wrappedKey, byte[] material, long createdAt) {
+            this.wrappedKey = wrappedKey;
+            this.material = material;
+            this.createdAt = createdAt;
+        }
+
+        void destroy() {
+            Arrays.fill(material, (byte) 0);
+        }
+    }
+}
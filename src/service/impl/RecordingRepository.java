@@ -0,0 +1,113 @@
+package service.impl;
+
+import model.AudioRecording;
+import service.DatabaseService;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Accès en lecture aux listes d'enregistrements.
+ *
+ * Les enregistrements d'un utilisateur et ceux qui lui sont partagés sont
+ * lus par une seule requête, page par page, avec l'adresse du propriétaire
+ * et les informations de partage. Aucune clé n'est déchiffrée ici : la clé
+ * d'un enregistrement est résolue au moment de sa lecture.
+ */
+public class RecordingRepository {
+    private static final Logger LOGGER = Logger.getLogger(RecordingRepository.class.getName());
+
+    private final DatabaseService databaseService;
+
+    /**
+     * Crée le dépôt.
+     *
+     * @param databaseService Le service de base de données
+     */
+    public RecordingRepository(DatabaseService databaseService) {
+        this.databaseService = databaseService;
+    }
+
+    /**
+     * Retourne une page des enregistrements accessibles à un utilisateur, du
+     * plus récent au plus ancien. Les enregistrements partagés ont un nom
+     * préfixé par l'adresse de leur propriétaire.
+     *
+     * @param userId L'identifiant de l'utilisateur
+     * @param offset Le nombre d'enregistrements à sauter
+     * @param limit La taille maximale de la page, ou une valeur négative pour tout lire
+     * @return Les enregistrements de la page
+     * @throws SQLException Si la lecture échoue
+     */
+    public List<AudioRecording> findAccessibleRecordings(int userId, int offset, int limit) throws SQLException {
+        List<AudioRecording> recordings = new ArrayList<>(limit > 0 ? Math.min(limit, 256) : 16);
+
+        try (Connection conn = databaseService.connect()) {
+            SchemaDescriptor schema = SchemaDescriptor.of(conn);
+            try (PreparedStatement stmt = conn.prepareStatement(schema.getAccessibleRecordingsQuery())) {
+                int index = 1;
+                stmt.setInt(index++, userId);
+                if (schema.hasSharedRecordings()) {
+                    stmt.setInt(index++, userId);
+                    stmt.setInt(index++, userId);
+                }
+                stmt.setInt(index++, limit);
+                stmt.setInt(index, Math.max(0, offset));
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        recordings.add(map(rs));
+                    }
+                }
+            }
+        }
+        return recordings;
+    }
+
+    private static AudioRecording map(ResultSet rs) throws SQLException {
+        int ownerId = rs.getInt("user_id");
+        String ownerEmail = rs.getString("owner_email");
+        int shareId = rs.getInt("share_id");
+        String name = rs.getString("name");
+        if (shareId > 0) {
+            // Préfixer le nom pour indiquer qu'il s'agit d'un enregistrement partagé
+            name = "[Partagé par " + (ownerEmail != null ? ownerEmail : "utilisateur " + ownerId) + "] " + name;
+        }
+
+        AudioRecording recording = new AudioRecording(
+                rs.getInt("id"),
+                name,
+                rs.getString("file_path"),
+                LocalDateTime.parse(rs.getString("timestamp")),
+                rs.getInt("duration"),
+                ownerId);
+        recording.setOwnerEmail(ownerEmail);
+        recording.setShareId(shareId);
+        recording.setSharedDate(parseDate(rs.getString("shared_date")));
+        return recording;
+    }
+
+    /**
+     * Les dates de partage sont écrites par LocalDateTime.toString() ou par la
+     * valeur par défaut CURRENT_TIMESTAMP de SQLite.
+     */
+    private static LocalDateTime parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value.replace(' ', 'T'));
+        } catch (DateTimeParseException e) {
+            LOGGER.log(Level.FINE, "Date de partage illisible: {0}", value);
+            return null;
+        }
+    }
+}
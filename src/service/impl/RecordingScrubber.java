@@ -0,0 +1,361 @@
+package service.impl;
+
+import service.DatabaseService;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Vérification périodique des fichiers d'enregistrement.
+ * <p>
+ * Chaque fichier ".enc" référencé en base est relu en flux, à travers un
+ * tampon de taille fixe, pour recalculer son empreinte et contrôler la
+ * structure du conteneur. Le débit de lecture total est plafonné et le nombre
+ * de fichiers lus en même temps est borné, afin de ne pas concurrencer la
+ * capture et la lecture audio. Les fichiers altérés, tronqués ou absents sont
+ * signalés dans le journal et dans le rapport de la dernière passe.
+ */
+public class RecordingScrubber {
+    private static final Logger LOGGER = Logger.getLogger(RecordingScrubber.class.getName());
+
+    /** Débit de lecture par défaut : 8 Mo/s. */
+    public static final long DEFAULT_BYTES_PER_SECOND = 8L * 1024 * 1024;
+    /** Nombre de fichiers vérifiés en même temps par défaut. */
+    public static final int DEFAULT_PARALLELISM = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DatabaseService databaseService;
+    private final int parallelism;
+    private final Throttle throttle;
+    private ScheduledExecutorService scheduler;
+    private volatile Report lastReport;
+
+    /**
+     * Crée un vérificateur.
+     *
+     * @param databaseService Le service de base de données des enregistrements
+     * @param parallelism     Le nombre maximal de fichiers lus en même temps
+     * @param bytesPerSecond  Le débit de lecture total maximal, ou 0 pour ne pas le limiter
+     */
+    public RecordingScrubber(DatabaseService databaseService, int parallelism, long bytesPerSecond) {
+        if (parallelism <= 0 || bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Parallélisme ou débit invalide");
+        }
+        this.databaseService = databaseService;
+        this.parallelism = parallelism;
+        this.throttle = new Throttle(bytesPerSecond);
+    }
+
+    /**
+     * Lance une passe de vérification toutes les intervalMinutes minutes, sur
+     * un thread de faible priorité. Sans effet si les passes sont déjà planifiées.
+     *
+     * @param initialDelayMinutes Le délai avant la première passe
+     * @param intervalMinutes     L'intervalle entre deux passes
+     */
+    public synchronized void start(long initialDelayMinutes, long intervalMinutes) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "recording-scrubber");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                scrub();
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Erreur lors de la vérification des enregistrements", e);
+            }
+        }, initialDelayMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Arrête les passes planifiées. Une passe en cours est interrompue.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * @return Le rapport de la dernière passe terminée, ou null
+     */
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Vérifie une fois tous les enregistrements référencés en base.
+     *
+     * @return Le rapport de la passe
+     * @throws SQLException Si la liste des enregistrements ne peut pas être lue
+     * @throws InterruptedException Si la passe est interrompue
+     */
+    public Report scrub() throws SQLException, InterruptedException {
+        List<Entry> entries = loadEntries();
+        long start = System.nanoTime();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "recording-scrubber-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        Report report = new Report();
+        try {
+            List<Future<?>> futures = new ArrayList<>(entries.size());
+            ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+            for (Entry entry : entries) {
+                futures.add(workers.submit(() -> verify(entry, buffers.get(), report)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOGGER.log(Level.SEVERE, "Erreur inattendue lors de la vérification", e.getCause());
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        lastReport = report;
+        LOGGER.log(Level.INFO, "Vérification terminée: {0}", report);
+        return report;
+    }
+
+    private void verify(Entry entry, byte[] buffer, Report report) {
+        File file = entry.filePath == null ? null : new File(entry.filePath);
+        if (file == null || !file.isFile()) {
+            LOGGER.log(Level.WARNING, "Fichier de l''enregistrement ID {0} introuvable: {1}",
+                    new Object[] { entry.id, entry.filePath });
+            report.flag(entry.id, "fichier introuvable", true);
+            return;
+        }
+        String actual;
+        try (InputStream in = new BufferedInputStream(new ThrottledInputStream(new FileInputStream(file), throttle),
+                BUFFER_SIZE)) {
+            actual = RecordingIntegrity.hash(in, buffer);
+        } catch (IOException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            LOGGER.log(Level.SEVERE, "Enregistrement ID {0} corrompu: {1}", new Object[] { entry.id, e.getMessage() });
+            report.flag(entry.id, e.getMessage(), false);
+            report.bytes.addAndGet(file.length());
+            return;
+        }
+        report.bytes.addAndGet(file.length());
+        if (entry.integrityHash == null || entry.integrityHash.isEmpty()) {
+            // Enregistrement antérieur aux empreintes : seule la structure est contrôlée
+            report.unhashed.incrementAndGet();
+        } else if (!entry.integrityHash.equals(actual)) {
+            LOGGER.log(Level.SEVERE, "Empreinte de l''enregistrement ID {0} différente de celle enregistrée",
+                    entry.id);
+            report.flag(entry.id, "empreinte différente", false);
+            return;
+        }
+        report.verified.incrementAndGet();
+    }
+
+    private List<Entry> loadEntries() throws SQLException {
+        List<Entry> entries = new ArrayList<>();
+        try (Connection conn = databaseService.connect()) {
+            SchemaDescriptor schema = SchemaDescriptor.of(conn);
+            String sql = "SELECT id, " + schema.getFilePathColumn() + " AS file_path, "
+                    + schema.getIntegrityHashColumn() + " AS integrity_hash FROM recordings ORDER BY id";
+            try (PreparedStatement stmt = conn.prepareStatement(sql); ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new Entry(rs.getInt("id"), rs.getString("file_path"),
+                            rs.getString("integrity_hash")));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Rapport d'une passe de vérification.
+     */
+    public static final class Report {
+        private final AtomicInteger verified = new AtomicInteger();
+        private final AtomicInteger unhashed = new AtomicInteger();
+        private final AtomicInteger missing = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final Map<Integer, String> problems = Collections.synchronizedMap(new LinkedHashMap<>());
+        private long elapsedNanos;
+
+        private void flag(int recordingId, String reason, boolean fileMissing) {
+            if (fileMissing) {
+                missing.incrementAndGet();
+            }
+            problems.put(recordingId, reason);
+        }
+
+        /**
+         * @return Le nombre de fichiers intacts, empreinte comprise si elle existe
+         */
+        public int getVerifiedCount() {
+            return verified.get();
+        }
+
+        /**
+         * @return Le nombre de fichiers intacts sans empreinte enregistrée
+         */
+        public int getUnhashedCount() {
+            return unhashed.get();
+        }
+
+        /**
+         * @return Le nombre de fichiers introuvables
+         */
+        public int getMissingCount() {
+            return missing.get();
+        }
+
+        /**
+         * @return Les enregistrements en défaut et la raison, par identifiant
+         */
+        public Map<Integer, String> getProblems() {
+            synchronized (problems) {
+                return new LinkedHashMap<>(problems);
+            }
+        }
+
+        /**
+         * @return Le nombre d'octets lus
+         */
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * @return La durée de la passe en millisecondes
+         */
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        /**
+         * @return Le nombre de fichiers vérifiés par seconde
+         */
+        public double getFilesPerSecond() {
+            int files = verified.get() + problems.size();
+            return elapsedNanos == 0 ? 0 : files * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d intact(s) dont %d sans empreinte, %d en défaut dont %d introuvable(s), "
+                    + "%d octets en %d ms (%.1f fichiers/s)", verified.get(), unhashed.get(), problems.size(),
+                    missing.get(), bytes.get(), getElapsedMillis(), getFilesPerSecond());
+        }
+    }
+
+    /**
+     * Enregistrement à vérifier.
+     */
+    private static final class Entry {
+        final int id;
+        final String filePath;
+        final String integrityHash;
+
+        Entry(int id, String filePath, String integrityHash) {
+            this.id = id;
+            this.filePath = filePath;
+            this.integrityHash = integrityHash;
+        }
+    }
+
+    /**
+     * Limiteur de débit partagé par tous les fichiers d'une passe : chaque
+     * lecture réserve sa part du débit et attend son tour si nécessaire.
+     */
+    private static final class Throttle {
+        private final long bytesPerSecond;
+        private long nextFreeNanos;
+
+        Throttle(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void acquire(int bytes) throws IOException {
+            if (bytesPerSecond == 0 || bytes <= 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(now, nextFreeNanos);
+                nextFreeNanos = start + bytes * 1_000_000_000L / bytesPerSecond;
+                waitNanos = start - now;
+            }
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Vérification interrompue");
+                }
+            }
+        }
+    }
+
+    /**
+     * Flux dont chaque lecture est soumise au limiteur de débit.
+     */
+    private static final class ThrottledInputStream extends FilterInputStream {
+        private final Throttle throttle;
+
+        ThrottledInputStream(InputStream in, Throttle throttle) {
+            super(in);
+            this.throttle = throttle;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                throttle.acquire(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            throttle.acquire(n);
+            return n;
+        }
+    }
+}
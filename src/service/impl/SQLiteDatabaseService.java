@@ -3,16 +3,14 @@ package service.impl;
 import service.DatabaseService;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 public class SQLiteDatabaseService implements DatabaseService {
-    private static final String DB_URL = "jdbc:sqlite:database.db";
-    
     @Override
     public Connection connect() throws SQLException {
-        return DriverManager.getConnection(DB_URL);
+        // Connexions réutilisées via le pool partagé de l'application
+        return PooledDatabaseService.getShared().connect();
     }
     
     @Override
@@ -28,37 +26,26 @@ public class SQLiteDatabaseService implements DatabaseService {
     
     @Override
     public int executeUpdate(String sql, Object... params) throws SQLException {
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        
-        try {
-            conn = connect();
-            pstmt = conn.prepareStatement(sql);
-            
-            for (int i = 0; i < params.length; i++) {
-                pstmt.setObject(i + 1, params[i]);
+        return executeWrite(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < params.length; i++) {
+                    pstmt.setObject(i + 1, params[i]);
+                }
+                
+                return pstmt.executeUpdate();
             }
-            
-            return pstmt.executeUpdate();
-        } finally {
-            if (pstmt != null) try { pstmt.close(); } catch (SQLException e) { /* ignore */ }
-            closeConnection(conn);
-        }
+        });
+    }
+    
+    @Override
+    public <T> T executeWrite(WriteOperation<T> operation) throws SQLException {
+        // Écriture confiée à la file unique du pool partagé
+        return PooledDatabaseService.getShared().executeWrite(operation);
     }
     
     @Override
     public void initializeDatabase() throws SQLException {
-        try (Connection conn = connect()) {
-            // Création de la table users si elle n'existe pas
-            conn.createStatement().execute(
-                "CREATE TABLE IF NOT EXISTS users (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "email TEXT UNIQUE NOT NULL," +
-                "password_hash TEXT NOT NULL," +
-                "salt TEXT NOT NULL," +
-                "is_admin INTEGER NOT NULL DEFAULT 0" +
-                ")"
-            );
-        }
+        // Le schéma est créé et mis à jour par les migrations du pool partagé
+        PooledDatabaseService.getShared().initializeDatabase();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,232 @@
+package service.impl;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Description du schéma effectif d'une base de données.
+ *
+ * Les anciennes bases peuvent nommer la colonne du chemin "filepath" au lieu
+ * de "file_path" ou ne pas avoir de table shared_recordings. Ces variantes sont
+ * détectées une seule fois par base à partir des métadonnées JDBC, puis les
+ * requêtes correspondantes sont construites une fois pour toutes. La
+ * description est recalculée après chaque migration du schéma.
+ */
+public final class SchemaDescriptor {
+    private static final Logger LOGGER = Logger.getLogger(SchemaDescriptor.class.getName());
+
+    // Descriptions résolues, par URL de base
+    private static final Map<String, SchemaDescriptor> CACHE = new ConcurrentHashMap<>();
+
+    private final String filePathColumn;
+    private final String integrityHashColumn;
+    private final boolean sharedRecordings;
+    private final String recordingByIdQuery;
+    private final String sharedWithUserQuery;
+    private final String shareAccessQuery;
+    private final String shareKeyQuery;
+    private final String accessibleRecordingsQuery;
+
+    private SchemaDescriptor(String filePathColumn, String integrityHashColumn, boolean sharedRecordings) {
+        this.filePathColumn = filePathColumn;
+        this.integrityHashColumn = integrityHashColumn;
+        this.sharedRecordings = sharedRecordings;
+        this.recordingByIdQuery = "SELECT id, name, " + filePathColumn
+                + " AS file_path, timestamp, duration, user_id, encryption_key, "
+                + integrityHashColumn + " AS integrity_hash"
+                + " FROM recordings WHERE id = ?";
+        // Les colonnes sont nommées explicitement pour le tri du UNION
+        String owned = "SELECT r.id AS id, r.name AS name, r." + filePathColumn + " AS file_path,"
+                + " r.timestamp AS timestamp, r.duration AS duration,"
+                + " r.user_id AS user_id, u.email AS owner_email, NULL AS share_id, NULL AS shared_date "
+                + "FROM recordings r LEFT JOIN users u ON u.id = r.user_id "
+                + "WHERE r.user_id = ?";
+        String page = " ORDER BY timestamp DESC, id DESC LIMIT ? OFFSET ?";
+        if (sharedRecordings) {
+            // Un enregistrement partagé plusieurs fois n'apparaît qu'une fois, avec le dernier partage
+            this.accessibleRecordingsQuery = owned + " UNION ALL "
+                    + "SELECT r.id, r.name, r." + filePathColumn + " AS file_path, r.timestamp, r.duration,"
+                    + " r.user_id, u.email, MAX(s.id) AS share_id, s.shared_date "
+                    + "FROM shared_recordings s "
+                    + "JOIN recordings r ON r.id = s.recording_id "
+                    + "LEFT JOIN users u ON u.id = r.user_id "
+                    + "WHERE s.target_user_id = ? AND r.user_id <> ? "
+                    + "GROUP BY s.recording_id"
+                    + page;
+            this.sharedWithUserQuery = "SELECT r.id, r.name, r." + filePathColumn
+                    + " AS file_path, r.timestamp, r.duration, r.user_id, s.source_user_id,"
+                    + " s.encryption_key AS share_key, su.email AS source_email "
+                    + "FROM shared_recordings s "
+                    + "JOIN recordings r ON r.id = s.recording_id "
+                    + "LEFT JOIN users su ON su.id = s.source_user_id "
+                    + "WHERE s.target_user_id = ?";
+            this.shareAccessQuery = "SELECT 1 FROM shared_recordings WHERE target_user_id = ? AND recording_id = ?";
+            this.shareKeyQuery = "SELECT id, encryption_key FROM shared_recordings "
+                    + "WHERE target_user_id = ? AND recording_id = ?";
+        } else {
+            this.accessibleRecordingsQuery = owned + page;
+            this.sharedWithUserQuery = null;
+            this.shareAccessQuery = null;
+            this.shareKeyQuery = null;
+        }
+    }
+
+    /**
+     * Retourne la description de la base à laquelle la connexion est reliée,
+     * en la résolvant au premier appel.
+     *
+     * @param conn Une connexion ouverte sur la base
+     * @return La description du schéma
+     * @throws SQLException Si les métadonnées ne peuvent pas être lues
+     */
+    public static SchemaDescriptor of(Connection conn) throws SQLException {
+        String key = cacheKey(conn);
+        if (key == null) {
+            return resolve(conn);
+        }
+        SchemaDescriptor descriptor = CACHE.get(key);
+        if (descriptor == null) {
+            descriptor = resolve(conn);
+            CACHE.put(key, descriptor);
+        }
+        return descriptor;
+    }
+
+    /**
+     * Recalcule la description de la base, par exemple après une migration.
+     *
+     * @param conn Une connexion ouverte sur la base
+     * @return La nouvelle description du schéma
+     * @throws SQLException Si les métadonnées ne peuvent pas être lues
+     */
+    public static SchemaDescriptor refresh(Connection conn) throws SQLException {
+        SchemaDescriptor descriptor = resolve(conn);
+        String key = cacheKey(conn);
+        if (key != null) {
+            CACHE.put(key, descriptor);
+        }
+        return descriptor;
+    }
+
+    /**
+     * @return Le nom de la colonne du chemin du fichier dans la table recordings
+     */
+    public String getFilePathColumn() {
+        return filePathColumn;
+    }
+
+    /**
+     * @return L'expression à sélectionner pour l'empreinte d'intégrité : la
+     *         colonne integrity_hash, ou NULL sur une base non migrée
+     */
+    public String getIntegrityHashColumn() {
+        return integrityHashColumn;
+    }
+
+    /**
+     * @return true si la table shared_recordings existe
+     */
+    public boolean hasSharedRecordings() {
+        return sharedRecordings;
+    }
+
+    /**
+     * Requête d'un enregistrement par identifiant. Colonnes : id, name,
+     * file_path, timestamp, duration, user_id, encryption_key, integrity_hash.
+     *
+     * @return La requête, paramétrée par l'identifiant de l'enregistrement
+     */
+    public String getRecordingByIdQuery() {
+        return recordingByIdQuery;
+    }
+
+    /**
+     * Requête des enregistrements partagés avec un utilisateur. Colonnes : id,
+     * name, file_path, timestamp, duration, user_id, source_user_id, share_key
+     * (clé chiffrée pour le destinataire) et source_email.
+     *
+     * @return La requête, paramétrée par l'identifiant du destinataire, ou null sans table de partage
+     */
+    public String getSharedWithUserQuery() {
+        return sharedWithUserQuery;
+    }
+
+    /**
+     * @return La requête de contrôle d'accès, paramétrée par le destinataire puis
+     *         l'enregistrement, ou null sans table de partage
+     */
+    public String getShareAccessQuery() {
+        return shareAccessQuery;
+    }
+
+    /**
+     * @return La requête de la clé partagée (colonnes id et encryption_key),
+     *         paramétrée par le destinataire puis l'enregistrement, ou null
+     *         sans table de partage
+     */
+    public String getShareKeyQuery() {
+        return shareKeyQuery;
+    }
+
+    /**
+     * Page des enregistrements accessibles à un utilisateur : les siens et ceux
+     * qui lui sont partagés, du plus récent au plus ancien. Colonnes : id, name,
+     * file_path, timestamp, duration, user_id, owner_email, share_id (NULL pour
+     * un enregistrement personnel) et shared_date.
+     *
+     * @return La requête, paramétrée par l'utilisateur (trois fois si la table de
+     *         partage existe, une fois sinon), puis la taille de la page et le décalage
+     */
+    public String getAccessibleRecordingsQuery() {
+        return accessibleRecordingsQuery;
+    }
+
+    private static SchemaDescriptor resolve(Connection conn) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+
+        boolean hasFilePath = false;
+        boolean hasFilepath = false;
+        boolean hasIntegrityHash = false;
+        try (ResultSet columns = meta.getColumns(null, null, "recordings", null)) {
+            while (columns.next()) {
+                String columnName = columns.getString("COLUMN_NAME");
+                if ("file_path".equalsIgnoreCase(columnName)) {
+                    hasFilePath = true;
+                } else if ("filepath".equalsIgnoreCase(columnName)) {
+                    hasFilepath = true;
+                } else if ("integrity_hash".equalsIgnoreCase(columnName)) {
+                    hasIntegrityHash = true;
+                }
+            }
+        }
+
+        boolean sharedRecordings;
+        try (ResultSet tables = meta.getTables(null, null, "shared_recordings", null)) {
+            sharedRecordings = tables.next();
+        }
+
+        String filePathColumn = hasFilePath || !hasFilepath ? "file_path" : "filepath";
+        LOGGER.log(Level.INFO, "Schéma détecté : colonne {0}, table shared_recordings {1}",
+                new Object[] { filePathColumn, sharedRecordings ? "présente" : "absente" });
+        return new SchemaDescriptor(filePathColumn, hasIntegrityHash ? "integrity_hash" : "NULL",
+                sharedRecordings);
+    }
+
+    /**
+     * Clé de cache de la base, ou null pour une base en mémoire qui ne peut pas
+     * être identifiée par son URL.
+     */
+    private static String cacheKey(Connection conn) throws SQLException {
+        String url = conn.getMetaData().getURL();
+        if (url == null || url.contains(":memory:") || url.equals("jdbc:sqlite:")) {
+            return null;
+        }
+        return url;
+    }
+}
@@ -0,0 +1,276 @@
+package service.impl;
+
+import service.DatabaseService;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moteur de migration du schéma de la base de données.
+ *
+ * Le schéma est décrit par une liste ordonnée de migrations numérotées. La
+ * version appliquée est conservée dans la table schema_version ; au démarrage,
+ * seules les migrations plus récentes sont exécutées, chacune dans sa propre
+ * transaction. Chaque migration est idempotente, ce qui permet de reprendre
+ * une base créée par d'anciennes versions de l'application.
+ */
+public class SchemaMigrator {
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrator.class.getName());
+
+    /**
+     * Étape de migration du schéma.
+     */
+    @FunctionalInterface
+    public interface MigrationStep {
+        /**
+         * Applique la migration sur la connexion fournie, dans la transaction en cours.
+         *
+         * @param conn La connexion à la base
+         * @throws SQLException Si la migration échoue
+         */
+        void apply(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Migration numérotée du schéma.
+     */
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final MigrationStep step;
+
+        Migration(int version, String description, MigrationStep step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS;
+
+    static {
+        List<Migration> migrations = new ArrayList<>();
+
+        migrations.add(new Migration(1, "Tables de base", conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS users ("
+                        + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + "email TEXT NOT NULL UNIQUE,"
+                        + "password_hash TEXT NOT NULL,"
+                        + "salt TEXT NOT NULL,"
+                        + "is_admin INTEGER NOT NULL DEFAULT 0"
+                        + ")");
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS recordings ("
+                        + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + "user_id INTEGER NOT NULL,"
+                        + "name TEXT NOT NULL,"
+                        + "timestamp TEXT NOT NULL,"
+                        + "file_path TEXT,"
+                        + "duration INTEGER NOT NULL,"
+                        + "audio_data BLOB,"
+                        + "encryption_key TEXT,"
+                        + "integrity_hash TEXT,"
+                        + "FOREIGN KEY (user_id) REFERENCES users(id)"
+                        + ")");
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS shared_recordings ("
+                        + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + "recording_id INTEGER NOT NULL,"
+                        + "source_user_id INTEGER NOT NULL,"
+                        + "target_user_id INTEGER NOT NULL,"
+                        + "encryption_key TEXT NOT NULL,"
+                        + "shared_date DATETIME DEFAULT CURRENT_TIMESTAMP"
+                        + ")");
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS notifications ("
+                        + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + "user_id INTEGER NOT NULL,"
+                        + "message TEXT NOT NULL,"
+                        + "is_read INTEGER DEFAULT 0,"
+                        + "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP,"
+                        + "recording_id INTEGER NOT NULL"
+                        + ")");
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS user_keys ("
+                        + "user_id INTEGER PRIMARY KEY,"
+                        + "public_key TEXT NOT NULL,"
+                        + "private_key TEXT NOT NULL,"
+                        + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP"
+                        + ")");
+            }
+            // Colonnes ajoutées après coup dans les bases existantes
+            addColumnIfMissing(conn, "recordings", "encryption_key", "TEXT");
+            addColumnIfMissing(conn, "recordings", "integrity_hash", "TEXT");
+        }));
+
+        migrations.add(new Migration(2, "Index des listes et contrôles d'accès", conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                // Liste des enregistrements d'un utilisateur, triée par date
+                stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_recordings_user "
+                        + "ON recordings(user_id, timestamp)");
+                // Enregistrements partagés avec un utilisateur et contrôle d'accès
+                stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_shared_target_recording "
+                        + "ON shared_recordings(target_user_id, recording_id)");
+                // Suppression des partages d'un enregistrement
+                stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_shared_recording "
+                        + "ON shared_recordings(recording_id)");
+                // Notifications d'un utilisateur et compteur de non lues
+                stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_notifications_user_read "
+                        + "ON notifications(user_id, is_read, timestamp)");
+            }
+        }));
+
+        migrations.add(new Migration(3, "Clés maîtresses des utilisateurs et clés emballées par AES-KW", conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                // Clé maîtresse AES de chaque utilisateur, chiffrée avec sa clé publique RSA
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS user_kek ("
+                        + "user_id INTEGER PRIMARY KEY,"
+                        + "wrapped_kek TEXT NOT NULL,"
+                        + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP"
+                        + ")");
+            }
+            KeyHierarchy.rewrapLegacyKeys(conn);
+        }));
+
+        migrations.add(new Migration(4, "Schéma de chiffrement des clés utilisateur", conn -> {
+            // Les clés existantes sont des clés RSA
+            addColumnIfMissing(conn, "user_keys", "scheme", "TEXT NOT NULL DEFAULT 'RSA'");
+        }));
+
+        migrations.add(new Migration(5, "Points de reprise de la rotation des clés utilisateur", conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                // Rotation en cours : nouvelle paire de clés et dernier identifiant traité
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS key_rotation ("
+                        + "user_id INTEGER PRIMARY KEY,"
+                        + "public_key TEXT NOT NULL,"
+                        + "private_key TEXT NOT NULL,"
+                        + "scheme TEXT NOT NULL,"
+                        + "wrapped_kek TEXT NOT NULL,"
+                        + "last_recording_id INTEGER NOT NULL DEFAULT 0,"
+                        + "last_share_id INTEGER NOT NULL DEFAULT 0,"
+                        + "processed INTEGER NOT NULL DEFAULT 0,"
+                        + "failed INTEGER NOT NULL DEFAULT 0,"
+                        + "started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP"
+                        + ")");
+                // Clés emballées à nouveau, appliquées toutes ensemble à la fin de la rotation
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS key_rotation_items ("
+                        + "user_id INTEGER NOT NULL,"
+                        + "kind TEXT NOT NULL,"
+                        + "row_id INTEGER NOT NULL,"
+                        + "encryption_key TEXT NOT NULL,"
+                        + "PRIMARY KEY (user_id, kind, row_id)"
+                        + ")");
+            }
+        }));
+
+        MIGRATIONS = Collections.unmodifiableList(migrations);
+    }
+
+    private final DatabaseService databaseService;
+
+    /**
+     * Crée le moteur de migration pour une base de données.
+     *
+     * @param databaseService Le service de base de données à migrer
+     */
+    public SchemaMigrator(DatabaseService databaseService) {
+        this.databaseService = databaseService;
+    }
+
+    /**
+     * Applique les migrations manquantes.
+     *
+     * @return La version du schéma après migration
+     * @throws SQLException Si une migration échoue
+     */
+    public int migrate() throws SQLException {
+        try (Connection conn = databaseService.connect()) {
+            return migrate(conn);
+        }
+    }
+
+    /**
+     * Applique les migrations manquantes sur une connexion ouverte.
+     *
+     * @param conn La connexion à la base, en mode auto-commit
+     * @return La version du schéma après migration
+     * @throws SQLException Si une migration échoue
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INTEGER PRIMARY KEY,"
+                    + "description TEXT NOT NULL,"
+                    + "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP"
+                    + ")");
+        }
+
+        int current = currentVersion(conn);
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= current) {
+                continue;
+            }
+            try (Statement stmt = conn.createStatement()) {
+                // Verrou d'écriture immédiat : un autre processus ne peut pas migrer en parallèle
+                stmt.execute("BEGIN IMMEDIATE");
+                try {
+                    if (migration.version > currentVersion(conn)) {
+                        migration.step.apply(conn);
+                        try (PreparedStatement insert = conn.prepareStatement(
+                                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                            insert.setInt(1, migration.version);
+                            insert.setString(2, migration.description);
+                            insert.executeUpdate();
+                        }
+                        LOGGER.log(Level.INFO, "Migration {0} appliquée: {1}",
+                                new Object[] { migration.version, migration.description });
+                    }
+                    stmt.execute("COMMIT");
+                } catch (SQLException | RuntimeException e) {
+                    stmt.execute("ROLLBACK");
+                    throw e;
+                }
+            }
+            current = migration.version;
+        }
+        // Les requêtes construites pour l'ancien schéma ne sont plus valables
+        SchemaDescriptor.refresh(conn);
+        return current;
+    }
+
+    /**
+     * Retourne la version la plus récente connue de l'application.
+     *
+     * @return La version cible du schéma
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    private static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void addColumnIfMissing(Connection conn, String table, String column, String type)
+            throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet columns = meta.getColumns(null, null, table, column)) {
+            if (columns.next()) {
+                return;
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+        }
+        LOGGER.log(Level.INFO, "Colonne {0} ajoutée à la table {1}", new Object[] { column, table });
+    }
+}
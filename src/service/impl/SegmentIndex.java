@@ -0,0 +1,118 @@
+package service.impl;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Index d'accès direct d'un conteneur v2 : trame, octet en clair, segment et
+ * position du segment dans le fichier chiffré. La conversion entre instant et
+ * trame est celle de la piste de lecture ({@link PlaybackTrack}).
+ * <p>
+ * Tous les segments d'un conteneur ont la taille fixée par l'en-tête, sauf le
+ * dernier ; le segment n commence donc à HEADER_SIZE + n * (taille + 20). L'index
+ * se déduit ainsi de l'en-tête et de la taille du fichier, sans table ni
+ * parcours : une recherche à la 45e minute ne lit et ne déchiffre que les
+ * segments à partir de cette position.
+ */
+public final class SegmentIndex {
+
+    private final EncryptedAudioContainer.Header header;
+    private final int segmentCount;
+    private final long plaintextLength;
+    private final int frameSize;
+
+    private SegmentIndex(EncryptedAudioContainer.Header header, int segmentCount, long plaintextLength) {
+        this.header = header;
+        this.segmentCount = segmentCount;
+        this.plaintextLength = plaintextLength;
+        this.frameSize = Math.max(1, header.getFormat().getFrameSize());
+    }
+
+    /**
+     * Construit l'index d'un conteneur à partir de son en-tête et de sa taille.
+     *
+     * @param file Le conteneur
+     * @return L'index du conteneur
+     * @throws IOException Si le fichier n'est pas un conteneur v2 ou si sa taille
+     *                     ne correspond à aucune suite de segments
+     */
+    public static SegmentIndex of(File file) throws IOException {
+        EncryptedAudioContainer.Header header;
+        try (InputStream in = new FileInputStream(file)) {
+            header = EncryptedAudioContainer.Header.read(in);
+        }
+        long body = file.length() - EncryptedAudioContainer.HEADER_SIZE;
+        long fullSegment = (long) header.getSegmentSize() + EncryptedAudioContainer.SEGMENT_OVERHEAD;
+        long segments = Math.max(1, (body + fullSegment - 1) / fullSegment);
+        long lastSealed = body - (segments - 1) * fullSegment;
+        if (lastSealed < EncryptedAudioContainer.SEGMENT_OVERHEAD || segments > Integer.MAX_VALUE) {
+            throw new IOException("Conteneur tronqué: taille de fichier incohérente");
+        }
+        return new SegmentIndex(header, (int) segments, body - segments * EncryptedAudioContainer.SEGMENT_OVERHEAD);
+    }
+
+    /**
+     * @return L'en-tête du conteneur, lu dans le fichier
+     */
+    public EncryptedAudioContainer.Header getHeader() {
+        return header;
+    }
+
+    /**
+     * @return Le format audio de l'enregistrement
+     */
+    public AudioFormat getFormat() {
+        return header.getFormat();
+    }
+
+    /**
+     * @return Le nombre de segments
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @return Le nombre d'octets audio en clair
+     */
+    public long getPlaintextLength() {
+        return plaintextLength;
+    }
+
+    /**
+     * @param frame Un numéro de trame
+     * @return La position de la trame dans les données en clair
+     */
+    public long plaintextOffset(long frame) {
+        return Math.min(frame * frameSize, plaintextLength);
+    }
+
+    /**
+     * @param plaintextOffset Une position dans les données en clair
+     * @return Le segment qui contient cette position ; la fin des données
+     *         appartient au dernier segment
+     */
+    public int segmentOf(long plaintextOffset) {
+        return (int) Math.min(plaintextOffset / header.getSegmentSize(), segmentCount - 1);
+    }
+
+    /**
+     * @param segment Un numéro de segment
+     * @return La position du premier octet en clair du segment
+     */
+    public long segmentStart(int segment) {
+        return (long) segment * header.getSegmentSize();
+    }
+
+    /**
+     * @param segment Un numéro de segment
+     * @return La position du préfixe du segment dans le fichier chiffré
+     */
+    public long ciphertextOffset(int segment) {
+        return EncryptedAudioContainer.HEADER_SIZE
+                + (long) segment * (header.getSegmentSize() + EncryptedAudioContainer.SEGMENT_OVERHEAD);
+    }
+}
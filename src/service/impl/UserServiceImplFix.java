@@ -40,15 +40,15 @@ public class UserServiceImplFix implements UserService {
         String passwordHash = cryptographyService.generateHash((password + salt).getBytes());
 
         String query = "INSERT INTO users (email, password_hash, salt, is_admin) VALUES (?, ?, ?, ?)";
-        try (Connection conn = databaseService.connect();
-                PreparedStatement stmt = conn.prepareStatement(query)) {
-
-            stmt.setString(1, email);
-            stmt.setString(2, passwordHash);
-            stmt.setString(3, salt);
-            stmt.setBoolean(4, isAdmin);
-            return stmt.executeUpdate();
-        }
+        return databaseService.executeWrite(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                stmt.setString(1, email);
+                stmt.setString(2, passwordHash);
+                stmt.setString(3, salt);
+                stmt.setBoolean(4, isAdmin);
+                return stmt.executeUpdate();
+            }
+        });
     }
 
     @Override
@@ -131,38 +131,38 @@ public class UserServiceImplFix implements UserService {
         String passwordHash = cryptographyService.generateHash((newPassword + salt).getBytes());
 
         String query = "UPDATE users SET password_hash = ?, salt = ? WHERE id = ?";
-        try (Connection conn = databaseService.connect();
-                PreparedStatement stmt = conn.prepareStatement(query)) {
-
-            stmt.setString(1, passwordHash);
-            stmt.setString(2, salt);
-            stmt.setInt(3, userId);
-            return stmt.executeUpdate() > 0;
-        }
+        return databaseService.executeWrite(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                stmt.setString(1, passwordHash);
+                stmt.setString(2, salt);
+                stmt.setInt(3, userId);
+                return stmt.executeUpdate() > 0;
+            }
+        });
     }
 
     @Override
     public void updateUser(User user) throws Exception {
         String query = "UPDATE users SET email = ?, is_admin = ? WHERE id = ?";
-        try (Connection conn = databaseService.connect();
-                PreparedStatement stmt = conn.prepareStatement(query)) {
-
-            stmt.setString(1, user.getEmail());
-            stmt.setBoolean(2, user.isAdmin());
-            stmt.setInt(3, user.getId());
-            stmt.executeUpdate();
-        }
+        databaseService.executeWrite(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                stmt.setString(1, user.getEmail());
+                stmt.setBoolean(2, user.isAdmin());
+                stmt.setInt(3, user.getId());
+                return stmt.executeUpdate();
+            }
+        });
     }
 
     @Override
     public void deleteUser(int id) throws Exception {
         String query = "DELETE FROM users WHERE id = ?";
-        try (Connection conn = databaseService.connect();
-                PreparedStatement stmt = conn.prepareStatement(query)) {
-
-            stmt.setInt(1, id);
-            stmt.executeUpdate();
-        }
+        databaseService.executeWrite(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                stmt.setInt(1, id);
+                return stmt.executeUpdate();
+            }
+        });
     }
 
     private String generateSalt() {
@@ -0,0 +1,198 @@
+package util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Anneau de blocs audio préalloués entre un seul producteur (le thread qui lit
+ * la ligne audio) et un seul consommateur (l'étage d'encodage ou d'écriture).
+ *
+ * Le producteur ne bloque et n'alloue jamais : il réserve un bloc avec
+ * {@link #claim()}, y lit directement les données de la ligne, puis le publie
+ * avec {@link #publish(int)}. Si l'anneau est plein, {@link #claim()} retourne
+ * null et le dépassement est comptabilisé ; le producteur doit alors vider la
+ * ligne dans un tampon de secours pour ne pas la saturer.
+ *
+ * Le consommateur attend les données avec {@link #await()}, lit le bloc courant
+ * avec {@link #peek()} et {@link #peekLength()}, puis le rend avec {@link #release()}.
+ */
+public class AudioBlockRing {
+
+    private final byte[][] blocks;
+    private final int[] lengths;
+    private final int mask;
+
+    // Position d'écriture : modifiée uniquement par le producteur
+    private volatile long head;
+    // Position de lecture : modifiée uniquement par le consommateur
+    private volatile long tail;
+    private volatile boolean closed;
+    private volatile Thread consumer;
+
+    private volatile long overruns;
+    private volatile int highWaterMark;
+
+    /**
+     * Crée un anneau de blocs préalloués.
+     *
+     * @param blockCount Le nombre de blocs, arrondi à la puissance de deux supérieure
+     * @param blockSize La taille de chaque bloc en octets
+     */
+    public AudioBlockRing(int blockCount, int blockSize) {
+        if (blockCount <= 0 || blockSize <= 0) {
+            throw new IllegalArgumentException("Le nombre et la taille des blocs doivent être positifs");
+        }
+        int capacity = Integer.highestOneBit(blockCount);
+        if (capacity < blockCount) {
+            capacity <<= 1;
+        }
+        this.blocks = new byte[capacity][blockSize];
+        this.lengths = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    // ----- Producteur -----
+
+    /**
+     * Réserve le prochain bloc libre. Ne bloque jamais.
+     *
+     * @return Le bloc à remplir, ou null si l'anneau est plein (dépassement comptabilisé)
+     */
+    public byte[] claim() {
+        if (head - tail > mask) {
+            overruns++;
+            return null;
+        }
+        return blocks[(int) (head & mask)];
+    }
+
+    /**
+     * Publie le bloc réservé par le dernier appel à {@link #claim()}.
+     *
+     * @param length Le nombre d'octets valides dans le bloc
+     */
+    public void publish(int length) {
+        long position = head;
+        lengths[(int) (position & mask)] = length;
+        head = position + 1;
+
+        int inFlight = (int) (position + 1 - tail);
+        if (inFlight > highWaterMark) {
+            highWaterMark = inFlight;
+        }
+        Thread waiting = consumer;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    /**
+     * Signale la fin de la production. Le consommateur videra les blocs
+     * restants puis {@link #await()} retournera false.
+     */
+    public void close() {
+        closed = true;
+        Thread waiting = consumer;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    // ----- Consommateur -----
+
+    /**
+     * Attend qu'un bloc soit disponible.
+     *
+     * @return true si un bloc est disponible, false si l'anneau est fermé et vide
+     * @throws InterruptedException Si le thread consommateur est interrompu
+     */
+    public boolean await() throws InterruptedException {
+        consumer = Thread.currentThread();
+        try {
+            while (head == tail) {
+                if (closed) {
+                    // Relire head : un dernier bloc a pu être publié avant la fermeture
+                    return head != tail;
+                }
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(50));
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        } finally {
+            consumer = null;
+        }
+    }
+
+    /**
+     * Retourne le bloc le plus ancien non encore consommé.
+     *
+     * @return Le bloc, ou null si l'anneau est vide
+     */
+    public byte[] peek() {
+        return head == tail ? null : blocks[(int) (tail & mask)];
+    }
+
+    /**
+     * Retourne le nombre d'octets valides du bloc retourné par {@link #peek()}.
+     *
+     * @return La longueur du bloc courant
+     */
+    public int peekLength() {
+        return lengths[(int) (tail & mask)];
+    }
+
+    /**
+     * Rend le bloc courant au producteur.
+     */
+    public void release() {
+        if (head != tail) {
+            tail = tail + 1;
+        }
+    }
+
+    // ----- Compteurs -----
+
+    /**
+     * @return Le nombre de blocs perdus faute de place dans l'anneau
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * @return Le nombre maximal de blocs en attente observé
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * @return Le nombre de blocs publiés et non encore consommés
+     */
+    public int getBlocksInFlight() {
+        return (int) (head - tail);
+    }
+
+    /**
+     * @return Le nombre de blocs de l'anneau
+     */
+    public int getCapacity() {
+        return blocks.length;
+    }
+
+    /**
+     * @return La taille d'un bloc en octets
+     */
+    public int getBlockSize() {
+        return blocks[0].length;
+    }
+
+    /**
+     * @return true si la production est terminée
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -7,6 +7,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.List;
 
 /**
  * Utilitaire pour diagnostiquer et réparer les problèmes audio.
@@ -49,31 +50,21 @@ public class AudioFixScript {
     private static void testAudioDevices() {
         System.out.println("\n--- Périphériques Audio ---");
         
-        // Mixer Info pour la capture (entrée)
-        Mixer.Info[] mixerInfos = AudioSystem.getMixerInfo();
-        System.out.println("Périphériques disponibles: " + mixerInfos.length);
+        // Mêmes mélangeurs que ceux utilisés par la réserve de lignes audio
+        List<AudioLineManager.MixerDescriptor> mixers = AudioLineManager.discoverMixers();
+        System.out.println("Périphériques disponibles: " + mixers.size());
         
-        for (int i = 0; i < mixerInfos.length; i++) {
-            Mixer.Info info = mixerInfos[i];
-            Mixer mixer = AudioSystem.getMixer(info);
-            
-            Line.Info[] sourceLines = mixer.getSourceLineInfo();
-            Line.Info[] targetLines = mixer.getTargetLineInfo();
+        for (int i = 0; i < mixers.size(); i++) {
+            AudioLineManager.MixerDescriptor mixer = mixers.get(i);
+            Mixer.Info info = mixer.getInfo();
             
             System.out.println((i + 1) + ". " + info.getName());
             System.out.println("   - Description: " + info.getDescription());
-            System.out.println("   - Lignes source (sortie): " + sourceLines.length);
-            System.out.println("   - Lignes cible (entrée): " + targetLines.length);
+            System.out.println("   - Lignes source (sortie): " + mixer.getSourceLineCount());
+            System.out.println("   - Lignes cible (entrée): " + mixer.getTargetLineCount());
             
             // Vérifier si ce périphérique peut être utilisé pour l'enregistrement
-            boolean canRecord = false;
-            for (Line.Info lineInfo : targetLines) {
-                if (lineInfo.getLineClass() == TargetDataLine.class) {
-                    canRecord = true;
-                    break;
-                }
-            }
-            System.out.println("   - Peut enregistrer: " + canRecord);
+            System.out.println("   - Peut enregistrer: " + mixer.canRecord());
         }
     }
     
@@ -0,0 +1,559 @@
+package util;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.TargetDataLine;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Réserve de lignes audio ouvertes.
+ *
+ * Sur beaucoup de mélangeurs Linux, l'ouverture d'une ligne prend de quelques
+ * dizaines à quelques centaines de millisecondes. Les mélangeurs sont
+ * découverts une seule fois, et les lignes rendues après une lecture ou un
+ * enregistrement restent ouvertes, arrêtées et vidées, prêtes pour le
+ * suivant ; {@link #warmUp(AudioFormat)} en ouvre d'avance pour le format
+ * standard. Une ligne rendue n'est jamais partagée : elle appartient à celui
+ * qui l'a obtenue jusqu'à ce qu'il la rende.
+ *
+ * Le délai de démarrage de l'enregistrement et de la lecture, de la demande
+ * jusqu'au démarrage de la ligne, est mesuré et exposé par
+ * {@link #getRecordStartLatency()} et {@link #getPlayStartLatency()}.
+ *
+ * Les lignes sont ouvertes avec le tampon choisi par le réglage de leur sens
+ * ({@link #getCaptureTuner()}, {@link #getPlaybackTuner()}). Une ligne
+ * conservée est toujours remise en service, quel que soit son tampon : le
+ * changement de tampon s'applique quand elle est rendue. Si son tampon s'écarte
+ * de plus de moitié du tampon demandé, elle est fermée et une remplaçante est
+ * ouverte en arrière-plan ; un écart d'une seule adaptation est toléré, pour ne
+ * pas rouvrir la ligne à chaque agrandissement ou réduction du bloc.
+ */
+public class AudioLineManager {
+
+    /** Nombre de lignes ouvertes conservées par type de ligne et par format. */
+    public static final int DEFAULT_IDLE_LINES = 1;
+
+    // Durée d'inactivité après laquelle le thread de réouverture s'arrête
+    private static final long IDLE_TIMEOUT_SECONDS = 5;
+
+    private static AudioLineManager shared;
+
+    /**
+     * Ouvre une ligne d'un type et d'un format donnés.
+     */
+    @FunctionalInterface
+    public interface LineFactory {
+        /**
+         * @param type       SourceDataLine.class ou TargetDataLine.class
+         * @param format     Le format de la ligne
+         * @param bufferSize La taille du tampon en octets, ou
+         *                   {@link AudioSystem#NOT_SPECIFIED} pour le tampon par défaut
+         * @return Une ligne ouverte, non démarrée
+         * @throws LineUnavailableException Si aucune ligne n'est disponible
+         */
+        DataLine open(Class<? extends DataLine> type, AudioFormat format, int bufferSize)
+                throws LineUnavailableException;
+    }
+
+    private final LineFactory factory;
+    private final int idleLines;
+    private final LineBufferTuner captureTuner;
+    private final LineBufferTuner playbackTuner;
+    // Lignes ouvertes et arrêtées, par type et format
+    private final Map<String, Deque<DataLine>> idle = new HashMap<>();
+    // Tampon demandé à l'ouverture des lignes de la réserve, en service ou non
+    private final Map<DataLine, Integer> requested = new IdentityHashMap<>();
+    private final ThreadPoolExecutor reopener;
+    private final Latency recordStartLatency = new Latency();
+    private final Latency playStartLatency = new Latency();
+    private List<MixerDescriptor> mixers;
+    private long opened;
+    private long reused;
+    private boolean closed;
+
+    /**
+     * Retourne la réserve partagée par toute l'application. Le nombre de
+     * lignes conservées peut être configuré avec la propriété système
+     * "audio.idleLines", et les bornes de la durée d'un bloc audio avec
+     * "audio.minBlockMillis" et "audio.maxBlockMillis".
+     *
+     * @return La réserve partagée
+     */
+    public static synchronized AudioLineManager getShared() {
+        if (shared == null) {
+            Duration minBlock = Duration.ofMillis(
+                    Long.getLong("audio.minBlockMillis", LineBufferTuner.DEFAULT_MIN_BLOCK.toMillis()));
+            Duration maxBlock = Duration.ofMillis(
+                    Long.getLong("audio.maxBlockMillis", LineBufferTuner.DEFAULT_MAX_BLOCK.toMillis()));
+            shared = new AudioLineManager(null, Integer.getInteger("audio.idleLines", DEFAULT_IDLE_LINES),
+                    new LineBufferTuner(true, minBlock, LineBufferTuner.DEFAULT_BLOCK, maxBlock),
+                    new LineBufferTuner(false, minBlock, LineBufferTuner.DEFAULT_BLOCK, maxBlock));
+        }
+        return shared;
+    }
+
+    /**
+     * Crée une réserve sur les mélangeurs du système.
+     *
+     * @param factory   L'ouverture des lignes, ou null pour les mélangeurs
+     *                  découverts par {@link #discoverMixers()}
+     * @param idleLines Le nombre de lignes ouvertes conservées par type et par format
+     */
+    public AudioLineManager(LineFactory factory, int idleLines) {
+        this(factory, idleLines, new LineBufferTuner(true), new LineBufferTuner(false));
+    }
+
+    /**
+     * Crée une réserve avec des réglages de tampon donnés.
+     *
+     * @param factory       L'ouverture des lignes, ou null pour les mélangeurs
+     *                      découverts par {@link #discoverMixers()}
+     * @param idleLines     Le nombre de lignes ouvertes conservées par type et par format
+     * @param captureTuner  Le réglage des lignes de capture
+     * @param playbackTuner Le réglage des lignes de sortie
+     */
+    public AudioLineManager(LineFactory factory, int idleLines, LineBufferTuner captureTuner,
+            LineBufferTuner playbackTuner) {
+        this.factory = factory != null ? factory : this::openFromMixers;
+        this.idleLines = Math.max(0, idleLines);
+        this.captureTuner = captureTuner;
+        this.playbackTuner = playbackTuner;
+        this.reopener = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "audio-line-reopen");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.reopener.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Décrit les mélangeurs du système et les lignes qu'ils proposent.
+     *
+     * @return Les mélangeurs, dans l'ordre du système
+     */
+    public static List<MixerDescriptor> discoverMixers() {
+        List<MixerDescriptor> descriptors = new ArrayList<>();
+        for (Mixer.Info info : AudioSystem.getMixerInfo()) {
+            Mixer mixer = AudioSystem.getMixer(info);
+            descriptors.add(new MixerDescriptor(info, mixer, mixer.getSourceLineInfo(), mixer.getTargetLineInfo()));
+        }
+        return descriptors;
+    }
+
+    /**
+     * Obtient une ligne de sortie ouverte et arrêtée.
+     *
+     * @param format Le format des données à jouer
+     * @return La ligne, à rendre avec {@link #release(DataLine)}
+     * @throws LineUnavailableException Si aucune ligne n'est disponible pour ce format
+     */
+    public SourceDataLine acquireSourceLine(AudioFormat format) throws LineUnavailableException {
+        return (SourceDataLine) acquire(SourceDataLine.class, format);
+    }
+
+    /**
+     * Obtient une ligne de capture ouverte et arrêtée.
+     *
+     * @param format Le format des données à capturer
+     * @return La ligne, à rendre avec {@link #release(DataLine)}
+     * @throws LineUnavailableException Si aucune ligne n'est disponible pour ce format
+     */
+    public TargetDataLine acquireTargetLine(AudioFormat format) throws LineUnavailableException {
+        return (TargetDataLine) acquire(TargetDataLine.class, format);
+    }
+
+    private DataLine acquire(Class<? extends DataLine> type, AudioFormat format) throws LineUnavailableException {
+        synchronized (this) {
+            Deque<DataLine> lines = idle.get(key(type, format));
+            while (lines != null && !lines.isEmpty()) {
+                DataLine line = lines.poll();
+                if (line.isOpen()) {
+                    reused++;
+                    return line;
+                }
+                requested.remove(line);
+            }
+        }
+        // L'ouverture, lente, se fait hors du verrou
+        int bufferSize = tunerFor(type).getLineBufferSize(format);
+        DataLine line = factory.open(type, format, bufferSize);
+        synchronized (this) {
+            opened++;
+            requested.put(line, bufferSize);
+        }
+        return line;
+    }
+
+    /**
+     * Rend une ligne obtenue de la réserve. Elle est arrêtée et vidée, puis
+     * conservée ouverte si la réserve n'est pas pleine, fermée sinon. Une
+     * ligne dont le tampon ne convient plus au réglage est fermée, et une
+     * remplaçante est ouverte en arrière-plan.
+     *
+     * @param line La ligne, ou null
+     */
+    public void release(DataLine line) {
+        if (line == null) {
+            return;
+        }
+        Integer bufferSize;
+        synchronized (this) {
+            bufferSize = line.isOpen() ? requested.get(line) : requested.remove(line);
+        }
+        if (!line.isOpen()) {
+            return;
+        }
+        Class<? extends DataLine> type = line instanceof TargetDataLine ? TargetDataLine.class : SourceDataLine.class;
+        AudioFormat format = line.getFormat();
+        String key = key(type, format);
+        boolean fits = fits(line, bufferSize, tunerFor(type).getLineBufferSize(format));
+        if (fits && hasRoom(key)) {
+            line.stop();
+            line.flush();
+            synchronized (this) {
+                // La réserve a pu se remplir ou être fermée entre-temps
+                if (hasRoom(key)) {
+                    idle.computeIfAbsent(key, k -> new ArrayDeque<>()).push(line);
+                    return;
+                }
+            }
+        }
+        forget(line);
+        line.close();
+        if (!fits && hasRoom(key)) {
+            reopen(type, format);
+        }
+    }
+
+    /**
+     * Une ligne convient si elle a été ouverte avec le tampon demandé, ou si
+     * son tampon est à moins d'un facteur deux de celui-ci.
+     */
+    private static boolean fits(DataLine line, Integer bufferSize, int wanted) {
+        if (wanted == AudioSystem.NOT_SPECIFIED || Objects.equals(bufferSize, wanted)) {
+            return true;
+        }
+        long actual = line.getBufferSize();
+        return actual >= wanted / 2 && actual <= 2L * wanted;
+    }
+
+    private void reopen(Class<? extends DataLine> type, AudioFormat format) {
+        try {
+            reopener.execute(() -> {
+                String key = key(type, format);
+                if (!hasRoom(key)) {
+                    return;
+                }
+                int bufferSize = tunerFor(type).getLineBufferSize(format);
+                DataLine line;
+                try {
+                    line = factory.open(type, format, bufferSize);
+                } catch (LineUnavailableException | IllegalArgumentException e) {
+                    System.err.println("Réouverture de la ligne " + type.getSimpleName() + " impossible pour "
+                            + format + ": " + e.getMessage());
+                    return;
+                }
+                synchronized (this) {
+                    opened++;
+                    if (hasRoom(key)) {
+                        requested.put(line, bufferSize);
+                        idle.computeIfAbsent(key, k -> new ArrayDeque<>()).push(line);
+                        return;
+                    }
+                }
+                line.close();
+            });
+        } catch (RejectedExecutionException e) {
+            // La réserve est fermée : la ligne ne sera plus demandée
+        }
+    }
+
+    private synchronized void forget(DataLine line) {
+        requested.remove(line);
+    }
+
+    private synchronized boolean hasRoom(String key) {
+        Deque<DataLine> lines = idle.get(key);
+        return !closed && (lines == null ? 0 : lines.size()) < idleLines;
+    }
+
+    /**
+     * Ferme une ligne dans un état douteux, sans la rendre à la réserve.
+     *
+     * @param line La ligne, ou null
+     */
+    public void discard(DataLine line) {
+        if (line != null) {
+            forget(line);
+            line.close();
+        }
+    }
+
+    /**
+     * Ouvre d'avance les lignes de sortie et de capture d'un format, jusqu'au
+     * nombre de lignes conservées. Un type de ligne indisponible est ignoré.
+     *
+     * @param format Le format standard de l'application
+     * @return Le nombre de lignes ouvertes
+     */
+    public int warmUp(AudioFormat format) {
+        int warmed = 0;
+        for (Class<? extends DataLine> type : List.of(SourceDataLine.class, TargetDataLine.class)) {
+            List<DataLine> lines = new ArrayList<>();
+            int bufferSize = tunerFor(type).getLineBufferSize(format);
+            try {
+                while (lines.size() < idleLines - idleCount(type, format)) {
+                    lines.add(factory.open(type, format, bufferSize));
+                }
+            } catch (LineUnavailableException | IllegalArgumentException e) {
+                System.err.println("Ligne " + type.getSimpleName() + " indisponible pour " + format + ": "
+                        + e.getMessage());
+            }
+            synchronized (this) {
+                opened += lines.size();
+                for (DataLine line : lines) {
+                    requested.put(line, bufferSize);
+                }
+            }
+            for (DataLine line : lines) {
+                release(line);
+            }
+            warmed += lines.size();
+        }
+        return warmed;
+    }
+
+    private synchronized int idleCount(Class<? extends DataLine> type, AudioFormat format) {
+        Deque<DataLine> lines = idle.get(key(type, format));
+        return lines == null ? 0 : lines.size();
+    }
+
+    /**
+     * Ferme toutes les lignes conservées ; les lignes rendues ensuite sont fermées.
+     */
+    public void close() {
+        List<DataLine> lines = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (Deque<DataLine> deque : idle.values()) {
+                lines.addAll(deque);
+            }
+            idle.clear();
+            for (DataLine line : lines) {
+                requested.remove(line);
+            }
+        }
+        reopener.shutdown();
+        for (DataLine line : lines) {
+            line.close();
+        }
+    }
+
+    /**
+     * @return Le délai entre la demande d'enregistrement et le démarrage de la ligne de capture
+     */
+    public Latency getRecordStartLatency() {
+        return recordStartLatency;
+    }
+
+    /**
+     * @return Le délai entre la demande de lecture et le démarrage de la ligne de sortie
+     */
+    public Latency getPlayStartLatency() {
+        return playStartLatency;
+    }
+
+    /**
+     * @return Le réglage des blocs et du tampon des lignes de capture, avec ses
+     *         compteurs de dépassements et son délai effectif
+     */
+    public LineBufferTuner getCaptureTuner() {
+        return captureTuner;
+    }
+
+    /**
+     * @return Le réglage des blocs et du tampon des lignes de sortie, avec ses
+     *         compteurs de sous-remplissages et son délai effectif
+     */
+    public LineBufferTuner getPlaybackTuner() {
+        return playbackTuner;
+    }
+
+    /**
+     * @return Le nombre de lignes ouvertes par la réserve
+     */
+    public synchronized long getOpenedCount() {
+        return opened;
+    }
+
+    /**
+     * @return Le nombre de lignes déjà ouvertes remises en service
+     */
+    public synchronized long getReusedCount() {
+        return reused;
+    }
+
+    /**
+     * Ouvre une ligne sur le premier mélangeur qui la propose, dans l'ordre
+     * du système. Les mélangeurs ne sont énumérés qu'une fois.
+     */
+    private DataLine openFromMixers(Class<? extends DataLine> type, AudioFormat format, int bufferSize)
+            throws LineUnavailableException {
+        DataLine.Info info = new DataLine.Info(type, format);
+        for (MixerDescriptor descriptor : getMixers()) {
+            if (descriptor.getMixer().isLineSupported(info)) {
+                DataLine line = (DataLine) descriptor.getMixer().getLine(info);
+                if (line instanceof SourceDataLine) {
+                    if (bufferSize == AudioSystem.NOT_SPECIFIED) {
+                        ((SourceDataLine) line).open(format);
+                    } else {
+                        ((SourceDataLine) line).open(format, bufferSize);
+                    }
+                } else if (bufferSize == AudioSystem.NOT_SPECIFIED) {
+                    ((TargetDataLine) line).open(format);
+                } else {
+                    ((TargetDataLine) line).open(format, bufferSize);
+                }
+                return line;
+            }
+        }
+        throw new LineUnavailableException("Format audio non supporté: " + format);
+    }
+
+    private synchronized List<MixerDescriptor> getMixers() {
+        if (mixers == null) {
+            mixers = discoverMixers();
+        }
+        return mixers;
+    }
+
+    private LineBufferTuner tunerFor(Class<? extends DataLine> type) {
+        return type == TargetDataLine.class ? captureTuner : playbackTuner;
+    }
+
+    private static String key(Class<? extends DataLine> type, AudioFormat format) {
+        return type.getSimpleName() + " " + format;
+    }
+
+    /**
+     * Mélangeur du système et lignes qu'il propose.
+     */
+    public static final class MixerDescriptor {
+        private final Mixer.Info info;
+        private final Mixer mixer;
+        private final Line.Info[] sourceLines;
+        private final Line.Info[] targetLines;
+
+        MixerDescriptor(Mixer.Info info, Mixer mixer, Line.Info[] sourceLines, Line.Info[] targetLines) {
+            this.info = info;
+            this.mixer = mixer;
+            this.sourceLines = sourceLines;
+            this.targetLines = targetLines;
+        }
+
+        public Mixer.Info getInfo() {
+            return info;
+        }
+
+        public Mixer getMixer() {
+            return mixer;
+        }
+
+        /**
+         * @return Le nombre de lignes source (sortie)
+         */
+        public int getSourceLineCount() {
+            return sourceLines.length;
+        }
+
+        /**
+         * @return Le nombre de lignes cible (entrée)
+         */
+        public int getTargetLineCount() {
+            return targetLines.length;
+        }
+
+        /**
+         * @return true si le mélangeur propose une ligne de capture
+         */
+        public boolean canRecord() {
+            return offers(targetLines, TargetDataLine.class);
+        }
+
+        /**
+         * @return true si le mélangeur propose une ligne de sortie
+         */
+        public boolean canPlay() {
+            return offers(sourceLines, SourceDataLine.class);
+        }
+
+        private static boolean offers(Line.Info[] lines, Class<?> type) {
+            for (Line.Info lineInfo : lines) {
+                if (lineInfo.getLineClass() == type) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Mesure d'un délai : nombre de mesures, dernière, moyenne et maximum.
+     */
+    public static final class Latency {
+        private long count;
+        private long lastNanos;
+        private long totalNanos;
+        private long maxNanos;
+
+        /**
+         * @param nanos Le délai mesuré
+         */
+        public synchronized void record(long nanos) {
+            count++;
+            lastNanos = nanos;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized double getLastMillis() {
+            return lastNanos / 1e6;
+        }
+
+        public synchronized double getAverageMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        public synchronized double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%d mesures, dernière %.1f ms, moyenne %.1f ms, max %.1f ms",
+                    count, getLastMillis(), getAverageMillis(), getMaxMillis());
+        }
+    }
+}
@@ -1,76 +1,77 @@
 package util;
 
+import service.impl.PlaybackEngine;
+import service.impl.PlaybackTrack;
+
 import javax.sound.sampled.*;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Classe utilitaire pour gérer la lecture audio.
  * Cette classe suit le principe de responsabilité unique (SRP) en ne gérant
  * que les fonctionnalités liées à la lecture audio.
+ * La lecture passe par le moteur de lecture partagé de l'application : les
+ * données sont écrites par blocs sur une ligne de sortie, sans les copier
+ * dans un Clip, et une seule ligne est ouverte à la fois.
  */
 public class AudioPlayer {
-    
-    private Clip clip;
-    private boolean isPlaying;
-    
+
+    private final PlaybackEngine engine;
+    private volatile CompletableFuture<Long> playback;
+
+    /**
+     * Crée un lecteur sur le moteur de lecture partagé.
+     */
+    public AudioPlayer() {
+        this(PlaybackEngine.getShared());
+    }
+
+    /**
+     * Crée un lecteur sur un moteur de lecture donné.
+     *
+     * @param engine Le moteur de lecture
+     */
+    public AudioPlayer(PlaybackEngine engine) {
+        this.engine = engine;
+    }
+
     /**
-     * Joue un enregistrement audio à partir de données brutes.
-     * 
+     * Joue un enregistrement audio à partir de données brutes. La méthode
+     * rend la main dès que la lecture est lancée.
+     *
      * @param audioData Les données audio à jouer
      * @param audioFormat Le format audio des données
      * @throws LineUnavailableException Si la ligne audio n'est pas disponible
      * @throws IOException Si une erreur d'entrée/sortie se produit
      */
-    public void playAudio(byte[] audioData, AudioFormat audioFormat) 
+    public void playAudio(byte[] audioData, AudioFormat audioFormat)
             throws LineUnavailableException, IOException {
-        
-        if (isPlaying) {
-            stopPlayback();
-        }
-        
-        // Création d'un flux d'entrée à partir des données audio
-        ByteArrayInputStream bais = new ByteArrayInputStream(audioData);
-        AudioInputStream ais = new AudioInputStream(bais, audioFormat, audioData.length / audioFormat.getFrameSize());
-        
-        // Obtention d'une ligne audio pour la lecture
-        DataLine.Info info = new DataLine.Info(Clip.class, audioFormat);
-        
-        if (!AudioSystem.isLineSupported(info)) {
+
+        if (!AudioSystem.isLineSupported(new DataLine.Info(SourceDataLine.class, audioFormat))) {
             throw new LineUnavailableException("Le format audio n'est pas supporté");
         }
-        
-        clip = (Clip) AudioSystem.getLine(info);
-        clip.addLineListener(event -> {
-            if (event.getType() == LineEvent.Type.STOP) {
-                isPlaying = false;
-                clip.close();
-            }
-        });
-        
-        // Ouverture et démarrage de la lecture
-        clip.open(ais);
-        clip.start();
-        isPlaying = true;
+
+        // Une lecture en cours est remplacée par le moteur
+        playback = engine.play(PlaybackTrack.ofAudio(audioData, audioFormat), null);
     }
-    
+
     /**
      * Arrête la lecture en cours.
      */
     public void stopPlayback() {
-        if (clip != null && clip.isOpen()) {
-            clip.stop();
-            clip.close();
+        if (isPlaying()) {
+            engine.stop();
         }
-        isPlaying = false;
     }
-    
+
     /**
      * Vérifie si une lecture est en cours.
-     * 
+     *
      * @return true si une lecture est en cours, false sinon
      */
     public boolean isPlaying() {
-        return isPlaying;
+        CompletableFuture<Long> current = playback;
+        return current != null && !current.isDone();
     }
-} 
\ No newline at end of file
+}
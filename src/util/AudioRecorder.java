@@ -14,8 +14,10 @@ public class AudioRecorder {
     private TargetDataLine line;
     private AudioFormat format;
     private Thread recordingThread;
-    private boolean isRecording;
+    private Thread drainThread;
+    private volatile boolean isRecording;
     private ByteArrayOutputStream outputStream;
+    private AudioBlockRing ring;
     
     /**
      * Constructeur qui initialise l'enregistreur avec un format audio par défaut.
@@ -61,20 +63,46 @@ public class AudioRecorder {
         
         isRecording = true;
         
+        // Anneau préalloué : le thread de lecture n'alloue ni n'attend jamais
+        int frameSize = Math.max(1, format.getFrameSize());
+        ring = new AudioBlockRing(64, Math.max(frameSize, 4096 / frameSize * frameSize));
+        final AudioBlockRing captureRing = ring;
+        final ByteArrayOutputStream captureOutput = outputStream;
+        
         // Démarrage du thread d'enregistrement
         recordingThread = new Thread(() -> {
-            byte[] buffer = new byte[4096];
+            byte[] overflow = new byte[captureRing.getBlockSize()];
             int bytesRead;
             
             while (isRecording) {
-                bytesRead = line.read(buffer, 0, buffer.length);
+                byte[] block = captureRing.claim();
+                if (block == null) {
+                    // Anneau plein : vider la ligne pour éviter son débordement
+                    line.read(overflow, 0, overflow.length);
+                    continue;
+                }
+                bytesRead = line.read(block, 0, block.length);
                 
                 if (bytesRead > 0) {
-                    outputStream.write(buffer, 0, bytesRead);
+                    captureRing.publish(bytesRead);
+                }
+            }
+            captureRing.close();
+        }, "audio-recorder-capture");
+        
+        // Thread de consommation : recopie les blocs publiés dans le flux de sortie
+        drainThread = new Thread(() -> {
+            try {
+                while (captureRing.await()) {
+                    captureOutput.write(captureRing.peek(), 0, captureRing.peekLength());
+                    captureRing.release();
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-        });
+        }, "audio-recorder-drain");
         
+        drainThread.start();
         recordingThread.start();
     }
     
@@ -94,8 +122,9 @@ public class AudioRecorder {
         line.stop();
         line.close();
         
-        // Attente de la fin du thread d'enregistrement
+        // Attente de la fin des threads d'enregistrement et de consommation
         recordingThread.join();
+        drainThread.join();
         
         return outputStream.toByteArray();
     }
@@ -109,6 +138,16 @@ public class AudioRecorder {
         return isRecording;
     }
     
+    /**
+     * Retourne l'anneau de blocs de la dernière capture, pour consulter ses
+     * compteurs (dépassements, pic de remplissage, blocs en attente).
+     * 
+     * @return L'anneau de blocs, ou null si aucun enregistrement n'a démarré
+     */
+    public AudioBlockRing getBlockRing() {
+        return ring;
+    }
+    
     /**
      * Retourne le format audio utilisé pour l'enregistrement.
      * 
@@ -4,6 +4,8 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.Statement;
 
+import service.impl.SchemaMigrator;
+
 /**
  * Classe utilitaire pour initialiser la base de données.
  */
@@ -42,40 +44,18 @@ public class DatabaseInitializer {
         try (Connection conn = DriverManager.getConnection(DB_URL);
              Statement stmt = conn.createStatement()) {
             
-            // Créer la table des utilisateurs
-            stmt.executeUpdate(
-                "CREATE TABLE users (" +
-                "    id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "    email TEXT NOT NULL UNIQUE," +
-                "    password_hash TEXT NOT NULL," +
-                "    salt TEXT NOT NULL," +
-                "    is_admin INTEGER NOT NULL DEFAULT 0" +
-                ");"
-            );
-            
-            // Créer la table des enregistrements audio
-            stmt.executeUpdate(
-                "CREATE TABLE audio_recordings (" +
-                "    id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "    user_id INTEGER NOT NULL," +
-                "    title TEXT NOT NULL," +
-                "    recorded_at TIMESTAMP NOT NULL," +
-                "    file_path TEXT NOT NULL," +
-                "    duration INTEGER NOT NULL," +
-                "    encrypted INTEGER NOT NULL DEFAULT 1," +
-                "    FOREIGN KEY (user_id) REFERENCES users(id)" +
-                ");"
-            );
+            // Créer ou mettre à jour le schéma
+            SchemaMigrator.migrate(conn);
             
             // Créer un utilisateur administrateur par défaut
             stmt.executeUpdate(
-                "INSERT INTO users (email, password_hash, salt, is_admin) VALUES " +
+                "INSERT OR IGNORE INTO users (email, password_hash, salt, is_admin) VALUES " +
                 "('admin@missie.com', '5a1e6d7748674685e92f293095f69a5c5740dd4c9e1cb8a57e3b9d555b616631', 'hS7pQ9tR3', 1);"
             );
             
             // Créer un utilisateur standard par défaut
             stmt.executeUpdate(
-                "INSERT INTO users (email, password_hash, salt, is_admin) VALUES " +
+                "INSERT OR IGNORE INTO users (email, password_hash, salt, is_admin) VALUES " +
                 "('user@missie.com', '8a1e5d7748674685e92f293095f69a5c5740dd4c9e1cb8a57e3b9d555b616521', 'jD2kL5mN6', 0);"
             );
         }
@@ -6,6 +6,8 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.Statement;
 
+import service.impl.SchemaMigrator;
+
 /**
  * Utilitaire pour recréer la base de données avec des utilisateurs valides.
  */
@@ -48,33 +50,10 @@ public class DatabaseRecreator {
             stmt.executeUpdate("DROP TABLE IF EXISTS audio_recordings");
             stmt.executeUpdate("DROP TABLE IF EXISTS recordings");
             stmt.executeUpdate("DROP TABLE IF EXISTS users");
+            stmt.executeUpdate("DROP TABLE IF EXISTS schema_version");
             
-            // Créer la table des utilisateurs
-            stmt.executeUpdate(
-                "CREATE TABLE users (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "email TEXT NOT NULL UNIQUE," +
-                "password_hash TEXT NOT NULL," +
-                "salt TEXT NOT NULL," +
-                "is_admin INTEGER NOT NULL DEFAULT 0" +
-                ");"
-            );
-            
-            // Créer la table des enregistrements audio
-            stmt.executeUpdate(
-                "CREATE TABLE recordings (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "user_id INTEGER NOT NULL," +
-                "name TEXT NOT NULL," +
-                "timestamp TEXT NOT NULL," +
-                "file_path TEXT," +
-                "duration INTEGER NOT NULL," +
-                "audio_data BLOB," +
-                "encryption_key TEXT," +
-                "integrity_hash TEXT," +
-                "FOREIGN KEY (user_id) REFERENCES users(id)" +
-                ");"
-            );
+            // Recréer le schéma à partir des migrations
+            SchemaMigrator.migrate(conn);
             
             // Créer les utilisateurs avec des hachages nouveaux
             String adminSalt = "abc123def456";
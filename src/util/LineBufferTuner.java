@@ -0,0 +1,229 @@
+package util;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import java.time.Duration;
+
+/**
+ * Taille adaptative des blocs et du tampon d'une ligne audio.
+ *
+ * Le remplissage du tampon de la ligne est mesuré avec
+ * {@link DataLine#available()} avant chaque bloc lu ou écrit. Un tampon plein
+ * en capture est un dépassement (overrun) : des échantillons sont perdus ; un
+ * tampon vide en lecture est un sous-remplissage (underrun) : la ligne
+ * s'interrompt. Après un incident, ou quand le tampon s'en approche, le bloc
+ * double, ce qui allonge le délai mais laisse plus de marge au thread audio ;
+ * après une longue période calme, il est divisé par deux pour réduire le
+ * délai. Le bloc reste entre les bornes configurées.
+ *
+ * Le tampon de la ligne ne peut changer qu'à son ouverture : dès la première
+ * adaptation, {@link #getLineBufferSize(AudioFormat)} demande un tampon de
+ * {@link #BLOCKS_PER_LINE_BUFFER} blocs pour les lignes ouvertes ensuite ;
+ * jusque-là, la ligne garde le tampon par défaut du mélangeur. Les lignes déjà
+ * ouvertes de {@link AudioLineManager} restent en service et ne sont rouvertes,
+ * hors du chemin de la demande, que si leur tampon s'écarte trop du nouveau.
+ *
+ * Les compteurs d'incidents et le délai effectif (données en attente dans la
+ * ligne plus le bloc en cours) sont cumulés sur toutes les sessions.
+ */
+public class LineBufferTuner {
+
+    /** Borne inférieure par défaut de la durée d'un bloc. */
+    public static final Duration DEFAULT_MIN_BLOCK = Duration.ofMillis(10);
+    /** Durée initiale par défaut d'un bloc. */
+    public static final Duration DEFAULT_BLOCK = Duration.ofMillis(50);
+    /** Borne supérieure par défaut de la durée d'un bloc. */
+    public static final Duration DEFAULT_MAX_BLOCK = Duration.ofMillis(200);
+    /** Taille du tampon de ligne demandé, en nombre de blocs. */
+    public static final int BLOCKS_PER_LINE_BUFFER = 4;
+    /** Nombre de mesures calmes consécutives avant de réduire le bloc. */
+    public static final int CALM_SAMPLES_BEFORE_SHRINK = 100;
+
+    // Au-delà de ce taux de pression, le bloc est agrandi sans attendre l'incident
+    private static final double HIGH_PRESSURE = 0.75;
+    // En dessous, la mesure compte comme calme
+    private static final double LOW_PRESSURE = 0.5;
+
+    private final boolean capture;
+    private final long minBlockNanos;
+    private final long maxBlockNanos;
+    private final AudioLineManager.Latency effectiveLatency = new AudioLineManager.Latency();
+    private long blockNanos;
+    private boolean adapted;
+    private int calmSamples;
+    private long xruns;
+    private long samples;
+    private long grown;
+    private long shrunk;
+
+    /**
+     * Crée un réglage avec les bornes par défaut.
+     *
+     * @param capture true pour une ligne de capture, false pour une ligne de sortie
+     */
+    public LineBufferTuner(boolean capture) {
+        this(capture, DEFAULT_MIN_BLOCK, DEFAULT_BLOCK, DEFAULT_MAX_BLOCK);
+    }
+
+    /**
+     * Crée un réglage.
+     *
+     * @param capture  true pour une ligne de capture, false pour une ligne de sortie
+     * @param minBlock La durée minimale d'un bloc
+     * @param block    La durée initiale d'un bloc, ramenée entre les bornes
+     * @param maxBlock La durée maximale d'un bloc
+     * @throws IllegalArgumentException Si les bornes sont incohérentes
+     */
+    public LineBufferTuner(boolean capture, Duration minBlock, Duration block, Duration maxBlock) {
+        if (minBlock.isNegative() || minBlock.isZero() || maxBlock.compareTo(minBlock) < 0) {
+            throw new IllegalArgumentException("Bornes de bloc invalides: " + minBlock + " - " + maxBlock);
+        }
+        this.capture = capture;
+        this.minBlockNanos = minBlock.toNanos();
+        this.maxBlockNanos = maxBlock.toNanos();
+        this.blockNanos = Math.max(minBlockNanos, Math.min(block.toNanos(), maxBlockNanos));
+    }
+
+    /**
+     * Mesure le remplissage de la ligne avant un bloc, compte les incidents,
+     * adapte le bloc et retourne sa taille.
+     *
+     * @param line   La ligne ouverte
+     * @param primed false si un tampon de sortie vide est attendu (début de
+     *               lecture, après un vidage) et ne doit pas compter comme
+     *               sous-remplissage ; ignoré en capture
+     * @return La taille du prochain bloc, en octets, multiple de la taille d'une trame
+     */
+    public int sample(DataLine line, boolean primed) {
+        AudioFormat format = line.getFormat();
+        int bufferSize = line.getBufferSize();
+        if (bufferSize <= 0) {
+            return getBlockSize(format);
+        }
+        int available = Math.max(0, Math.min(line.available(), bufferSize));
+        // En capture, available est ce qui attend d'être lu ; en sortie, la place libre
+        int queued = capture ? available : bufferSize - available;
+        double pressure = capture ? (double) queued / bufferSize : 1 - (double) queued / bufferSize;
+        boolean xrun = pressure >= 1 && (capture || primed);
+        synchronized (this) {
+            samples++;
+            long blockBytes = bytes(format, blockNanos);
+            effectiveLatency.record(nanos(format, queued + blockBytes));
+            if (xrun) {
+                xruns++;
+                grow();
+            } else if (pressure >= HIGH_PRESSURE && (capture || primed)) {
+                grow();
+            } else if (pressure < LOW_PRESSURE && ++calmSamples >= CALM_SAMPLES_BEFORE_SHRINK) {
+                shrink();
+            } else if (pressure >= LOW_PRESSURE) {
+                calmSamples = 0;
+            }
+            return getBlockSize(format);
+        }
+    }
+
+    private void grow() {
+        calmSamples = 0;
+        if (blockNanos < maxBlockNanos) {
+            blockNanos = Math.min(blockNanos * 2, maxBlockNanos);
+            grown++;
+        }
+        adapted = true;
+    }
+
+    private void shrink() {
+        calmSamples = 0;
+        if (blockNanos > minBlockNanos) {
+            blockNanos = Math.max(blockNanos / 2, minBlockNanos);
+            shrunk++;
+            adapted = true;
+        }
+    }
+
+    /**
+     * @param format Le format de la ligne
+     * @return La taille actuelle d'un bloc, en octets, multiple de la taille d'une trame
+     */
+    public synchronized int getBlockSize(AudioFormat format) {
+        return (int) bytes(format, blockNanos);
+    }
+
+    /**
+     * @param format Le format de la ligne
+     * @return La taille maximale d'un bloc, en octets, pour dimensionner les tampons
+     */
+    public int getMaxBlockSize(AudioFormat format) {
+        return (int) bytes(format, maxBlockNanos);
+    }
+
+    /**
+     * @param format Le format de la ligne
+     * @return La taille du tampon à demander à l'ouverture d'une ligne, ou
+     *         {@link AudioSystem#NOT_SPECIFIED} pour le tampon par défaut
+     */
+    public synchronized int getLineBufferSize(AudioFormat format) {
+        return adapted ? (int) bytes(format, blockNanos * BLOCKS_PER_LINE_BUFFER) : AudioSystem.NOT_SPECIFIED;
+    }
+
+    /**
+     * @return La durée actuelle d'un bloc
+     */
+    public synchronized Duration getBlockDuration() {
+        return Duration.ofNanos(blockNanos);
+    }
+
+    /**
+     * @return Le nombre de dépassements (capture) ou de sous-remplissages (sortie) constatés
+     */
+    public synchronized long getXruns() {
+        return xruns;
+    }
+
+    /**
+     * @return Le nombre de mesures du remplissage
+     */
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return Le nombre d'agrandissements du bloc
+     */
+    public synchronized long getGrowCount() {
+        return grown;
+    }
+
+    /**
+     * @return Le nombre de réductions du bloc
+     */
+    public synchronized long getShrinkCount() {
+        return shrunk;
+    }
+
+    /**
+     * @return Le délai effectif : données en attente dans la ligne plus le bloc en cours
+     */
+    public AudioLineManager.Latency getEffectiveLatency() {
+        return effectiveLatency;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: %d %s sur %d mesures, bloc de %d ms, délai effectif %s",
+                capture ? "capture" : "sortie", xruns, capture ? "dépassement(s)" : "sous-remplissage(s)",
+                samples, getBlockDuration().toMillis(), effectiveLatency);
+    }
+
+    private static long bytes(AudioFormat format, long nanos) {
+        int frameSize = Math.max(1, format.getFrameSize());
+        long frames = Math.max(1, Math.round(format.getFrameRate() * nanos / 1e9));
+        return frames * frameSize;
+    }
+
+    private static long nanos(AudioFormat format, long bytes) {
+        int frameSize = Math.max(1, format.getFrameSize());
+        return (long) (bytes / frameSize / format.getFrameRate() * 1e9);
+    }
+}
@@ -0,0 +1,210 @@
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Flux qui lit sa source d'avance sur un thread dédié.
+ *
+ * Un thread de lecture remplit des blocs préalloués et les place dans une file
+ * bornée ; le lecteur les consomme dans l'ordre. Pour la lecture audio, le
+ * déchiffrement des segments suivants se fait ainsi pendant que la ligne audio
+ * joue le segment courant, sans jamais charger l'enregistrement complet : la
+ * mémoire utilisée est bornée par le nombre de blocs.
+ *
+ * Contrairement à {@link AudioBlockRing}, dont le producteur ne doit jamais
+ * attendre, le thread de lecture attend ici qu'un bloc soit rendu. Une erreur
+ * de la source est signalée au lecteur après les blocs déjà lus.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    /** Nombre de blocs lus d'avance par défaut. */
+    public static final int DEFAULT_BLOCKS = 4;
+
+    // Marque de fin de la source
+    private static final Block END = new Block(0);
+
+    private final InputStream source;
+    private final BlockingQueue<Block> free;
+    private final BlockingQueue<Block> filled;
+    private final Thread reader;
+    private volatile IOException error;
+    private volatile boolean closed;
+
+    private Block current;
+    private int position;
+    private boolean finished;
+    private long waits;
+
+    /**
+     * Crée le flux et démarre immédiatement la lecture d'avance.
+     *
+     * @param source     La source, lue uniquement par le thread de lecture
+     * @param blockSize  La taille d'un bloc ; pour un flux déchiffré, la taille d'un segment
+     * @param blockCount Le nombre de blocs, file d'attente comprise
+     * @param threadName Le nom du thread de lecture
+     */
+    public ReadAheadInputStream(InputStream source, int blockSize, int blockCount, String threadName) {
+        if (blockSize <= 0 || blockCount <= 0) {
+            throw new IllegalArgumentException("Le nombre et la taille des blocs doivent être positifs");
+        }
+        this.source = source;
+        this.free = new ArrayBlockingQueue<>(blockCount);
+        // Une place de plus pour la marque de fin
+        this.filled = new ArrayBlockingQueue<>(blockCount + 1);
+        for (int i = 0; i < blockCount; i++) {
+            free.add(new Block(blockSize));
+        }
+        this.reader = new Thread(this::readAhead, threadName);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void readAhead() {
+        try {
+            while (!closed) {
+                Block block = free.take();
+                block.length = source.readNBytes(block.data, 0, block.data.length);
+                if (block.length == 0) {
+                    break;
+                }
+                filled.put(block);
+                if (block.length < block.data.length) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                error = e;
+            }
+        } catch (InterruptedException e) {
+            // Flux fermé par le lecteur
+        } finally {
+            filled.offer(END);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    /**
+     * Attend que des données soient disponibles, sans les consommer. Pour un
+     * flux déchiffré, le premier segment est ainsi authentifié avant le début
+     * de la lecture.
+     *
+     * @return false à la fin de la source
+     * @throws IOException Si la source a échoué
+     */
+    public boolean await() throws IOException {
+        return nextBlock();
+    }
+
+    /**
+     * Rend le bloc consommé et attend le suivant si nécessaire.
+     *
+     * @return false à la fin de la source
+     */
+    private boolean nextBlock() throws IOException {
+        if (closed) {
+            throw new IOException("Flux fermé");
+        }
+        if (current != null && position < current.length) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        if (current != null) {
+            free.offer(current);
+            current = null;
+        }
+        Block next = filled.poll();
+        if (next == null) {
+            waits++;
+            try {
+                next = filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Lecture interrompue");
+            }
+        }
+        if (next == END) {
+            finished = true;
+            if (error != null) {
+                throw error;
+            }
+            return false;
+        }
+        current = next;
+        position = 0;
+        return true;
+    }
+
+    @Override
+    public int available() {
+        int buffered = current == null ? 0 : current.length - position;
+        for (Block block : filled) {
+            buffered += block.length;
+        }
+        return buffered;
+    }
+
+    /**
+     * @return Le nombre de fois où le lecteur a dû attendre le thread de
+     *         lecture, premier bloc compris
+     */
+    public long getWaitCount() {
+        return waits;
+    }
+
+    /**
+     * Arrête la lecture d'avance et ferme la source.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reader.interrupt();
+        try {
+            // La source n'est fermée qu'une fois le thread de lecture arrêté
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        source.close();
+    }
+
+    /**
+     * Bloc réutilisé entre le thread de lecture et le lecteur.
+     */
+    private static final class Block {
+        final byte[] data;
+        int length;
+
+        Block(int size) {
+            this.data = new byte[size];
+        }
+    }
+}
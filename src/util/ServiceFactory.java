@@ -21,6 +21,8 @@ public class ServiceFactory {
     private final RSACryptographyService rsaCryptographyService;
     private final UserKeysService userKeysService;
     private final SharedRecordingService sharedRecordingService;
+    private final RecordingScrubber recordingScrubber;
+    private final KeyRotationJob keyRotationJob;
     
     /**
      * Constructeur privé pour empêcher l'instanciation directe.
@@ -28,12 +30,12 @@ public class ServiceFactory {
      */
     private ServiceFactory() {
         // Création des services de base
-        databaseService = new service.impl.SQLiteDatabaseService();
+        databaseService = PooledDatabaseService.getShared();
         cryptographyService = new service.impl.AESCryptographyServiceFix(false);
         rsaCryptographyService = new RSACryptographyService();
         
         // Création des services qui dépendent d'autres services
-        audioRecordingService = new service.impl.AudioRecordingServiceFixExtended(cryptographyService);
+        audioRecordingService = new service.impl.AudioRecordingServiceFixExtended(cryptographyService, databaseService);
         userService = new service.impl.UserServiceImplFix(databaseService, cryptographyService);
         userKeysService = new UserKeysService(databaseService, rsaCryptographyService);
         
@@ -53,6 +55,43 @@ public class ServiceFactory {
             System.err.println("Erreur lors de l'initialisation de la base de données: " + e.getMessage());
             e.printStackTrace();
         }
+        
+        // Vérification périodique des fichiers d'enregistrement, en arrière-plan
+        recordingScrubber = new RecordingScrubber(databaseService,
+            Integer.getInteger("scrubber.parallelism", RecordingScrubber.DEFAULT_PARALLELISM),
+            Long.getLong("scrubber.bytesPerSecond", RecordingScrubber.DEFAULT_BYTES_PER_SECOND));
+        long scrubIntervalMinutes = Long.getLong("scrubber.intervalMinutes", 360);
+        if (scrubIntervalMinutes > 0) {
+            recordingScrubber.start(10, scrubIntervalMinutes);
+        }
+        
+        // Rotation des clés utilisateur, avec reprise en arrière-plan des rotations interrompues
+        keyRotationJob = new KeyRotationJob(databaseService, rsaCryptographyService,
+            Integer.getInteger("keyRotation.parallelism", Runtime.getRuntime().availableProcessors()),
+            Integer.getInteger("keyRotation.batchSize", KeyRotationJob.DEFAULT_BATCH_SIZE));
+        Thread resume = new Thread(() -> {
+            try {
+                keyRotationJob.resumePending(null);
+            } catch (Exception e) {
+                System.err.println("Erreur lors de la reprise des rotations de clés: " + e.getMessage());
+            }
+        }, "key-rotation-resume");
+        resume.setDaemon(true);
+        resume.start();
+
+        // Ouverture d'avance des lignes audio, pour que le premier enregistrement
+        // et la première lecture démarrent sans attendre le mélangeur
+        if (Boolean.parseBoolean(System.getProperty("audio.warmUp", "true"))) {
+            Thread warmUp = new Thread(() -> {
+                try {
+                    AudioLineManager.getShared().warmUp(AudioRecordingServiceFixExtended.getAudioFormat());
+                } catch (Exception e) {
+                    System.err.println("Erreur lors de l'ouverture des lignes audio: " + e.getMessage());
+                }
+            }, "audio-warmup");
+            warmUp.setDaemon(true);
+            warmUp.start();
+        }
     }
     
     /**
@@ -129,4 +168,22 @@ public class ServiceFactory {
     public SharedRecordingService getSharedRecordingService() {
         return sharedRecordingService;
     }
+    
+    /**
+     * Obtient le vérificateur des fichiers d'enregistrement.
+     * 
+     * @return Le vérificateur des fichiers d'enregistrement
+     */
+    public RecordingScrubber getRecordingScrubber() {
+        return recordingScrubber;
+    }
+    
+    /**
+     * Obtient le traitement de rotation des clés utilisateur.
+     * 
+     * @return Le traitement de rotation des clés utilisateur
+     */
+    public KeyRotationJob getKeyRotationJob() {
+        return keyRotationJob;
+    }
 } 
\ No newline at end of file
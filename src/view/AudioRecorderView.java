@@ -16,6 +16,7 @@ import java.awt.event.MouseEvent;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.awt.datatransfer.StringSelection;
 import java.awt.datatransfer.Clipboard;
 import java.awt.Toolkit;
@@ -32,6 +33,10 @@ import java.awt.Desktop;
 public class AudioRecorderView extends JFrame {
 
     private static final long serialVersionUID = 1L;
+    // Nombre d'enregistrements lus par requête lors du chargement de la liste
+    private static final int RECORDINGS_PAGE_SIZE = 200;
+    // Lignes restantes sous la vue en deçà desquelles la page suivante est lue
+    private static final int RECORDINGS_PREFETCH_ROWS = 20;
 
     private JPanel contentPane;
     private JTable table;
@@ -55,6 +60,9 @@ public class AudioRecorderView extends JFrame {
     private NotificationService notificationService;
     private int selectedRecordingId = -1;
     private int currentUserId;
+    // Nombre d'enregistrements déjà lus, et s'il en reste à lire
+    private int loadedRecordings;
+    private boolean moreRecordings;
     private boolean isRecording = false;
     private boolean isPlaying = false;
 
@@ -170,6 +178,14 @@ public class AudioRecorderView extends JFrame {
         });
 
         JScrollPane scrollPane = new JScrollPane(table);
+        // La page suivante n'est lue qu'à l'approche du bas de la liste
+        JScrollBar scrollBar = scrollPane.getVerticalScrollBar();
+        scrollBar.addAdjustmentListener(e -> {
+            if (!e.getValueIsAdjusting() && moreRecordings && scrollBar.getValue() + scrollBar.getVisibleAmount()
+                    >= scrollBar.getMaximum() - RECORDINGS_PREFETCH_ROWS * table.getRowHeight()) {
+                loadNextRecordingsPage();
+            }
+        });
         tablePanel.add(scrollPane, BorderLayout.CENTER);
 
         contentPane.add(tablePanel, BorderLayout.CENTER);
@@ -296,19 +312,14 @@ public class AudioRecorderView extends JFrame {
             // Effacer le tableau
             tableModel.setRowCount(0);
 
-            // Récupérer les enregistrements
-            List<AudioRecording> recordings = controller.getRecordings("recordings");
-
-            // Ajouter les enregistrements au tableau
-            for (AudioRecording recording : recordings) {
-                Object[] rowData = {
-                        recording.getId(),
-                        recording.getName(),
-                        controller.formatDateForDisplay(recording.getTimestamp()),
-                        controller.formatDuration(recording.getDuration())
-                };
+            // Récupérer la première page ; les suivantes sont lues au défilement
+            loadedRecordings = 0;
+            moreRecordings = true;
+            loadNextRecordingsPage();
 
-                tableModel.addRow(rowData);
+            // Aucun enregistrement en base : rechercher les fichiers du répertoire
+            if (loadedRecordings == 0) {
+                addRecordingRows(controller.getRecordings("recordings"));
             }
 
             // Réinitialiser la sélection
@@ -331,6 +342,34 @@ public class AudioRecorderView extends JFrame {
         }
     }
 
+    /**
+     * Ajoute au tableau la page suivante des enregistrements.
+     */
+    private void loadNextRecordingsPage() {
+        List<AudioRecording> page = controller.getRecordingsPage(loadedRecordings, RECORDINGS_PAGE_SIZE);
+        addRecordingRows(page);
+        loadedRecordings += page.size();
+        moreRecordings = page.size() == RECORDINGS_PAGE_SIZE;
+    }
+
+    /**
+     * Ajoute des enregistrements au tableau.
+     * 
+     * @param recordings Les enregistrements à afficher
+     */
+    private void addRecordingRows(List<AudioRecording> recordings) {
+        for (AudioRecording recording : recordings) {
+            Object[] rowData = {
+                    recording.getId(),
+                    recording.getName(),
+                    controller.formatDateForDisplay(recording.getTimestamp()),
+                    controller.formatDuration(recording.getDuration())
+            };
+
+            tableModel.addRow(rowData);
+        }
+    }
+
     /**
      * Démarre l'enregistrement audio.
      */
@@ -354,7 +393,7 @@ public class AudioRecorderView extends JFrame {
     private void stopOperation() {
         try {
             if (isRecording) {
-                controller.stopRecording();
+                CompletableFuture<AudioRecording> saving = controller.stopRecordingAsync();
                 isRecording = false;
                 recordingTimer.stop();
 
@@ -368,8 +407,18 @@ public class AudioRecorderView extends JFrame {
                 btnOpenWithKey.setEnabled(selectedRecordingId != -1);
                 btnDownload.setEnabled(selectedRecordingId != -1);
 
-                statusLabel.setText("Enregistrement terminé");
-                loadUserRecordings();
+                // La sauvegarde se poursuit en arrière-plan : l'interface reste réactive
+                statusLabel.setText("Sauvegarde…");
+                saving.whenComplete((recording, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        statusLabel.setText("Erreur lors de la sauvegarde: " + error.getMessage());
+                    } else if (recording == null) {
+                        statusLabel.setText("Aucune donnée audio capturée");
+                    } else {
+                        statusLabel.setText("Enregistrement terminé");
+                        loadUserRecordings();
+                    }
+                }));
             } else if (isPlaying) {
                 controller.stopPlaying();
                 isPlaying = false;
@@ -411,42 +460,28 @@ public class AudioRecorderView extends JFrame {
                 isPlaying = true;
                 statusLabel.setText("Lecture en cours...");
 
-                // Créer un thread séparé pour la lecture
-                new Thread(() -> {
-                    try {
-                        // Utiliser directement l'ID de l'enregistrement
-                        controller.playRecording(selectedRecordingId);
-
-                        // Une fois la lecture terminée, réactiver tous les boutons
-                        SwingUtilities.invokeLater(() -> {
-                            isPlaying = false;
-                            btnRecord.setEnabled(true);
-                            btnStop.setEnabled(false);
-                            btnPlay.setEnabled(selectedRecordingId != -1);
-                            btnDelete.setEnabled(selectedRecordingId != -1);
-                            btnShare.setEnabled(selectedRecordingId != -1);
-                            btnExportKey.setEnabled(selectedRecordingId != -1);
-                            btnOpenWithKey.setEnabled(selectedRecordingId != -1);
-                            btnDownload.setEnabled(selectedRecordingId != -1);
+                // La lecture s'exécute sur le moteur de lecture, qui ferme sa ligne
+                // avant d'en ouvrir une autre
+                controller.playRecordingAsync(selectedRecordingId).whenComplete((played, error) -> {
+                    // Une fois la lecture terminée, réactiver tous les boutons
+                    SwingUtilities.invokeLater(() -> {
+                        boolean stoppedByUser = !isPlaying;
+                        isPlaying = false;
+                        btnRecord.setEnabled(true);
+                        btnStop.setEnabled(false);
+                        btnPlay.setEnabled(selectedRecordingId != -1);
+                        btnDelete.setEnabled(selectedRecordingId != -1);
+                        btnShare.setEnabled(selectedRecordingId != -1);
+                        btnExportKey.setEnabled(selectedRecordingId != -1);
+                        btnOpenWithKey.setEnabled(selectedRecordingId != -1);
+                        btnDownload.setEnabled(selectedRecordingId != -1);
+                        if (error != null || !played) {
+                            statusLabel.setText("Erreur de lecture");
+                        } else if (!stoppedByUser) {
                             statusLabel.setText("Lecture terminée");
-                        });
-                    } catch (Exception e) {
-                        // En cas d'erreur, réactiver tous les boutons
-                        SwingUtilities.invokeLater(() -> {
-                            isPlaying = false;
-                            btnRecord.setEnabled(true);
-                            btnStop.setEnabled(false);
-                            btnPlay.setEnabled(selectedRecordingId != -1);
-                            btnDelete.setEnabled(selectedRecordingId != -1);
-                            btnShare.setEnabled(selectedRecordingId != -1);
-                            btnExportKey.setEnabled(selectedRecordingId != -1);
-                            btnOpenWithKey.setEnabled(selectedRecordingId != -1);
-                            btnDownload.setEnabled(selectedRecordingId != -1);
-                            statusLabel.setText("Erreur de lecture: " + e.getMessage());
-                        });
-                        e.printStackTrace();
-                    }
-                }).start();
+                        }
+                    });
+                });
 
             } catch (Exception e) {
                 e.printStackTrace();
@@ -730,9 +765,15 @@ public class AudioRecorderView extends JFrame {
                 return;
             }
 
-            // Lire le fichier avec la clé fournie
+            // Lire le fichier avec la clé fournie, sans bloquer l'interface
             try {
-                controller.playRecordingWithKey(filePath, key);
+                controller.playRecordingWithKey(filePath, key).whenComplete((played, error) -> {
+                    if (error != null) {
+                        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(AudioRecorderView.this,
+                                "Erreur lors de la lecture: " + error.getMessage(),
+                                "Erreur de lecture", JOptionPane.ERROR_MESSAGE));
+                    }
+                });
                 statusLabel.setText("Lecture en cours...");
                 updateButtonStates();
             } catch (Exception ex) {
@@ -849,6 +890,9 @@ public class AudioRecorderView extends JFrame {
                 JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
+            // Effacer les clés de la session
+            controller.logout();
+
             // Fermer cette fenêtre
             setVisible(false);
 
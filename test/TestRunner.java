@@ -6,7 +6,28 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 // Import des classes de test
+import test.service.CaptureSessionTest;
 import test.service.CryptographyServiceTest;
+import test.service.DatabaseWriteQueueTest;
+import test.service.EncryptedAudioContainerTest;
+import test.service.CryptoPrimitivesTest;
+import test.service.ParallelSegmentCipherTest;
+import test.service.RecordingScrubberTest;
+import test.service.KeyRotationJobTest;
+import test.service.PlaybackEngineTest;
+import test.service.SharedRecordingServiceTest;
+import test.service.KeyHierarchyTest;
+import test.service.KeyPairPoolTest;
+import test.service.KeyRingTest;
+import test.service.X25519CryptographyServiceTest;
+import test.service.RecordingKeyCacheTest;
+import test.service.RecordingRepositoryTest;
+import test.service.SchemaDescriptorTest;
+import test.service.SchemaMigratorTest;
+import test.util.AudioBlockRingTest;
+import test.util.ReadAheadInputStreamTest;
+import test.util.AudioLineManagerTest;
+import test.util.LineBufferTunerTest;
 import test.util.AudioFormatManagerTest;
 
 /**
@@ -16,9 +37,30 @@ import test.util.AudioFormatManagerTest;
 @SuiteClasses({
     // Tests des services
     CryptographyServiceTest.class,
+    EncryptedAudioContainerTest.class,
+    CaptureSessionTest.class,
+    SchemaMigratorTest.class,
+    DatabaseWriteQueueTest.class,
+    SchemaDescriptorTest.class,
+    RecordingRepositoryTest.class,
+    KeyRingTest.class,
+    RecordingKeyCacheTest.class,
+    KeyHierarchyTest.class,
+    X25519CryptographyServiceTest.class,
+    KeyPairPoolTest.class,
+    CryptoPrimitivesTest.class,
+    ParallelSegmentCipherTest.class,
+    RecordingScrubberTest.class,
+    KeyRotationJobTest.class,
+    PlaybackEngineTest.class,
+    SharedRecordingServiceTest.class,
     
     // Tests des utilitaires
-    AudioFormatManagerTest.class
+    AudioFormatManagerTest.class,
+    AudioBlockRingTest.class,
+    ReadAheadInputStreamTest.class,
+    AudioLineManagerTest.class,
+    LineBufferTunerTest.class
 })
 public class TestRunner {
     
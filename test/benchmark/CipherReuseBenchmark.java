@@ -0,0 +1,105 @@
+package test.benchmark;
+
+import service.CryptographyService;
+import service.impl.AESCryptographyServiceFix;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Mesure du coût par appel du chiffrement AES et du hachage SHA-256, avec un
+ * Cipher et un MessageDigest obtenus par getInstance à chaque appel
+ * (comportement historique) et avec les instances réutilisées par thread du
+ * service de cryptographie.
+ *
+ * Les tailles mesurées correspondent à une chaîne courte (32 octets), à une
+ * notification ou un petit document (4 Ko) et à un enregistrement (10 Mo).
+ * Ce n'est pas un test unitaire : la classe s'exécute avec
+ * java test.benchmark.CipherReuseBenchmark [itérations].
+ */
+public class CipherReuseBenchmark {
+
+    private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final int[] SIZES = { 32, 4 * 1024, 10 * 1024 * 1024 };
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        CryptographyService service = new AESCryptographyServiceFix(false);
+        SecretKey key = service.generateSecretKey();
+        Random random = new Random(42);
+
+        System.out.printf("%-10s %-10s %16s %16s%n", "Taille", "Opération", "getInstance", "réutilisé");
+        for (int size : SIZES) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            // Moins d'itérations pour les gros volumes : le coût fixe y est négligeable
+            int count = Math.max(5, (int) Math.min(iterations, 40L * 1024 * 1024 / size));
+
+            measureLegacyEncrypt(data, key, count);
+            double legacyEncrypt = measureLegacyEncrypt(data, key, count);
+            measureEncrypt(service, data, key, count);
+            double reusedEncrypt = measureEncrypt(service, data, key, count);
+            System.out.printf("%-10s %-10s %13.2f µs %13.2f µs%n", label(size), "chiffrement",
+                    legacyEncrypt, reusedEncrypt);
+
+            measureLegacyHash(data, count);
+            double legacyHash = measureLegacyHash(data, count);
+            measureHash(service, data, count);
+            double reusedHash = measureHash(service, data, count);
+            System.out.printf("%-10s %-10s %13.2f µs %13.2f µs%n", label(size), "hachage",
+                    legacyHash, reusedHash);
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static double measureLegacyEncrypt(byte[] data, SecretKey key, int count) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key);
+            sink += cipher.doFinal(data).length;
+        }
+        return (System.nanoTime() - start) / 1e3 / count;
+    }
+
+    private static double measureEncrypt(CryptographyService service, byte[] data, SecretKey key, int count)
+            throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            sink += service.encrypt(data, key).length;
+        }
+        return (System.nanoTime() - start) / 1e3 / count;
+    }
+
+    private static double measureLegacyHash(byte[] data, int count) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            sink += Base64.getEncoder().encodeToString(digest.digest(data)).length();
+        }
+        return (System.nanoTime() - start) / 1e3 / count;
+    }
+
+    private static double measureHash(CryptographyService service, byte[] data, int count) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            sink += service.generateHash(data).length();
+        }
+        return (System.nanoTime() - start) / 1e3 / count;
+    }
+
+    private static String label(int size) {
+        if (size >= 1024 * 1024) {
+            return (size / (1024 * 1024)) + " Mo";
+        }
+        return size >= 1024 ? (size / 1024) + " Ko" : size + " o";
+    }
+}
@@ -0,0 +1,203 @@
+package test.benchmark;
+
+import service.DatabaseService;
+import service.RSACryptographyService;
+import service.SharedRecordingService;
+import service.UserKeysService;
+import service.impl.AESCryptographyServiceFix;
+import service.impl.AudioRecordingServiceFixExtended;
+import service.impl.PooledDatabaseService;
+import service.impl.SchemaMigrator;
+import service.impl.UserServiceImplFix;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mesure comparative de getRecordings et getSharedRecordings avec une connexion
+ * JDBC ouverte à chaque appel (comportement historique) et avec le pool.
+ *
+ * La base temporaire contient 10 000 enregistrements, dont une partie est
+ * partagée avec un second utilisateur. Ce n'est pas un test unitaire : la
+ * classe s'exécute avec java test.benchmark.DatabasePoolBenchmark [itérations].
+ */
+public class DatabasePoolBenchmark {
+
+    private static final int RECORDING_COUNT = 10_000;
+    private static final int SHARED_COUNT = 200;
+    private static final int OWNER_ID = 1;
+    private static final int TARGET_ID = 2;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        File dir = Files.createTempDirectory("pool-benchmark").toFile();
+        File audioFile = new File(dir, "audio.enc");
+        Files.write(audioFile.toPath(), new byte[16]);
+        String url = "jdbc:sqlite:" + new File(dir, "benchmark.db").getAbsolutePath();
+
+        // Les journaux et traces par enregistrement faussent la mesure
+        Logger.getLogger("").setLevel(Level.WARNING);
+        PrintStream console = System.out;
+
+        seed(url, audioFile);
+
+        DatabaseService direct = new DirectDatabaseService(url);
+        PooledDatabaseService pooled = new PooledDatabaseService(url, PooledDatabaseService.DEFAULT_POOL_SIZE,
+                PooledDatabaseService.DEFAULT_LEAK_THRESHOLD_MS);
+
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            long[] directTimes = run(direct, iterations);
+            long[] pooledTimes = run(pooled, iterations);
+
+            console.printf("%d enregistrements, %d partagés, %d itérations%n",
+                    RECORDING_COUNT, SHARED_COUNT, iterations);
+            console.printf("getRecordings       : sans pool %8.2f ms, avec pool %8.2f ms%n",
+                    directTimes[0] / 1e6 / iterations, pooledTimes[0] / 1e6 / iterations);
+            console.printf("getSharedRecordings : sans pool %8.2f ms, avec pool %8.2f ms%n",
+                    directTimes[1] / 1e6 / iterations, pooledTimes[1] / 1e6 / iterations);
+            console.printf("Connexions physiques ouvertes par le pool : %d pour %d emprunts%n",
+                    pooled.getCreatedCount(), pooled.getBorrowCount());
+        } finally {
+            System.setOut(console);
+            pooled.shutdown();
+        }
+    }
+
+    /**
+     * Exécute les deux listes après une itération de chauffe.
+     *
+     * @return Les durées cumulées en nanosecondes de getRecordings et getSharedRecordings
+     */
+    private static long[] run(DatabaseService databaseService, int iterations) throws Exception {
+        AESCryptographyServiceFix cryptographyService = new AESCryptographyServiceFix(false);
+        RSACryptographyService rsaService = new RSACryptographyService();
+        AudioRecordingServiceFixExtended recordingService =
+                new AudioRecordingServiceFixExtended(cryptographyService, databaseService);
+        SharedRecordingService sharedService = new SharedRecordingService(databaseService,
+                new UserServiceImplFix(databaseService, cryptographyService), recordingService,
+                new UserKeysService(databaseService, rsaService), rsaService);
+
+        recordingService.setCurrentUserId(OWNER_ID);
+        recordingService.getRecordings("absent");
+        sharedService.getSharedRecordings(TARGET_ID);
+
+        long[] times = new long[2];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            recordingService.getRecordings("absent");
+            times[0] += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            sharedService.getSharedRecordings(TARGET_ID);
+            times[1] += System.nanoTime() - start;
+        }
+        return times;
+    }
+
+    private static void seed(String url, File audioFile) throws Exception {
+        RSACryptographyService rsaService = new RSACryptographyService();
+        String[] ownerKeys = rsaService.generateKeyPair();
+        String[] targetKeys = rsaService.generateKeyPair();
+        String sharedKey = rsaService.encryptWithPublicKey("cle-aes-de-test", targetKeys[0]);
+
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+            SchemaMigrator.migrate(conn);
+            stmt.executeUpdate("INSERT INTO users (id, email, password_hash, salt) VALUES"
+                    + " (1, 'owner@missie.com', 'x', 'x'), (2, 'target@missie.com', 'x', 'x')");
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement keys = conn.prepareStatement(
+                    "INSERT INTO user_keys (user_id, public_key, private_key) VALUES (?, ?, ?)")) {
+                insertKeys(keys, OWNER_ID, ownerKeys);
+                insertKeys(keys, TARGET_ID, targetKeys);
+            }
+            try (PreparedStatement recording = conn.prepareStatement("INSERT INTO recordings"
+                    + " (user_id, name, timestamp, file_path, duration, encryption_key) VALUES (?, ?, ?, ?, ?, ?)")) {
+                String timestamp = LocalDateTime.now().toString();
+                for (int i = 1; i <= RECORDING_COUNT; i++) {
+                    recording.setInt(1, OWNER_ID);
+                    recording.setString(2, "recording_" + i);
+                    recording.setString(3, timestamp);
+                    recording.setString(4, audioFile.getAbsolutePath());
+                    recording.setInt(5, 60);
+                    recording.setString(6, "cle");
+                    recording.addBatch();
+                }
+                recording.executeBatch();
+            }
+            try (PreparedStatement share = conn.prepareStatement("INSERT INTO shared_recordings"
+                    + " (recording_id, source_user_id, target_user_id, encryption_key) VALUES (?, ?, ?, ?)")) {
+                for (int i = 1; i <= SHARED_COUNT; i++) {
+                    share.setInt(1, i * (RECORDING_COUNT / SHARED_COUNT));
+                    share.setInt(2, OWNER_ID);
+                    share.setInt(3, TARGET_ID);
+                    share.setString(4, sharedKey);
+                    share.addBatch();
+                }
+                share.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+
+    private static void insertKeys(PreparedStatement keys, int userId, String[] pair) throws SQLException {
+        keys.setInt(1, userId);
+        keys.setString(2, pair[0]);
+        keys.setString(3, pair[1]);
+        keys.executeUpdate();
+    }
+
+    /**
+     * Service sans pool : une connexion physique ouverte et fermée à chaque appel.
+     */
+    private static class DirectDatabaseService implements DatabaseService {
+        private final String url;
+
+        DirectDatabaseService(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Connection connect() throws SQLException {
+            return DriverManager.getConnection(url);
+        }
+
+        @Override
+        public void closeConnection(Connection conn) {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    // Ignorer l'erreur de fermeture
+                }
+            }
+        }
+
+        @Override
+        public int executeUpdate(String sql, Object... params) throws SQLException {
+            try (Connection conn = connect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < params.length; i++) {
+                    pstmt.setObject(i + 1, params[i]);
+                }
+                return pstmt.executeUpdate();
+            }
+        }
+
+        @Override
+        public void initializeDatabase() {
+            // Schéma créé par le jeu de données
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package test.benchmark;
+
+import service.AsymmetricCryptographyService;
+import service.KeyRing;
+import service.RSACryptographyService;
+import service.X25519CryptographyService;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Base64;
+
+/**
+ * Mesure comparative des schémas RSA-2048 et X25519 (ECIES avec HKDF et
+ * AES-GCM) : génération d'une paire de clés, chiffrement d'une clé AES pour
+ * un destinataire et déchiffrement par celui-ci.
+ *
+ * Chaque opération est d'abord exécutée à vide pour laisser le compilateur
+ * JIT optimiser le code. Ce n'est pas un test unitaire : la classe s'exécute
+ * avec java test.benchmark.KeySchemeBenchmark [itérations].
+ */
+public class KeySchemeBenchmark {
+
+    private static final String AES_KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        AsymmetricCryptographyService[] schemes = {
+                new RSACryptographyService(new KeyRing(16)),
+                new X25519CryptographyService() };
+
+        // Le service RSA trace chaque déchiffrement
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            console.printf("%d itérations (génération RSA : %d)%n", iterations, Math.max(1, iterations / 20));
+            console.printf("%-8s %14s %14s %14s%n", "Schéma", "génération", "chiffrement", "déchiffrement");
+            for (AsymmetricCryptographyService scheme : schemes) {
+                // La génération RSA coûte des centaines de millisecondes : moins d'itérations
+                int keygenIterations = scheme instanceof RSACryptographyService
+                        ? Math.max(1, iterations / 20)
+                        : iterations;
+                measureKeygen(scheme, keygenIterations);
+                double keygen = measureKeygen(scheme, keygenIterations);
+
+                String[] keyPair = scheme.generateKeyPair();
+                measureWrap(scheme, keyPair, iterations);
+                double wrap = measureWrap(scheme, keyPair, iterations);
+
+                String wrapped = scheme.encryptWithPublicKey(AES_KEY, keyPair[0]);
+                measureUnwrap(scheme, keyPair, wrapped, iterations);
+                double unwrap = measureUnwrap(scheme, keyPair, wrapped, iterations);
+
+                console.printf("%-8s %11.1f µs %11.1f µs %11.1f µs%n", scheme.getScheme(), keygen, wrap, unwrap);
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static double measureKeygen(AsymmetricCryptographyService scheme, int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            scheme.generateKeyPair();
+        }
+        return (System.nanoTime() - start) / 1e3 / iterations;
+    }
+
+    private static double measureWrap(AsymmetricCryptographyService scheme, String[] keyPair, int iterations)
+            throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            scheme.encryptWithPublicKey(AES_KEY, keyPair[0]);
+        }
+        return (System.nanoTime() - start) / 1e3 / iterations;
+    }
+
+    private static double measureUnwrap(AsymmetricCryptographyService scheme, String[] keyPair, String wrapped,
+            int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (!AES_KEY.equals(scheme.decryptWithPrivateKey(wrapped, keyPair[1]))) {
+                throw new IllegalStateException("Déchiffrement incorrect pour " + scheme.getScheme());
+            }
+        }
+        return (System.nanoTime() - start) / 1e3 / iterations;
+    }
+}
@@ -0,0 +1,87 @@
+package test.benchmark;
+
+import service.AESCryptographyService;
+import service.impl.EncryptedAudioContainer;
+import service.impl.ParallelSegmentCipher;
+
+import javax.crypto.SecretKey;
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Mesure du débit de chiffrement, de déchiffrement et de rechiffrement (export)
+ * d'un long enregistrement en fonction du nombre de threads.
+ *
+ * Les données restent en mémoire pour que le débit mesuré soit celui du
+ * chiffrement et non celui du disque. Le nombre de threads varie de 1 au
+ * nombre de cœurs disponibles ; l'accélération est relative à 1 thread.
+ * Ce n'est pas un test unitaire : la classe s'exécute avec
+ * java test.benchmark.ParallelCipherBenchmark [taille en Mo] [répétitions].
+ */
+public class ParallelCipherBenchmark {
+
+    private static final AudioFormat FORMAT = new AudioFormat(44100, 16, 1, true, true);
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        byte[] audio = new byte[megabytes * 1024 * 1024];
+        new Random(42).nextBytes(audio);
+        AESCryptographyService service = new AESCryptographyService();
+        SecretKey key = service.generateSecretKey();
+        SecretKey exportKey = service.generateSecretKey();
+
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream(audio.length + audio.length / 1000 + 1024);
+        new ParallelSegmentCipher(1).encrypt(new ByteArrayInputStream(audio), encrypted, key,
+                EncryptedAudioContainer.Header.create(EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE, FORMAT));
+        byte[] container = encrypted.toByteArray();
+
+        System.out.printf("Enregistrement de %d Mo, %d cœur(s) disponible(s)%n", megabytes, cores);
+        System.out.printf("%-8s %16s %16s %16s%n", "Threads", "chiffrement", "déchiffrement", "export");
+        double[] reference = null;
+        for (int threads = 1; threads <= cores; threads = threads < cores ? Math.min(threads * 2, cores) : cores + 1) {
+            ParallelSegmentCipher cipher = new ParallelSegmentCipher(threads);
+            try {
+                double[] rates = new double[3];
+                for (int round = 0; round <= repetitions; round++) {
+                    // Le premier tour sert de préchauffage
+                    double[] measured = {
+                            measure(audio.length, () -> cipher.encrypt(new ByteArrayInputStream(audio),
+                                    OutputStream.nullOutputStream(), key, EncryptedAudioContainer.Header
+                                            .create(EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE, FORMAT))),
+                            measure(audio.length, () -> cipher.decrypt(new ByteArrayInputStream(container),
+                                    OutputStream.nullOutputStream(), key)),
+                            measure(audio.length, () -> cipher.reencrypt(new ByteArrayInputStream(container),
+                                    OutputStream.nullOutputStream(), key, exportKey)) };
+                    for (int i = 0; round > 0 && i < rates.length; i++) {
+                        rates[i] = Math.max(rates[i], measured[i]);
+                    }
+                }
+                if (reference == null) {
+                    reference = rates;
+                }
+                System.out.printf("%-8d %9.0f Mo/s x%.1f %7.0f Mo/s x%.1f %7.0f Mo/s x%.1f%n", threads,
+                        rates[0], rates[0] / reference[0], rates[1], rates[1] / reference[1],
+                        rates[2], rates[2] / reference[2]);
+            } finally {
+                cipher.shutdown();
+            }
+        }
+    }
+
+    private static double measure(int bytes, Operation operation) throws Exception {
+        long start = System.nanoTime();
+        operation.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return bytes / (1024.0 * 1024.0) / seconds;
+    }
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+}
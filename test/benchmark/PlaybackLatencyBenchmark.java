@@ -0,0 +1,120 @@
+package test.benchmark;
+
+import service.AESCryptographyService;
+import service.impl.EncryptedAudioContainer;
+import util.ReadAheadInputStream;
+
+import javax.crypto.SecretKey;
+import javax.sound.sampled.AudioFormat;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Mesure du délai avant le premier son (time-to-first-audio) d'un
+ * enregistrement de 1 minute et de 60 minutes.
+ *
+ * Deux chemins sont comparés, du fichier chiffré jusqu'au premier bloc prêt
+ * à être écrit sur la ligne audio :
+ * - complet : lecture du fichier entier puis déchiffrement complet, comme
+ *   avant la lecture en flux ;
+ * - flux : déchiffrement du premier segment par la lecture d'avance utilisée
+ *   par AudioRecordingServiceFixExtended.
+ * L'ouverture de la ligne audio n'est pas comptée : elle est identique pour
+ * les deux chemins et n'est pas disponible sans carte son. Ce n'est pas un
+ * test unitaire : la classe s'exécute avec
+ * java test.benchmark.PlaybackLatencyBenchmark [répétitions].
+ */
+public class PlaybackLatencyBenchmark {
+
+    private static final AudioFormat FORMAT = new AudioFormat(44100, 16, 1, true, true);
+    private static final int BYTES_PER_MINUTE = 44100 * 2 * 60;
+
+    public static void main(String[] args) throws Exception {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        AESCryptographyService service = new AESCryptographyService();
+        SecretKey key = service.generateSecretKey();
+
+        System.out.printf("%-10s %12s %14s %14s%n", "Durée", "fichier", "complet", "flux");
+        for (int minutes : new int[] { 1, 60 }) {
+            File file = File.createTempFile("ttfa", ".enc");
+            try {
+                write(file, minutes, service, key);
+                double full = Double.NaN;
+                double streamed = Double.MAX_VALUE;
+                for (int round = 0; round <= repetitions; round++) {
+                    // Le premier tour sert de préchauffage
+                    double fullRound = measureFull(file, key);
+                    double streamedRound = measureStreamed(file, service, key);
+                    if (round > 0) {
+                        full = Double.isNaN(full) ? fullRound : Math.min(full, fullRound);
+                        streamed = Math.min(streamed, streamedRound);
+                    }
+                }
+                System.out.printf("%-10s %9d Mo %11s %11.1f ms%n", minutes + " min",
+                        file.length() / (1024 * 1024),
+                        Double.isInfinite(full) ? "mémoire insuffisante" : String.format("%.1f ms", full), streamed);
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    private static void write(File file, int minutes, AESCryptographyService service, SecretKey key)
+            throws Exception {
+        byte[] minute = new byte[BYTES_PER_MINUTE];
+        new Random(minutes).nextBytes(minute);
+        try (OutputStream out = new EncryptedAudioContainer.EncryptingOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)), key, FORMAT)) {
+            for (int i = 0; i < minutes; i++) {
+                out.write(minute);
+            }
+        }
+    }
+
+    /**
+     * Ancien chemin : le premier bloc n'est disponible qu'après le
+     * déchiffrement de tout le fichier.
+     */
+    private static double measureFull(File file, SecretKey key) {
+        long start = System.nanoTime();
+        try {
+            byte[] encrypted = Files.readAllBytes(file.toPath());
+            ByteArrayOutputStream decrypted = new ByteArrayOutputStream(encrypted.length);
+            EncryptedAudioContainer.decrypt(new ByteArrayInputStream(encrypted), decrypted, key);
+            if (decrypted.size() == 0) {
+                throw new IllegalStateException("Enregistrement vide");
+            }
+        } catch (OutOfMemoryError e) {
+            return Double.POSITIVE_INFINITY;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    private static double measureStreamed(File file, AESCryptographyService service, SecretKey key)
+            throws Exception {
+        byte[] buffer = new byte[EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE];
+        long start = System.nanoTime();
+        try (InputStream in = new ReadAheadInputStream(
+                service.openDecryptingStream(new BufferedInputStream(new FileInputStream(file)), key),
+                EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE, ReadAheadInputStream.DEFAULT_BLOCKS,
+                "benchmark-read-ahead")) {
+            int first = in.readNBytes(buffer, 0, buffer.length);
+            double elapsed = (System.nanoTime() - start) / 1e6;
+            if (first <= 0) {
+                throw new IllegalStateException("Enregistrement vide");
+            }
+            return elapsed;
+        }
+    }
+}
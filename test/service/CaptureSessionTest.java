@@ -0,0 +1,112 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import service.impl.CaptureSession;
+import util.AudioBlockRing;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Tests unitaires pour la session de capture et sa poignée de main d'arrêt.
+ */
+public class CaptureSessionTest {
+
+    @Test
+    public void testNoTailSamplesLostWithSlowConsumer() throws Exception {
+        byte[] audio = new byte[32 * 1000 + 123];
+        new Random(7).nextBytes(audio);
+
+        // Consommateur lent : 20 ms par bloc, soit bien plus que les 200 ms
+        // qu'attendait l'ancien arrêt pour l'ensemble des blocs
+        SlowOutputStream out = new SlowOutputStream(20);
+        CaptureSession session = new CaptureSession(arraySource(audio), out, new AudioBlockRing(64, 1000), "test");
+        session.start();
+
+        long total = session.awaitCompletion(10000);
+
+        assertEquals("Le nombre d'octets signalé devrait couvrir toute la capture", audio.length, total);
+        assertTrue("Le flux devrait être fermé à la fin de la session", out.closed);
+        assertArrayEquals("Aucun échantillon de fin ne devrait être perdu", audio, out.toByteArray());
+        assertEquals(0, session.getRing().getOverruns());
+    }
+
+    @Test
+    public void testCompletionWaitsForLastBlock() throws Exception {
+        byte[] audio = new byte[5000];
+        SlowOutputStream out = new SlowOutputStream(100);
+        CaptureSession session = new CaptureSession(arraySource(audio), out, new AudioBlockRing(8, 1000), "test");
+        session.start();
+
+        Thread.sleep(150);
+        assertFalse("La session ne devrait pas être terminée avant l'écriture du dernier bloc",
+                session.getCompletion().isDone());
+
+        assertEquals(audio.length, session.awaitCompletion(10000));
+        assertEquals(audio.length, out.toByteArray().length);
+    }
+
+    @Test
+    public void testWriteFailureCompletesExceptionally() throws Exception {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disque plein");
+            }
+        };
+        CaptureSession session = new CaptureSession(arraySource(new byte[3000]), failing,
+                new AudioBlockRing(8, 1000), "test");
+        session.start();
+
+        try {
+            session.awaitCompletion(10000);
+            fail("L'erreur d'écriture devrait être propagée");
+        } catch (IOException expected) {
+            assertEquals("Disque plein", expected.getMessage());
+        }
+    }
+
+    /**
+     * Source qui livre le tableau par blocs puis signale la fin de capture,
+     * comme une ligne arrêtée dont le tampon a été vidé.
+     */
+    private CaptureSession.CaptureSource arraySource(byte[] data) {
+        int[] position = { 0 };
+        return (buffer, offset, length) -> {
+            if (position[0] >= data.length) {
+                return -1;
+            }
+            int count = Math.min(length, data.length - position[0]);
+            System.arraycopy(data, position[0], buffer, offset, count);
+            position[0] += count;
+            return count;
+        };
+    }
+
+    private static class SlowOutputStream extends ByteArrayOutputStream {
+        private final long delayMillis;
+        private volatile boolean closed;
+
+        SlowOutputStream(long delayMillis) {
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
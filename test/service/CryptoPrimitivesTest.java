@@ -0,0 +1,63 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import service.CryptoPrimitives;
+import service.impl.AESCryptographyServiceFix;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests unitaires pour la réutilisation des objets cryptographiques par thread.
+ */
+public class CryptoPrimitivesTest {
+
+    @Test
+    public void testInstancesAreReusedPerThread() throws Exception {
+        Cipher cipher = CryptoPrimitives.cipher("AES/ECB/PKCS5Padding");
+        assertSame(cipher, CryptoPrimitives.cipher("AES/ECB/PKCS5Padding"));
+
+        AtomicReference<Cipher> other = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                other.set(CryptoPrimitives.cipher("AES/ECB/PKCS5Padding"));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertNotNull(other.get());
+        assertNotSame("Chaque thread doit avoir son propre Cipher", cipher, other.get());
+    }
+
+    @Test
+    public void testDigestIsResetBetweenUses() throws Exception {
+        byte[] data = "notification".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(data);
+
+        // Un usage interrompu ne doit pas contaminer le suivant
+        CryptoPrimitives.digest("SHA-256").update((byte) 42);
+
+        assertArrayEquals(expected, CryptoPrimitives.digest("SHA-256").digest(data));
+    }
+
+    @Test
+    public void testReusedCipherWithDifferentKeys() throws Exception {
+        AESCryptographyServiceFix service = new AESCryptographyServiceFix(false);
+        SecretKey first = service.generateSecretKey();
+        SecretKey second = service.generateSecretKey();
+        assertFalse(java.util.Arrays.equals(first.getEncoded(), second.getEncoded()));
+
+        String encryptedFirst = service.encryptString("premier", first);
+        String encryptedSecond = service.encryptString("second", second);
+
+        assertEquals("second", service.decryptString(encryptedSecond, second));
+        assertEquals("premier", service.decryptString(encryptedFirst, first));
+    }
+}
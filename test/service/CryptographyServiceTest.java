@@ -6,7 +6,9 @@ import org.junit.Test;
 
 import service.CryptographyService;
 import service.AESCryptographyService;
+import service.IncrementalCipher;
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
 
 /**
  * Tests unitaires pour le service de cryptographie.
@@ -111,6 +113,65 @@ public class CryptographyServiceTest {
         assertFalse("La vérification d'un hachage incorrect devrait échouer", incorrectVerification);
     }
     
+    @Test
+    public void testByteBufferEncryptAndDecrypt() throws Exception {
+        SecretKey key = cryptographyService.generateSecretKey();
+        byte[] data = "Données audio à chiffrer sans copie".getBytes();
+        
+        // Tampons sur le tas puis directs, dimensionnés une fois
+        for (boolean direct : new boolean[] { false, true }) {
+            int size = cryptographyService.getOutputSize(data.length);
+            ByteBuffer plain = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+            ByteBuffer encrypted = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+            plain.put(data).flip();
+            
+            int encryptedLength = cryptographyService.encrypt(plain, encrypted, key);
+            assertEquals("La taille chiffrée devrait être celle annoncée", size, encryptedLength);
+            assertArrayEquals("Le résultat devrait être celui de l'API par tableaux",
+                    cryptographyService.encrypt(data, key), toArray(encrypted));
+            
+            // Déchiffrement en place dans le tampon chiffré
+            encrypted.flip();
+            int length = cryptographyService.decrypt(encrypted, encrypted.duplicate().clear(), key);
+            assertEquals(data.length, length);
+            byte[] decrypted = new byte[length];
+            encrypted.clear();
+            encrypted.get(decrypted);
+            assertArrayEquals("Les données déchiffrées devraient être identiques", data, decrypted);
+        }
+    }
+    
+    @Test
+    public void testIncrementalCipher() throws Exception {
+        SecretKey key = cryptographyService.generateSecretKey();
+        byte[] data = new byte[10_000];
+        new java.util.Random(7).nextBytes(data);
+        
+        // Chiffrement par morceaux de taille quelconque dans un tampon réutilisé
+        IncrementalCipher encryptor = cryptographyService.openEncryptor(key);
+        ByteBuffer output = ByteBuffer.allocate(cryptographyService.getOutputSize(data.length));
+        for (int offset = 0; offset < data.length; offset += 1000) {
+            encryptor.update(ByteBuffer.wrap(data, offset, Math.min(1000, data.length - offset)), output);
+        }
+        encryptor.doFinal(ByteBuffer.allocate(0), output);
+        byte[] encrypted = toArray(output);
+        assertArrayEquals("Le chiffrement incrémental devrait égaler le chiffrement en un bloc",
+                cryptographyService.encrypt(data, key), encrypted);
+        
+        IncrementalCipher decryptor = cryptographyService.openDecryptor(key);
+        ByteBuffer plain = ByteBuffer.allocate(decryptor.getOutputSize(encrypted.length));
+        decryptor.update(ByteBuffer.wrap(encrypted, 0, 333), plain);
+        decryptor.doFinal(ByteBuffer.wrap(encrypted, 333, encrypted.length - 333), plain);
+        assertArrayEquals(data, toArray(plain));
+    }
+    
+    private static byte[] toArray(ByteBuffer buffer) {
+        ByteBuffer written = buffer.duplicate().flip();
+        byte[] bytes = new byte[written.remaining()];
+        written.get(bytes);
+        return bytes;
+    }
+    
     /**
      * Méthode utilitaire pour comparer deux tableaux d'octets.
      */
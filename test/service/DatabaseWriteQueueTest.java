@@ -0,0 +1,118 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import service.impl.PooledDatabaseService;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tests unitaires pour la file d'écriture unique du pool de connexions.
+ */
+public class DatabaseWriteQueueTest {
+
+    private File databaseFile;
+    private PooledDatabaseService pool;
+
+    @Before
+    public void setUp() throws Exception {
+        databaseFile = File.createTempFile("writer", ".db");
+        pool = new PooledDatabaseService("jdbc:sqlite:" + databaseFile.getAbsolutePath(), 4,
+                PooledDatabaseService.DEFAULT_LEAK_THRESHOLD_MS);
+        pool.executeUpdate("CREATE TABLE items (id INTEGER PRIMARY KEY AUTOINCREMENT, value INTEGER NOT NULL)");
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+        databaseFile.delete();
+        new File(databaseFile.getPath() + "-wal").delete();
+        new File(databaseFile.getPath() + "-shm").delete();
+    }
+
+    @Test
+    public void testConnectionsUseWalMode() throws Exception {
+        try (Connection conn = pool.connect();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+            assertTrue(rs.next());
+            assertEquals("wal", rs.getString(1).toLowerCase());
+        }
+    }
+
+    @Test
+    public void testInsertReturnsGeneratedId() throws Exception {
+        int first = pool.executeUpdate("INSERT INTO items (value) VALUES (?)", 10);
+        int second = pool.executeUpdate("INSERT INTO items (value) VALUES (?)", 20);
+        assertEquals(first + 1, second);
+    }
+
+    @Test
+    public void testConcurrentWritesAreBatched() throws Exception {
+        int count = 200;
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int value = i;
+            futures.add(pool.getWriteQueue().submit(conn -> insert(conn, value)));
+        }
+        for (CompletableFuture<Integer> future : futures) {
+            assertEquals(Integer.valueOf(1), future.get());
+        }
+
+        assertEquals(count, countItems());
+        assertTrue("Les écritures en attente devraient partager des transactions",
+                pool.getWriteQueue().getTransactionCount() < count);
+    }
+
+    @Test
+    public void testFailedWriteDoesNotAbortBatch() throws Exception {
+        CompletableFuture<Integer> before = pool.getWriteQueue().submit(conn -> insert(conn, 1));
+        CompletableFuture<Integer> failing = pool.getWriteQueue().submit(conn -> {
+            insert(conn, 2);
+            throw new SQLException("Échec simulé");
+        });
+        CompletableFuture<Integer> after = pool.getWriteQueue().submit(conn -> insert(conn, 3));
+
+        assertEquals(Integer.valueOf(1), before.get());
+        assertEquals(Integer.valueOf(1), after.get());
+        assertTrue(failing.isCompletedExceptionally());
+
+        // L'insertion de l'opération en échec est annulée, pas celles des autres
+        assertEquals(2, countItems());
+    }
+
+    @Test
+    public void testNestedWriteRunsInCurrentTransaction() throws Exception {
+        int inserted = pool.executeWrite(conn -> insert(conn, 1)
+                + pool.executeWrite(nested -> insert(nested, 2)));
+
+        assertEquals(2, inserted);
+        assertEquals(2, countItems());
+    }
+
+    private static int insert(Connection conn, int value) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO items (value) VALUES (?)")) {
+            stmt.setInt(1, value);
+            return stmt.executeUpdate();
+        }
+    }
+
+    private int countItems() throws Exception {
+        try (Connection conn = pool.connect();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM items")) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+}
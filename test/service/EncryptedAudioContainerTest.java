@@ -0,0 +1,168 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import service.CryptographyService;
+import service.AESCryptographyService;
+import service.impl.EncryptedAudioContainer;
+import javax.crypto.SecretKey;
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests unitaires pour le conteneur chiffré ".enc" v2.
+ */
+public class EncryptedAudioContainerTest {
+
+    private static final AudioFormat FORMAT = new AudioFormat(44100, 16, 1, true, true);
+
+    private CryptographyService cryptographyService;
+    private SecretKey key;
+
+    @Before
+    public void setUp() throws Exception {
+        cryptographyService = new AESCryptographyService();
+        key = cryptographyService.generateSecretKey();
+    }
+
+    @Test
+    public void testStreamingRoundTripOnSeveralSegments() throws Exception {
+        // Un peu plus de trois segments pour couvrir le segment final partiel
+        byte[] audio = randomBytes(EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE * 3 + 1234);
+
+        byte[] container = encrypt(audio);
+        assertTrue("Le résultat devrait être un conteneur v2", EncryptedAudioContainer.isContainer(container));
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        AudioFormat format = cryptographyService.decrypt(new ByteArrayInputStream(container), decrypted, key);
+
+        assertArrayEquals("Les données déchiffrées devraient être identiques", audio, decrypted.toByteArray());
+        assertTrue("Le format audio devrait être conservé dans l'en-tête", FORMAT.matches(format));
+    }
+
+    @Test
+    public void testExactSegmentMultipleAndEmptyInput() throws Exception {
+        byte[] exact = randomBytes(EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE * 2);
+        assertArrayEquals(exact, decrypt(encrypt(exact)));
+
+        byte[] empty = new byte[0];
+        assertArrayEquals(empty, decrypt(encrypt(empty)));
+    }
+
+    @Test
+    public void testPlaintextLengthWithoutKey() throws Exception {
+        byte[] audio = randomBytes(EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE + 17);
+        File file = File.createTempFile("container", ".enc");
+        file.deleteOnExit();
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(encrypt(audio));
+        }
+
+        assertTrue(EncryptedAudioContainer.isContainer(file));
+        assertEquals(audio.length, EncryptedAudioContainer.plaintextLength(file));
+    }
+
+    @Test
+    public void testTamperedSegmentIsRejected() throws Exception {
+        byte[] container = encrypt(randomBytes(10000));
+        container[container.length - 20] ^= 0x01;
+
+        assertDecryptFails("Un segment altéré devrait être rejeté", container);
+    }
+
+    @Test
+    public void testTruncatedContainerIsRejected() throws Exception {
+        byte[] container = encrypt(randomBytes(EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE * 2 + 10));
+        // Supprimer le segment final complet : les segments restants sont authentiques
+        int truncatedLength = EncryptedAudioContainer.HEADER_SIZE
+                + 2 * (EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE + EncryptedAudioContainer.SEGMENT_OVERHEAD);
+
+        assertDecryptFails("Un conteneur tronqué devrait être rejeté", Arrays.copyOf(container, truncatedLength));
+    }
+
+    @Test
+    public void testWrongKeyIsRejected() throws Exception {
+        byte[] container = encrypt(randomBytes(1000));
+        key = cryptographyService.generateSecretKey();
+
+        assertDecryptFails("Une clé incorrecte devrait être rejetée", container);
+    }
+
+    @Test
+    public void testReadIntoReusedByteBuffer() throws Exception {
+        byte[] audio = randomBytes(EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE * 2 + 777);
+        byte[] container = encrypt(audio);
+
+        // Un tampon direct d'un segment, réutilisé : chaque segment y est déchiffré sans copie
+        ByteBuffer buffer = ByteBuffer.allocateDirect(EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE);
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        try (EncryptedAudioContainer.DecryptingInputStream in = new EncryptedAudioContainer.DecryptingInputStream(
+                new ByteArrayInputStream(container), key)) {
+            // Une petite lecture d'abord, pour couvrir le passage par le tampon interne
+            byte[] start = new byte[100];
+            assertEquals(100, in.read(start));
+            decrypted.write(start);
+            int read;
+            while ((read = in.read(buffer.clear())) != -1) {
+                byte[] chunk = new byte[read];
+                buffer.flip().get(chunk);
+                decrypted.write(chunk);
+            }
+        }
+
+        assertArrayEquals(audio, decrypted.toByteArray());
+    }
+
+    @Test
+    public void testAlteredSegmentLeavesBufferUntouched() throws Exception {
+        byte[] container = encrypt(randomBytes(1000));
+        container[container.length - 20] ^= 1;
+
+        ByteBuffer buffer = ByteBuffer.allocate(EncryptedAudioContainer.DEFAULT_SEGMENT_SIZE);
+        try (EncryptedAudioContainer.DecryptingInputStream in = new EncryptedAudioContainer.DecryptingInputStream(
+                new ByteArrayInputStream(container), key)) {
+            in.read(buffer);
+            fail("Un segment altéré devrait être rejeté");
+        } catch (IOException expected) {
+            // Aucune donnée non authentifiée ne doit atteindre l'appelant
+            assertEquals(0, buffer.position());
+            assertTrue(Arrays.equals(new byte[1000], Arrays.copyOf(buffer.array(), 1000)));
+        }
+    }
+
+    private byte[] encrypt(byte[] audio) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cryptographyService.encrypt(new ByteArrayInputStream(audio), out, key, FORMAT);
+        return out.toByteArray();
+    }
+
+    private byte[] decrypt(byte[] container) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cryptographyService.decrypt(new ByteArrayInputStream(container), out, key);
+        return out.toByteArray();
+    }
+
+    private void assertDecryptFails(String message, byte[] container) {
+        try {
+            decrypt(container);
+            fail(message);
+        } catch (Exception expected) {
+            // Comportement attendu
+        }
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
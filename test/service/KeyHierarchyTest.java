@@ -0,0 +1,141 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import service.KeyRing;
+import service.RSACryptographyService;
+import service.X25519CryptographyService;
+import service.impl.KeyHierarchy;
+import service.impl.PooledDatabaseService;
+import service.impl.SchemaMigrator;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Base64;
+
+/**
+ * Tests unitaires pour la hiérarchie des clés d'enregistrement.
+ */
+public class KeyHierarchyTest {
+
+    private static final int USER_ID = 1;
+
+    private File databaseFile;
+    private PooledDatabaseService pool;
+    private RSACryptographyService rsaService;
+    private String[] userKeys;
+
+    @Before
+    public void setUp() throws Exception {
+        databaseFile = File.createTempFile("keys", ".db");
+        pool = new PooledDatabaseService("jdbc:sqlite:" + databaseFile.getAbsolutePath(), 2,
+                PooledDatabaseService.DEFAULT_LEAK_THRESHOLD_MS);
+        new SchemaMigrator(pool).migrate();
+        rsaService = new RSACryptographyService(new KeyRing(4));
+        userKeys = rsaService.generateKeyPair();
+
+        try (Connection conn = pool.connect();
+                PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO user_keys (user_id, public_key, private_key) VALUES (?, ?, ?)")) {
+            stmt.setInt(1, USER_ID);
+            stmt.setString(2, userKeys[0]);
+            stmt.setString(3, userKeys[1]);
+            stmt.executeUpdate();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+        databaseFile.delete();
+        new File(databaseFile.getPath() + "-wal").delete();
+        new File(databaseFile.getPath() + "-shm").delete();
+    }
+
+    @Test
+    public void testKeysAreWrappedWithOneUnlockPerSession() throws Exception {
+        KeyHierarchy hierarchy = new KeyHierarchy(pool, rsaService);
+        SecretKey first = newAesKey();
+        SecretKey second = newAesKey();
+
+        String wrappedFirst = hierarchy.wrap(USER_ID, first);
+        String wrappedSecond = hierarchy.wrap(USER_ID, second);
+
+        assertTrue(KeyHierarchy.isWrapped(wrappedFirst));
+        assertArrayEquals(first.getEncoded(), hierarchy.unwrap(USER_ID, wrappedFirst).getEncoded());
+        assertArrayEquals(second.getEncoded(), hierarchy.unwrap(USER_ID, wrappedSecond).getEncoded());
+        assertEquals("La clé maîtresse ne devrait être déverrouillée qu'une fois", 1, hierarchy.getUnlockCount());
+
+        // Une nouvelle session relit la même clé maîtresse
+        KeyHierarchy nextSession = new KeyHierarchy(pool, rsaService);
+        assertArrayEquals(first.getEncoded(), nextSession.unwrap(USER_ID, wrappedFirst).getEncoded());
+    }
+
+    @Test
+    public void testLockForgetsUnlockedKeys() throws Exception {
+        KeyHierarchy hierarchy = new KeyHierarchy(pool, rsaService);
+        String wrapped = hierarchy.wrap(USER_ID, newAesKey());
+
+        hierarchy.lock();
+        hierarchy.unwrap(USER_ID, wrapped);
+
+        assertEquals(2, hierarchy.getUnlockCount());
+    }
+
+    @Test
+    public void testX25519UserMasterKey() throws Exception {
+        String[] x25519Keys = new X25519CryptographyService().generateKeyPair();
+        try (Connection conn = pool.connect();
+                PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO user_keys (user_id, public_key, private_key, scheme) VALUES (2, ?, ?, 'X25519')")) {
+            stmt.setString(1, x25519Keys[0]);
+            stmt.setString(2, x25519Keys[1]);
+            stmt.executeUpdate();
+        }
+        SecretKey recordingKey = newAesKey();
+
+        String wrapped = new KeyHierarchy(pool, rsaService).wrap(2, recordingKey);
+
+        KeyHierarchy nextSession = new KeyHierarchy(pool, rsaService);
+        assertArrayEquals(recordingKey.getEncoded(), nextSession.unwrap(2, wrapped).getEncoded());
+    }
+
+    @Test
+    public void testMigrationRewrapsLegacyRsaKeys() throws Exception {
+        SecretKey recordingKey = newAesKey();
+        String legacyKey = rsaService.encryptWithPublicKey(
+                Base64.getEncoder().encodeToString(recordingKey.getEncoded()), userKeys[0]);
+        try (Connection conn = pool.connect(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO recordings (id, user_id, name, timestamp, file_path, duration,"
+                    + " encryption_key) VALUES (1, 1, 'a', '2024-01-01T10:00', 'a.enc', 1, '" + legacyKey + "')");
+            // Base antérieure à la hiérarchie de clés
+            stmt.executeUpdate("DELETE FROM schema_version WHERE version >= 3");
+        }
+
+        new SchemaMigrator(pool).migrate();
+
+        String storedKey;
+        try (Connection conn = pool.connect(); Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT encryption_key FROM recordings WHERE id = 1")) {
+            assertTrue(rs.next());
+            storedKey = rs.getString(1);
+        }
+        assertTrue("La clé RSA devrait être emballée avec la clé maîtresse", KeyHierarchy.isWrapped(storedKey));
+
+        KeyHierarchy hierarchy = new KeyHierarchy(pool, rsaService);
+        assertArrayEquals(recordingKey.getEncoded(), hierarchy.unwrap(USER_ID, storedKey).getEncoded());
+    }
+
+    private static SecretKey newAesKey() throws Exception {
+        KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+        keyGen.init(256);
+        return keyGen.generateKey();
+    }
+}
@@ -0,0 +1,109 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import service.AsymmetricCryptographyService;
+import service.KeyPairPool;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests unitaires pour la réserve de paires de clés générées à l'avance.
+ */
+public class KeyPairPoolTest {
+
+    /**
+     * Générateur factice qui numérote les paires et peut être bloqué.
+     */
+    private static final class CountingGenerator implements AsymmetricCryptographyService {
+        private final AtomicInteger generated = new AtomicInteger();
+        private final CountDownLatch released;
+
+        CountingGenerator(CountDownLatch released) {
+            this.released = released;
+        }
+
+        @Override
+        public String getScheme() {
+            return "TEST";
+        }
+
+        @Override
+        public String[] generateKeyPair() throws Exception {
+            if (!Thread.currentThread().getName().startsWith("keypair-pool")) {
+                return new String[] { "public-sync", "private-sync" };
+            }
+            released.await();
+            int n = generated.incrementAndGet();
+            return new String[] { "public-" + n, "private-" + n };
+        }
+
+        @Override
+        public String encryptWithPublicKey(String data, String publicKeyBase64) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String decryptWithPrivateKey(String encryptedData, String privateKeyBase64) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    public void testPoolIsFilledInBackground() throws Exception {
+        KeyPairPool pool = new KeyPairPool(new CountingGenerator(new CountDownLatch(0)), 3, 1);
+        try {
+            awaitSize(pool, 3);
+
+            String[] keyPair = pool.take();
+
+            assertEquals("public-1", keyPair[0]);
+            assertEquals(1, pool.getPooledCount());
+            assertEquals(0, pool.getSynchronousCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPoolIsRefilledBelowWatermark() throws Exception {
+        KeyPairPool pool = new KeyPairPool(new CountingGenerator(new CountDownLatch(0)), 3, 1);
+        try {
+            awaitSize(pool, 3);
+
+            pool.take();
+            pool.take();
+
+            awaitSize(pool, 3);
+            assertEquals(5, pool.getGeneratedCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testEmptyPoolFallsBackToSynchronousGeneration() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        KeyPairPool pool = new KeyPairPool(new CountingGenerator(released), 2, 0);
+        try {
+            String[] keyPair = pool.take();
+
+            assertEquals("public-sync", keyPair[0]);
+            assertEquals(1, pool.getSynchronousCount());
+            assertEquals(0, pool.getPooledCount());
+        } finally {
+            released.countDown();
+            pool.shutdown();
+        }
+    }
+
+    private static void awaitSize(KeyPairPool pool, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(size, pool.size());
+    }
+}
@@ -0,0 +1,81 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import model.UserKeys;
+import service.KeyRing;
+import service.RSACryptographyService;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+/**
+ * Tests unitaires pour le trousseau des clés RSA décodées.
+ */
+public class KeyRingTest {
+
+    private static String[] first;
+    private static String[] second;
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        RSACryptographyService rsaService = new RSACryptographyService(new KeyRing(4));
+        first = rsaService.generateKeyPair();
+        second = rsaService.generateKeyPair();
+    }
+
+    @Test
+    public void testKeysAreDecodedOnce() throws Exception {
+        KeyRing keyRing = new KeyRing(4);
+        RSACryptographyService rsaService = new RSACryptographyService(keyRing);
+
+        for (int i = 0; i < 3; i++) {
+            String encrypted = rsaService.encryptWithPublicKey("secret-" + i, first[0]);
+            assertEquals("secret-" + i, rsaService.decryptWithPrivateKey(encrypted, first[1]));
+        }
+
+        assertEquals("Une clé publique et une clé privée", 2, keyRing.size());
+        assertEquals(2, keyRing.getMissCount());
+        assertEquals(4, keyRing.getHitCount());
+    }
+
+    @Test
+    public void testWarmRegistersKeysByUser() throws Exception {
+        KeyRing keyRing = new KeyRing(4);
+
+        int warmed = keyRing.warm(Arrays.asList(new UserKeys(1, first[0]), new UserKeys(2, second[0])));
+
+        assertEquals(2, warmed);
+        PublicKey key = keyRing.getPublicKey(1);
+        assertNotNull(key);
+        assertSame("La clé préchargée ne devrait pas être décodée à nouveau", key, keyRing.publicKey(first[0]));
+    }
+
+    @Test
+    public void testKeyChangeReplacesPreviousKey() throws Exception {
+        KeyRing keyRing = new KeyRing(4);
+        keyRing.putPublicKey(1, first[0]);
+
+        keyRing.putPublicKey(1, second[0]);
+
+        assertEquals(1, keyRing.size());
+        assertSame(keyRing.publicKey(second[0]), keyRing.getPublicKey(1));
+
+        keyRing.invalidate(1);
+        assertNull(keyRing.getPublicKey(1));
+        assertEquals(0, keyRing.size());
+    }
+
+    @Test
+    public void testSizeIsBounded() throws Exception {
+        KeyRing keyRing = new KeyRing(1);
+
+        keyRing.putPublicKey(1, first[0]);
+        keyRing.putPublicKey(2, second[0]);
+
+        assertEquals(1, keyRing.size());
+        assertNull("La clé la moins récemment utilisée devrait être retirée", keyRing.getPublicKey(1));
+        assertNotNull(keyRing.getPublicKey(2));
+    }
+}
@@ -0,0 +1,211 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import service.KeyRing;
+import service.RSACryptographyService;
+import service.X25519CryptographyService;
+import service.impl.KeyHierarchy;
+import service.impl.KeyRotationJob;
+import service.impl.PooledDatabaseService;
+import service.impl.SchemaMigrator;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Tests unitaires pour la rotation des clés d'un utilisateur.
+ */
+public class KeyRotationJobTest {
+
+    private static final int USER_ID = 1;
+    private static final int SOURCE_USER_ID = 2;
+
+    private File databaseFile;
+    private PooledDatabaseService pool;
+    private RSACryptographyService rsaService;
+    private String[] userKeys;
+
+    @Before
+    public void setUp() throws Exception {
+        databaseFile = File.createTempFile("rotation", ".db");
+        pool = new PooledDatabaseService("jdbc:sqlite:" + databaseFile.getAbsolutePath(), 2,
+                PooledDatabaseService.DEFAULT_LEAK_THRESHOLD_MS);
+        new SchemaMigrator(pool).migrate();
+        rsaService = new RSACryptographyService(new KeyRing(4));
+        userKeys = rsaService.generateKeyPair();
+        try (Connection conn = pool.connect();
+                PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO user_keys (user_id, public_key, private_key) VALUES (?, ?, ?)")) {
+            stmt.setInt(1, USER_ID);
+            stmt.setString(2, userKeys[0]);
+            stmt.setString(3, userKeys[1]);
+            stmt.executeUpdate();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+        databaseFile.delete();
+        new File(databaseFile.getPath() + "-wal").delete();
+        new File(databaseFile.getPath() + "-shm").delete();
+    }
+
+    @Test
+    public void testRotationRewrapsKeysAndSharesForNewPair() throws Exception {
+        SecretKey wrappedKey = newAesKey();
+        String storedWrapped = new KeyHierarchy(pool, rsaService).wrap(USER_ID, wrappedKey);
+        insertRecording(1, storedWrapped);
+        SecretKey legacyKey = newAesKey();
+        insertRecording(2, rsaService.encryptWithPublicKey(encode(legacyKey), userKeys[0]));
+        List<SecretKey> shareKeys = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            SecretKey shareKey = newAesKey();
+            shareKeys.add(shareKey);
+            insertShare(i, rsaService.encryptWithPublicKey(encode(shareKey), userKeys[0]));
+        }
+
+        List<KeyRotationJob.Progress> updates = new ArrayList<>();
+        KeyRotationJob.Progress result = new KeyRotationJob(pool, rsaService, 2, 2)
+                .rotate(USER_ID, X25519CryptographyService.SCHEME, updates::add);
+
+        assertTrue(result.isFinished());
+        assertEquals(4, result.getProcessed());
+        assertEquals(0, result.getFailed());
+        assertTrue("L'avancement devrait être signalé après chaque lot", updates.size() >= 3);
+        assertEquals(0, rowCount("key_rotation") + rowCount("key_rotation_items"));
+
+        String[] newKeys = readUserKeys();
+        assertEquals(X25519CryptographyService.SCHEME, newKeys[2]);
+        assertNotEquals(userKeys[0], newKeys[0]);
+
+        // La clé déjà emballée n'a pas changé et la clé maîtresse est lisible avec la nouvelle paire
+        assertEquals(storedWrapped, recordingKey(1));
+        KeyHierarchy nextSession = new KeyHierarchy(pool, rsaService);
+        assertArrayEquals(wrappedKey.getEncoded(), nextSession.unwrap(USER_ID, storedWrapped).getEncoded());
+        assertArrayEquals(legacyKey.getEncoded(), nextSession.unwrap(USER_ID, recordingKey(2)).getEncoded());
+
+        X25519CryptographyService x25519 = new X25519CryptographyService();
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(encode(shareKeys.get(i - 1)), x25519.decryptWithPrivateKey(shareKey(i), newKeys[1]));
+        }
+    }
+
+    @Test
+    public void testInterruptedRotationResumesWithSamePair() throws Exception {
+        List<SecretKey> shareKeys = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            SecretKey shareKey = newAesKey();
+            shareKeys.add(shareKey);
+            insertShare(i, rsaService.encryptWithPublicKey(encode(shareKey), userKeys[0]));
+        }
+
+        try {
+            new KeyRotationJob(pool, rsaService, 2, 2).rotate(USER_ID, RSACryptographyService.SCHEME, progress -> {
+                throw new IllegalStateException("Arrêt simulé");
+            });
+            fail("La rotation devrait être interrompue");
+        } catch (IllegalStateException e) {
+            // attendu
+        }
+
+        // Rien n'est encore appliqué : l'ancienne paire lit toujours les partages
+        assertEquals(1, rowCount("key_rotation"));
+        assertEquals(2, rowCount("key_rotation_items"));
+        assertEquals(userKeys[0], readUserKeys()[0]);
+        assertEquals(encode(shareKeys.get(0)), rsaService.decryptWithPrivateKey(shareKey(1), userKeys[1]));
+        String pendingPublicKey;
+        try (Connection conn = pool.connect(); Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT public_key FROM key_rotation")) {
+            pendingPublicKey = rs.getString(1);
+        }
+
+        // Partage reçu pendant la rotation, chiffré avec l'ancienne clé publique
+        SecretKey lateKey = newAesKey();
+        shareKeys.add(lateKey);
+        insertShare(5, rsaService.encryptWithPublicKey(encode(lateKey), userKeys[0]));
+
+        assertEquals(1, new KeyRotationJob(pool, rsaService, 2, 2).resumePending(null));
+
+        String[] newKeys = readUserKeys();
+        assertEquals(pendingPublicKey, newKeys[0]);
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(encode(shareKeys.get(i - 1)), rsaService.decryptWithPrivateKey(shareKey(i), newKeys[1]));
+        }
+    }
+
+    private void insertRecording(int id, String encryptionKey) throws Exception {
+        try (Connection conn = pool.connect();
+                PreparedStatement stmt = conn.prepareStatement("INSERT INTO recordings (id, user_id, name,"
+                        + " timestamp, file_path, duration, encryption_key) VALUES (?, ?, 'a', '2024-01-01T10:00',"
+                        + " 'a.enc', 1, ?)")) {
+            stmt.setInt(1, id);
+            stmt.setInt(2, USER_ID);
+            stmt.setString(3, encryptionKey);
+            stmt.executeUpdate();
+        }
+    }
+
+    private void insertShare(int id, String encryptionKey) throws Exception {
+        try (Connection conn = pool.connect();
+                PreparedStatement stmt = conn.prepareStatement("INSERT INTO shared_recordings (id, recording_id,"
+                        + " source_user_id, target_user_id, encryption_key) VALUES (?, ?, ?, ?, ?)")) {
+            stmt.setInt(1, id);
+            stmt.setInt(2, 100 + id);
+            stmt.setInt(3, SOURCE_USER_ID);
+            stmt.setInt(4, USER_ID);
+            stmt.setString(5, encryptionKey);
+            stmt.executeUpdate();
+        }
+    }
+
+    private String recordingKey(int id) throws Exception {
+        return singleValue("SELECT encryption_key FROM recordings WHERE id = " + id);
+    }
+
+    private String shareKey(int id) throws Exception {
+        return singleValue("SELECT encryption_key FROM shared_recordings WHERE id = " + id);
+    }
+
+    private int rowCount(String table) throws Exception {
+        return Integer.parseInt(singleValue("SELECT COUNT(*) FROM " + table));
+    }
+
+    private String singleValue(String sql) throws Exception {
+        try (Connection conn = pool.connect(); Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next());
+            return rs.getString(1);
+        }
+    }
+
+    private String[] readUserKeys() throws Exception {
+        try (Connection conn = pool.connect(); Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(
+                        "SELECT public_key, private_key, scheme FROM user_keys WHERE user_id = " + USER_ID)) {
+            assertTrue(rs.next());
+            return new String[] { rs.getString(1), rs.getString(2), rs.getString(3) };
+        }
+    }
+
+    private static String encode(SecretKey key) {
+        return Base64.getEncoder().encodeToString(key.getEncoded());
+    }
+
+    private static SecretKey newAesKey() throws Exception {
+        KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+        keyGen.init(256);
+        return keyGen.generateKey();
+    }
+}
@@ -0,0 +1,120 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import service.AESCryptographyService;
+import service.impl.EncryptedAudioContainer;
+import service.impl.ParallelSegmentCipher;
+import javax.crypto.SecretKey;
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Tests unitaires pour le chiffrement des conteneurs v2 sur plusieurs cœurs.
+ */
+public class ParallelSegmentCipherTest {
+
+    private static final AudioFormat FORMAT = new AudioFormat(44100, 16, 1, true, true);
+    // Petits segments : plusieurs lots complets sans gros volume de données
+    private static final int SEGMENT_SIZE = 1024;
+
+    private SecretKey key;
+    private ParallelSegmentCipher[] ciphers;
+
+    @Before
+    public void setUp() throws Exception {
+        key = new AESCryptographyService().generateSecretKey();
+        ciphers = new ParallelSegmentCipher[] { new ParallelSegmentCipher(1), new ParallelSegmentCipher(2),
+                new ParallelSegmentCipher(4) };
+    }
+
+    @After
+    public void tearDown() {
+        for (ParallelSegmentCipher cipher : ciphers) {
+            cipher.shutdown();
+        }
+    }
+
+    @Test
+    public void testOutputIsIdenticalForAnyThreadCount() throws Exception {
+        // Segment final partiel, multiple exact de la taille de segment et entrée vide
+        for (int length : new int[] { SEGMENT_SIZE * 37 + 5, SEGMENT_SIZE * 16, 0 }) {
+            byte[] audio = randomBytes(length);
+            EncryptedAudioContainer.Header header = EncryptedAudioContainer.Header.create(SEGMENT_SIZE, FORMAT);
+
+            ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+            try (EncryptedAudioContainer.EncryptingOutputStream out =
+                    new EncryptedAudioContainer.EncryptingOutputStream(sequential, key, header)) {
+                out.write(audio);
+            }
+
+            for (ParallelSegmentCipher cipher : ciphers) {
+                ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+                cipher.encrypt(new ByteArrayInputStream(audio), parallel, key, header);
+                assertArrayEquals("Le conteneur ne devrait pas dépendre du nombre de threads ("
+                        + cipher.getParallelism() + ", " + length + " octets)",
+                        sequential.toByteArray(), parallel.toByteArray());
+
+                ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+                cipher.decrypt(new ByteArrayInputStream(parallel.toByteArray()), decrypted, key);
+                assertArrayEquals(audio, decrypted.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testAlteredSegmentIsRejected() throws Exception {
+        byte[] container = encrypt(randomBytes(SEGMENT_SIZE * 20));
+        // Altération d'un segment au milieu d'un lot
+        container[EncryptedAudioContainer.HEADER_SIZE + 9 * (SEGMENT_SIZE + 20) + 100] ^= 1;
+
+        try {
+            ciphers[2].decrypt(new ByteArrayInputStream(container), new ByteArrayOutputStream(), key);
+            fail("Un segment altéré devrait être rejeté");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("Segment 9"));
+        }
+    }
+
+    @Test
+    public void testReencryptWithNewKey() throws Exception {
+        byte[] audio = randomBytes(SEGMENT_SIZE * 11 + 300);
+        byte[] container = encrypt(audio);
+        SecretKey newKey = new AESCryptographyService().generateSecretKey();
+
+        ByteArrayOutputStream reencrypted = new ByteArrayOutputStream();
+        AudioFormat format = ciphers[2].reencrypt(new ByteArrayInputStream(container), reencrypted, key, newKey);
+
+        assertTrue(FORMAT.matches(format));
+        assertEquals("Le découpage en segments devrait être conservé", container.length, reencrypted.size());
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        ciphers[0].decrypt(new ByteArrayInputStream(reencrypted.toByteArray()), decrypted, newKey);
+        assertArrayEquals(audio, decrypted.toByteArray());
+
+        try {
+            ciphers[0].decrypt(new ByteArrayInputStream(reencrypted.toByteArray()), new ByteArrayOutputStream(), key);
+            fail("L'ancienne clé ne devrait plus déchiffrer le conteneur");
+        } catch (IOException expected) {
+            // Comportement attendu
+        }
+    }
+
+    private byte[] encrypt(byte[] audio) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ciphers[1].encrypt(new ByteArrayInputStream(audio), out, key,
+                EncryptedAudioContainer.Header.create(SEGMENT_SIZE, FORMAT));
+        return out.toByteArray();
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
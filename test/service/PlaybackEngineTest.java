@@ -0,0 +1,399 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import service.AESCryptographyService;
+import service.impl.AudioRecordingServiceFixExtended;
+import service.impl.EncryptedAudioContainer;
+import service.impl.PlaybackEngine;
+import service.impl.PlaybackTrack;
+import service.impl.SegmentIndex;
+import util.AudioLineManager;
+import javax.crypto.SecretKey;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.SourceDataLine;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests unitaires pour le moteur de lecture et l'index des conteneurs v2.
+ */
+public class PlaybackEngineTest {
+
+    // 16 000 octets par seconde, des segments courts pour en avoir beaucoup
+    private static final AudioFormat FORMAT = new AudioFormat(8000, 16, 1, true, true);
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int BYTES_PER_SECOND = 16000;
+
+    private SecretKey key;
+    private File file;
+    private byte[] audio;
+
+    @Before
+    public void setUp() throws Exception {
+        key = new AESCryptographyService().generateSecretKey();
+        audio = new byte[5 * BYTES_PER_SECOND];
+        new Random(22).nextBytes(audio);
+        file = File.createTempFile("playback", ".enc");
+        try (OutputStream out = new EncryptedAudioContainer.EncryptingOutputStream(
+                new FileOutputStream(file), key, FORMAT, SEGMENT_SIZE)) {
+            out.write(audio);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testIndexMapsTimeToSegment() throws Exception {
+        SegmentIndex index = SegmentIndex.of(file);
+        PlaybackTrack track = PlaybackTrack.ofContainer(file, key);
+
+        assertEquals((audio.length + SEGMENT_SIZE - 1) / SEGMENT_SIZE, index.getSegmentCount());
+        assertEquals(audio.length, index.getPlaintextLength());
+        assertEquals(Duration.ofSeconds(5), track.getDuration());
+
+        long frame = track.frameAt(Duration.ofSeconds(2));
+        assertEquals(16000, frame);
+        assertEquals(2 * BYTES_PER_SECOND, index.plaintextOffset(frame));
+        int segment = index.segmentOf(index.plaintextOffset(frame));
+        assertEquals(2 * BYTES_PER_SECOND / SEGMENT_SIZE, segment);
+        assertEquals(EncryptedAudioContainer.HEADER_SIZE
+                + (long) segment * (SEGMENT_SIZE + EncryptedAudioContainer.SEGMENT_OVERHEAD),
+                index.ciphertextOffset(segment));
+
+        // Au-delà de la fin, la position est bornée à l'enregistrement
+        assertEquals(track.getFrameCount(), track.frameAt(Duration.ofMinutes(1)));
+    }
+
+    @Test
+    public void testTruncatedContainerIsRejected() throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // Segment final réduit à une partie de son préfixe
+            raf.setLength(EncryptedAudioContainer.HEADER_SIZE
+                    + 3L * (SEGMENT_SIZE + EncryptedAudioContainer.SEGMENT_OVERHEAD) + 10);
+        }
+
+        try {
+            SegmentIndex.of(file);
+            fail("Une taille incohérente devrait être rejetée");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("tronqué"));
+        }
+    }
+
+    @Test
+    public void testOpenAtOnlyDecryptsFollowingSegments() throws Exception {
+        SegmentIndex index = SegmentIndex.of(file);
+        // Un segment altéré avant la position visée n'est jamais lu
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(index.ciphertextOffset(1) + 100);
+            raf.write(raf.read() ^ 0x01);
+        }
+
+        long offset = 3L * BYTES_PER_SECOND + 10;
+        byte[] tail;
+        try (InputStream in = EncryptedAudioContainer.openAt(file, key, index, offset)) {
+            tail = in.readAllBytes();
+        }
+        assertArrayEquals(Arrays.copyOfRange(audio, (int) offset, audio.length), tail);
+
+        try (InputStream in = EncryptedAudioContainer.openAt(file, key, index, 0)) {
+            in.readAllBytes();
+            fail("Le segment altéré devrait être détecté depuis le début");
+        } catch (IOException e) {
+            // Attendu
+        }
+    }
+
+    @Test
+    public void testPlayFromStartPositionReportsPosition() throws Exception {
+        FakeLine fake = new FakeLine(false);
+        List<Duration> positions = new ArrayList<>();
+        try (PlaybackEngine engine = new PlaybackEngine(fake.lines)) {
+            engine.setPositionInterval(Duration.ofMillis(10));
+
+            long written = engine.play(() -> PlaybackTrack.ofContainer(file, key),
+                    new AudioRecordingServiceFixExtended.PlaybackListener() {
+                        @Override
+                        public void onPlaybackFinished() {
+                        }
+
+                        @Override
+                        public void onPositionChanged(Duration position, Duration duration) {
+                            positions.add(position);
+                        }
+                    }, Duration.ofSeconds(4)).get(10, TimeUnit.SECONDS);
+
+            assertEquals(BYTES_PER_SECOND, written);
+            assertEquals(Duration.ofSeconds(5), engine.position());
+            assertEquals(PlaybackEngine.State.STOPPED, engine.getState());
+        }
+        assertArrayEquals(Arrays.copyOfRange(audio, 4 * BYTES_PER_SECOND, audio.length), fake.played());
+        assertTrue("La position devrait être signalée pendant la lecture", positions.size() > 1);
+        assertEquals(Duration.ofSeconds(5), positions.get(positions.size() - 1));
+        assertEquals("La ligne devrait rester ouverte dans la réserve", 1, fake.openCount.get());
+        fake.lines.close();
+        assertEquals("La ligne devrait être fermée", 0, fake.openCount.get());
+    }
+
+    @Test
+    public void testSeekDuringPlayFlushesLineAndJumps() throws Exception {
+        // Sans réserve, la ligne est fermée sans être vidée en fin de lecture
+        FakeLine fake = new FakeLine(false, 0);
+        try (PlaybackEngine engine = new PlaybackEngine(fake.lines)) {
+            engine.setPositionInterval(Duration.ofMillis(10));
+            engine.play(PlaybackTrack.ofContainer(file, key), new AudioRecordingServiceFixExtended.PlaybackListener() {
+                private boolean sought;
+
+                @Override
+                public void onPlaybackFinished() {
+                }
+
+                @Override
+                public void onPositionChanged(Duration position, Duration duration) {
+                    if (!sought) {
+                        sought = true;
+                        engine.seek(Duration.ofSeconds(1));
+                    }
+                }
+            }).get(10, TimeUnit.SECONDS);
+        }
+
+        assertTrue("Le tampon de la ligne devrait être vidé", fake.flushed);
+        assertArrayEquals(Arrays.copyOfRange(audio, BYTES_PER_SECOND, audio.length), fake.playedSinceFlush());
+    }
+
+    @Test
+    public void testStopUnblocksWriteOnFullLine() throws Exception {
+        // Le tampon de la ligne est plein : l'écriture ne rend la main qu'à l'arrêt de la ligne
+        FakeLine fake = new FakeLine(true);
+        try (PlaybackEngine engine = new PlaybackEngine(fake.lines)) {
+            CompletableFuture<Long> playing = engine.play(PlaybackTrack.ofContainer(file, key), null);
+            fake.awaitWrite();
+            assertEquals(PlaybackEngine.State.PLAYING, engine.getState());
+
+            long start = System.nanoTime();
+            assertTrue(engine.stop());
+            playing.get(2, TimeUnit.SECONDS);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue("L'arrêt devrait être immédiat: " + elapsedMs + " ms", elapsedMs < 500);
+            assertEquals(PlaybackEngine.State.STOPPED, engine.getState());
+            assertFalse(engine.stop());
+        }
+        fake.lines.close();
+        assertEquals(0, fake.openCount.get());
+    }
+
+    @Test
+    public void testPauseAndResume() throws Exception {
+        FakeLine fake = new FakeLine(false);
+        List<PlaybackEngine.State> states = new ArrayList<>();
+        try (PlaybackEngine engine = new PlaybackEngine(fake.lines)) {
+            CompletableFuture<Long> playing = engine.play(PlaybackTrack.ofAudio(audio, FORMAT),
+                    new AudioRecordingServiceFixExtended.PlaybackListener() {
+                        @Override
+                        public void onPlaybackFinished() {
+                        }
+
+                        @Override
+                        public void onStateChanged(PlaybackEngine.State state) {
+                            synchronized (states) {
+                                states.add(state);
+                            }
+                        }
+                    });
+            fake.awaitWrite();
+            assertTrue(engine.pause());
+            assertEquals(PlaybackEngine.State.PAUSED, engine.getState());
+            int paused = fake.played().length;
+            Thread.sleep(100);
+            assertEquals("Rien ne devrait être écrit pendant la pause", paused, fake.played().length);
+
+            assertTrue(engine.resume());
+            assertEquals((long) audio.length, (long) playing.get(10, TimeUnit.SECONDS));
+        }
+        assertArrayEquals(audio, fake.played());
+        synchronized (states) {
+            assertEquals(Arrays.asList(PlaybackEngine.State.BUFFERING, PlaybackEngine.State.PLAYING,
+                    PlaybackEngine.State.PAUSED, PlaybackEngine.State.PLAYING, PlaybackEngine.State.STOPPED), states);
+        }
+    }
+
+    @Test
+    public void testRapidPlayStopNeverLeaksLinesOrThreads() throws Exception {
+        FakeLine fake = new FakeLine(true);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        try (PlaybackEngine engine = new PlaybackEngine(fake.lines)) {
+            for (int i = 0; i < 50; i++) {
+                futures.add(engine.play(PlaybackTrack.ofContainer(file, key), null));
+                if (i % 2 == 0) {
+                    engine.stop();
+                }
+            }
+            CompletableFuture<Long> last = futures.get(futures.size() - 1);
+            fake.awaitWrite();
+            engine.stop();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+            assertEquals(PlaybackEngine.State.STOPPED, engine.getState());
+            assertTrue(last.isDone());
+        }
+
+        assertEquals("Une seule ligne ouverte à la fois", 1, fake.maxOpen.get());
+        assertEquals("La ligne devrait être réutilisée d'une lecture à l'autre", 1, fake.lines.getOpenedCount());
+        assertTrue(fake.lines.getPlayStartLatency().getCount() >= 1);
+        fake.lines.close();
+        assertEquals("Toutes les lignes devraient être fermées", 0, fake.openCount.get());
+        assertEquals("Aucun thread de lecture d'avance ne devrait subsister", 0, countThreads("playback-read-ahead"));
+        assertTrue(countThreads("audio-playback") <= 1);
+    }
+
+    private static long countThreads(String name) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals(name) && thread.isAlive()).count();
+    }
+
+    /**
+     * Ligne de sortie simulée. Les données écrites sont jouées dès l'écriture,
+     * qui prend un peu de temps comme sur une vraie ligne ; une ligne pleine
+     * bloque l'écriture jusqu'à son arrêt, son vidage ou sa fermeture.
+     */
+    private static final class FakeLine {
+        final AtomicInteger openCount = new AtomicInteger();
+        final AtomicInteger maxOpen = new AtomicInteger();
+        final AudioLineManager lines;
+        private final boolean full;
+        private final ByteArrayOutputStream all = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream sinceFlush = new ByteArrayOutputStream();
+        private final CountDownLatch written = new CountDownLatch(1);
+        private long frames;
+        private boolean running;
+        private boolean flushed;
+        private int interruptions;
+
+        FakeLine(boolean full) {
+            this(full, 1);
+        }
+
+        FakeLine(boolean full, int idleLines) {
+            this.full = full;
+            this.lines = new AudioLineManager((type, format, bufferSize) -> open(), idleLines);
+        }
+
+        SourceDataLine open() {
+            maxOpen.accumulateAndGet(openCount.incrementAndGet(), Math::max);
+            boolean[] closed = new boolean[1];
+            return (SourceDataLine) Proxy.newProxyInstance(SourceDataLine.class.getClassLoader(),
+                    new Class<?>[] { SourceDataLine.class }, (proxy, method, args) -> {
+                        synchronized (this) {
+                            switch (method.getName()) {
+                            case "write":
+                                return write((byte[]) args[0], (Integer) args[1], (Integer) args[2]);
+                            case "start":
+                                running = true;
+                                return null;
+                            case "stop":
+                                running = false;
+                                interruptions++;
+                                notifyAll();
+                                return null;
+                            case "flush":
+                                flushed = true;
+                                sinceFlush.reset();
+                                interruptions++;
+                                notifyAll();
+                                return null;
+                            case "close":
+                                if (!closed[0]) {
+                                    closed[0] = true;
+                                    running = false;
+                                    openCount.decrementAndGet();
+                                    notifyAll();
+                                }
+                                return null;
+                            case "getLongFramePosition":
+                                return frames;
+                            case "getFormat":
+                                return FORMAT;
+                            case "isOpen":
+                                return !closed[0];
+                            case "isRunning":
+                            case "isActive":
+                                return running;
+                            default:
+                                return defaultValue(method.getReturnType());
+                            }
+                        }
+                    });
+        }
+
+        private int write(byte[] data, int off, int len) throws InterruptedException {
+            written.countDown();
+            if (!running) {
+                return 0;
+            }
+            if (full) {
+                int seen = interruptions;
+                while (seen == interruptions) {
+                    wait();
+                }
+                return 0;
+            }
+            all.write(data, off, len);
+            sinceFlush.write(data, off, len);
+            frames += len / FORMAT.getFrameSize();
+            wait(2);
+            return len;
+        }
+
+        void awaitWrite() throws InterruptedException {
+            assertTrue("La ligne n'a jamais été alimentée", written.await(5, TimeUnit.SECONDS));
+        }
+
+        synchronized byte[] played() {
+            return all.toByteArray();
+        }
+
+        synchronized byte[] playedSinceFlush() {
+            return sinceFlush.toByteArray();
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            if (type == boolean.class) {
+                return false;
+            }
+            if (type == int.class) {
+                return 0;
+            }
+            if (type == long.class) {
+                return 0L;
+            }
+            if (type == float.class) {
+                return 0f;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import service.impl.RecordingKeyCache;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests unitaires pour le cache des clés d'enregistrement déballées.
+ */
+public class RecordingKeyCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private static SecretKey key(int seed) {
+        byte[] material = new byte[32];
+        material[0] = (byte) seed;
+        return new SecretKeySpec(material, "AES");
+    }
+
+    @Test
+    public void testCachedKeyIsReturned() {
+        RecordingKeyCache cache = new RecordingKeyCache(4, 1000, now::get);
+        cache.put(1, "enveloppe-1", key(1));
+
+        SecretKey cached = cache.get(1, "enveloppe-1");
+
+        assertNotNull(cached);
+        assertArrayEquals(key(1).getEncoded(), cached.getEncoded());
+        assertNull(cache.get(2, "enveloppe-2"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testChangedWrappedKeyIsNotServed() {
+        RecordingKeyCache cache = new RecordingKeyCache(4, 1000, now::get);
+        cache.put(1, "ancienne-enveloppe", key(1));
+
+        assertNull("Une clé rechiffrée ne doit pas être servie depuis l'ancienne entrée",
+                cache.get(1, "nouvelle-enveloppe"));
+    }
+
+    @Test
+    public void testEntriesExpire() {
+        RecordingKeyCache cache = new RecordingKeyCache(4, 1000, now::get);
+        cache.put(1, "enveloppe", key(1));
+
+        now.addAndGet(999_000_000L);
+        assertNotNull(cache.get(1, "enveloppe"));
+
+        now.addAndGet(2_000_000L);
+        assertNull(cache.get(1, "enveloppe"));
+        assertEquals(1, cache.getExpirationCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        RecordingKeyCache cache = new RecordingKeyCache(2, 1000, now::get);
+        cache.put(1, "a", key(1));
+        cache.put(2, "b", key(2));
+        cache.get(1, "a");
+
+        cache.put(3, "c", key(3));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(2, "b"));
+        assertNotNull(cache.get(1, "a"));
+    }
+
+    @Test
+    public void testClearRemovesAllKeys() {
+        RecordingKeyCache cache = new RecordingKeyCache(4, 1000, now::get);
+        cache.put(1, "a", key(1));
+        cache.put(2, "b", key(2));
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(1, "a"));
+    }
+}
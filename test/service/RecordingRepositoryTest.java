@@ -0,0 +1,138 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.AudioRecording;
+import service.impl.AESCryptographyServiceFix;
+import service.impl.AudioRecordingServiceFixExtended;
+import service.impl.PooledDatabaseService;
+import service.impl.RecordingRepository;
+import service.impl.SchemaMigrator;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests unitaires pour la liste paginée des enregistrements accessibles.
+ */
+public class RecordingRepositoryTest {
+
+    private static final int OWNER_ID = 1;
+    private static final int TARGET_ID = 2;
+
+    private File databaseFile;
+    private PooledDatabaseService pool;
+    private RecordingRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        databaseFile = File.createTempFile("repository", ".db");
+        pool = new PooledDatabaseService("jdbc:sqlite:" + databaseFile.getAbsolutePath(), 2,
+                PooledDatabaseService.DEFAULT_LEAK_THRESHOLD_MS);
+        new SchemaMigrator(pool).migrate();
+        repository = new RecordingRepository(pool);
+
+        try (Connection conn = pool.connect(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO users (id, email, password_hash, salt) VALUES"
+                    + " (1, 'owner@missie.com', 'x', 'x'), (2, 'target@missie.com', 'x', 'x')");
+            // Trois enregistrements du propriétaire, un du destinataire
+            stmt.executeUpdate("INSERT INTO recordings (id, user_id, name, timestamp, file_path, duration) VALUES"
+                    + " (1, 1, 'a', '2024-01-01T10:00', 'a.enc', 1),"
+                    + " (2, 1, 'b', '2024-01-02T10:00', 'b.enc', 2),"
+                    + " (3, 1, 'c', '2024-01-03T10:00', 'c.enc', 3),"
+                    + " (4, 2, 'd', '2024-01-04T10:00', 'd.enc', 4)");
+            // L'enregistrement 2 est partagé deux fois avec le destinataire
+            stmt.executeUpdate("INSERT INTO shared_recordings"
+                    + " (recording_id, source_user_id, target_user_id, encryption_key, shared_date) VALUES"
+                    + " (2, 1, 2, 'k1', '2024-02-01T09:00'),"
+                    + " (2, 1, 2, 'k2', '2024-02-02 09:00:00'),"
+                    + " (3, 1, 2, 'k3', '2024-02-03T09:00')");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+        databaseFile.delete();
+        new File(databaseFile.getPath() + "-wal").delete();
+        new File(databaseFile.getPath() + "-shm").delete();
+    }
+
+    @Test
+    public void testOwnedAndSharedRecordingsInOneList() throws Exception {
+        List<AudioRecording> recordings = repository.findAccessibleRecordings(TARGET_ID, 0, 10);
+
+        assertEquals("Chaque enregistrement partagé ne devrait apparaître qu'une fois", 3, recordings.size());
+        assertEquals(4, recordings.get(0).getId());
+        assertFalse(recordings.get(0).isShared());
+
+        AudioRecording shared = recordings.get(2);
+        assertEquals(2, shared.getId());
+        assertTrue(shared.isShared());
+        assertEquals(OWNER_ID, shared.getUserId());
+        assertEquals("owner@missie.com", shared.getOwnerEmail());
+        assertEquals("[Partagé par owner@missie.com] b", shared.getName());
+        assertEquals("La date du dernier partage devrait être retenue", 2, shared.getSharedDate().getDayOfMonth());
+    }
+
+    @Test
+    public void testPagesAreOrderedByDate() throws Exception {
+        List<AudioRecording> first = repository.findAccessibleRecordings(OWNER_ID, 0, 2);
+        List<AudioRecording> second = repository.findAccessibleRecordings(OWNER_ID, 2, 2);
+
+        assertEquals(2, first.size());
+        assertEquals(3, first.get(0).getId());
+        assertEquals(2, first.get(1).getId());
+        assertEquals(1, second.size());
+        assertEquals(1, second.get(0).getId());
+    }
+
+    @Test
+    public void testDeletedRecordingLeavesTheList() throws Exception {
+        File file = File.createTempFile("repository", ".enc");
+        try (Connection conn = pool.connect(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE recordings SET file_path = '" + file.getAbsolutePath() + "' WHERE id = 3");
+        }
+        AudioRecordingServiceFixExtended service = service(OWNER_ID);
+
+        assertTrue(service.deleteRecording(3));
+
+        assertFalse(file.exists());
+        assertEquals("La ligne sans fichier ne devrait plus être listée", List.of(2, 1), ids(OWNER_ID));
+        assertEquals("Les partages de l'enregistrement supprimé devraient disparaître", List.of(4, 2), ids(TARGET_ID));
+    }
+
+    @Test
+    public void testRecipientDeletesOnlyTheShare() throws Exception {
+        File file = File.createTempFile("repository", ".enc");
+        try (Connection conn = pool.connect(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE recordings SET file_path = '" + file.getAbsolutePath() + "' WHERE id = 2");
+        }
+        try {
+            assertTrue(service(TARGET_ID).deleteRecording(2));
+
+            assertTrue("Le fichier du propriétaire devrait être conservé", file.exists());
+            assertEquals(List.of(4, 3), ids(TARGET_ID));
+            assertEquals(List.of(3, 2, 1), ids(OWNER_ID));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private AudioRecordingServiceFixExtended service(int userId) {
+        AudioRecordingServiceFixExtended service = new AudioRecordingServiceFixExtended(
+                new AESCryptographyServiceFix(false), pool);
+        service.setCurrentUserId(userId);
+        return service;
+    }
+
+    private List<Integer> ids(int userId) throws Exception {
+        return repository.findAccessibleRecordings(userId, 0, 10).stream().map(AudioRecording::getId)
+                .collect(Collectors.toList());
+    }
+}
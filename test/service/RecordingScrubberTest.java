@@ -0,0 +1,168 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import service.AESCryptographyService;
+import service.impl.EncryptedAudioContainer;
+import service.impl.PooledDatabaseService;
+import service.impl.RecordingIntegrity;
+import service.impl.RecordingScrubber;
+import service.impl.SchemaMigrator;
+import javax.crypto.SecretKey;
+import javax.sound.sampled.AudioFormat;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests unitaires pour l'empreinte d'intégrité et la vérification des fichiers.
+ */
+public class RecordingScrubberTest {
+
+    private static final AudioFormat FORMAT = new AudioFormat(44100, 16, 1, true, true);
+
+    private File databaseFile;
+    private File directory;
+    private PooledDatabaseService pool;
+    private SecretKey key;
+
+    @Before
+    public void setUp() throws Exception {
+        databaseFile = File.createTempFile("scrubber", ".db");
+        directory = Files.createTempDirectory("scrubber").toFile();
+        pool = new PooledDatabaseService("jdbc:sqlite:" + databaseFile.getAbsolutePath(), 2,
+                PooledDatabaseService.DEFAULT_LEAK_THRESHOLD_MS);
+        new SchemaMigrator(pool).migrate();
+        key = new AESCryptographyService().generateSecretKey();
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+        databaseFile.delete();
+        new File(databaseFile.getPath() + "-wal").delete();
+        new File(databaseFile.getPath() + "-shm").delete();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testHashComputedDuringWriteMatchesFile() throws Exception {
+        File file = new File(directory, "capture.enc");
+        String written = writeContainer(file, 200_000);
+
+        assertTrue(written.startsWith(RecordingIntegrity.PREFIX));
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            assertEquals(written, RecordingIntegrity.hash(in, new byte[4096]));
+        }
+    }
+
+    @Test
+    public void testScrubFlagsCorruptionAndMissingFiles() throws Exception {
+        File intact = new File(directory, "intact.enc");
+        insert(1, intact, writeContainer(intact, 150_000));
+
+        // Un octet modifié dans un segment : la structure est valide mais l'empreinte diffère
+        File altered = new File(directory, "altered.enc");
+        insert(2, altered, writeContainer(altered, 150_000));
+        try (RandomAccessFile raf = new RandomAccessFile(altered, "rw")) {
+            raf.seek(1000);
+            int b = raf.read();
+            raf.seek(1000);
+            raf.write(b ^ 1);
+        }
+
+        // Conteneur tronqué sans empreinte : détecté par le contrôle de structure
+        File truncated = new File(directory, "truncated.enc");
+        writeContainer(truncated, 150_000);
+        try (RandomAccessFile raf = new RandomAccessFile(truncated, "rw")) {
+            raf.setLength(raf.length() - 100);
+        }
+        insert(3, truncated, null);
+
+        insert(4, new File(directory, "missing.enc"), null);
+
+        // Ancien format sans empreinte : seule la lecture complète est possible
+        File legacy = new File(directory, "legacy.enc");
+        byte[] legacyData = new byte[5000];
+        new Random(1).nextBytes(legacyData);
+        Files.write(legacy.toPath(), legacyData);
+        insert(5, legacy, null);
+
+        RecordingScrubber.Report report = new RecordingScrubber(pool, 2, 0).scrub();
+
+        assertEquals(2, report.getVerifiedCount());
+        assertEquals(1, report.getUnhashedCount());
+        assertEquals(1, report.getMissingCount());
+        Map<Integer, String> problems = report.getProblems();
+        assertEquals(3, problems.size());
+        assertTrue(problems.containsKey(2));
+        assertTrue(problems.get(3), problems.get(3).contains("tronqué"));
+        assertTrue(problems.containsKey(4));
+        assertTrue(report.getFilesPerSecond() > 0);
+    }
+
+    @Test
+    public void testReadBandwidthIsThrottled() throws Exception {
+        File file = new File(directory, "throttled.enc");
+        insert(1, file, writeContainer(file, 300_000));
+
+        // Environ 300 Ko à 200 Ko/s : la première lecture de 64 Ko passe sans
+        // attendre, le reste prend au moins 1,1 s
+        RecordingScrubber.Report report = new RecordingScrubber(pool, 1, 200 * 1024).scrub();
+
+        assertEquals(1, report.getVerifiedCount());
+        assertTrue("La lecture devrait être ralentie: " + report.getElapsedMillis() + " ms",
+                report.getElapsedMillis() >= 1000);
+    }
+
+    private String writeContainer(File file, int length) throws Exception {
+        byte[] audio = new byte[length];
+        new Random(length).nextBytes(audio);
+        DigestOutputStream digestOut = RecordingIntegrity.digesting(new FileOutputStream(file));
+        try (OutputStream out = new EncryptedAudioContainer.EncryptingOutputStream(digestOut, key, FORMAT)) {
+            // Écriture par blocs, comme pendant la capture
+            for (int offset = 0; offset < audio.length; offset += 4410) {
+                out.write(audio, offset, Math.min(4410, audio.length - offset));
+            }
+        }
+        return RecordingIntegrity.toHash(digestOut.getMessageDigest());
+    }
+
+    private void insert(int id, File file, String integrityHash) throws Exception {
+        try (Connection conn = pool.connect()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("INSERT OR IGNORE INTO users (id, email, password_hash, salt)"
+                        + " VALUES (1, 'owner@missie.com', 'x', 'x')");
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO recordings"
+                    + " (id, user_id, name, timestamp, file_path, duration, integrity_hash)"
+                    + " VALUES (?, 1, ?, '2024-01-01T10:00', ?, 1, ?)")) {
+                stmt.setInt(1, id);
+                stmt.setString(2, file.getName());
+                stmt.setString(3, file.getAbsolutePath());
+                stmt.setString(4, integrityHash);
+                stmt.executeUpdate();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import service.impl.SchemaDescriptor;
+import service.impl.SchemaMigrator;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Tests unitaires pour la description du schéma mise en cache.
+ */
+public class SchemaDescriptorTest {
+
+    private File databaseFile;
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        databaseFile = File.createTempFile("descriptor", ".db");
+        conn = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+        databaseFile.delete();
+    }
+
+    @Test
+    public void testDescriptorIsResolvedOnce() throws Exception {
+        SchemaMigrator.migrate(conn);
+
+        SchemaDescriptor first = SchemaDescriptor.of(conn);
+        assertSame(first, SchemaDescriptor.of(conn));
+        assertEquals("file_path", first.getFilePathColumn());
+        assertTrue(first.hasSharedRecordings());
+    }
+
+    @Test
+    public void testLegacyFilepathColumnIsDetected() throws Exception {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE recordings (id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + " user_id INTEGER NOT NULL, name TEXT NOT NULL, timestamp TEXT NOT NULL,"
+                    + " filepath TEXT, duration INTEGER NOT NULL, encryption_key TEXT)");
+            stmt.executeUpdate("INSERT INTO recordings (user_id, name, timestamp, filepath, duration)"
+                    + " VALUES (1, 'ancien', '2024-01-01T10:00', '/tmp/ancien.enc', 5)");
+        }
+
+        SchemaDescriptor schema = SchemaDescriptor.refresh(conn);
+        assertEquals("filepath", schema.getFilePathColumn());
+        assertFalse(schema.hasSharedRecordings());
+        assertNull(schema.getSharedWithUserQuery());
+
+        try (PreparedStatement stmt = conn.prepareStatement(schema.getRecordingByIdQuery())) {
+            stmt.setInt(1, 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals("/tmp/ancien.enc", rs.getString("file_path"));
+            }
+        }
+    }
+
+    @Test
+    public void testMigrationRefreshesDescriptor() throws Exception {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE recordings (id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + " user_id INTEGER NOT NULL, name TEXT NOT NULL, timestamp TEXT NOT NULL,"
+                    + " file_path TEXT, duration INTEGER NOT NULL)");
+        }
+        assertFalse(SchemaDescriptor.of(conn).hasSharedRecordings());
+
+        SchemaMigrator.migrate(conn);
+
+        assertTrue("La migration devrait rafraîchir la description du schéma",
+                SchemaDescriptor.of(conn).hasSharedRecordings());
+    }
+}
@@ -0,0 +1,80 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import service.impl.SchemaMigrator;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Tests unitaires pour le moteur de migration du schéma.
+ */
+public class SchemaMigratorTest {
+
+    private File databaseFile;
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        databaseFile = File.createTempFile("schema", ".db");
+        conn = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+        databaseFile.delete();
+    }
+
+    @Test
+    public void testMigrationIsIdempotent() throws Exception {
+        assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.migrate(conn));
+        assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.migrate(conn));
+
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM schema_version")) {
+            assertTrue(rs.next());
+            assertEquals("Chaque migration ne devrait être enregistrée qu'une fois",
+                    SchemaMigrator.getLatestVersion(), rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testIndexesAreCreated() throws Exception {
+        SchemaMigrator.migrate(conn);
+
+        assertTrue(indexExists("idx_recordings_user"));
+        assertTrue(indexExists("idx_shared_target_recording"));
+        assertTrue(indexExists("idx_notifications_user_read"));
+    }
+
+    @Test
+    public void testLegacyRecordingsTableIsUpgraded() throws Exception {
+        // Table créée par une ancienne version, sans colonne encryption_key
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE recordings (id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + " user_id INTEGER NOT NULL, name TEXT NOT NULL, timestamp TEXT NOT NULL,"
+                    + " file_path TEXT, duration INTEGER NOT NULL)");
+        }
+
+        SchemaMigrator.migrate(conn);
+
+        try (ResultSet columns = conn.getMetaData().getColumns(null, null, "recordings", "encryption_key")) {
+            assertTrue("La colonne encryption_key devrait être ajoutée", columns.next());
+        }
+    }
+
+    private boolean indexExists(String name) throws Exception {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(
+                        "SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = '" + name + "'")) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.AudioRecording;
+import service.CryptographyService;
+import service.KeyRing;
+import service.RSACryptographyService;
+import service.SharedRecordingService;
+import service.UserKeysService;
+import service.X25519CryptographyService;
+import service.impl.AESCryptographyServiceFix;
+import service.impl.AudioRecordingServiceFixExtended;
+import service.impl.KeyHierarchy;
+import service.impl.PooledDatabaseService;
+import service.impl.SchemaMigrator;
+import service.impl.UserServiceImplFix;
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests unitaires pour le partage d'un enregistrement entre utilisateurs de
+ * schémas de clés différents.
+ */
+public class SharedRecordingServiceTest {
+
+    private static final int SOURCE_USER_ID = 1;
+    private static final int TARGET_USER_ID = 2;
+    private static final String TARGET_EMAIL = "destinataire@test";
+    private static final int RECORDING_ID = 7;
+
+    private File databaseFile;
+    private File recordingFile;
+    private File sharedFile;
+    private PooledDatabaseService pool;
+    private RSACryptographyService rsaService;
+    private CryptographyService cryptographyService;
+    private byte[] audio;
+
+    @Before
+    public void setUp() throws Exception {
+        databaseFile = File.createTempFile("sharing", ".db");
+        pool = new PooledDatabaseService("jdbc:sqlite:" + databaseFile.getAbsolutePath(), 2,
+                PooledDatabaseService.DEFAULT_LEAK_THRESHOLD_MS);
+        new SchemaMigrator(pool).migrate();
+        rsaService = new RSACryptographyService(new KeyRing(4));
+        cryptographyService = new AESCryptographyServiceFix(false);
+
+        // La source a des clés RSA, le destinataire des clés X25519
+        String[] sourceKeys = rsaService.generateKeyPair();
+        insertUser(SOURCE_USER_ID, "source@test", sourceKeys, RSACryptographyService.SCHEME);
+        String[] targetKeys = new X25519CryptographyService().generateKeyPair();
+        insertUser(TARGET_USER_ID, TARGET_EMAIL, targetKeys, X25519CryptographyService.SCHEME);
+
+        audio = new byte[3 * 44100 * 2];
+        new Random(14).nextBytes(audio);
+        SecretKey recordingKey = cryptographyService.generateSecretKey();
+        recordingFile = File.createTempFile("sharing", ".enc");
+        sharedFile = new File(recordingFile.getParent(), recordingFile.getName().replace(".enc", "_shared.enc"));
+        try (OutputStream out = new FileOutputStream(recordingFile)) {
+            cryptographyService.encrypt(new ByteArrayInputStream(audio), out, recordingKey,
+                    AudioRecordingServiceFixExtended.getAudioFormat());
+        }
+        try (Connection conn = pool.connect();
+                PreparedStatement stmt = conn.prepareStatement("INSERT INTO recordings (id, user_id, name,"
+                        + " timestamp, file_path, duration, encryption_key) VALUES (?, ?, 'partage',"
+                        + " '2024-01-01T10:00', ?, 3, ?)")) {
+            stmt.setInt(1, RECORDING_ID);
+            stmt.setInt(2, SOURCE_USER_ID);
+            stmt.setString(3, recordingFile.getAbsolutePath());
+            stmt.setString(4, new KeyHierarchy(pool, rsaService).wrap(SOURCE_USER_ID, recordingKey));
+            stmt.executeUpdate();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+        recordingFile.delete();
+        sharedFile.delete();
+        databaseFile.delete();
+        new File(databaseFile.getPath() + "-wal").delete();
+        new File(databaseFile.getPath() + "-shm").delete();
+    }
+
+    @Test
+    public void testX25519RecipientDecryptsAndExportsSharedRecording() throws Exception {
+        shareWithTarget();
+
+        AudioRecordingServiceFixExtended targetService = new AudioRecordingServiceFixExtended(cryptographyService,
+                pool);
+        targetService.setCurrentUserId(TARGET_USER_ID);
+        AudioRecording recording = targetService.getRecording(RECORDING_ID);
+        assertEquals(TARGET_USER_ID, recording.getUserId());
+
+        // La clé de partage est chiffrée avec la clé publique X25519 du destinataire
+        assertArrayEquals(audio, targetService.retrieveAudioData(recording, null));
+
+        Map<String, String> exported = targetService.exportEncryptionKey(RECORDING_ID);
+        SecretKey shareKey = cryptographyService.decodeKeyFromBase64(exported.get("key"));
+        assertArrayEquals("La clé exportée devrait déchiffrer la copie partagée", audio, decrypt(sharedFile, shareKey));
+    }
+
+    @Test
+    public void testRecipientExportsSharedRecording() throws Exception {
+        shareWithTarget();
+        AudioRecordingServiceFixExtended targetService = new AudioRecordingServiceFixExtended(cryptographyService,
+                pool);
+        targetService.setCurrentUserId(TARGET_USER_ID);
+        File exportFile = File.createTempFile("sharing", ".export");
+        try {
+            assertTrue(targetService.exportRecording(RECORDING_ID, exportFile.getAbsolutePath()));
+
+            // L'export se déchiffre avec la clé donnée au destinataire
+            Map<String, String> exported = targetService.exportEncryptionKey(RECORDING_ID);
+            SecretKey shareKey = cryptographyService.decodeKeyFromBase64(exported.get("key"));
+            assertArrayEquals(audio, decrypt(exportFile, shareKey));
+        } finally {
+            exportFile.delete();
+        }
+    }
+
+    private void shareWithTarget() throws Exception {
+        AudioRecordingServiceFixExtended sourceService = new AudioRecordingServiceFixExtended(cryptographyService,
+                pool);
+        sourceService.setCurrentUserId(SOURCE_USER_ID);
+        SharedRecordingService sharing = new SharedRecordingService(pool,
+                new UserServiceImplFix(pool, cryptographyService), sourceService,
+                new UserKeysService(pool, rsaService), rsaService);
+        assertTrue(sharing.shareRecording(RECORDING_ID, SOURCE_USER_ID, TARGET_EMAIL));
+    }
+
+    private byte[] decrypt(File file, SecretKey key) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new FileInputStream(file)) {
+            cryptographyService.decrypt(in, out, key);
+        }
+        return out.toByteArray();
+    }
+
+    private void insertUser(int id, String email, String[] keys, String scheme) throws Exception {
+        try (Connection conn = pool.connect()) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO users (id, email, password_hash, salt) VALUES (?, ?, 'x', 'x')")) {
+                stmt.setInt(1, id);
+                stmt.setString(2, email);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO user_keys (user_id, public_key, private_key, scheme) VALUES (?, ?, ?, ?)")) {
+                stmt.setInt(1, id);
+                stmt.setString(2, keys[0]);
+                stmt.setString(3, keys[1]);
+                stmt.setString(4, scheme);
+                stmt.executeUpdate();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package test.service;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import service.AsymmetricCryptographyService;
+import service.RSACryptographyService;
+import service.X25519CryptographyService;
+
+/**
+ * Tests unitaires pour le schéma de chiffrement X25519.
+ */
+public class X25519CryptographyServiceTest {
+
+    private final X25519CryptographyService service = new X25519CryptographyService();
+
+    @Test
+    public void testEncryptDecrypt() throws Exception {
+        String[] keyPair = service.generateKeyPair();
+
+        String encrypted = service.encryptWithPublicKey("clé-aes-base64", keyPair[0]);
+
+        assertEquals("clé-aes-base64", service.decryptWithPrivateKey(encrypted, keyPair[1]));
+        assertNotEquals("Chaque chiffrement utilise une clé éphémère",
+                encrypted, service.encryptWithPublicKey("clé-aes-base64", keyPair[0]));
+    }
+
+    @Test(expected = Exception.class)
+    public void testOtherPrivateKeyIsRejected() throws Exception {
+        String[] recipient = service.generateKeyPair();
+        String[] other = service.generateKeyPair();
+
+        String encrypted = service.encryptWithPublicKey("secret", recipient[0]);
+
+        service.decryptWithPrivateKey(encrypted, other[1]);
+    }
+
+    @Test
+    public void testSchemeSelection() {
+        assertTrue(AsymmetricCryptographyService.forScheme(null) instanceof RSACryptographyService);
+        assertTrue(AsymmetricCryptographyService.forScheme("RSA") instanceof RSACryptographyService);
+        assertEquals(X25519CryptographyService.SCHEME,
+                AsymmetricCryptographyService.forScheme("X25519").getScheme());
+    }
+}
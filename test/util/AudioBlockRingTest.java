@@ -0,0 +1,86 @@
+package test.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import util.AudioBlockRing;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Tests unitaires pour l'anneau de blocs audio AudioBlockRing.
+ */
+public class AudioBlockRingTest {
+
+    @Test
+    public void testCapacityIsRoundedToPowerOfTwo() {
+        AudioBlockRing ring = new AudioBlockRing(5, 16);
+        assertEquals("La capacité devrait être arrondie à 8", 8, ring.getCapacity());
+        assertEquals(16, ring.getBlockSize());
+    }
+
+    @Test
+    public void testOverrunWhenRingIsFull() {
+        AudioBlockRing ring = new AudioBlockRing(2, 4);
+
+        for (int i = 0; i < 2; i++) {
+            assertNotNull("Un bloc devrait être disponible", ring.claim());
+            ring.publish(4);
+        }
+
+        // L'anneau est plein : le producteur ne doit ni bloquer ni allouer
+        assertNull("Aucun bloc ne devrait être disponible", ring.claim());
+        assertEquals(1, ring.getOverruns());
+        assertEquals(2, ring.getBlocksInFlight());
+        assertEquals(2, ring.getHighWaterMark());
+
+        ring.release();
+        assertNotNull("Un bloc devrait être libéré", ring.claim());
+        assertEquals(1, ring.getBlocksInFlight());
+    }
+
+    @Test
+    public void testProducerConsumerPreservesOrder() throws Exception {
+        final AudioBlockRing ring = new AudioBlockRing(4, 3);
+        final int total = 3000;
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        Thread consumer = new Thread(() -> {
+            try {
+                while (ring.await()) {
+                    received.write(ring.peek(), 0, ring.peekLength());
+                    ring.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+
+        // Le producteur réessaie lorsque l'anneau est plein, pour vérifier l'ordre
+        int written = 0;
+        while (written < total) {
+            byte[] block = ring.claim();
+            if (block == null) {
+                Thread.yield();
+                continue;
+            }
+            int length = Math.min(block.length, total - written);
+            for (int i = 0; i < length; i++) {
+                block[i] = (byte) (written + i);
+            }
+            ring.publish(length);
+            written += length;
+        }
+        ring.close();
+        consumer.join(5000);
+
+        assertFalse("Le consommateur devrait être terminé", consumer.isAlive());
+        byte[] data = received.toByteArray();
+        assertEquals(total, data.length);
+        for (int i = 0; i < total; i++) {
+            assertEquals("Octet " + i + " dans le désordre", (byte) i, data[i]);
+        }
+        assertEquals(0, ring.getBlocksInFlight());
+        assertTrue(ring.getHighWaterMark() <= ring.getCapacity());
+    }
+}
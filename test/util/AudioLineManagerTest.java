@@ -0,0 +1,259 @@
+package test.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import util.AudioLineManager;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.TargetDataLine;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests unitaires pour la réserve de lignes audio AudioLineManager.
+ */
+public class AudioLineManagerTest {
+
+    private static final AudioFormat FORMAT = new AudioFormat(44100, 16, 1, true, true);
+    private static final AudioFormat OTHER_FORMAT = new AudioFormat(8000, 16, 1, true, true);
+
+    @Test
+    public void testReleasedLineIsReused() throws Exception {
+        FakeLines fake = new FakeLines();
+        AudioLineManager lines = new AudioLineManager(fake, 1);
+
+        SourceDataLine first = lines.acquireSourceLine(FORMAT);
+        first.start();
+        lines.release(first);
+        SourceDataLine second = lines.acquireSourceLine(FORMAT);
+
+        assertSame("La ligne rendue devrait être réutilisée", first, second);
+        assertEquals(1, lines.getOpenedCount());
+        assertEquals(1, lines.getReusedCount());
+        assertEquals("La ligne rendue devrait être arrêtée", 0, fake.running.size());
+        assertEquals("La ligne rendue devrait être vidée", 1, fake.flushes);
+    }
+
+    @Test
+    public void testLinesAreKeptPerTypeAndFormat() throws Exception {
+        FakeLines fake = new FakeLines();
+        AudioLineManager lines = new AudioLineManager(fake, 1);
+
+        SourceDataLine source = lines.acquireSourceLine(FORMAT);
+        lines.release(source);
+
+        assertNotSame(source, lines.acquireTargetLine(FORMAT));
+        assertNotSame(source, lines.acquireSourceLine(OTHER_FORMAT));
+        assertSame(source, lines.acquireSourceLine(FORMAT));
+        assertEquals(3, lines.getOpenedCount());
+    }
+
+    @Test
+    public void testLinesBeyondCapacityAreClosed() throws Exception {
+        FakeLines fake = new FakeLines();
+        AudioLineManager lines = new AudioLineManager(fake, 1);
+
+        SourceDataLine first = lines.acquireSourceLine(FORMAT);
+        SourceDataLine second = lines.acquireSourceLine(FORMAT);
+        lines.release(first);
+        lines.release(second);
+
+        assertTrue(first.isOpen());
+        assertFalse("La réserve pleine devrait fermer la ligne rendue", second.isOpen());
+        assertEquals("Une ligne fermée n'est ni arrêtée ni vidée", 1, fake.flushes);
+    }
+
+    @Test
+    public void testClosedLineIsNotReused() throws Exception {
+        FakeLines fake = new FakeLines();
+        AudioLineManager lines = new AudioLineManager(fake, 1);
+
+        SourceDataLine first = lines.acquireSourceLine(FORMAT);
+        lines.release(first);
+        // Fermée pendant qu'elle attendait dans la réserve, par exemple par le système
+        first.close();
+
+        assertNotSame(first, lines.acquireSourceLine(FORMAT));
+        assertEquals(2, lines.getOpenedCount());
+        assertEquals(0, lines.getReusedCount());
+    }
+
+    @Test
+    public void testDiscardClosesLine() throws Exception {
+        FakeLines fake = new FakeLines();
+        AudioLineManager lines = new AudioLineManager(fake, 1);
+
+        TargetDataLine line = lines.acquireTargetLine(FORMAT);
+        lines.discard(line);
+        lines.release(line);
+
+        assertFalse(line.isOpen());
+        assertNotSame(line, lines.acquireTargetLine(FORMAT));
+    }
+
+    @Test
+    public void testWarmUpOpensLinesAhead() throws Exception {
+        FakeLines fake = new FakeLines();
+        AudioLineManager lines = new AudioLineManager(fake, 2);
+
+        assertEquals(4, lines.warmUp(FORMAT));
+        assertEquals("Les lignes déjà ouvertes suffisent", 0, lines.warmUp(FORMAT));
+        assertEquals(4, fake.open.size());
+
+        lines.acquireSourceLine(FORMAT);
+        lines.acquireTargetLine(FORMAT);
+        assertEquals(4, lines.getOpenedCount());
+        assertEquals(2, lines.getReusedCount());
+    }
+
+    @Test
+    public void testWarmUpSkipsUnavailableLines() throws Exception {
+        FakeLines fake = new FakeLines();
+        fake.noCapture = true;
+        AudioLineManager lines = new AudioLineManager(fake, 1);
+
+        assertEquals("Seule la ligne de sortie est disponible", 1, lines.warmUp(FORMAT));
+        try {
+            lines.acquireTargetLine(FORMAT);
+            fail("Aucune ligne de capture ne devrait être disponible");
+        } catch (LineUnavailableException expected) {
+            // attendu
+        }
+    }
+
+    @Test
+    public void testCloseClosesIdleLines() throws Exception {
+        FakeLines fake = new FakeLines();
+        AudioLineManager lines = new AudioLineManager(fake, 1);
+        lines.warmUp(FORMAT);
+        SourceDataLine busy = lines.acquireSourceLine(FORMAT);
+
+        lines.close();
+        assertEquals("Seule la ligne en service devrait rester ouverte", 1, fake.open.size());
+        lines.release(busy);
+        assertEquals(0, fake.open.size());
+    }
+
+    @Test
+    public void testWarmLinesSurviveBufferAdaptation() throws Exception {
+        FakeLines fake = new FakeLines();
+        AudioLineManager lines = new AudioLineManager(fake, 1);
+        lines.warmUp(FORMAT);
+        TargetDataLine warm = lines.acquireTargetLine(FORMAT);
+        assertEquals("Tampon par défaut avant toute adaptation", AudioSystem.NOT_SPECIFIED, warm.getBufferSize());
+        lines.release(warm);
+        assertEquals(1, lines.getReusedCount());
+
+        // Un dépassement sur la ligne de capture fait grandir le tampon demandé
+        TargetDataLine overrun = (TargetDataLine) fake.open(TargetDataLine.class, FORMAT, 4096);
+        fake.fill = 4096;
+        lines.getCaptureTuner().sample(overrun, true);
+        int tuned = lines.getCaptureTuner().getLineBufferSize(FORMAT);
+
+        // La ligne chaude reste en service ; le nouveau tampon s'applique à son retour
+        assertSame(warm, lines.acquireTargetLine(FORMAT));
+        assertEquals(2, lines.getReusedCount());
+        lines.release(warm);
+        assertFalse("La ligne rendue avec l'ancien tampon devrait être fermée", warm.isOpen());
+        awaitOpened(lines, 3);
+
+        TargetDataLine line = lines.acquireTargetLine(FORMAT);
+        assertEquals("La remplaçante devrait être ouverte en arrière-plan", 3, lines.getReusedCount());
+        assertEquals(tuned, line.getBufferSize());
+        lines.release(line);
+
+        // Une adaptation de plus reste dans la tolérance : la ligne est gardée
+        lines.getCaptureTuner().sample(overrun, true);
+        assertEquals(2 * tuned, lines.getCaptureTuner().getLineBufferSize(FORMAT));
+        assertSame(line, lines.acquireTargetLine(FORMAT));
+        lines.release(line);
+        assertSame(line, lines.acquireTargetLine(FORMAT));
+        assertEquals(5, lines.getReusedCount());
+        assertEquals(3, lines.getOpenedCount());
+    }
+
+    private static void awaitOpened(AudioLineManager lines, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (lines.getOpenedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, lines.getOpenedCount());
+    }
+
+    @Test
+    public void testLatencyStatistics() {
+        AudioLineManager.Latency latency = new AudioLineManager.Latency();
+        assertEquals(0, latency.getAverageMillis(), 0);
+
+        latency.record(10_000_000);
+        latency.record(30_000_000);
+        latency.record(20_000_000);
+
+        assertEquals(3, latency.getCount());
+        assertEquals(20, latency.getLastMillis(), 1e-9);
+        assertEquals(20, latency.getAverageMillis(), 1e-9);
+        assertEquals(30, latency.getMaxMillis(), 1e-9);
+    }
+
+    /**
+     * Ouverture de lignes simulées, qui retiennent leur état.
+     */
+    private static final class FakeLines implements AudioLineManager.LineFactory {
+        final List<DataLine> open = new ArrayList<>();
+        final List<DataLine> running = new ArrayList<>();
+        int flushes;
+        boolean noCapture;
+        // Octets en attente dans le tampon de chaque ligne
+        int fill;
+
+        @Override
+        public synchronized DataLine open(Class<? extends DataLine> type, AudioFormat format, int bufferSize)
+                throws LineUnavailableException {
+            if (noCapture && type == TargetDataLine.class) {
+                throw new LineUnavailableException("Pas de micro");
+            }
+            DataLine[] self = new DataLine[1];
+            self[0] = (DataLine) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                    (proxy, method, args) -> {
+                        synchronized (this) {
+                            switch (method.getName()) {
+                            case "start":
+                                running.add(self[0]);
+                                return null;
+                            case "stop":
+                                running.remove(self[0]);
+                                return null;
+                            case "flush":
+                                flushes++;
+                                return null;
+                            case "close":
+                                running.remove(self[0]);
+                                open.remove(self[0]);
+                                return null;
+                            case "isOpen":
+                                return open.contains(self[0]);
+                            case "getFormat":
+                                return format;
+                            case "getBufferSize":
+                                return bufferSize;
+                            case "available":
+                                return type == TargetDataLine.class ? fill : bufferSize - fill;
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                return null;
+                            }
+                        }
+                    });
+            open.add(self[0]);
+            return self[0];
+        }
+    }
+}
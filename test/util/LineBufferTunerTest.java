@@ -0,0 +1,134 @@
+package test.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import util.LineBufferTuner;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+
+/**
+ * Tests unitaires pour le réglage adaptatif des blocs LineBufferTuner.
+ */
+public class LineBufferTunerTest {
+
+    // 100 octets par milliseconde
+    private static final AudioFormat FORMAT = new AudioFormat(50000, 16, 1, true, true);
+    private static final int BUFFER_SIZE = 10_000;
+
+    @Test
+    public void testCaptureOverrunGrowsBlockUpToBound() {
+        LineBufferTuner tuner = new LineBufferTuner(true, Duration.ofMillis(10), Duration.ofMillis(20),
+                Duration.ofMillis(50));
+        FakeLine line = new FakeLine();
+        assertEquals(2000, tuner.getBlockSize(FORMAT));
+        assertEquals(AudioSystem.NOT_SPECIFIED, tuner.getLineBufferSize(FORMAT));
+
+        // Tampon de capture plein : des échantillons sont perdus
+        line.available = BUFFER_SIZE;
+        assertEquals(4000, tuner.sample(line.proxy, true));
+        assertEquals(5000, tuner.sample(line.proxy, true));
+        assertEquals("Le bloc ne devrait pas dépasser sa borne", 5000, tuner.sample(line.proxy, true));
+
+        assertEquals(3, tuner.getXruns());
+        assertEquals(2, tuner.getGrowCount());
+        assertEquals(5000 * LineBufferTuner.BLOCKS_PER_LINE_BUFFER, tuner.getLineBufferSize(FORMAT));
+    }
+
+    @Test
+    public void testHighFillGrowsBlockWithoutCountingOverrun() {
+        LineBufferTuner tuner = new LineBufferTuner(true, Duration.ofMillis(10), Duration.ofMillis(20),
+                Duration.ofMillis(50));
+        FakeLine line = new FakeLine();
+        line.available = BUFFER_SIZE * 8 / 10;
+
+        assertEquals(4000, tuner.sample(line.proxy, true));
+        assertEquals(0, tuner.getXruns());
+    }
+
+    @Test
+    public void testCalmLineShrinksBlockDownToBound() {
+        LineBufferTuner tuner = new LineBufferTuner(true, Duration.ofMillis(10), Duration.ofMillis(20),
+                Duration.ofMillis(50));
+        FakeLine line = new FakeLine();
+        line.available = 0;
+
+        for (int i = 0; i < 3 * LineBufferTuner.CALM_SAMPLES_BEFORE_SHRINK; i++) {
+            tuner.sample(line.proxy, true);
+        }
+
+        assertEquals("Le bloc ne devrait pas descendre sous sa borne", 1000, tuner.getBlockSize(FORMAT));
+        assertEquals(1, tuner.getShrinkCount());
+        assertEquals(Duration.ofMillis(10), tuner.getBlockDuration());
+        assertEquals(1000 * LineBufferTuner.BLOCKS_PER_LINE_BUFFER, tuner.getLineBufferSize(FORMAT));
+    }
+
+    @Test
+    public void testPlaybackUnderrunIgnoredUntilPrimed() {
+        LineBufferTuner tuner = new LineBufferTuner(false, Duration.ofMillis(10), Duration.ofMillis(20),
+                Duration.ofMillis(50));
+        FakeLine line = new FakeLine();
+        // Tampon de sortie vide : toute la place est libre
+        line.available = BUFFER_SIZE;
+
+        assertEquals("Un tampon vide est attendu au démarrage", 2000, tuner.sample(line.proxy, false));
+        assertEquals(0, tuner.getXruns());
+
+        assertEquals(4000, tuner.sample(line.proxy, true));
+        assertEquals(1, tuner.getXruns());
+    }
+
+    @Test
+    public void testEffectiveLatencyCountsQueuedDataAndBlock() {
+        LineBufferTuner tuner = new LineBufferTuner(false, Duration.ofMillis(10), Duration.ofMillis(20),
+                Duration.ofMillis(50));
+        FakeLine line = new FakeLine();
+        // 6000 octets en attente dans la ligne, soit 60 ms, plus un bloc de 20 ms
+        line.available = BUFFER_SIZE - 6000;
+
+        tuner.sample(line.proxy, true);
+
+        assertEquals(1, tuner.getEffectiveLatency().getCount());
+        assertEquals(80, tuner.getEffectiveLatency().getLastMillis(), 0.1);
+        assertEquals(0, tuner.getXruns());
+    }
+
+    @Test
+    public void testUnknownBufferSizeIsNotMeasured() {
+        LineBufferTuner tuner = new LineBufferTuner(true);
+        FakeLine line = new FakeLine();
+        line.bufferSize = 0;
+
+        assertEquals(tuner.getBlockSize(FORMAT), tuner.sample(line.proxy, true));
+        assertEquals(0, tuner.getSamples());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBoundsAreRejected() {
+        new LineBufferTuner(true, Duration.ofMillis(50), Duration.ofMillis(20), Duration.ofMillis(10));
+    }
+
+    /**
+     * Ligne simulée dont le remplissage est fixé par le test.
+     */
+    private static final class FakeLine {
+        int available;
+        int bufferSize = BUFFER_SIZE;
+        final DataLine proxy = (DataLine) Proxy.newProxyInstance(DataLine.class.getClassLoader(),
+                new Class<?>[] { DataLine.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "available":
+                        return available;
+                    case "getBufferSize":
+                        return bufferSize;
+                    case "getFormat":
+                        return FORMAT;
+                    default:
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,102 @@
+package test.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import util.ReadAheadInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests unitaires pour la lecture d'avance ReadAheadInputStream.
+ */
+public class ReadAheadInputStreamTest {
+
+    @Test
+    public void testDataIsReadInOrder() throws Exception {
+        byte[] data = new byte[100_003];
+        new Random(7).nextBytes(data);
+
+        byte[] copy;
+        try (InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), 4096, 3, "test-read-ahead")) {
+            copy = in.readAllBytes();
+        }
+
+        assertArrayEquals(data, copy);
+    }
+
+    @Test
+    public void testReadAheadIsBounded() throws Exception {
+        AtomicInteger requested = new AtomicInteger();
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 0;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                requested.addAndGet(len);
+                return len;
+            }
+        };
+
+        try (ReadAheadInputStream in = new ReadAheadInputStream(endless, 1024, 4, "test-read-ahead")) {
+            assertEquals(1024, in.readNBytes(new byte[1024], 0, 1024));
+            Thread.sleep(100);
+            // Le bloc courant et les quatre blocs libres, jamais plus
+            assertTrue("Lecture d'avance non bornée: " + requested.get(), requested.get() <= 5 * 1024);
+        }
+    }
+
+    @Test
+    public void testSourceErrorIsReportedAfterBufferedData() throws Exception {
+        byte[] data = new byte[3000];
+        InputStream failing = new FilterInputStream(new ByteArrayInputStream(data)) {
+            private int served;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (served >= 2000) {
+                    throw new IOException("Segment 2 altéré");
+                }
+                int n = super.read(b, off, Math.min(len, 2000 - served));
+                served += n;
+                return n;
+            }
+        };
+
+        try (InputStream in = new ReadAheadInputStream(failing, 1000, 2, "test-read-ahead")) {
+            assertEquals(2000, in.readNBytes(new byte[2000], 0, 2000));
+            try {
+                in.read(new byte[1000]);
+                fail("L'erreur de la source devrait être signalée");
+            } catch (IOException e) {
+                assertEquals("Segment 2 altéré", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testCloseClosesSource() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream source = new FilterInputStream(new ByteArrayInputStream(new byte[1 << 20])) {
+            @Override
+            public void close() throws IOException {
+                closed.set(true);
+                super.close();
+            }
+        };
+
+        InputStream in = new ReadAheadInputStream(source, 1024, 2, "test-read-ahead");
+        in.read(new byte[10]);
+        in.close();
+
+        assertTrue(closed.get());
+    }
+}